@@ -87,6 +87,28 @@ function getDisplayName(scan) {
   return scan?.fileName || scan?.filePath || 'Unknown file';
 }
 
+// Bulk scans (system, directory, archive) come back as summaries next to
+// the stored results; with aggregate-only persistence their clean files
+// have no rows of their own, so the summary row is where they show up.
+function getScanSummaryName(summary) {
+  const target = summary?.targetName ? ` of ${summary.targetName}` : '';
+  return `${(summary?.scanType || 'Bulk').toLowerCase()} scan${target}`;
+}
+
+function getScanSummaryDetails(summary) {
+  const problems = summary.suspiciousFiles + summary.maliciousFiles + summary.errorFiles;
+  return `${summary.filesScanned} files, ${summary.cleanFiles} clean`
+    + (problems > 0 ? `, ${problems} with findings (listed separately)` : '');
+}
+
+function mergeHistory(results, summaries) {
+  const rows = [
+    ...results.map((scan) => ({ kind: 'result', time: scan.scanDateTime, scan })),
+    ...summaries.map((summary) => ({ kind: 'summary', time: summary.finishedAt, summary })),
+  ];
+  return rows.sort((a, b) => new Date(b.time) - new Date(a.time));
+}
+
 function Dashboard() {
   const [systemStatus, setSystemStatus] = useState({
     diskUsage: [],
@@ -99,6 +121,8 @@ function Dashboard() {
   const [historyPage, setHistoryPage] = useState(0);
   const [historyRowsPerPage, setHistoryRowsPerPage] = useState(10);
   const [historyTotal, setHistoryTotal] = useState(0);
+  const [historyScans, setHistoryScans] = useState([]);
+  const [historyTotals, setHistoryTotals] = useState(null);
   const [error, setError] = useState(null);
   const [loading, setLoading] = useState(true);
   const [refreshing, setRefreshing] = useState(false);
@@ -147,6 +171,8 @@ function Dashboard() {
       });
       setScanHistory(response.data.content || []);
       setHistoryTotal(response.data.totalElements || 0);
+      setHistoryScans(response.data.scans || []);
+      setHistoryTotals(response.data.totals || null);
     } catch (err) {
       if (err.name !== 'CanceledError' && err.code !== 'ERR_CANCELED') {
         setError(toUserMessage(err));
@@ -435,6 +461,13 @@ function Dashboard() {
                       {isAdmin ? 'Scan history (all users)' : 'Your scan history'}
                     </Typography>
                   </Box>
+                  {historyTotals && (
+                    <Typography variant="body2" sx={{ mb: 2, color: 'var(--text-secondary)' }}>
+                      {historyTotals.files} files scanned: {historyTotals.clean} clean,{' '}
+                      {historyTotals.suspicious} suspicious, {historyTotals.malicious} malicious,{' '}
+                      {historyTotals.errors} errors
+                    </Typography>
+                  )}
                   <TableContainer>
                     <Table>
                       <TableHead>
@@ -447,7 +480,29 @@ function Dashboard() {
                         </TableRow>
                       </TableHead>
                       <TableBody>
-                        {scanHistory.map((scan, index) => (
+                        {mergeHistory(scanHistory, historyScans).map((row, index) => row.kind === 'summary' ? (
+                          <TableRow key={`summary-${row.summary.id ?? index}`}>
+                            <TableCell>{formatDate(row.summary.finishedAt)}</TableCell>
+                            <TableCell sx={{ maxWidth: 200, wordBreak: 'break-all' }}>
+                              {getScanSummaryName(row.summary)}
+                            </TableCell>
+                            <TableCell>
+                              <Alert
+                                severity="info"
+                                sx={{
+                                  display: 'inline-flex',
+                                  py: 0,
+                                  px: 1,
+                                  '& .MuiAlert-message': { py: 0.5 }
+                                }}
+                              >
+                                Scan completed
+                              </Alert>
+                            </TableCell>
+                            <TableCell>N/A</TableCell>
+                            <TableCell>{getScanSummaryDetails(row.summary)}</TableCell>
+                          </TableRow>
+                        ) : (
                           <TableRow
                             key={index}
                             sx={{
@@ -457,13 +512,13 @@ function Dashboard() {
                               }
                             }}
                           >
-                            <TableCell>{formatDate(scan.scanDateTime)}</TableCell>
+                            <TableCell>{formatDate(row.scan.scanDateTime)}</TableCell>
                             <TableCell sx={{ maxWidth: 200, wordBreak: 'break-all' }}>
-                              {getDisplayName(scan)}
+                              {getDisplayName(row.scan)}
                             </TableCell>
                             <TableCell>
                               <Alert
-                                severity={getVerdictSeverity(scan)}
+                                severity={getVerdictSeverity(row.scan)}
                                 sx={{
                                   display: 'inline-flex',
                                   py: 0,
@@ -471,21 +526,21 @@ function Dashboard() {
                                   '& .MuiAlert-message': { py: 0.5 }
                                 }}
                               >
-                                {getVerdictLabel(scan)}
+                                {getVerdictLabel(row.scan)}
                               </Alert>
                             </TableCell>
-                            <TableCell>{scan.threatType || 'N/A'}</TableCell>
+                            <TableCell>{row.scan.threatType || 'N/A'}</TableCell>
                             <TableCell>
                               <Box sx={{ display: 'flex', alignItems: 'center' }}>
                                 <Typography component="div" sx={{ display: 'flex', alignItems: 'center' }}>
-                                  {scan.threatDetails || 'No threats found'}
+                                  {row.scan.threatDetails || 'No threats found'}
                                   <InfoIcon sx={{ ml: 1, fontSize: 16, opacity: 0.7 }} />
                                 </Typography>
                               </Box>
                             </TableCell>
                           </TableRow>
                         ))}
-                        {scanHistory.length === 0 && (
+                        {scanHistory.length === 0 && historyScans.length === 0 && (
                           <TableRow>
                             <TableCell colSpan={5}>
                               <Typography component="div" align="center">
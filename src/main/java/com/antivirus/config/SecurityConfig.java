@@ -53,8 +53,9 @@ import java.util.stream.Collectors;
  * UserDetailsService) is auto-discovered by Spring Security.
  * - @EnableMethodSecurity added for @PreAuthorize on admin-only endpoints.
  * - /api/auth/register added to permitAll and to the rate-limit filter.
- * - Role-based rules: USER may only reach scan/file, scan/directory,
- * scan/directory/status/{jobId}, history/me.
+ * - Role-based rules: USER may only reach scan/file, scan/file/stream,
+ * scan/upload, scan/directory, scan/directory/status/{jobId}, scan/archive,
+ * history/me.
  * - Dev profile skips CORS origin validation so localhost origins work locally.
  * - H2 console is permitAll in dev (no auth dependency for local debugging).
  */
@@ -115,6 +116,7 @@ public class SecurityConfig {
 
                         // ── USER + ADMIN ─────────────────────────────────────────────────────
                         .requestMatchers(HttpMethod.POST, "/api/antivirus/scan/file").hasAnyRole("USER", "ADMIN")
+                        .requestMatchers(HttpMethod.POST, "/api/antivirus/scan/file/stream").hasAnyRole("USER", "ADMIN")
                         .requestMatchers(HttpMethod.POST, "/api/antivirus/scan/directory").hasAnyRole("USER", "ADMIN")
                         // GET .../scan/directory/status/{jobId}: directory scan is a regular-
                         // user feature (no AdminRoute wrapper on the frontend route, and the
@@ -127,6 +129,17 @@ public class SecurityConfig {
                         // roles may reach the endpoint at all.
                         .requestMatchers(HttpMethod.GET, "/api/antivirus/scan/directory/status/**")
                         .hasAnyRole("USER", "ADMIN")
+                        // Archive-upload scans are the streaming form of scan/directory and
+                        // report through the same status endpoint; same roles, same
+                        // per-job ownership check.
+                        .requestMatchers(HttpMethod.POST, "/api/antivirus/scan/archive").hasAnyRole("USER", "ADMIN")
+                        .requestMatchers(HttpMethod.PUT, "/api/antivirus/scan/archive/*").hasAnyRole("USER", "ADMIN")
+                        // Chunked uploads: the resumable form of scan/file; each upload is
+                        // checked against its owner in SecurityServiceImpl.
+                        .requestMatchers(HttpMethod.POST, "/api/antivirus/scan/upload", "/api/antivirus/scan/upload/*/complete")
+                        .hasAnyRole("USER", "ADMIN")
+                        .requestMatchers(HttpMethod.PUT, "/api/antivirus/scan/upload/*").hasAnyRole("USER", "ADMIN")
+                        .requestMatchers(HttpMethod.GET, "/api/antivirus/scan/upload/*").hasAnyRole("USER", "ADMIN")
                         .requestMatchers(HttpMethod.GET, "/api/antivirus/history/me").hasAnyRole("USER", "ADMIN")
 
                         // ── ADMIN only ───────────────────────────────────────────────────────
@@ -1,12 +1,13 @@
 package com.antivirus.controller;
 
 import com.antivirus.dto.PagedResponse;
+import com.antivirus.dto.ScanHistoryResponse;
 import com.antivirus.model.ScanResult;
-import com.antivirus.repository.ScanResultRepository;
 import com.antivirus.service.SecurityService;
 import com.antivirus.service.SystemMonitorService;
 import com.antivirus.service.LogService;
 import com.antivirus.util.PathSecurityUtil;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
@@ -19,6 +20,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.HashMap;
@@ -58,9 +60,6 @@ public class AntivirusController {
     @Autowired
     private SystemMonitorService systemMonitorService;
 
-    @Autowired
-    private ScanResultRepository scanResultRepository;
-
     @SuppressWarnings("unused")
     @Autowired
     private LogService logService;
@@ -104,17 +103,10 @@ public class AntivirusController {
             return ResponseEntity.badRequest().body(errorResult);
         }
 
-        File tempFile = null;
-        try {
-            // Create temporary file
-            tempFile = File.createTempFile("scan_", "_" + UUID.randomUUID());
-            // O-02 Fix: Use Objects.requireNonNull to satisfy @NonNull contract and remove
-            // suppression
-            file.transferTo(Objects.requireNonNull(tempFile, "Temp file creation failed unexpectedly"));
-            logger.info("File uploaded successfully: {}", tempFile.getAbsolutePath());
-
-            // Perform scan
-            ScanResult result = securityService.scanFile(tempFile);
+        // The part is scanned straight from the multipart stream; it is no
+        // longer copied to a temp file and read back.
+        try (InputStream body = file.getInputStream()) {
+            ScanResult result = securityService.scanStream(body, originalFilename);
             result.setFileName(originalFilename);
             logger.info("File scan completed: {}", result);
             return ResponseEntity.ok(result);
@@ -128,25 +120,49 @@ public class AntivirusController {
             errorResult.setThreatType("ERROR");
             errorResult.setThreatDetails("Error processing file upload");
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResult);
-        } finally {
-            // Clean up the temporary file
-            if (tempFile != null && tempFile.exists()) {
-                try {
-                    if (!tempFile.delete()) {
-                        logger.warn("Could not delete temporary file: {}", tempFile.getAbsolutePath());
-                    } else {
-                        logger.info("Temporary file deleted: {}", tempFile.getAbsolutePath());
-                    }
-                } catch (Exception e) {
-                    logger.warn("Error deleting temporary file: {}", tempFile.getAbsolutePath(), e);
-                }
-            }
         }
     }
 
+    /**
+     * Scan-while-uploading: the raw request body is the file (not
+     * multipart, which the container buffers in full before the controller
+     * runs). Bytes are hashed and run through the detectors as they arrive,
+     * so the verdict is returned right after the last one.
+     *
+     * @param name Original file name, used for the name-based checks
+     * @return The scan result, as for /scan/file
+     */
+    @PostMapping("/scan/file/stream")
+    public ResponseEntity<?> scanFileStream(@RequestParam("name") String name, HttpServletRequest request)
+            throws IOException {
+        String originalFilename = sanitizeDisplayName(name);
+        String contentType = request.getContentType();
+        String mediaType = contentType != null ? contentType.split(";", 2)[0].trim() : null;
+        if (mediaType == null || !ALLOWED_CONTENT_TYPES.contains(mediaType.toLowerCase(Locale.ROOT))) {
+            logger.warn("Rejected upload with unsupported content type: {}", contentType);
+            ScanResult errorResult = new ScanResult();
+            errorResult.setFilePath(originalFilename);
+            errorResult.setFileName(originalFilename);
+            errorResult.setInfected(false);
+            errorResult.setThreatType("ERROR");
+            errorResult.setThreatDetails("Unsupported file type");
+            return ResponseEntity.badRequest().body(errorResult);
+        }
+
+        ScanResult result = securityService.scanStream(request.getInputStream(), originalFilename);
+        result.setFileName(originalFilename);
+        logger.info("File scan completed: {}", result);
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * Starts a system scan. Files unchanged since their last clean scan
+     * are skipped unless full=true forces every file to be read again.
+     */
     @PostMapping("/scan/system")
-    public ResponseEntity<Map<String, Object>> performSystemScan() {
-        securityService.performSystemScan();
+    public ResponseEntity<Map<String, Object>> performSystemScan(
+            @RequestParam(name = "full", defaultValue = "false") boolean fullRescan) {
+        securityService.performSystemScan(fullRescan);
         Map<String, Object> response = new HashMap<>();
         response.put("started", true);
         return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
@@ -168,6 +184,10 @@ public class AntivirusController {
         Map<String, Object> status = new HashMap<>();
         status.put("isRunning", securityService.isSystemScanRunning());
         status.put("filesScanned", securityService.getSystemScanFilesScanned());
+        status.put("filesUnchanged", securityService.getSystemScanFilesUnchanged());
+        status.put("filesKnownGood", securityService.getSystemScanFilesKnownGood());
+        status.put("knownGoodHitRatio", securityService.getSystemScanKnownGoodRatio());
+        status.put("pipeline", securityService.getSystemScanPipelineMetrics());
         return ResponseEntity.ok(status);
     }
 
@@ -202,14 +222,14 @@ public class AntivirusController {
 
     @PreAuthorize("hasRole('ADMIN')")
     @GetMapping("/history")
-    public ResponseEntity<PagedResponse<ScanResult>> getScanHistory(
+    public ResponseEntity<ScanHistoryResponse> getScanHistory(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
         return ResponseEntity.ok(securityService.getScanHistory(page, size));
     }
 
     @GetMapping("/history/me")
-    public ResponseEntity<PagedResponse<ScanResult>> getMyHistory(
+    public ResponseEntity<ScanHistoryResponse> getMyHistory(
             Principal principal,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
@@ -222,16 +242,7 @@ public class AntivirusController {
         // SecurityServiceImpl.resolveCurrentUsername()
         String owner = principal.getName().trim().toLowerCase(java.util.Locale.ROOT);
 
-        org.springframework.data.domain.Pageable pageable = org.springframework.data.domain.PageRequest.of(
-                page, size,
-                org.springframework.data.domain.Sort.by("scanDateTime").descending());
-
-        org.springframework.data.domain.Page<ScanResult> resultPage = scanResultRepository
-                .findByOwnerUsernameOrderByScanDateTimeDesc(owner, pageable);
-
-        PagedResponse<ScanResult> response = PagedResponse.from(resultPage);
-
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok(securityService.getScanHistoryForOwner(owner, page, size));
     }
 
     @GetMapping("/infected")
@@ -247,6 +258,26 @@ public class AntivirusController {
         return ResponseEntity.ok().build();
     }
 
+    @GetMapping("/update/status")
+    public ResponseEntity<Map<String, Object>> getVirusDefinitionStatus() {
+        return ResponseEntity.ok(securityService.getVirusDefinitionStatus());
+    }
+
+    /**
+     * Scan exclusion rules (prefix:, ext: and glob rules) every scan type
+     * checks. PUT replaces all of them with {"rules": [...]} without a
+     * restart; they revert to app.scan.exclusions.rules on the next one.
+     */
+    @GetMapping("/exclusions")
+    public ResponseEntity<Map<String, Object>> getScanExclusions() {
+        return ResponseEntity.ok(securityService.getScanExclusions());
+    }
+
+    @PutMapping("/exclusions")
+    public ResponseEntity<Map<String, Object>> updateScanExclusions(@RequestBody Map<String, List<String>> request) {
+        return ResponseEntity.ok(securityService.updateScanExclusions(request.get("rules")));
+    }
+
     @PostMapping("/quarantine")
     public ResponseEntity<Void> quarantineFile(@RequestParam("scanResultId") Long scanResultId) {
         securityService.quarantineScanResult(scanResultId);
@@ -381,6 +412,101 @@ public class AntivirusController {
         return ResponseEntity.ok(securityService.getDirectoryScanJobStatus(jobId));
     }
 
+    /**
+     * First step of an archive-upload scan: creates the job and returns its
+     * id straight away, so GET /scan/directory/status/{jobId} can be polled
+     * while the archive itself is still uploading.
+     *
+     * @param name File name of the archive about to be uploaded; shown as
+     *             the job's directory name
+     * @return 201 Created with the jobId and the URL to PUT the archive to
+     */
+    @PostMapping("/scan/archive")
+    public ResponseEntity<?> createArchiveScan(@RequestParam(value = "name", defaultValue = "archive") String name) {
+        try {
+            String jobId = securityService.createArchiveScanJob(sanitizeDisplayName(name));
+            Map<String, Object> response = new HashMap<>();
+            response.put("jobId", jobId);
+            response.put("uploadUrl", "/api/antivirus/scan/archive/" + jobId);
+            return ResponseEntity.status(HttpStatus.CREATED).body(response);
+        } catch (IOException e) {
+            String reference = UUID.randomUUID().toString();
+            logger.error("Error creating archive scan job [ref={}]", reference, e);
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Error starting archive scan");
+            errorResponse.put("reference", reference);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+        }
+    }
+
+    /**
+     * Second step: the raw request body is a zip, tar or tar.gz archive
+     * (not multipart, so nothing is buffered to disk first). Entries are
+     * scanned as they are decompressed from the body; the response comes
+     * once the body has been read, usually with scanning nearly done.
+     *
+     * @param jobId Job returned by POST /scan/archive
+     * @return 202 Accepted with the number of entries received
+     */
+    @PutMapping("/scan/archive/{jobId}")
+    public ResponseEntity<Map<String, Object>> uploadArchiveScan(@PathVariable String jobId,
+            HttpServletRequest request) throws IOException {
+        Map<String, Object> response = securityService.uploadArchiveScanJob(jobId, request.getInputStream());
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+    }
+
+    /**
+     * Opens a resumable, chunked upload for one large file. Chunks are then
+     * PUT to uploadUrl with their byte offset, in any order and in
+     * parallel; each is scanned as soon as the bytes before it are in.
+     *
+     * @param name Original file name, used for the name-based checks
+     * @param size Total size of the file in bytes
+     * @return 201 Created with the uploadId and the URL to PUT chunks to
+     */
+    @PostMapping("/scan/upload")
+    public ResponseEntity<Map<String, Object>> createChunkedUpload(@RequestParam("name") String name,
+            @RequestParam("size") long size) throws IOException {
+        String uploadId = securityService.createChunkedUpload(sanitizeDisplayName(name), size);
+        Map<String, Object> response = new HashMap<>();
+        response.put("uploadId", uploadId);
+        response.put("uploadUrl", "/api/antivirus/scan/upload/" + uploadId);
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
+
+    /**
+     * Writes one chunk (the raw request body) at offset. A chunk cut off
+     * mid-request keeps the bytes that arrived; the response lists every
+     * range received so far so the client can resend only the gaps.
+     *
+     * @param uploadId Upload returned by POST /scan/upload
+     * @param offset   Byte offset of the chunk within the file
+     * @return The upload's status, including receivedRanges
+     */
+    @PutMapping("/scan/upload/{uploadId}")
+    public ResponseEntity<Map<String, Object>> appendChunk(@PathVariable String uploadId,
+            @RequestParam("offset") long offset, HttpServletRequest request) throws IOException {
+        return ResponseEntity.ok(securityService.appendChunk(uploadId, offset, request.getInputStream()));
+    }
+
+    @GetMapping("/scan/upload/{uploadId}")
+    public ResponseEntity<Map<String, Object>> getChunkedUploadStatus(@PathVariable String uploadId) {
+        return ResponseEntity.ok(securityService.getChunkedUploadStatus(uploadId));
+    }
+
+    /**
+     * Returns the verdict once every byte has been received (409 while
+     * any range is still missing). The upload is closed either way once
+     * complete, and its temp file deleted.
+     */
+    @PostMapping("/scan/upload/{uploadId}/complete")
+    public ResponseEntity<ScanResult> completeChunkedUpload(@PathVariable String uploadId) {
+        ScanResult result = securityService.completeChunkedUpload(uploadId);
+        result.setFileName(result.getFilePath());
+        logger.info("Chunked upload scan completed: {}", result);
+        return ResponseEntity.ok(result);
+    }
+
     /**
      * Helper method to recursively delete a directory
      */
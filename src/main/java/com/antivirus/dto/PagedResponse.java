@@ -13,16 +13,21 @@ public class PagedResponse<T> {
     private boolean first;
     private boolean last;
 
+    public PagedResponse() {
+    }
+
+    protected PagedResponse(Page<T> page) {
+        this.content = page.getContent();
+        this.page = page.getNumber();
+        this.size = page.getSize();
+        this.totalElements = page.getTotalElements();
+        this.totalPages = page.getTotalPages();
+        this.first = page.isFirst();
+        this.last = page.isLast();
+    }
+
     public static <T> PagedResponse<T> from(Page<T> page) {
-        PagedResponse<T> response = new PagedResponse<>();
-        response.content = page.getContent();
-        response.page = page.getNumber();
-        response.size = page.getSize();
-        response.totalElements = page.getTotalElements();
-        response.totalPages = page.getTotalPages();
-        response.first = page.isFirst();
-        response.last = page.isLast();
-        return response;
+        return new PagedResponse<>(page);
     }
 
     public List<T> getContent() {
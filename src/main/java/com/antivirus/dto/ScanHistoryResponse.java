@@ -0,0 +1,33 @@
+package com.antivirus.dto;
+
+import com.antivirus.model.ScanResult;
+import com.antivirus.model.ScanSummary;
+import org.springframework.data.domain.Page;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A page of scan history: the stored ScanResult rows as before, plus the
+ * bulk scans that finished within the time span of that page, and totals
+ * over both tables. Bulk scans that kept only aggregates for their CLEAN
+ * files show up through scans and totals rather than as rows.
+ */
+public class ScanHistoryResponse extends PagedResponse<ScanResult> {
+    private final List<ScanSummary> scans;
+    private final Map<String, Long> totals;
+
+    public ScanHistoryResponse(Page<ScanResult> page, List<ScanSummary> scans, Map<String, Long> totals) {
+        super(page);
+        this.scans = scans;
+        this.totals = totals;
+    }
+
+    public List<ScanSummary> getScans() {
+        return scans;
+    }
+
+    public Map<String, Long> getTotals() {
+        return totals;
+    }
+}
@@ -12,8 +12,12 @@ import java.nio.file.Paths;
 @Entity
 @Table(name = "scan_results")
 public class ScanResult {
+    // V10: pooled sequence ids, 50 per round trip. IDENTITY needed the
+    // row inserted to learn its id, which kept Hibernate from batching
+    // inserts; see ScanResultWriter.
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "scan_results_seq")
+    @SequenceGenerator(name = "scan_results_seq", sequenceName = "scan_results_seq", allocationSize = 50)
     private Long id;
 
     // V4: widened from the default 255 to cover deeply nested paths
@@ -53,6 +57,23 @@ public class ScanResult {
     @Column(name = "detection_signals", length = 500)
     private String detectionSignals; // comma-separated list of triggered signal names
 
+    // V8: threat-intel signature snapshot version the content was judged
+    // against; null when no content verdict was reached (unreadable, too large)
+    @Column(name = "signature_version")
+    private Long signatureVersion;
+
+    // V9: lowercase hex SHA-256 of the content plus the size and mtime it
+    // had when scanned, so later signature refreshes can be matched
+    // against past results (retro-hunt) without rescanning from disk
+    @Column(name = "content_sha256", length = 64)
+    private String contentSha256;
+
+    @Column(name = "file_size")
+    private Long fileSize;
+
+    @Column(name = "file_modified_at")
+    private LocalDateTime fileModifiedAt;
+
     @PrePersist
     protected void onCreate() {
         scanDateTime = LocalDateTime.now();
@@ -177,4 +198,36 @@ public class ScanResult {
     public void setDetectionSignals(String detectionSignals) {
         this.detectionSignals = detectionSignals;
     }
-}
\ No newline at end of file
+
+    public Long getSignatureVersion() {
+        return signatureVersion;
+    }
+
+    public void setSignatureVersion(Long signatureVersion) {
+        this.signatureVersion = signatureVersion;
+    }
+
+    public String getContentSha256() {
+        return contentSha256;
+    }
+
+    public void setContentSha256(String contentSha256) {
+        this.contentSha256 = contentSha256;
+    }
+
+    public Long getFileSize() {
+        return fileSize;
+    }
+
+    public void setFileSize(Long fileSize) {
+        this.fileSize = fileSize;
+    }
+
+    public LocalDateTime getFileModifiedAt() {
+        return fileModifiedAt;
+    }
+
+    public void setFileModifiedAt(LocalDateTime fileModifiedAt) {
+        this.fileModifiedAt = fileModifiedAt;
+    }
+}
@@ -0,0 +1,185 @@
+package com.antivirus.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Totals of one bulk scan (system scan, directory scan, directory or
+ * archive job). Written once, when the scan ends.
+ *
+ * With app.scan.persistence.aggregate-clean-results=true the CLEAN files
+ * of a bulk scan are only counted here, not stored as ScanResult rows;
+ * storedResults/storedClean say how many rows the scan did write, so
+ * totals over both tables count every file exactly once (V11).
+ */
+@Entity
+@Table(name = "scan_summaries")
+public class ScanSummary {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String scanType; // SYSTEM, DIRECTORY, ARCHIVE
+
+    @Column(name = "owner_username")
+    private String ownerUsername;
+
+    // Directory or archive name as the user gave it; null for system scans
+    @Column(name = "target_name", length = 1024)
+    private String targetName;
+
+    @Column(nullable = false)
+    private LocalDateTime startedAt;
+
+    @Column(nullable = false)
+    private LocalDateTime finishedAt;
+
+    @Column(name = "duration_ms", nullable = false)
+    private long durationMillis;
+
+    @Column(nullable = false)
+    private long filesScanned;
+
+    @Column(nullable = false)
+    private long bytesScanned;
+
+    @Column(nullable = false)
+    private long cleanFiles;
+
+    @Column(nullable = false)
+    private long suspiciousFiles;
+
+    @Column(nullable = false)
+    private long maliciousFiles;
+
+    @Column(nullable = false)
+    private long errorFiles;
+
+    @Column(nullable = false)
+    private long storedResults;
+
+    @Column(nullable = false)
+    private long storedClean;
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getScanType() {
+        return scanType;
+    }
+
+    public void setScanType(String scanType) {
+        this.scanType = scanType;
+    }
+
+    public String getOwnerUsername() {
+        return ownerUsername;
+    }
+
+    public void setOwnerUsername(String ownerUsername) {
+        this.ownerUsername = ownerUsername;
+    }
+
+    public String getTargetName() {
+        return targetName;
+    }
+
+    public void setTargetName(String targetName) {
+        this.targetName = targetName;
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(LocalDateTime startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public LocalDateTime getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(LocalDateTime finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public void setDurationMillis(long durationMillis) {
+        this.durationMillis = durationMillis;
+    }
+
+    public long getFilesScanned() {
+        return filesScanned;
+    }
+
+    public void setFilesScanned(long filesScanned) {
+        this.filesScanned = filesScanned;
+    }
+
+    public long getBytesScanned() {
+        return bytesScanned;
+    }
+
+    public void setBytesScanned(long bytesScanned) {
+        this.bytesScanned = bytesScanned;
+    }
+
+    public long getCleanFiles() {
+        return cleanFiles;
+    }
+
+    public void setCleanFiles(long cleanFiles) {
+        this.cleanFiles = cleanFiles;
+    }
+
+    public long getSuspiciousFiles() {
+        return suspiciousFiles;
+    }
+
+    public void setSuspiciousFiles(long suspiciousFiles) {
+        this.suspiciousFiles = suspiciousFiles;
+    }
+
+    public long getMaliciousFiles() {
+        return maliciousFiles;
+    }
+
+    public void setMaliciousFiles(long maliciousFiles) {
+        this.maliciousFiles = maliciousFiles;
+    }
+
+    public long getErrorFiles() {
+        return errorFiles;
+    }
+
+    public void setErrorFiles(long errorFiles) {
+        this.errorFiles = errorFiles;
+    }
+
+    public long getStoredResults() {
+        return storedResults;
+    }
+
+    public void setStoredResults(long storedResults) {
+        this.storedResults = storedResults;
+    }
+
+    public long getStoredClean() {
+        return storedClean;
+    }
+
+    public void setStoredClean(long storedClean) {
+        this.storedClean = storedClean;
+    }
+}
@@ -4,8 +4,13 @@ import com.antivirus.model.ScanResult;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -26,4 +31,59 @@ public interface ScanResultRepository extends JpaRepository<ScanResult, Long> {
      * SecurityServiceImpl.resolveCurrentUsername() — normalize before calling.
      */
     Page<ScanResult> findByOwnerUsernameOrderByScanDateTimeDesc(String ownerUsername, Pageable pageable);
+
+    /**
+     * Retro-hunt join: ids above afterId, ascending, of results for any of
+     * the given content hashes that are not already MALICIOUS. Keyset
+     * paging (pass the last id back in) keeps every page on the index.
+     */
+    @Query("select r.id from ScanResult r where r.contentSha256 in :hashes"
+            + " and r.verdict <> 'MALICIOUS' and r.id > :afterId order by r.id")
+    List<Long> findRetroHuntMatches(@Param("hashes") Collection<String> hashes, @Param("afterId") long afterId,
+            Pageable pageable);
+
+    /** Id and content hash of hashed, non-MALICIOUS results, keyset-paged by id. */
+    @Query("select r.id as id, r.contentSha256 as contentSha256 from ScanResult r"
+            + " where r.contentSha256 is not null and r.verdict <> 'MALICIOUS' and r.id > :afterId order by r.id")
+    List<HashedResult> findHashedResultsAfter(@Param("afterId") long afterId, Pageable pageable);
+
+    /**
+     * Marks past results as confirmed known-hash matches, the same verdict
+     * scanFile() gives an exact threat-intel hit. Returns rows updated.
+     */
+    @Modifying
+    @Transactional
+    @Query("update ScanResult r set r.verdict = 'MALICIOUS', r.infected = true, r.threatType = 'VIRUS',"
+            + " r.riskScore = 100, r.detectionSignals = 'KNOWN_HASH_MATCH,RETRO_HUNT_MATCH',"
+            + " r.threatDetails = :details, r.actionTaken = 'REPORTED'"
+            + " where r.id in :ids and r.verdict <> 'MALICIOUS'")
+    int flagKnownMalicious(@Param("ids") Collection<Long> ids, @Param("details") String details);
+
+    /**
+     * Row counts per outcome, for history totals; SecurityServiceImpl
+     * folds them together with the scan_summaries counters.
+     */
+    @Query("select r.verdict as verdict, r.infected as infected, r.threatType as threatType, count(r) as results"
+            + " from ScanResult r group by r.verdict, r.infected, r.threatType")
+    List<OutcomeCount> countByOutcome();
+
+    @Query("select r.verdict as verdict, r.infected as infected, r.threatType as threatType, count(r) as results"
+            + " from ScanResult r where r.ownerUsername = :owner group by r.verdict, r.infected, r.threatType")
+    List<OutcomeCount> countByOutcomeForOwner(@Param("owner") String ownerUsername);
+
+    interface OutcomeCount {
+        String getVerdict();
+
+        boolean isInfected();
+
+        String getThreatType();
+
+        long getResults();
+    }
+
+    interface HashedResult {
+        Long getId();
+
+        String getContentSha256();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,52 @@
+package com.antivirus.repository;
+
+import com.antivirus.model.ScanSummary;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ScanSummaryRepository extends JpaRepository<ScanSummary, Long> {
+
+    /** Summaries of scans that finished in [from, to), newest first. */
+    List<ScanSummary> findByFinishedAtGreaterThanEqualAndFinishedAtLessThanOrderByFinishedAtDesc(
+            LocalDateTime from, LocalDateTime to, Pageable pageable);
+
+    /**
+     * User-scoped variant. ownerUsername is stored lowercase, the same way
+     * as on ScanResult — normalize before calling.
+     */
+    List<ScanSummary> findByOwnerUsernameAndFinishedAtGreaterThanEqualAndFinishedAtLessThanOrderByFinishedAtDesc(
+            String ownerUsername, LocalDateTime from, LocalDateTime to, Pageable pageable);
+
+    @Query("select count(s) as scans, coalesce(sum(s.filesScanned), 0) as filesScanned,"
+            + " coalesce(sum(s.bytesScanned), 0) as bytesScanned, coalesce(sum(s.cleanFiles), 0) as cleanFiles,"
+            + " coalesce(sum(s.storedResults), 0) as storedResults, coalesce(sum(s.storedClean), 0) as storedClean"
+            + " from ScanSummary s")
+    Totals totals();
+
+    @Query("select count(s) as scans, coalesce(sum(s.filesScanned), 0) as filesScanned,"
+            + " coalesce(sum(s.bytesScanned), 0) as bytesScanned, coalesce(sum(s.cleanFiles), 0) as cleanFiles,"
+            + " coalesce(sum(s.storedResults), 0) as storedResults, coalesce(sum(s.storedClean), 0) as storedClean"
+            + " from ScanSummary s where s.ownerUsername = :owner")
+    Totals totalsForOwner(@Param("owner") String ownerUsername);
+
+    interface Totals {
+        long getScans();
+
+        long getFilesScanned();
+
+        long getBytesScanned();
+
+        long getCleanFiles();
+
+        long getStoredResults();
+
+        long getStoredClean();
+    }
+}
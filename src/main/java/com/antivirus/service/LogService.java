@@ -28,7 +28,10 @@ public class LogService {
                 .configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
     }
 
-    public void logScanResult(ScanResult result) {
+    // synchronized: system scans now finish files on several walker
+    // threads at once, and the size check in rotateLogIfNeeded() followed
+    // by the append must not interleave with another writer's.
+    public synchronized void logScanResult(ScanResult result) {
         if (result == null) {
             logger.warn("Attempted to log null scan result");
             return;
@@ -1,8 +1,11 @@
 package com.antivirus.service;
 
 import com.antivirus.dto.PagedResponse;
+import com.antivirus.dto.ScanHistoryResponse;
 import com.antivirus.model.ScanResult;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
@@ -11,13 +14,32 @@ public interface SecurityService {
     // File System Security (X.800)
     ScanResult scanFile(File file);
 
+    // Scans an upload as it is read, without writing it to disk first: the
+    // body is hashed and run through the detectors in one pass and the
+    // result is ready right after its last byte. fileName is only used
+    // for the name-based checks and as the result's path. Reads body to
+    // the end (or the scan size limit) and closes it.
+    ScanResult scanStream(InputStream body, String fileName);
+
+    // One file changed under real-time protection (RealtimeProtectionEngine):
+    // scanned as scanType REALTIME under the system user. Only non-CLEAN
+    // results are stored and logged, through the write-behind writer, so
+    // a busy watched tree does not fill scan_results with clean rows.
+    ScanResult scanRealtime(File file);
+
+    // Records a RANSOMWARE result for path (a directory, or the watched
+    // paths) when real-time protection sees change rates typical of mass
+    // encryption; signals name the rates that crossed their threshold.
+    ScanResult reportRansomwareBehavior(String path, List<String> signals, String details);
+
     List<ScanResult> scanDirectory(String directoryPath, boolean recursive);
 
     // Runs on a background thread; returns immediately once the scan has
     // started. Poll isSystemScanRunning()/getSystemScanFilesScanned() (or
     // GET /scan/system/status) for progress, and fetch /history once the
-    // scan reports isRunning=false to see the results.
-    void performSystemScan();
+    // scan reports isRunning=false to see the results. Unless fullRescan
+    // is set, files unchanged since their last clean scan are skipped.
+    void performSystemScan(boolean fullRescan);
 
     void stopSystemScan();
 
@@ -25,6 +47,19 @@ public interface SecurityService {
 
     int getSystemScanFilesScanned();
 
+    // Files the current or last system scan skipped as unchanged.
+    int getSystemScanFilesUnchanged();
+
+    // Files the current or last system scan cleared by a known-good hash
+    // match, and their share of the files it scanned.
+    int getSystemScanFilesKnownGood();
+
+    double getSystemScanKnownGoodRatio();
+
+    // Queue depth and throughput of each stage (read/analyze/persist) of
+    // the current or most recent system scan; empty before the first scan.
+    Map<String, Object> getSystemScanPipelineMetrics();
+
     // Returns only the results produced by the current in-flight system scan
     // session so the UI can refresh a stopped/completed scan without pulling
     // in older history entries.
@@ -38,6 +73,29 @@ public interface SecurityService {
 
     Map<String, Object> getDirectoryScanJobStatus(String jobId);
 
+    // Archive-upload scan, in two steps so the jobId exists before the
+    // upload starts: createArchiveScanJob() returns it at once, then
+    // uploadArchiveScanJob() reads a zip, tar or tar.gz body and scans each
+    // entry as it is decompressed. It returns once the body has been read;
+    // poll getDirectoryScanJobStatus(jobId) meanwhile and afterwards.
+    String createArchiveScanJob(String archiveName) throws IOException;
+
+    Map<String, Object> uploadArchiveScanJob(String jobId, InputStream body);
+
+    // Resumable upload of one large file in chunks: createChunkedUpload()
+    // opens it for a declared size, appendChunk() writes a chunk at its
+    // offset (chunks may arrive in any order and in parallel) and returns
+    // the byte ranges received so far, completeChunkedUpload() returns the
+    // verdict once every byte is in. The content is scanned chunk by chunk
+    // as it arrives. Uploads left idle expire and their storage is freed.
+    String createChunkedUpload(String fileName, long size) throws IOException;
+
+    Map<String, Object> appendChunk(String uploadId, long offset, InputStream body) throws IOException;
+
+    Map<String, Object> getChunkedUploadStatus(String uploadId);
+
+    ScanResult completeChunkedUpload(String uploadId);
+
     // Network Security (X.800)
     boolean checkNetworkSafety();
 
@@ -59,13 +117,33 @@ public interface SecurityService {
     boolean detectRootkit(File file);
 
     // Security Monitoring (X.800)
-    PagedResponse<ScanResult> getScanHistory(int page, int size);
+    // Stored results plus the bulk-scan summaries of the same time span,
+    // and totals over both (see ScanHistoryResponse).
+    ScanHistoryResponse getScanHistory(int page, int size);
+
+    // Same, limited to one owner's results and scans; ownerUsername is
+    // compared as stored, lowercase.
+    ScanHistoryResponse getScanHistoryForOwner(String ownerUsername, int page, int size);
 
     PagedResponse<ScanResult> getInfectedFiles(int page, int size);
 
     // Security Management (X.800)
     void updateVirusDefinitions();
 
+    // Signature-set size/version and each threat-intel feed's last
+    // refresh result (UPDATED, NOT_MODIFIED, HTTP_xxx, FAILED) and counts,
+    // plus the known-good allowlist size and hit ratio and the retro-hunt
+    // queue and totals.
+    Map<String, Object> getVirusDefinitionStatus();
+
+    // Scan exclusion rules shared by every scan type (see
+    // ScanExclusionPolicy), with their compiled shape and hit counts.
+    Map<String, Object> getScanExclusions();
+
+    // Replaces the exclusion rules without a restart; 400 if a rule does
+    // not compile, in which case the current rules stay.
+    Map<String, Object> updateScanExclusions(List<String> rules);
+
     void quarantineFile(File file);
 
     void deleteInfectedFile(File file);
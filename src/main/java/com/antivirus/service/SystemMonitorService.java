@@ -1,5 +1,7 @@
 package com.antivirus.service;
 
+import com.antivirus.service.impl.RealtimeProtectionEngine;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import java.io.File;
 import java.lang.management.ManagementFactory;
@@ -19,9 +21,11 @@ public class SystemMonitorService {
     private final OperatingSystemMXBean osBean;
     @SuppressWarnings("unused")
     private final MemoryMXBean memoryBean;
-    private boolean realtimeProtectionEnabled = true;
     private Map<String, Object> systemStatus = new HashMap<>();
 
+    @Autowired
+    private RealtimeProtectionEngine realtimeProtectionEngine;
+
     public SystemMonitorService() {
         this.osBean = ManagementFactory.getOperatingSystemMXBean();
         this.memoryBean = ManagementFactory.getMemoryMXBean();
@@ -41,12 +45,14 @@ public class SystemMonitorService {
         systemStatus.clear();
         
         // Check core protection features
+        boolean realtimeProtectionEnabled = isRealtimeProtectionEnabled();
         boolean isProtected = realtimeProtectionEnabled && 
                             !hasCriticalSystemIssues() && 
                             hasAdequateResources();
         
         systemStatus.put("systemProtected", isProtected);
         systemStatus.put("realtimeProtection", realtimeProtectionEnabled);
+        systemStatus.put("realtimeMonitoring", realtimeProtectionEngine.status());
         systemStatus.put("cpuUsage", getCpuUsage());
         systemStatus.put("memoryUsage", getMemoryUsage());
         systemStatus.put("diskUsage", getDiskUsage());
@@ -195,25 +201,33 @@ public class SystemMonitorService {
         return false;
     }
 
+    // On only while the engine is actually watching: it may have failed to
+    // start (none of app.realtime.paths exists) or never been started.
     public boolean isRealtimeProtectionEnabled() {
-        return realtimeProtectionEnabled;
+        return realtimeProtectionEngine.isRunning();
     }
 
-    public void enableRealtimeProtection() {
-        this.realtimeProtectionEnabled = true;
+    // Returns whether protection is now on.
+    public boolean enableRealtimeProtection() {
+        boolean started = realtimeProtectionEngine.start();
         updateSystemStatus();
+        return started;
     }
 
     public void disableRealtimeProtection() {
-        this.realtimeProtectionEnabled = false;
+        realtimeProtectionEngine.stop();
         updateSystemStatus();
     }
 
+    // Starts watching app.realtime.paths; a no-op if already watching, or
+    // if none of the paths exists (the status then shows running=false).
     public void startMonitoring() {
-        // Implementation needed
+        realtimeProtectionEngine.start();
+        updateSystemStatus();
     }
 
     public void stopMonitoring() {
-        // Implementation needed
+        realtimeProtectionEngine.stop();
+        updateSystemStatus();
     }
 } 
\ No newline at end of file
@@ -0,0 +1,457 @@
+package com.antivirus.service.impl;
+
+import org.apache.commons.io.input.CloseShieldInputStream;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Streams the entries of an archive, and of archives nested inside it,
+ * through the content detectors without extracting anything to disk.
+ *
+ * - zip (and jar/war/ear, which are zips), tar and gzip are recognised by
+ * their magic bytes, so a renamed or nested archive is still opened; a
+ * tar without the ustar magic is only recognised by a .tar name.
+ * - Every entry's decompressed bytes go through their own ScanPass as they
+ * are inflated, and the finished pass is handed to the EntryVisitor along
+ * with the entry's path inside the archive (inner.tar!/payload.js for a
+ * tar inside the scanned zip). Paths never include the scanned file's own
+ * name, so they are as content-derived as the bytes.
+ * - An entry that is itself an archive is opened while it streams through
+ * its own pass, up to maxDepth levels of nesting; deeper archives are
+ * only scanned as opaque bytes and reported via depthLimitReached.
+ * - The entry count and decompressed byte budgets cover the whole tree,
+ * not each archive on its own, so nesting cannot multiply them. Running
+ * over either stops the walk and reports a bomb.
+ * - Read buffers come from a per-thread pool, one per nesting level, so
+ * walking an archive allocates no read buffers after the first file.
+ *
+ * forEachEntry() is the same walk for archive uploads: it hands each
+ * top-level entry (the tar inside a .tar.gz counts as the top level) to an
+ * EntryHandler as a stream instead of scanning it, under the same budgets.
+ *
+ * Not thread-safe: one instance per scanned file.
+ */
+final class ArchiveInspector {
+
+    /** Receives every regular entry once its bytes have been scanned. */
+    @FunctionalInterface
+    interface EntryVisitor {
+        void visit(String path, ScanPass pass);
+    }
+
+    /** Consumes one entry's decompressed bytes; whatever it leaves unread is skipped. */
+    @FunctionalInterface
+    interface EntryHandler {
+        void accept(String path, InputStream content) throws IOException;
+    }
+
+    /**
+     * How the walk went: entries seen, bytes inflated, and why it stopped
+     * early. truncated means the archive was corrupt or ended mid-entry.
+     */
+    record Result(boolean bomb, int entries, long uncompressedBytes, boolean depthLimitReached,
+            boolean truncated) {
+    }
+
+    enum Format { ZIP, TAR, GZIP }
+
+    static final String PATH_SEPARATOR = "!/";
+
+    private static final int READ_BUFFER_BYTES = 8192;
+    private static final int TAR_BLOCK = 512;
+    // Enough of an entry to tell its format: the ustar magic ends at 262.
+    private static final int PEEK_BYTES = TAR_BLOCK;
+
+    // Pooled read buffers, index = nesting depth. Scans run on a handful
+    // of long-lived worker threads, like ScanPass's SCAN_READ_BUFFER.
+    private static final ThreadLocal<List<byte[]>> BUFFERS = ThreadLocal.withInitial(ArrayList::new);
+
+    // Thrown to unwind every nesting level at once when a budget runs out.
+    private static final class BudgetExceeded extends IOException {
+        BudgetExceeded(String message) {
+            super(message);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+    private final int maxDepth;
+    private final int maxEntries;
+    private final long maxUncompressedBytes;
+    private final Supplier<ScanPass> passFactory;
+    private final EntryVisitor visitor;
+    // Set for forEachEntry(): entries go here instead of being scanned.
+    private final EntryHandler handler;
+
+    private int entries;
+    private long uncompressedBytes;
+    private boolean depthLimitReached;
+
+    ArchiveInspector(int maxDepth, int maxEntries, long maxUncompressedBytes,
+            Supplier<ScanPass> passFactory, EntryVisitor visitor) {
+        this.maxDepth = Math.max(1, maxDepth);
+        this.maxEntries = maxEntries;
+        this.maxUncompressedBytes = maxUncompressedBytes;
+        this.passFactory = passFactory;
+        this.visitor = visitor;
+        this.handler = null;
+    }
+
+    private ArchiveInspector(int maxEntries, long maxUncompressedBytes, EntryHandler handler) {
+        this.maxDepth = 1;
+        this.maxEntries = maxEntries;
+        this.maxUncompressedBytes = maxUncompressedBytes;
+        this.passFactory = null;
+        this.visitor = null;
+        this.handler = handler;
+    }
+
+    /**
+     * Streams each top-level entry of the archive read from in to handler,
+     * in archive order, under the given budgets. Nested archives are passed
+     * on whole. An IOException from handler ends the walk and propagates.
+     */
+    static Result forEachEntry(InputStream in, String name, int maxEntries, long maxUncompressedBytes,
+            EntryHandler handler) throws IOException {
+        return new ArchiveInspector(maxEntries, maxUncompressedBytes, handler).inspect(in, name);
+    }
+
+    /**
+     * Walks the archive read from in, whose format is taken from its first
+     * bytes (or its name, for old tars). Leaves in positioned wherever the
+     * walk stopped; the caller drains the rest. Throws only for I/O errors
+     * of in itself; a corrupt entry ends the walk quietly.
+     */
+    Result inspect(InputStream in, String name) throws IOException {
+        PushbackInputStream peekable = new PushbackInputStream(CloseShieldInputStream.wrap(in), PEEK_BYTES);
+        Format format = peek(peekable, name, 0);
+        boolean bomb = false;
+        boolean truncated = false;
+        if (format != null) {
+            try {
+                walk(peekable, format, "", name, 1);
+            } catch (BudgetExceeded e) {
+                bomb = true;
+            } catch (java.util.zip.ZipException | java.io.EOFException e) {
+                // Corrupt or truncated archive: whatever was read still counts.
+                truncated = true;
+            }
+        }
+        return new Result(bomb, entries, uncompressedBytes, depthLimitReached, truncated);
+    }
+
+    /** Archive format from magic bytes, falling back to a .tar name; null if neither. */
+    static Format detect(byte[] head, int length, String name) {
+        if (length >= 4 && head[0] == 'P' && head[1] == 'K'
+                && (head[2] == 3 && head[3] == 4 || head[2] == 5 && head[3] == 6)) {
+            return Format.ZIP;
+        }
+        if (length >= 2 && (head[0] & 0xFF) == 0x1F && (head[1] & 0xFF) == 0x8B) {
+            return Format.GZIP;
+        }
+        if (length >= 262 && new String(head, 257, 5, StandardCharsets.US_ASCII).equals("ustar")) {
+            return Format.TAR;
+        }
+        if (length >= TAR_BLOCK && name.toLowerCase(Locale.ROOT).endsWith(".tar") && isTarHeader(head)) {
+            return Format.TAR;
+        }
+        return null;
+    }
+
+    // The archive at path (empty for the scanned file itself), called
+    // name; its entries are at depth.
+    private void walk(InputStream in, Format format, String path, String name, int depth) throws IOException {
+        switch (format) {
+            case ZIP -> walkZip(in, path, depth);
+            case TAR -> walkTar(in, path, depth);
+            case GZIP -> {
+                // Closing the GZIPInputStream releases its Inflater; the
+                // shield keeps that from closing the enclosing stream.
+                try (GZIPInputStream gzip = new GZIPInputStream(CloseShieldInputStream.wrap(in), READ_BUFFER_BYTES)) {
+                    String inner = gunzippedName(name);
+                    PushbackInputStream peekable = new PushbackInputStream(gzip, PEEK_BYTES);
+                    if (handler != null && peek(peekable, inner, depth) == Format.TAR) {
+                        // An uploaded .tar.gz is the tar's entries, not one file.
+                        walkTar(peekable, path, depth);
+                    } else {
+                        inspectEntry(peekable, child(path, inner), depth);
+                    }
+                }
+            }
+        }
+    }
+
+    private void walkZip(InputStream in, String path, int depth) throws IOException {
+        try (ZipInputStream zip = new ZipInputStream(CloseShieldInputStream.wrap(in))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (!entry.isDirectory()) {
+                    inspectEntry(zip, child(path, entry.getName()), depth);
+                }
+                zip.closeEntry();
+            }
+        }
+    }
+
+    private void walkTar(InputStream in, String path, int depth) throws IOException {
+        byte[] header = new byte[TAR_BLOCK];
+        String longName = null;
+        while (in.readNBytes(header, 0, TAR_BLOCK) == TAR_BLOCK && !isZeroBlock(header)) {
+            if (!isTarHeader(header)) {
+                return;
+            }
+            long size = parseOctal(header, 124, 12);
+            if (size < 0) {
+                return;
+            }
+            byte type = header[156];
+            EntryStream body = new EntryStream(in, size);
+            if (type == 'L') {
+                // GNU long name: the data block is the next entry's name.
+                longName = trimNul(body.readNBytes((int) Math.min(size, 4096)));
+            } else if (type == '0' || type == 0 || type == '7') {
+                String name = longName != null ? longName : tarName(header);
+                inspectEntry(body, child(path, name), depth);
+                longName = null;
+            } else {
+                // Directories, links, pax headers: nothing to scan.
+                longName = null;
+            }
+            body.skipNBytes(body.remaining);
+            in.skipNBytes((TAR_BLOCK - size % TAR_BLOCK) % TAR_BLOCK);
+        }
+    }
+
+    // One regular entry: counted against the budgets, streamed through a
+    // fresh ScanPass, opened if it is an archive and depth allows, drained,
+    // and handed to the visitor.
+    private void inspectEntry(InputStream raw, String path, int depth) throws IOException {
+        if (++entries > maxEntries) {
+            throw new BudgetExceeded("entry count exceeds " + maxEntries);
+        }
+        if (handler != null) {
+            InputStream content = new BudgetedStream(raw);
+            handler.accept(path, content);
+            drain(content, depth);
+            return;
+        }
+        ScanPass pass = passFactory.get();
+        PushbackInputStream in = new PushbackInputStream(new BudgetedStream(pass.inspect(raw)), PEEK_BYTES);
+        String name = path.substring(path.lastIndexOf('/') + 1);
+        Format nested = peek(in, name, depth);
+        if (nested != null) {
+            if (depth < maxDepth) {
+                walk(in, nested, path, name, depth + 1);
+            } else {
+                depthLimitReached = true;
+            }
+        }
+        // The pass sees every byte as it is read.
+        drain(in, depth);
+        pass.finish();
+        visitor.visit(path, pass);
+    }
+
+    private static void drain(InputStream in, int depth) throws IOException {
+        byte[] buffer = buffer(depth);
+        while (in.read(buffer) != -1) {
+            // discard
+        }
+    }
+
+    private Format peek(PushbackInputStream in, String name, int depth) throws IOException {
+        byte[] head = buffer(depth);
+        int length = in.readNBytes(head, 0, PEEK_BYTES);
+        in.unread(head, 0, length);
+        return detect(head, length, name);
+    }
+
+    private static byte[] buffer(int depth) {
+        List<byte[]> pool = BUFFERS.get();
+        while (pool.size() <= depth) {
+            pool.add(new byte[READ_BUFFER_BYTES]);
+        }
+        return pool.get(depth);
+    }
+
+    private static String child(String path, String entryName) {
+        return path.isEmpty() ? entryName : path + PATH_SEPARATOR + entryName;
+    }
+
+    private static String gunzippedName(String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        if (lower.endsWith(".tgz")) {
+            return name.substring(0, name.length() - 4) + ".tar";
+        }
+        return lower.endsWith(".gz") ? name.substring(0, name.length() - 3) : name;
+    }
+
+    // ── tar headers ────────────────────────────────────────────────────
+
+    private static boolean isZeroBlock(byte[] block) {
+        for (byte b : block) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // The header checksum: every byte summed, with the checksum field
+    // itself counted as spaces.
+    private static boolean isTarHeader(byte[] header) {
+        long expected = parseOctal(header, 148, 8);
+        if (expected < 0) {
+            return false;
+        }
+        long sum = 0;
+        for (int i = 0; i < TAR_BLOCK; i++) {
+            sum += i >= 148 && i < 156 ? ' ' : header[i] & 0xFF;
+        }
+        return sum == expected;
+    }
+
+    // Octal, NUL/space padded; -1 if malformed (including the base-256
+    // form used for entries over 8 GB, far past any scan budget).
+    private static long parseOctal(byte[] header, int offset, int length) {
+        long value = 0;
+        boolean digits = false;
+        for (int i = offset; i < offset + length; i++) {
+            byte b = header[i];
+            if (b >= '0' && b <= '7') {
+                value = (value << 3) + (b - '0');
+                digits = true;
+            } else if (b == 0 || b == ' ') {
+                if (digits) {
+                    break;
+                }
+            } else {
+                return -1;
+            }
+        }
+        return value;
+    }
+
+    private static String tarName(byte[] header) {
+        String name = trimNul(java.util.Arrays.copyOfRange(header, 0, 100));
+        String prefix = trimNul(java.util.Arrays.copyOfRange(header, 345, 500));
+        return prefix.isEmpty() ? name : prefix + "/" + name;
+    }
+
+    private static String trimNul(byte[] bytes) {
+        int end = 0;
+        while (end < bytes.length && bytes[end] != 0) {
+            end++;
+        }
+        return new String(bytes, 0, end, StandardCharsets.UTF_8);
+    }
+
+    // ── streams ────────────────────────────────────────────────────────
+
+    // Counts inflated bytes against the shared budget as they are read.
+    private final class BudgetedStream extends FilterInputStream {
+
+        BudgetedStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            int read = super.read(bytes, offset, length);
+            if (read > 0) {
+                count(read);
+            }
+            return read;
+        }
+
+        private void count(int read) throws BudgetExceeded {
+            uncompressedBytes += read;
+            if (uncompressedBytes > maxUncompressedBytes) {
+                throw new BudgetExceeded("uncompressed size exceeds " + maxUncompressedBytes + " bytes");
+            }
+        }
+    }
+
+    // One tar entry's data: at most size bytes of the tar stream, never
+    // closing it.
+    private static final class EntryStream extends FilterInputStream {
+
+        private long remaining;
+
+        EntryStream(InputStream in, long size) {
+            super(in);
+            this.remaining = size;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b == -1) {
+                throw new java.io.EOFException("Truncated tar entry");
+            }
+            remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = super.read(bytes, offset, (int) Math.min(length, remaining));
+            if (read == -1) {
+                throw new java.io.EOFException("Truncated tar entry");
+            }
+            remaining -= read;
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+
+        @Override
+        public void close() {
+            // The tar stream carries on with the next header.
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
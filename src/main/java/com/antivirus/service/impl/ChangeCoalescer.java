@@ -0,0 +1,116 @@
+package com.antivirus.service.impl;
+
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * Debounces file change events for the real-time engine: a burst of
+ * writes to one file becomes one scan, due debounce after its last event.
+ *
+ * A file written without pause (a growing log, a long copy) is still
+ * handed over maxDelay after its first event, so nothing waits forever.
+ * Changes wait in a heap ordered by due time; a later event only moves
+ * the change's due time, and the heap entry is re-inserted when it comes
+ * up early, so recording an event is a map lookup. Not thread-safe: the
+ * watcher thread owns it.
+ */
+final class ChangeCoalescer {
+
+    static final class Change {
+        final Path file;
+        final long firstSeenNanos;
+        boolean created;
+        int events = 1;
+        // due may move later while the change sits in the heap under queuedDue
+        long due;
+        long queuedDue;
+
+        Change(Path file, boolean created, long now, long due) {
+            this.file = file;
+            this.created = created;
+            this.firstSeenNanos = now;
+            this.due = due;
+            this.queuedDue = due;
+        }
+    }
+
+    private final long debounceNanos;
+    private final long maxDelayNanos;
+    private final Map<Path, Change> pending = new HashMap<>();
+    private final PriorityQueue<Change> byDue = new PriorityQueue<>(Comparator.comparingLong(change -> change.queuedDue));
+    private long coalesced;
+
+    ChangeCoalescer(long debounceNanos, long maxDelayNanos) {
+        this.debounceNanos = debounceNanos;
+        this.maxDelayNanos = Math.max(debounceNanos, maxDelayNanos);
+    }
+
+    /**
+     * Records one create or modify event for file at now (nanoTime).
+     * Returns true if it starts a new change, false if it was folded into
+     * a pending one.
+     */
+    boolean record(Path file, boolean created, long now) {
+        Change change = pending.get(file);
+        if (change == null) {
+            change = new Change(file, created, now, now + debounceNanos);
+            pending.put(file, change);
+            byDue.add(change);
+            return true;
+        }
+        change.created |= created;
+        change.events++;
+        change.due = Math.min(now + debounceNanos, change.firstSeenNanos + maxDelayNanos);
+        coalesced++;
+        return false;
+    }
+
+    /**
+     * Forgets a pending change, e.g. because its file was deleted. Its heap
+     * entry is dropped when it comes up.
+     */
+    void forget(Path file) {
+        pending.remove(file);
+    }
+
+    /** Hands every change due by now to sink, earliest first. */
+    void drainDue(long now, Consumer<Change> sink) {
+        while (!byDue.isEmpty() && byDue.peek().queuedDue <= now) {
+            Change change = byDue.poll();
+            if (pending.get(change.file) != change) {
+                continue;
+            }
+            if (change.due > now) {
+                change.queuedDue = change.due;
+                byDue.add(change);
+                continue;
+            }
+            pending.remove(change.file);
+            sink.accept(change);
+        }
+    }
+
+    /** Nanos until the next change may be due, or -1 if none is pending. */
+    long nanosUntilNextDue(long now) {
+        Change next = byDue.peek();
+        return next == null ? -1 : Math.max(0, next.queuedDue - now);
+    }
+
+    int pending() {
+        return pending.size();
+    }
+
+    /** Events folded into an already pending change. */
+    long coalesced() {
+        return coalesced;
+    }
+
+    void clear() {
+        pending.clear();
+        byDue.clear();
+    }
+}
@@ -0,0 +1,290 @@
+package com.antivirus.service.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * One resumable upload: the file arrives as chunks, each written at its
+ * own offset into a temp file, in any order and from any number of
+ * requests at once.
+ *
+ * The content detectors run while the upload is still in progress. Every
+ * chunk that extends the contiguous prefix received so far (the frontier)
+ * feeds the newly contiguous bytes through the upload's ScanPass and its
+ * SHA-1/MD5 digests, reading them back while they are still in the page
+ * cache. By the time the last chunk lands nearly everything has been
+ * hashed and matched, so finish() only has the tail left to do.
+ *
+ * - Received ranges are tracked byte-exact: a chunk cut off mid-request
+ * still counts for what arrived, and the client resumes from the gaps
+ * receivedRanges() reports.
+ * - A chunk re-sent over bytes already received is compared with them
+ * instead of written, and rejected if it differs: those at or below the
+ * frontier have already been scanned, so the file must not change under
+ * the verdict.
+ * - Only one thread feeds the ScanPass at a time; an append that finds it
+ * busy leaves its bytes for the feeding thread, which rechecks the
+ * frontier before letting go.
+ */
+final class ChunkedUpload implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String id;
+    private final String ownerUsername;
+    private final String fileName;
+    private final long size;
+    private final Path file;
+    private final FileChannel channel;
+
+    private final ScanPass pass;
+    private final MessageDigest sha1 = HashType.SHA1.newDigest();
+    private final MessageDigest md5 = HashType.MD5.newDigest();
+
+    // start -> end (exclusive), non-overlapping and non-adjacent.
+    private final TreeMap<Long, Long> received = new TreeMap<>();
+    private volatile long frontier;
+    private volatile long scanned;
+    private final ReentrantLock scanLock = new ReentrantLock();
+    private final ByteBuffer scanBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+    private volatile long lastActivityNanos = System.nanoTime();
+
+    ChunkedUpload(String id, String ownerUsername, String fileName, long size, Path file, ScanPass pass)
+            throws IOException {
+        this.id = id;
+        this.ownerUsername = ownerUsername;
+        this.fileName = fileName;
+        this.size = size;
+        this.file = file;
+        this.pass = pass;
+        this.channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    String id() {
+        return id;
+    }
+
+    String ownerUsername() {
+        return ownerUsername;
+    }
+
+    String fileName() {
+        return fileName;
+    }
+
+    long size() {
+        return size;
+    }
+
+    Path file() {
+        return file;
+    }
+
+    ScanPass pass() {
+        return pass;
+    }
+
+    long lastActivityNanos() {
+        return lastActivityNanos;
+    }
+
+    /**
+     * Writes body at offset and scans whatever it made contiguous. Returns
+     * the number of bytes accepted. Throws IllegalArgumentException if the
+     * offset is outside the file, the body runs past its declared size, or
+     * it differs from bytes already received.
+     */
+    long append(long offset, InputStream body) throws IOException {
+        if (offset < 0 || offset > size) {
+            throw new IllegalArgumentException("Offset " + offset + " is outside the upload (size " + size + ")");
+        }
+        touch();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long position = offset;
+        try {
+            int read;
+            while (position < size
+                    && (read = body.read(buffer, 0, (int) Math.min(buffer.length, size - position))) != -1) {
+                write(buffer, read, position);
+                position += read;
+                touch();
+            }
+            if (position == size && body.read() != -1) {
+                throw new IllegalArgumentException("Chunk runs past the declared upload size " + size);
+            }
+        } finally {
+            // Whatever arrived counts, even if the request was cut off.
+            if (position > offset) {
+                markReceived(offset, position);
+                advance(false);
+            }
+        }
+        return position - offset;
+    }
+
+    boolean isComplete() {
+        return frontier == size;
+    }
+
+    long receivedBytes() {
+        synchronized (received) {
+            long total = 0;
+            for (Map.Entry<Long, Long> range : received.entrySet()) {
+                total += range.getValue() - range.getKey();
+            }
+            return total;
+        }
+    }
+
+    long scannedBytes() {
+        return scanned;
+    }
+
+    /** [start, end) pairs of the bytes received so far, in order. */
+    List<long[]> receivedRanges() {
+        synchronized (received) {
+            List<long[]> ranges = new ArrayList<>(received.size());
+            received.forEach((start, end) -> ranges.add(new long[] { start, end }));
+            return ranges;
+        }
+    }
+
+    /**
+     * Scans the remaining tail and finishes the ScanPass. Only valid once
+     * isComplete(); waits for a feed still running on an append thread.
+     */
+    FileDigests finish() throws IOException {
+        if (!isComplete()) {
+            throw new IllegalStateException("Upload " + id + " is missing bytes");
+        }
+        advance(true);
+        pass.finish();
+        return new FileDigests(pass.sha256Digest(), sha1.digest(), md5.digest());
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            channel.close();
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    // Writes bytes at position, except over bytes already received, which
+    // are only compared.
+    private void write(byte[] bytes, int length, long position) throws IOException {
+        long end = position + length;
+        long at = position;
+        for (long[] range : receivedRanges(position, end)) {
+            long from = Math.max(range[0], position);
+            long to = Math.min(range[1], end);
+            writeFully(bytes, (int) (at - position), (int) (from - at), at);
+            verify(bytes, (int) (from - position), (int) (to - from), from);
+            at = to;
+        }
+        writeFully(bytes, (int) (at - position), (int) (end - at), at);
+    }
+
+    private void writeFully(byte[] bytes, int offset, int length, long position) throws IOException {
+        ByteBuffer chunk = ByteBuffer.wrap(bytes, offset, length);
+        while (chunk.hasRemaining()) {
+            position += channel.write(chunk, position);
+        }
+    }
+
+    private void verify(byte[] bytes, int offset, int length, long position) throws IOException {
+        ByteBuffer existing = ByteBuffer.allocate(length);
+        while (existing.hasRemaining()) {
+            if (channel.read(existing, position + existing.position()) <= 0) {
+                throw new IOException("Upload " + id + " temp file is shorter than its received bytes");
+            }
+        }
+        int mismatch = Arrays.mismatch(existing.array(), 0, length, bytes, offset, offset + length);
+        if (mismatch >= 0) {
+            throw new IllegalArgumentException("Chunk differs from the bytes already received at offset "
+                    + (position + mismatch));
+        }
+    }
+
+    // [start, end) pairs of the received ranges overlapping [start, end).
+    private List<long[]> receivedRanges(long start, long end) {
+        synchronized (received) {
+            List<long[]> ranges = new ArrayList<>();
+            Map.Entry<Long, Long> before = received.lowerEntry(start);
+            if (before != null && before.getValue() > start) {
+                ranges.add(new long[] { before.getKey(), before.getValue() });
+            }
+            received.subMap(start, true, end, false)
+                    .forEach((from, to) -> ranges.add(new long[] { from, to }));
+            return ranges;
+        }
+    }
+
+    private void touch() {
+        lastActivityNanos = System.nanoTime();
+    }
+
+    private void markReceived(long start, long end) {
+        synchronized (received) {
+            Map.Entry<Long, Long> before = received.floorEntry(start);
+            if (before != null && before.getValue() >= start) {
+                start = before.getKey();
+                end = Math.max(end, before.getValue());
+            }
+            Map.Entry<Long, Long> next;
+            while ((next = received.ceilingEntry(start)) != null && next.getKey() <= end) {
+                end = Math.max(end, next.getValue());
+                received.remove(next.getKey());
+            }
+            received.put(start, end);
+            Long first = received.get(0L);
+            frontier = first != null ? first : 0;
+        }
+    }
+
+    // Feeds [scanned, frontier) through the detectors. wait=false (append)
+    // leaves the work to a thread already feeding; that thread loops until
+    // it has caught up with the frontier after releasing the lock.
+    private void advance(boolean wait) throws IOException {
+        do {
+            if (wait) {
+                scanLock.lock();
+            } else if (!scanLock.tryLock()) {
+                return;
+            }
+            try {
+                long target = frontier;
+                while (scanned < target) {
+                    scanBuffer.clear();
+                    scanBuffer.limit((int) Math.min(BUFFER_SIZE, target - scanned));
+                    int read = channel.read(scanBuffer, scanned);
+                    if (read <= 0) {
+                        throw new IOException("Upload " + id + " temp file is shorter than its received bytes");
+                    }
+                    byte[] bytes = scanBuffer.array();
+                    pass.update(bytes, 0, read);
+                    sha1.update(bytes, 0, read);
+                    md5.update(bytes, 0, read);
+                    scanned += read;
+                }
+            } finally {
+                scanLock.unlock();
+            }
+        } while (scanned < frontier);
+    }
+}
@@ -0,0 +1,44 @@
+package com.antivirus.service.impl;
+
+/**
+ * Everything SecurityServiceImpl's scoring engine derives from a file's
+ * bytes alone, independent of its name or location. Two files with the
+ * same SHA-256 always produce the same ContentVerdict for a given
+ * signature set, which is what lets VerdictCache share it between them.
+ *
+ * contentSha256 is the lowercase hex digest the verdict belongs to, kept
+ * on the ScanResult for retro-hunting; formatted once per cached verdict.
+ *
+ * archiveMaliciousEntry is the path, inside the archive, of the first entry
+ * (at any nesting level) whose own hash is known malware; null otherwise.
+ * The archive's other detector fields include what its entries matched.
+ *
+ * knownGood marks a hash on the known-good allowlist: the file was not
+ * inspected and every detector field is false.
+ *
+ * signatureVersion is the SignatureSnapshot version the verdict was
+ * reached under, recorded on every ScanResult built from it.
+ *
+ * Name- and location-based signals (extension masquerade, ransomware
+ * extension, directory behaviour, trojan names, driver-location check)
+ * are cheap and are still evaluated per file on top of this.
+ */
+record ContentVerdict(
+        String contentSha256,
+        boolean knownGood,
+        boolean knownMalicious,
+        String archiveMaliciousEntry,
+        boolean zipBomb,
+        int zipSuspiciousEntries,
+        boolean executableHeader,
+        boolean rootkitBinaryBytes,
+        boolean ransomwareText,
+        boolean kernelText,
+        int strongMatches,
+        int weakMatches,
+        long signatureVersion) {
+
+    static ContentVerdict knownGood(String contentSha256, long signatureVersion) {
+        return new ContentVerdict(contentSha256, true, false, null, false, 0, false, false, false, false, 0, 0, signatureVersion);
+    }
+}
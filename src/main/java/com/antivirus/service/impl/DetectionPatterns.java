@@ -0,0 +1,106 @@
+package com.antivirus.service.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Content-detection pattern tables used by SecurityServiceImpl's scoring
+ * engine. These used to be private constants on SecurityServiceImpl itself;
+ * they live here now so ScanPass (the single-pass file reader) can evaluate
+ * every text and byte detector from one stream without reaching back into
+ * the service. The patterns themselves are unchanged.
+ */
+final class DetectionPatterns {
+
+    private DetectionPatterns() {
+    }
+
+    static final List<Pattern> RANSOMWARE_PATTERNS = List.of(
+            Pattern.compile("(?i)\\byour files have been encrypted\\b"),
+            Pattern.compile("(?i)\\byour important files\\b"),
+            Pattern.compile("(?i)\\bbtc wallet\\b"),
+            Pattern.compile("(?i)\\.(?:onion|tor)\\b"),
+            Pattern.compile("(?i)\\bdecrypt.{0,30}ransom|ransom.{0,30}decrypt\\b"),
+            Pattern.compile("(?i)\\bbitcoin\\b.{0,80}(?:wallet|payment|transfer)"),
+            Pattern.compile("(?i)\\bransom\\b.{0,80}(?:payment|demand|note)"));
+
+    // Strong patterns require a specific, hard-to-hit combination of tokens
+    // (e.g. PowerShell + a real encoding/bypass flag together, not either
+    // alone). These carry real weight because legitimate code rarely matches
+    // them by accident.
+    static final List<Pattern> STRONG_PATTERNS = List.of(
+            Pattern.compile("(?i)\\bpowershell\\b.{0,120}(?:-enc\\b|-encodedcommand|-w\\s+hidden)"),
+            Pattern.compile("(?i)\\bpowershell\\b.{0,120}downloadstring"),
+            Pattern.compile("(?i)\\bpowershell\\b.{0,120}\\bbypass\\b"),
+            Pattern.compile("(?i)\\bicacls\\b.{0,80}\\bgrant\\b.{0,80}\\beveryone\\b"),
+            Pattern.compile("(?i)\\bconnect\\s*\\(.*\\d{1,3}(?:\\.\\d{1,3}){3}"),
+            Pattern.compile("(?i)\\bpost\\b.{0,80}\\bpassword\\b.{0,80}(?:https?://|socket|connect)"),
+            Pattern.compile("(?i)\\bkeylog(?:ger)?\\b.{0,80}(?:getasynckeystate|setwindowshookex|keyboard_event)"));
+
+    // Weak patterns show up constantly in ordinary code (JS libraries, web
+    // pages, admin scripts). Each one alone is near-meaningless, so they are
+    // capped in total contribution rather than being individually decisive.
+    static final List<Pattern> WEAK_PATTERNS = List.of(
+            Pattern.compile("(?i)\\beval\\s*\\("),
+            Pattern.compile("(?i)\\bdocument\\.write\\s*\\("),
+            Pattern.compile("(?i)<script\\b"),
+            Pattern.compile("(?i)\\bbase64_decode\\b"),
+            Pattern.compile("(?i)\\bshell_exec\\s*\\("),
+            Pattern.compile("(?i)\\bruntime\\.exec\\s*\\("),
+            Pattern.compile("(?i)\\bsystem\\s*\\("),
+            Pattern.compile("(?i)\\bpassthru\\s*\\("),
+            Pattern.compile("(?i)\\bprocess\\.spawn\\b"),
+            Pattern.compile("(?i)\\bcreateprocess\\w*\\b"),
+            Pattern.compile("(?i)\\bnew\\s+socket\\s*\\("),
+            Pattern.compile("(?i)\\bwget\\s+https?://"),
+            Pattern.compile("(?i)\\bcurl\\b.{0,80}\\s-O\\b"),
+            Pattern.compile("(?i)\\breg\\b.{0,80}\\badd\\b"),
+            Pattern.compile("(?i)\\bregistry\\.setvalue\\b"),
+            Pattern.compile("(?i)\\.encrypt\\s*\\("),
+            Pattern.compile("(?i)\\bchmod\\b.{0,40}\\b777\\b"),
+            Pattern.compile("(?i)\\.upload\\s*\\("),
+            Pattern.compile("(?i)\\\\startup\\\\"),
+            Pattern.compile("(?i)\\\\system32\\\\drivers\\\\"),
+            Pattern.compile("(?i)\\\\tasks\\\\"),
+            Pattern.compile("(?i)\\bunescape\\b"),
+            Pattern.compile("(?i)\\bdecode(?:uri)?\\b"),
+            Pattern.compile("(?i)\\bfromcharcode\\b"));
+
+    // Narrower kernel-manipulation phrases. Dropped the old bare "driver load"
+    // pattern, since it matched routine system/driver documentation and logs.
+    static final List<Pattern> KERNEL_PATTERNS = List.of(
+            Pattern.compile("(?i)kernel.{0,20}hook"),
+            Pattern.compile("(?i)syscall.{0,20}table"),
+            Pattern.compile("(?i)interrupt.{0,20}descriptor.{0,20}table"),
+            Pattern.compile("(?i)idt.{0,20}hook"),
+            Pattern.compile("(?i)process.{0,20}hiding"));
+
+    // Raw byte sequences ("hideproc", "syscall", "kernel32") only checked in
+    // the first few KB of files sitting in driver/boot locations.
+    static final byte[][] ROOTKIT_BINARY_SIGNATURES = {
+            new byte[] { 0x68, 0x69, 0x64, 0x65, 0x70, 0x72, 0x6F, 0x63 },
+            new byte[] { 0x73, 0x79, 0x73, 0x63, 0x61, 0x6C, 0x6C },
+            new byte[] { 0x6B, 0x65, 0x72, 0x6E, 0x65, 0x6C, 0x33, 0x32 }
+    };
+
+    // Every text pattern above in one indexable list, so a single
+    // LiteralPrefilter automaton covers all four groups. The *_FROM
+    // constants mark where each group starts in that list.
+    static final List<Pattern> TEXT_PATTERNS;
+    static final int RANSOMWARE_FROM = 0;
+    static final int STRONG_FROM = RANSOMWARE_PATTERNS.size();
+    static final int WEAK_FROM = STRONG_FROM + STRONG_PATTERNS.size();
+    static final int KERNEL_FROM = WEAK_FROM + WEAK_PATTERNS.size();
+
+    static {
+        List<Pattern> all = new ArrayList<>();
+        all.addAll(RANSOMWARE_PATTERNS);
+        all.addAll(STRONG_PATTERNS);
+        all.addAll(WEAK_PATTERNS);
+        all.addAll(KERNEL_PATTERNS);
+        TEXT_PATTERNS = List.copyOf(all);
+    }
+
+    static final LiteralPrefilter TEXT_PREFILTER = LiteralPrefilter.compile(TEXT_PATTERNS);
+}
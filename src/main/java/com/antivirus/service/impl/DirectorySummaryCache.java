@@ -0,0 +1,132 @@
+package com.antivirus.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Per-directory summaries for SecurityServiceImpl's ransomware directory
+ * scoring: whether the directory holds a ransom-note-style file name, and
+ * how many of its entries share the most common unrecognized extension.
+ *
+ * A directory is listed once, the summary computed from the listing, and
+ * the listing dropped; every file scanned in that directory, on any scan
+ * thread, then costs one lookup. Concurrent lookups of a directory share
+ * one listing. Entries are weighed by the size of their key (the
+ * directory path) and the cache is capped at max-mb, so a scan of
+ * millions of files in hundreds of thousands of directories holds the
+ * most recently used directories and no more. Summaries expire after
+ * expire-seconds, so a later scan sees a directory's current contents.
+ */
+@Component
+public class DirectorySummaryCache {
+
+    static final long DEFAULT_MAX_MB = 16;
+    static final long DEFAULT_EXPIRE_SECONDS = 60;
+
+    // Same-extension count from which ransomware directory scoring applies.
+    static final int RENAMED_EXTENSION_MIN = 5;
+
+    /** What ransomware directory scoring needs to know about one directory. */
+    record Summary(boolean ransomNote, int maxSameUnknownExtension) {
+        static final Summary EMPTY = new Summary(false, 0);
+
+        boolean looksEncrypted() {
+            return ransomNote && maxSameUnknownExtension >= RENAMED_EXTENSION_MIN;
+        }
+    }
+
+    // Rough bytes held per entry besides the path's characters: the
+    // String and its array headers, the summary, and Caffeine's node.
+    private static final int ENTRY_OVERHEAD_BYTES = 160;
+
+    private final Cache<String, Summary> cache;
+    private final Function<String, Summary> summarizer;
+
+    public DirectorySummaryCache(@Value("${app.scan.directory-summary-cache.max-mb:16}") long maxMb,
+            @Value("${app.scan.directory-summary-cache.expire-seconds:60}") long expireSeconds) {
+        this(maxMb, expireSeconds, directory -> summarize(Path.of(directory)));
+    }
+
+    // summarizer lists and summarizes a directory given its absolute path.
+    DirectorySummaryCache(long maxMb, long expireSeconds, Function<String, Summary> summarizer) {
+        this.summarizer = summarizer;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(Math.max(1, maxMb) * 1024 * 1024)
+                .weigher((String directory, Summary summary) -> ENTRY_OVERHEAD_BYTES + 2 * directory.length())
+                .expireAfterWrite(Duration.ofSeconds(Math.max(1, expireSeconds)))
+                .build();
+    }
+
+    /** The summary of directory, listing it if it is not cached. */
+    Summary get(File directory) {
+        return cache.get(directory.getAbsolutePath(), summarizer);
+    }
+
+    long size() {
+        return cache.estimatedSize();
+    }
+
+    // Approximate bytes held; the cache keeps this under max-mb.
+    long weight() {
+        return cache.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0))
+                .orElse(0L);
+    }
+
+    // Runs pending evictions now rather than on the next writes.
+    void cleanUp() {
+        cache.cleanUp();
+    }
+
+    private static Summary summarize(Path directory) {
+        try (Stream<Path> entries = Files.list(directory)) {
+            return summarize(entries.map(entry -> entry.getFileName().toString())::iterator);
+        } catch (IOException | RuntimeException e) {
+            // Unreadable or gone: nothing to score, as with a null listing.
+            return Summary.EMPTY;
+        }
+    }
+
+    /** Summarizes a directory from the names of its entries. */
+    static Summary summarize(Iterable<String> names) {
+        boolean ransomNote = false;
+        Map<String, Integer> unknownExtensionCounts = new HashMap<>();
+        for (String entry : names) {
+            String name = entry.toLowerCase(Locale.ROOT);
+            if ((name.contains("readme") && name.contains("txt")) ||
+                    name.contains("how_to_decrypt") ||
+                    name.contains("recovery") ||
+                    name.contains("help_decrypt") ||
+                    name.contains("decrypt_instructions")) {
+                ransomNote = true;
+            }
+            int dot = name.lastIndexOf('.');
+            if (dot < 0) {
+                continue;
+            }
+            String extension = name.substring(dot);
+            if (!SecurityServiceImpl.COMMON_EXTENSIONS.contains(extension)
+                    && !SecurityServiceImpl.RANSOMWARE_EXTENSIONS.contains(extension)) {
+                unknownExtensionCounts.merge(extension, 1, Integer::sum);
+            }
+        }
+        int maxSameUnknownExtension = unknownExtensionCounts.values().stream()
+                .mapToInt(Integer::intValue).max().orElse(0);
+        return ransomNote || maxSameUnknownExtension > 0
+                ? new Summary(ransomNote, maxSameUnknownExtension)
+                : Summary.EMPTY;
+    }
+}
@@ -0,0 +1,470 @@
+package com.antivirus.service.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Scan exclusion rules compiled into one immutable matcher.
+ *
+ * Rule syntax (one rule per entry; matching ignores case, and '\' and '/'
+ * are the same separator, so one rule set covers Windows and Unix paths):
+ *
+ * - prefix:PATH - PATH and everything below it, e.g. prefix:/proc. Matches
+ * at a segment boundary only: /proc does not cover /processes.
+ * - ext:EXT - file names ending in .EXT (the part after the last dot).
+ * - glob:GLOB, or just GLOB - '?' is one character and '*' any run of
+ * characters within a segment, '**' any run of segments. A glob without
+ * '/' is matched against the file name (thumbs.db, *.iso, ~$*); one with
+ * '/' against the whole path, so it either starts with ** to match
+ * anywhere (**&#47;node_modules/**) or is anchored, e.g. at a drive
+ * (?:/windows/**). A trailing /** also matches the directory itself,
+ * which is what lets a walker skip the whole subtree.
+ *
+ * Globs of the common shapes are folded into char tries: literal prefixes
+ * (prefix: rules, PATH/**), directory names anywhere (**&#47;NAME/**), file
+ * names (NAME) and extensions (*.EXT, ext: rules). excludes() walks the
+ * path once through them, whatever the number of rules. Globs of any
+ * other shape each get a small NFA run as a 64-bit state mask. Lookups
+ * allocate nothing.
+ */
+final class ExclusionRules {
+
+    static final String PREFIX = "prefix:";
+    static final String EXTENSION = "ext:";
+    static final String GLOB = "glob:";
+
+    private static final int MAX_GLOB_STATES = 63;
+
+    // Flags on terminal nodes of the name trie
+    private static final byte ANY_SEGMENT = 1;
+    private static final byte FILE_NAME = 2;
+
+    private final List<String> rules;
+    private final CharTrie prefixes;
+    private final CharTrie names;
+    private final CharTrie extensions;
+    private final GlobAutomaton[] nameGlobs;
+    private final GlobAutomaton[] pathGlobs;
+
+    private ExclusionRules(List<String> rules, CharTrie prefixes, CharTrie names, CharTrie extensions,
+            GlobAutomaton[] nameGlobs, GlobAutomaton[] pathGlobs) {
+        this.rules = rules;
+        this.prefixes = prefixes;
+        this.names = names;
+        this.extensions = extensions;
+        this.nameGlobs = nameGlobs;
+        this.pathGlobs = pathGlobs;
+    }
+
+    /**
+     * Compiles rules; blank entries are ignored.
+     *
+     * @throws IllegalArgumentException naming the first rule that is empty
+     *                                  after its prefix or too long a glob
+     */
+    static ExclusionRules compile(List<String> rules) {
+        List<String> kept = new ArrayList<>();
+        CharTrie.Builder prefixes = new CharTrie.Builder();
+        CharTrie.Builder names = new CharTrie.Builder();
+        CharTrie.Builder extensions = new CharTrie.Builder();
+        List<GlobAutomaton> nameGlobs = new ArrayList<>();
+        List<GlobAutomaton> pathGlobs = new ArrayList<>();
+
+        for (String raw : rules) {
+            String rule = raw == null ? "" : raw.trim();
+            if (rule.isEmpty()) {
+                continue;
+            }
+            if (hasKind(rule, PREFIX)) {
+                String prefix = trimTrailingSeparator(normalize(requireBody(rule, PREFIX.length())));
+                prefixes.add(prefix, (byte) 1);
+            } else if (hasKind(rule, EXTENSION)) {
+                String extension = normalize(requireBody(rule, EXTENSION.length()));
+                if (extension.startsWith(".")) {
+                    extension = extension.substring(1);
+                }
+                if (extension.isEmpty() || extension.indexOf('.') >= 0 || extension.indexOf('/') >= 0) {
+                    throw new IllegalArgumentException("Invalid extension rule: " + rule);
+                }
+                extensions.add(extension, (byte) 1);
+            } else {
+                String glob = normalize(hasKind(rule, GLOB) ? requireBody(rule, GLOB.length()) : rule);
+                compileGlob(rule, glob, prefixes, names, extensions, nameGlobs, pathGlobs);
+            }
+            kept.add(rule);
+        }
+        return new ExclusionRules(List.copyOf(kept), prefixes.build(), names.build(), extensions.build(),
+                nameGlobs.toArray(new GlobAutomaton[0]), pathGlobs.toArray(new GlobAutomaton[0]));
+    }
+
+    private static void compileGlob(String rule, String glob, CharTrie.Builder prefixes, CharTrie.Builder names,
+            CharTrie.Builder extensions, List<GlobAutomaton> nameGlobs, List<GlobAutomaton> pathGlobs) {
+        String anywhere = glob;
+        while (anywhere.startsWith("**/")) {
+            anywhere = anywhere.substring(3);
+        }
+        boolean anchored = anywhere.length() == glob.length();
+        if (anywhere.indexOf('/') < 0) {
+            // NAME, *.EXT, or another file-name glob
+            if (anywhere.isEmpty() || anywhere.equals("**")) {
+                throw new IllegalArgumentException("Glob matches every file: " + rule);
+            }
+            if (!hasWildcard(anywhere)) {
+                names.add(anywhere, FILE_NAME);
+            } else if (anywhere.startsWith("*.") && !hasWildcard(anywhere.substring(2))
+                    && anywhere.indexOf('.', 2) < 0) {
+                extensions.add(anywhere.substring(2), (byte) 1);
+            } else {
+                nameGlobs.add(GlobAutomaton.compile(rule, anywhere));
+            }
+            return;
+        }
+        if (!anchored && anywhere.endsWith("/**")) {
+            String segment = anywhere.substring(0, anywhere.length() - 3);
+            if (!segment.isEmpty() && segment.indexOf('/') < 0 && !hasWildcard(segment)) {
+                names.add(segment, ANY_SEGMENT);
+                return;
+            }
+        }
+        if (anchored) {
+            String literal = glob.endsWith("/**") ? glob.substring(0, glob.length() - 3) : glob;
+            if (!literal.isEmpty() && !hasWildcard(literal)) {
+                prefixes.add(trimTrailingSeparator(literal), (byte) 1);
+                return;
+            }
+        }
+        pathGlobs.add(GlobAutomaton.compile(rule, glob));
+    }
+
+    /** True if path (a file or a directory) is excluded by any rule. */
+    boolean excludes(CharSequence path) {
+        int length = path.length();
+        if (length == 0) {
+            return false;
+        }
+
+        // Literal prefixes, matched at a segment boundary.
+        int node = 0;
+        for (int i = 0; i < length && node >= 0; i++) {
+            char c = normalize(path.charAt(i));
+            node = prefixes.next(node, c);
+            if (node >= 0 && prefixes.flags(node) != 0
+                    && (c == '/' || i + 1 == length || normalize(path.charAt(i + 1)) == '/')) {
+                return true;
+            }
+        }
+
+        // Directory names anywhere and the file name, in the same pass that
+        // finds where the file name and its extension start.
+        int segment = 0;
+        int segmentStart = 0;
+        int lastDot = -1;
+        for (int i = 0; i < length; i++) {
+            char c = normalize(path.charAt(i));
+            if (c == '/') {
+                if (segment >= 0 && i > segmentStart && (names.flags(segment) & ANY_SEGMENT) != 0) {
+                    return true;
+                }
+                segment = 0;
+                segmentStart = i + 1;
+                lastDot = -1;
+                continue;
+            }
+            if (c == '.') {
+                lastDot = i;
+            }
+            if (segment >= 0) {
+                segment = names.next(segment, c);
+            }
+        }
+        boolean hasName = segmentStart < length;
+        if (hasName && segment >= 0 && names.flags(segment) != 0) {
+            return true;
+        }
+
+        if (hasName && lastDot >= 0) {
+            int extension = 0;
+            for (int i = lastDot + 1; i < length && extension >= 0; i++) {
+                extension = extensions.next(extension, normalize(path.charAt(i)));
+            }
+            if (extension >= 0 && lastDot + 1 < length && extensions.flags(extension) != 0) {
+                return true;
+            }
+        }
+
+        for (int i = 0; hasName && i < nameGlobs.length; i++) {
+            if (nameGlobs[i].matches(path, segmentStart, length)) {
+                return true;
+            }
+        }
+        for (GlobAutomaton glob : pathGlobs) {
+            if (glob.matches(path, 0, length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    List<String> rules() {
+        return rules;
+    }
+
+    /** Compiled rule counts per matcher, for the admin API. */
+    Map<String, Integer> shape() {
+        Map<String, Integer> shape = new LinkedHashMap<>();
+        shape.put("rules", rules.size());
+        shape.put("prefixTrieNodes", prefixes.size());
+        shape.put("nameTrieNodes", names.size());
+        shape.put("extensionTrieNodes", extensions.size());
+        shape.put("fileNameGlobs", nameGlobs.length);
+        shape.put("pathGlobs", pathGlobs.length);
+        return shape;
+    }
+
+    static char normalize(char c) {
+        return c == '\\' ? '/' : Character.toLowerCase(c);
+    }
+
+    private static String normalize(String rule) {
+        StringBuilder normalized = new StringBuilder(rule.length());
+        for (int i = 0; i < rule.length(); i++) {
+            normalized.append(normalize(rule.charAt(i)));
+        }
+        return normalized.toString();
+    }
+
+    private static boolean hasKind(String rule, String kind) {
+        return rule.regionMatches(true, 0, kind, 0, kind.length());
+    }
+
+    private static String requireBody(String rule, int from) {
+        String body = rule.substring(from).trim();
+        if (body.isEmpty()) {
+            throw new IllegalArgumentException("Empty exclusion rule: " + rule);
+        }
+        return body;
+    }
+
+    private static String trimTrailingSeparator(String path) {
+        int end = path.length();
+        while (end > 1 && path.charAt(end - 1) == '/') {
+            end--;
+        }
+        return path.substring(0, end);
+    }
+
+    private static boolean hasWildcard(String glob) {
+        return glob.indexOf('*') >= 0 || glob.indexOf('?') >= 0;
+    }
+
+    /**
+     * Read-only char trie: per node, its outgoing chars sorted for a
+     * binary search and the matching child nodes; node 0 is the root.
+     */
+    static final class CharTrie {
+        private final char[][] keys;
+        private final int[][] children;
+        private final byte[] flags;
+
+        private CharTrie(char[][] keys, int[][] children, byte[] flags) {
+            this.keys = keys;
+            this.children = children;
+            this.flags = flags;
+        }
+
+        /** Child of node along c, or -1. */
+        int next(int node, char c) {
+            int index = Arrays.binarySearch(keys[node], c);
+            return index < 0 ? -1 : children[node][index];
+        }
+
+        byte flags(int node) {
+            return flags[node];
+        }
+
+        int size() {
+            return flags.length;
+        }
+
+        static final class Builder {
+            private final List<TreeMap<Character, Integer>> edges = new ArrayList<>();
+            private final List<Byte> flags = new ArrayList<>();
+
+            Builder() {
+                newNode();
+            }
+
+            void add(String key, byte flag) {
+                int node = 0;
+                for (int i = 0; i < key.length(); i++) {
+                    Integer child = edges.get(node).get(key.charAt(i));
+                    if (child == null) {
+                        child = newNode();
+                        edges.get(node).put(key.charAt(i), child);
+                    }
+                    node = child;
+                }
+                flags.set(node, (byte) (flags.get(node) | flag));
+            }
+
+            private int newNode() {
+                edges.add(new TreeMap<>());
+                flags.add((byte) 0);
+                return edges.size() - 1;
+            }
+
+            CharTrie build() {
+                int size = edges.size();
+                char[][] keys = new char[size][];
+                int[][] children = new int[size][];
+                byte[] flagArray = new byte[size];
+                for (int node = 0; node < size; node++) {
+                    TreeMap<Character, Integer> out = edges.get(node);
+                    keys[node] = new char[out.size()];
+                    children[node] = new int[out.size()];
+                    int i = 0;
+                    for (Map.Entry<Character, Integer> edge : out.entrySet()) {
+                        keys[node][i] = edge.getKey();
+                        children[node][i] = edge.getValue();
+                        i++;
+                    }
+                    flagArray[node] = flags.get(node);
+                }
+                return new CharTrie(keys, children, flagArray);
+            }
+        }
+    }
+
+    /**
+     * One glob as an NFA over its tokens, simulated with a bit per state.
+     * State i is token i; state n (the token count) accepts. Epsilon edges
+     * only go forward, so every state's closure is precomputed.
+     */
+    static final class GlobAutomaton {
+        private static final byte LITERAL = 0;
+        private static final byte ANY_CHAR = 1;   // ?
+        private static final byte STAR = 2;       // * within a segment
+        private static final byte GLOBSTAR = 3;   // ** across segments
+
+        private final byte[] kinds;
+        private final char[] literals;
+        private final long[] closures;
+        private final long acceptBit;
+
+        private GlobAutomaton(byte[] kinds, char[] literals, long[] closures) {
+            this.kinds = kinds;
+            this.literals = literals;
+            this.closures = closures;
+            this.acceptBit = 1L << kinds.length;
+        }
+
+        static GlobAutomaton compile(String rule, String glob) {
+            List<Byte> kinds = new ArrayList<>();
+            List<Character> literals = new ArrayList<>();
+            // skips[i]: state epsilon-reachable from i besides i + 1, or -1
+            List<Integer> skips = new ArrayList<>();
+            int i = 0;
+            while (i < glob.length()) {
+                char c = glob.charAt(i);
+                if (glob.startsWith("**", i)) {
+                    int state = kinds.size();
+                    if (glob.startsWith("**/", i)) {
+                        // "**/" is zero or more whole segments: ** then / ,
+                        // both skippable.
+                        add(kinds, literals, skips, GLOBSTAR, '\0', state + 2);
+                        add(kinds, literals, skips, LITERAL, '/', -1);
+                        i += 3;
+                        continue;
+                    }
+                    if (i + 2 == glob.length() && state > 0 && kinds.get(state - 1) == LITERAL
+                            && literals.get(state - 1) == '/') {
+                        // Trailing "/**" also matches the directory itself.
+                        skips.set(state - 1, state + 1);
+                    }
+                    add(kinds, literals, skips, GLOBSTAR, '\0', -1);
+                    i += 2;
+                } else if (c == '*') {
+                    add(kinds, literals, skips, STAR, '\0', -1);
+                    i++;
+                } else if (c == '?') {
+                    add(kinds, literals, skips, ANY_CHAR, '\0', -1);
+                    i++;
+                } else {
+                    add(kinds, literals, skips, LITERAL, c, -1);
+                    i++;
+                }
+            }
+            int states = kinds.size();
+            if (states > MAX_GLOB_STATES) {
+                throw new IllegalArgumentException("Glob too long (max " + MAX_GLOB_STATES + " tokens): " + rule);
+            }
+
+            byte[] kindArray = new byte[states];
+            char[] literalArray = new char[states];
+            long[] closures = new long[states + 1];
+            closures[states] = 1L << states;
+            for (int state = states - 1; state >= 0; state--) {
+                kindArray[state] = kinds.get(state);
+                literalArray[state] = literals.get(state);
+                long closure = 1L << state;
+                if (kindArray[state] == STAR || kindArray[state] == GLOBSTAR) {
+                    closure |= closures[state + 1];
+                }
+                int skip = skips.get(state);
+                if (skip >= 0) {
+                    closure |= closures[skip];
+                }
+                closures[state] = closure;
+            }
+            return new GlobAutomaton(kindArray, literalArray, closures);
+        }
+
+        private static void add(List<Byte> kinds, List<Character> literals, List<Integer> skips, byte kind,
+                char literal, int skip) {
+            kinds.add(kind);
+            literals.add(literal);
+            skips.add(skip);
+        }
+
+        /** True if path[from, to) matches the whole glob. */
+        boolean matches(CharSequence path, int from, int to) {
+            long current = closures[0];
+            for (int i = from; i < to; i++) {
+                char c = normalize(path.charAt(i));
+                long next = 0;
+                long states = current & ~acceptBit;
+                while (states != 0) {
+                    int state = Long.numberOfTrailingZeros(states);
+                    states &= states - 1;
+                    switch (kinds[state]) {
+                        case LITERAL -> {
+                            if (c == literals[state]) {
+                                next |= closures[state + 1];
+                            }
+                        }
+                        case ANY_CHAR -> {
+                            if (c != '/') {
+                                next |= closures[state + 1];
+                            }
+                        }
+                        case STAR -> {
+                            if (c != '/') {
+                                next |= closures[state];
+                            }
+                        }
+                        default -> next |= closures[state];
+                    }
+                }
+                if (next == 0) {
+                    return false;
+                }
+                current = next;
+            }
+            return (current & acceptBit) != 0;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.antivirus.service.impl;
+
+/**
+ * The digests of one file, all computed in the same read pass. sha256 is
+ * always present (it keys the verdict cache, the allowlist and the stored
+ * ScanResult hash); sha1 and md5 are null unless a threat-intel feed
+ * listed hashes of that type.
+ */
+record FileDigests(byte[] sha256, byte[] sha1, byte[] md5) {
+
+    byte[] get(HashType type) {
+        return switch (type) {
+            case SHA256 -> sha256;
+            case SHA1 -> sha1;
+            case MD5 -> md5;
+        };
+    }
+}
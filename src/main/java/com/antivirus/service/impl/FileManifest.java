@@ -0,0 +1,298 @@
+package com.antivirus.service.impl;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * On-disk skip index for repeat system scans: one fixed-size slot per
+ * file recording the size and mtime it had when it last scanned CLEAN.
+ * A later scan that finds the same size and mtime can skip the file
+ * without reading it.
+ *
+ * The table is an open-addressing hash table in a memory-mapped file, so
+ * millions of entries cost page cache rather than heap. Each slot is 32
+ * bytes: a 64-bit key hash (0 = empty), size, mtime, the scan epoch that
+ * last saw the file, and a flags word. Keys are hashed to 64 bits and
+ * only the hash is stored; at a few million files a collision is a
+ * one-in-millions event and at worst skips one file until it changes.
+ *
+ * The header records the fingerprint of the signatures retro-hunt cannot
+ * apply to skipped files, and opening the manifest under a different
+ * one starts an empty table: a new known-bad hash could match a file
+ * that was clean yesterday. RetroHuntService re-checks stored results
+ * against new SHA-256 digests, so with per-file rows those are left out
+ * of the fingerprint and a SHA-256 refresh keeps the table; SHA-1/MD5
+ * digests, or any digest when clean files get no row, do not (see
+ * SecurityServiceImpl.openSystemScanManifest()).
+ *
+ * Every scan run opens a new epoch. Entries a complete run never saw
+ * (deleted or renamed files) are dropped by compact().
+ *
+ * Methods are synchronized: walker threads look up, the persist stage
+ * records, and both are a handful of memory reads or writes.
+ */
+final class FileManifest implements AutoCloseable {
+
+    private static final int MAGIC = 0x4D414E46; // "MANF"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int SLOT_BYTES = 32;
+    private static final int MIN_CAPACITY = 1 << 12;
+    // A single mapping is limited to 2 GB; 2^25 slots is 1 GB and holds
+    // about 20 million entries at MAX_LOAD.
+    private static final int MAX_CAPACITY = 1 << 25;
+    // Grow past this load factor; linear probing degrades quickly above it.
+    private static final double MAX_LOAD = 0.6;
+    // Compact once more than this share of entries went unseen by a
+    // complete scan.
+    private static final double COMPACT_STALE_SHARE = 0.25;
+
+    private static final int FLAG_CLEAN = 1;
+
+    // Header field offsets.
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 4;
+    private static final int H_CAPACITY = 8;
+    private static final int H_COUNT = 12;
+    private static final int H_FINGERPRINT = 16;
+    private static final int H_EPOCH = 24;
+
+    // Slot field offsets.
+    private static final int S_KEY = 0;
+    private static final int S_SIZE = 8;
+    private static final int S_MTIME = 16;
+    private static final int S_EPOCH = 24;
+    private static final int S_FLAGS = 28;
+
+    private final Path file;
+    private final long fingerprint;
+    private final int epoch;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private int count;
+    private int seenThisEpoch;
+
+    private FileManifest(Path file, long fingerprint, MappedByteBuffer buffer, int epoch) {
+        this.file = file;
+        this.fingerprint = fingerprint;
+        this.buffer = buffer;
+        this.capacity = buffer.getInt(H_CAPACITY);
+        this.count = buffer.getInt(H_COUNT);
+        this.epoch = epoch;
+        buffer.putInt(H_EPOCH, epoch);
+    }
+
+    /**
+     * Opens the manifest at file for a new scan epoch, or starts an empty
+     * one if the file is missing, unreadable, or was written under a
+     * different signature-set fingerprint.
+     */
+    static FileManifest open(Path file, long fingerprint) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        if (Files.isRegularFile(file)) {
+            MappedByteBuffer existing = map(file, Files.size(file));
+            if (isValid(existing, Files.size(file)) && existing.getLong(H_FINGERPRINT) == fingerprint) {
+                return new FileManifest(file, fingerprint, existing, existing.getInt(H_EPOCH) + 1);
+            }
+        }
+        return new FileManifest(file, fingerprint, create(file, MIN_CAPACITY, fingerprint), 1);
+    }
+
+    /**
+     * True if key was last recorded CLEAN with exactly this size and
+     * mtime. A hit also marks the entry as seen in this epoch.
+     */
+    synchronized boolean unchanged(String key, long size, long mtimeMillis) {
+        int slot = find(hash(key));
+        if (slot < 0) {
+            return false;
+        }
+        int offset = offset(slot);
+        boolean same = buffer.getLong(offset + S_SIZE) == size
+                && buffer.getLong(offset + S_MTIME) == mtimeMillis
+                && (buffer.getInt(offset + S_FLAGS) & FLAG_CLEAN) != 0;
+        if (same) {
+            markSeen(offset);
+        }
+        return same;
+    }
+
+    /**
+     * Records a scan outcome. Only clean files become skippable; anything
+     * flagged, unreadable or too large is stored without FLAG_CLEAN so
+     * the next scan looks at it again.
+     */
+    synchronized void record(String key, long size, long mtimeMillis, boolean clean) throws IOException {
+        long hash = hash(key);
+        int slot = find(hash);
+        if (slot < 0) {
+            if (count + 1 > capacity * MAX_LOAD) {
+                if (capacity == MAX_CAPACITY) {
+                    // Full: the file just stays unskippable.
+                    return;
+                }
+                resize(capacity * 2, false);
+                slot = find(hash);
+            }
+            slot = -slot - 1;
+            count++;
+            buffer.putInt(H_COUNT, count);
+        }
+        int offset = offset(slot);
+        buffer.putLong(offset + S_KEY, hash);
+        buffer.putLong(offset + S_SIZE, size);
+        buffer.putLong(offset + S_MTIME, mtimeMillis);
+        buffer.putInt(offset + S_FLAGS, clean ? FLAG_CLEAN : 0);
+        markSeen(offset);
+    }
+
+    synchronized int size() {
+        return count;
+    }
+
+    /**
+     * Drops entries this epoch never saw, if enough of them went stale to
+     * be worth rewriting the table. Only call after a scan that visited
+     * every file; a stopped or capped scan has not seen everything.
+     */
+    synchronized void compact() throws IOException {
+        int stale = count - seenThisEpoch;
+        if (stale > 0 && stale > count * COMPACT_STALE_SHARE) {
+            resize(capacityFor(seenThisEpoch), true);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        buffer.force();
+    }
+
+    private void markSeen(int offset) {
+        if (buffer.getInt(offset + S_EPOCH) != epoch) {
+            buffer.putInt(offset + S_EPOCH, epoch);
+            seenThisEpoch++;
+        }
+    }
+
+    // Slot index holding hash, or -(insertion point) - 1 if absent.
+    private int find(long hash) {
+        int mask = capacity - 1;
+        int slot = (int) (hash ^ (hash >>> 32)) & mask;
+        while (true) {
+            long stored = buffer.getLong(offset(slot) + S_KEY);
+            if (stored == 0) {
+                return -slot - 1;
+            }
+            if (stored == hash) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    // Rewrites the table at newCapacity into a temp file and swaps it in.
+    // With onlySeen, entries from earlier epochs are left behind.
+    private void resize(int newCapacity, boolean onlySeen) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        MappedByteBuffer old = buffer;
+        int oldCapacity = capacity;
+
+        buffer = create(temp, newCapacity, fingerprint);
+        buffer.putInt(H_EPOCH, epoch);
+        capacity = newCapacity;
+        count = 0;
+        seenThisEpoch = 0;
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            int from = HEADER_BYTES + slot * SLOT_BYTES;
+            long hash = old.getLong(from + S_KEY);
+            int slotEpoch = old.getInt(from + S_EPOCH);
+            if (hash == 0 || (onlySeen && slotEpoch != epoch)) {
+                continue;
+            }
+            int to = offset(-find(hash) - 1);
+            buffer.putLong(to + S_KEY, hash);
+            buffer.putLong(to + S_SIZE, old.getLong(from + S_SIZE));
+            buffer.putLong(to + S_MTIME, old.getLong(from + S_MTIME));
+            buffer.putInt(to + S_EPOCH, slotEpoch);
+            buffer.putInt(to + S_FLAGS, old.getInt(from + S_FLAGS));
+            count++;
+            if (slotEpoch == epoch) {
+                seenThisEpoch++;
+            }
+        }
+        buffer.putInt(H_COUNT, count);
+        buffer.force();
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static int capacityFor(int entries) {
+        int capacity = MIN_CAPACITY;
+        while (entries > capacity * MAX_LOAD && capacity < MAX_CAPACITY) {
+            capacity *= 2;
+        }
+        return capacity;
+    }
+
+    private static int offset(int slot) {
+        return HEADER_BYTES + slot * SLOT_BYTES;
+    }
+
+    private static boolean isValid(MappedByteBuffer header, long fileSize) {
+        if (fileSize < HEADER_BYTES
+                || header.getInt(H_MAGIC) != MAGIC
+                || header.getInt(H_VERSION) != FORMAT_VERSION) {
+            return false;
+        }
+        int capacity = header.getInt(H_CAPACITY);
+        int count = header.getInt(H_COUNT);
+        return Integer.bitCount(capacity) == 1
+                && fileSize == HEADER_BYTES + (long) capacity * SLOT_BYTES
+                && count >= 0 && count < capacity;
+    }
+
+    private static MappedByteBuffer create(Path file, int capacity, long fingerprint) throws IOException {
+        Files.deleteIfExists(file);
+        MappedByteBuffer buffer = map(file, HEADER_BYTES + (long) capacity * SLOT_BYTES);
+        buffer.putInt(H_MAGIC, MAGIC);
+        buffer.putInt(H_VERSION, FORMAT_VERSION);
+        buffer.putInt(H_CAPACITY, capacity);
+        buffer.putInt(H_COUNT, 0);
+        buffer.putLong(H_FINGERPRINT, fingerprint);
+        return buffer;
+    }
+
+    private static MappedByteBuffer map(Path file, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return buffer;
+        }
+    }
+
+    // 64-bit FNV-1a over the key's chars, finished with a murmur3 mix so
+    // nearby paths spread across the table. Never 0, which marks an empty
+    // slot.
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+}
@@ -0,0 +1,60 @@
+package com.antivirus.service.impl;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+
+/**
+ * Digest algorithms threat-intel feeds publish IOCs in. Each has its own
+ * SignatureStore index in ThreatIntelSignatureService; a feed token's type
+ * is told apart by its length alone (64, 40 or 32 hex digits).
+ */
+enum HashType {
+    SHA256("SHA-256", 32),
+    SHA1("SHA-1", 20),
+    MD5("MD5", 16);
+
+    private final String algorithm;
+    private final int digestBytes;
+
+    HashType(String algorithm, int digestBytes) {
+        this.algorithm = algorithm;
+        this.digestBytes = digestBytes;
+    }
+
+    String algorithm() {
+        return algorithm;
+    }
+
+    int digestBytes() {
+        return digestBytes;
+    }
+
+    int hexDigits() {
+        return digestBytes * 2;
+    }
+
+    MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(algorithm + " not available", e);
+        }
+    }
+
+    /** The type whose digests are this many bytes long, or null. */
+    static HashType ofDigestBytes(int digestBytes) {
+        for (HashType type : values()) {
+            if (type.digestBytes == digestBytes) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    /** Accepts "SHA-256", "sha256", "SHA-1", "sha1", "MD5" and so on. */
+    static HashType parse(String name) {
+        String normalized = name.trim().toUpperCase(Locale.ROOT).replace("-", "");
+        return valueOf(normalized);
+    }
+}
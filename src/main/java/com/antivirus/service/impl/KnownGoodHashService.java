@@ -0,0 +1,205 @@
+package com.antivirus.service.impl;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Allowlist of known-good file hashes (stock OS and vendor binaries),
+ * checked by SecurityServiceImpl right after a file is hashed so an exact
+ * known release skips the content detectors altogether.
+ *
+ * - Sources are local NSRL-style hash lists in app.known-good.source-dir:
+ * plain SHA-256 lists or CSV/TSV exports with a SHA-256 column, any file
+ * name. Every 64-hex-digit token is taken, the same way threat-intel
+ * feeds are parsed, so SHA-1 and MD5 columns are simply ignored.
+ * - They are compiled into the same SignatureStore image as the malicious
+ * set (sorted raw digests, fanout index, Bloom filter) and memory-mapped
+ * from app.known-good.cache-file, so startup is a map plus a checksum and
+ * the set lives off-heap.
+ * - The image is rebuilt on a background thread, and only when a source
+ * file (or the source directory itself, for added and removed files) is
+ * newer than it. Until the rebuild finishes, lookups use the previous
+ * image; a stale allowlist only costs detector CPU.
+ * - Lookups and hits are counted for the hit ratio in status().
+ */
+@Service
+public class KnownGoodHashService {
+
+    private static final Logger logger = LoggerFactory.getLogger(KnownGoodHashService.class);
+
+    // Digests merged into the image being built per batch, so a large
+    // source set never sits on the heap as byte arrays all at once.
+    private static final int BUILD_BATCH_SIZE = 1_000_000;
+
+    private volatile SignatureStore store = SignatureStore.empty();
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private volatile Instant lastBuild;
+    private volatile int lastBuildSources;
+
+    @Value("${app.known-good.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${app.known-good.source-dir:data/known-good}")
+    private String sourceDirConfig = "data/known-good";
+
+    @Value("${app.known-good.cache-file:data/known-good-hashes.bin}")
+    private String cacheFileConfig = "data/known-good-hashes.bin";
+
+    private final ExecutorService buildExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "known-good-index");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    void init() {
+        if (!enabled) {
+            logger.info("Known-good hash allowlist disabled (app.known-good.enabled=false)");
+            return;
+        }
+        Path cachePath = Paths.get(cacheFileConfig);
+        long start = System.nanoTime();
+        store = SignatureCacheFile.map(cachePath);
+        if (store.size() > 0) {
+            logger.info("Mapped {} known-good hashes from {} in {} ms",
+                    store.size(), cachePath, (System.nanoTime() - start) / 1_000_000);
+        }
+        if (isStale(cachePath)) {
+            buildExecutor.submit(this::rebuild);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        buildExecutor.shutdownNow();
+    }
+
+    /**
+     * True if the raw 32-byte SHA-256 digest is on the allowlist. Counted
+     * towards the hit ratio, so call it once per scanned file.
+     */
+    public boolean isKnownGood(byte[] sha256Digest) {
+        lookups.increment();
+        if (store.contains(sha256Digest)) {
+            hits.increment();
+            return true;
+        }
+        return false;
+    }
+
+    public int size() {
+        return store.size();
+    }
+
+    /** Allowlist size, lookups and hits since startup, and the hit ratio. */
+    public Map<String, Object> status() {
+        long lookupCount = lookups.sum();
+        long hitCount = hits.sum();
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        status.put("hashCount", store.size());
+        status.put("lookups", lookupCount);
+        status.put("hits", hitCount);
+        status.put("hitRatio", lookupCount == 0 ? 0.0 : (double) hitCount / lookupCount);
+        status.put("lastBuild", lastBuild != null ? lastBuild.toString() : null);
+        status.put("lastBuildSources", lastBuildSources);
+        return status;
+    }
+
+    /**
+     * Compiles every file in the source directory into a new image,
+     * replaces the cache file with it and swaps it in. Returns the number
+     * of distinct hashes.
+     */
+    synchronized int rebuild() {
+        Path sourceDir = Paths.get(sourceDirConfig);
+        Path cachePath = Paths.get(cacheFileConfig);
+        long start = System.nanoTime();
+        try {
+            List<Path> sources = listSources(sourceDir);
+            SignatureStore[] built = { SignatureStore.empty() };
+            List<byte[]> batch = new ArrayList<>();
+            for (Path source : sources) {
+                try (InputStream in = Files.newInputStream(source)) {
+                    ThreatIntelSignatureService.parseDigests(in, digest -> {
+                        batch.add(digest);
+                        if (batch.size() == BUILD_BATCH_SIZE) {
+                            built[0] = built[0].merge(batch);
+                            batch.clear();
+                        }
+                    });
+                }
+            }
+            built[0] = built[0].merge(batch);
+
+            store = SignatureCacheFile.write(cachePath, built[0]);
+            lastBuild = Instant.now();
+            lastBuildSources = sources.size();
+            logger.info("Built known-good index: {} hashes from {} source file(s) in {} ms",
+                    store.size(), sources.size(), (System.nanoTime() - start) / 1_000_000);
+            return store.size();
+        } catch (IOException e) {
+            logger.warn("Failed to build known-good index from {}: {}", sourceDir, e.getMessage());
+            return store.size();
+        }
+    }
+
+    // The image needs rebuilding if it is missing or older than any
+    // source file or the source directory. No source directory means an
+    // empty allowlist, so only a non-empty image is then stale.
+    private boolean isStale(Path cachePath) {
+        Path sourceDir = Paths.get(sourceDirConfig);
+        if (!Files.isDirectory(sourceDir)) {
+            return store.size() > 0;
+        }
+        try {
+            if (!Files.isRegularFile(cachePath)) {
+                return true;
+            }
+            FileTime built = Files.getLastModifiedTime(cachePath);
+            if (Files.getLastModifiedTime(sourceDir).compareTo(built) > 0) {
+                return true;
+            }
+            for (Path source : listSources(sourceDir)) {
+                if (Files.getLastModifiedTime(source).compareTo(built) > 0) {
+                    return true;
+                }
+            }
+            return false;
+        } catch (IOException e) {
+            logger.debug("Could not compare known-good sources with {}: {}", cachePath, e.getMessage());
+            return true;
+        }
+    }
+
+    private static List<Path> listSources(Path sourceDir) throws IOException {
+        if (!Files.isDirectory(sourceDir)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(sourceDir)) {
+            return files.filter(Files::isRegularFile).sorted().toList();
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.antivirus.service.impl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.regex.Pattern;
+
+/**
+ * Aho-Corasick automaton over the literal anchors of a fixed list of
+ * detection patterns (see PatternShape).
+ *
+ * Scanning text through it is one table lookup per char regardless of how
+ * many patterns there are, and it reports which patterns had an anchor
+ * occurrence and where. ScanPass uses that to run a pattern's full regex
+ * only when, and only near where, one of its anchors appeared; since every
+ * match must contain an anchor, skipping the regex everywhere else cannot
+ * lose a match.
+ *
+ * Matching folds ASCII case only, mirroring (?i) without UNICODE_CASE.
+ * Patterns without a usable anchor are reported as unanchored and must be
+ * evaluated unconditionally by the caller.
+ *
+ * Immutable and thread-safe once built; the per-scan automaton state is a
+ * plain int held by the caller.
+ */
+final class LiteralPrefilter {
+
+    /** Receives (pattern index, start offset of the anchor occurrence). */
+    @FunctionalInterface
+    interface HitSink {
+        void hit(int patternIndex, long anchorStart);
+    }
+
+    private static final int ALPHABET = 128;
+    static final int START_STATE = 0;
+
+    private final List<Pattern> patterns;
+    private final PatternShape[] shapes;
+
+    // delta[state * ALPHABET + c] is the full DFA transition (goto + failure
+    // links pre-resolved), so scanning never walks failure chains.
+    private final int[] delta;
+    // outputs[state] holds (patternIndex, anchorLength) pairs for every
+    // anchor that ends at this state, including suffixes via failure links.
+    private final int[][] outputs;
+
+    private LiteralPrefilter(List<Pattern> patterns, PatternShape[] shapes, int[] delta, int[][] outputs) {
+        this.patterns = patterns;
+        this.shapes = shapes;
+        this.delta = delta;
+        this.outputs = outputs;
+    }
+
+    static LiteralPrefilter compile(List<Pattern> patterns) {
+        PatternShape[] shapes = new PatternShape[patterns.size()];
+        for (int i = 0; i < shapes.length; i++) {
+            shapes[i] = PatternShape.of(patterns.get(i));
+        }
+        return build(patterns, shapes);
+    }
+
+    /**
+     * Same pattern list with every pattern treated as unanchored, i.e. the
+     * "regex everything" behavior. ScanPassTest checks the prefiltered pass
+     * against it.
+     */
+    static LiteralPrefilter passThrough(List<Pattern> patterns) {
+        PatternShape[] shapes = new PatternShape[patterns.size()];
+        Arrays.fill(shapes, PatternShape.unanalyzed());
+        return build(patterns, shapes);
+    }
+
+    private static LiteralPrefilter build(List<Pattern> patterns, PatternShape[] shapes) {
+        // Trie construction: goto transitions keyed by lowercase ASCII.
+        List<int[]> gotoTable = new ArrayList<>();
+        List<List<int[]>> stateOutputs = new ArrayList<>();
+        gotoTable.add(newRow());
+        stateOutputs.add(new ArrayList<>());
+
+        for (int p = 0; p < shapes.length; p++) {
+            for (String anchor : shapes[p].anchors()) {
+                int state = START_STATE;
+                for (int i = 0; i < anchor.length(); i++) {
+                    int c = anchor.charAt(i);
+                    int next = gotoTable.get(state)[c];
+                    if (next < 0) {
+                        next = gotoTable.size();
+                        gotoTable.add(newRow());
+                        stateOutputs.add(new ArrayList<>());
+                        gotoTable.get(state)[c] = next;
+                    }
+                    state = next;
+                }
+                stateOutputs.get(state).add(new int[] { p, anchor.length() });
+            }
+        }
+
+        // BFS to resolve failure links into a complete DFA.
+        int stateCount = gotoTable.size();
+        int[] delta = new int[stateCount * ALPHABET];
+        int[] fail = new int[stateCount];
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < ALPHABET; c++) {
+            int next = gotoTable.get(START_STATE)[c];
+            if (next < 0) {
+                delta[c] = START_STATE;
+            } else {
+                delta[c] = next;
+                fail[next] = START_STATE;
+                queue.add(next);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            stateOutputs.get(state).addAll(stateOutputs.get(fail[state]));
+            for (int c = 0; c < ALPHABET; c++) {
+                int next = gotoTable.get(state)[c];
+                if (next < 0) {
+                    delta[state * ALPHABET + c] = delta[fail[state] * ALPHABET + c];
+                } else {
+                    delta[state * ALPHABET + c] = next;
+                    fail[next] = delta[fail[state] * ALPHABET + c];
+                    queue.add(next);
+                }
+            }
+        }
+
+        int[][] outputs = new int[stateCount][];
+        for (int s = 0; s < stateCount; s++) {
+            List<int[]> list = stateOutputs.get(s);
+            int[] flat = new int[list.size() * 2];
+            for (int i = 0; i < list.size(); i++) {
+                flat[i * 2] = list.get(i)[0];
+                flat[i * 2 + 1] = list.get(i)[1];
+            }
+            outputs[s] = flat;
+        }
+        return new LiteralPrefilter(List.copyOf(patterns), shapes, delta, outputs);
+    }
+
+    private static int[] newRow() {
+        int[] row = new int[ALPHABET];
+        Arrays.fill(row, -1);
+        return row;
+    }
+
+    int size() {
+        return patterns.size();
+    }
+
+    Pattern pattern(int index) {
+        return patterns.get(index);
+    }
+
+    PatternShape shape(int index) {
+        return shapes[index];
+    }
+
+    /**
+     * Feeds text[from, to) through the automaton starting from state and
+     * returns the state to resume from with the next chunk. baseOffset is
+     * the absolute offset of text[0], so reported anchor starts are stable
+     * across chunks and window trims.
+     */
+    int scan(CharSequence text, int from, int to, long baseOffset, int state, HitSink sink) {
+        int current = state;
+        for (int i = from; i < to; i++) {
+            char ch = text.charAt(i);
+            if (ch >= ALPHABET) {
+                current = START_STATE;
+                continue;
+            }
+            if (ch >= 'A' && ch <= 'Z') {
+                ch = (char) (ch + ('a' - 'A'));
+            }
+            current = delta[current * ALPHABET + ch];
+            int[] out = outputs[current];
+            for (int k = 0; k < out.length; k += 2) {
+                sink.hit(out[k], baseOffset + i - out[k + 1] + 1);
+            }
+        }
+        return current;
+    }
+}
@@ -0,0 +1,176 @@
+package com.antivirus.service.impl;
+
+import java.io.IOException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Work-stealing directory walker behind the system scan.
+ *
+ * Every directory is a ForkJoin task: it lists its entries, reads each
+ * entry's BasicFileAttributes once (one stat instead of the old
+ * isDirectory/isReadable/isRegularFile triple), hands regular files to
+ * the visitor inline and forks one subtask per subdirectory. Idle pool
+ * threads steal those subtasks, so a deep tree spreads across the pool
+ * instead of pinning one core.
+ *
+ * Stopping is cooperative: shouldStop() is consulted before every
+ * directory and every entry, so the scan's stop flag, deadline and
+ * result cap keep working exactly as they did on the single worker.
+ *
+ * Each task remembers the file key (device + inode on Unix) of the
+ * directories above it. A directory whose key is already on that chain,
+ * reached through a symlink or a bind mount of one of its own parents,
+ * is reported as a loop instead of being walked again forever.
+ */
+final class ParallelFileWalker {
+
+    interface Visitor {
+        /** Checked before each directory and entry; true ends the walk. */
+        boolean shouldStop();
+
+        /** True to leave a directory (and everything below it) alone. */
+        boolean skipDirectory(Path directory);
+
+        void visitFile(Path file, BasicFileAttributes attributes) throws IOException;
+
+        void accessDenied(Path path);
+
+        /** A directory could not be listed (other than access denied). */
+        void directoryFailed(Path directory, Exception e);
+
+        /** A single entry could not be inspected or visited. */
+        void entryFailed(Path path, Exception e);
+
+        /** A directory is one of its own ancestors; it is not walked. */
+        default void loopDetected(Path directory) {
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private final Visitor visitor;
+    private final boolean followDirectoryLinks;
+
+    ParallelFileWalker(ForkJoinPool pool, Visitor visitor) {
+        this(pool, visitor, true);
+    }
+
+    /**
+     * followDirectoryLinks=false leaves symlinks to directories alone (links
+     * to files are still followed); the system scan reaches every directory
+     * it covers at its real location anyway.
+     */
+    ParallelFileWalker(ForkJoinPool pool, Visitor visitor, boolean followDirectoryLinks) {
+        this.pool = pool;
+        this.visitor = visitor;
+        this.followDirectoryLinks = followDirectoryLinks;
+    }
+
+    /** Walks root on the pool and returns once every forked subtree is done. */
+    void walk(Path root) {
+        Object fileKey = null;
+        try {
+            fileKey = Files.readAttributes(root, BasicFileAttributes.class).fileKey();
+        } catch (IOException | RuntimeException e) {
+            // Reported by the task itself when it cannot list root.
+        }
+        pool.invoke(new DirectoryTask(root, fileKey, null));
+    }
+
+    private final class DirectoryTask extends RecursiveAction {
+        private final Path directory;
+        // null where the file system has no file keys (loops go undetected)
+        private final Object fileKey;
+        private final DirectoryTask parent;
+
+        DirectoryTask(Path directory, Object fileKey, DirectoryTask parent) {
+            this.directory = directory;
+            this.fileKey = fileKey;
+            this.parent = parent;
+        }
+
+        private boolean isAncestor(Object key) {
+            for (DirectoryTask task = this; task != null; task = task.parent) {
+                if (key.equals(task.fileKey)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        protected void compute() {
+            if (visitor.shouldStop()) {
+                return;
+            }
+            if (visitor.skipDirectory(directory)) {
+                return;
+            }
+
+            List<DirectoryTask> subdirectories = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                for (Path path : stream) {
+                    if (visitor.shouldStop()) {
+                        break;
+                    }
+                    visitEntry(path, subdirectories);
+                }
+            } catch (AccessDeniedException e) {
+                visitor.accessDenied(directory);
+            } catch (IOException | RuntimeException e) {
+                visitor.directoryFailed(directory, e);
+            }
+
+            for (DirectoryTask task : subdirectories) {
+                task.join();
+            }
+        }
+
+        private void visitEntry(Path path, List<DirectoryTask> subdirectories) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class,
+                        LinkOption.NOFOLLOW_LINKS);
+                boolean link = attributes.isSymbolicLink();
+                if (link) {
+                    // Follows links like the old Files.isDirectory() did.
+                    attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                }
+                if (attributes.isDirectory()) {
+                    if (link && !followDirectoryLinks) {
+                        return;
+                    }
+                    Object key = attributes.fileKey();
+                    if (key != null && isAncestor(key)) {
+                        visitor.loopDetected(path);
+                        return;
+                    }
+                    DirectoryTask task = new DirectoryTask(path, key, this);
+                    task.fork();
+                    subdirectories.add(task);
+                } else if (attributes.isRegularFile() && Files.isReadable(path)) {
+                    // BasicFileAttributes carries no access rights, so
+                    // readability still costs an access() check, but only
+                    // for regular files now.
+                    visitor.visitFile(path, attributes);
+                }
+            } catch (NoSuchFileException e) {
+                // Deleted mid-walk, or a dangling symlink: the old
+                // isDirectory()/isRegularFile() checks silently returned
+                // false for both.
+            } catch (AccessDeniedException e) {
+                visitor.accessDenied(path);
+            } catch (IOException | RuntimeException e) {
+                visitor.entryFailed(path, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,380 @@
+package com.antivirus.service.impl;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Static shape of a detection regex, derived from its source text:
+ * - anchors: literal strings, at least one of which every match must
+ * contain (lowercased, ASCII only). Empty when no usable literal exists,
+ * in which case the pattern has to be run unconditionally.
+ * - maxWidth: the longest text a single match can span, or UNBOUNDED
+ * when the pattern has *, + or an open-ended {n,} repetition.
+ * - maxLead: how far into a match its anchor can start at most, i.e. a
+ * match containing an anchor occurrence at offset a starts in
+ * [a - maxLead, a]. Often small even when maxWidth is unbounded
+ * ("connect\s*\(.*" has a lead of 0).
+ *
+ * This is a deliberately small parser covering the regex subset used in
+ * DetectionPatterns (literals, escapes, classes, non-capturing groups,
+ * alternation, greedy/lazy quantifiers). Anything it doesn't understand
+ * (back-references, \Q..\E) makes the shape fall back to
+ * "no anchors, unbounded", which is always safe: the pattern is simply
+ * evaluated the old way.
+ */
+final class PatternShape {
+
+    static final int UNBOUNDED = Integer.MAX_VALUE;
+
+    // Shorter literals ("or", "ex") hit almost everywhere and would make
+    // the prefilter pointless, so they never count as an anchor.
+    static final int MIN_ANCHOR_LENGTH = 3;
+
+    private static final PatternShape UNKNOWN = new PatternShape(Set.of(), UNBOUNDED, UNBOUNDED);
+
+    private final Set<String> anchors;
+    private final int maxWidth;
+    private final int maxLead;
+
+    private PatternShape(Set<String> anchors, int maxWidth, int maxLead) {
+        this.anchors = anchors;
+        this.maxWidth = maxWidth;
+        this.maxLead = maxLead;
+    }
+
+    /** Shape with no anchors and no width bound: "always run, over everything". */
+    static PatternShape unanalyzed() {
+        return UNKNOWN;
+    }
+
+    Set<String> anchors() {
+        return anchors;
+    }
+
+    int maxWidth() {
+        return maxWidth;
+    }
+
+    int maxLead() {
+        return maxLead;
+    }
+
+    boolean anchored() {
+        return !anchors.isEmpty();
+    }
+
+    boolean bounded() {
+        return maxWidth != UNBOUNDED;
+    }
+
+    static PatternShape of(Pattern pattern) {
+        try {
+            Parser parser = new Parser(pattern.pattern());
+            Node node = parser.parseAlternation();
+            if (parser.pos != parser.src.length()) {
+                return UNKNOWN;
+            }
+            if (node.anchors == null) {
+                return new PatternShape(Set.of(), node.maxWidth, UNBOUNDED);
+            }
+            return new PatternShape(Set.copyOf(node.anchors.literals), node.maxWidth, node.anchors.lead);
+        } catch (UnsupportedOperationException | IndexOutOfBoundsException e) {
+            return UNKNOWN;
+        }
+    }
+
+    // anchors == null means "no anchor set every match is guaranteed to hit".
+    private record Node(int maxWidth, Anchors anchors, String literal) {
+    }
+
+    // A set of literals one of which every match contains, starting at most
+    // lead chars into the (sub)match.
+    private record Anchors(Set<String> literals, int lead) {
+    }
+
+    private static int addWidth(int a, int b) {
+        return a == UNBOUNDED || b == UNBOUNDED ? UNBOUNDED : a + b;
+    }
+
+    private static int multiplyWidth(int width, int times) {
+        if (width == 0) {
+            return 0;
+        }
+        if (width == UNBOUNDED || times == UNBOUNDED) {
+            return UNBOUNDED;
+        }
+        long product = (long) width * times;
+        return product >= UNBOUNDED ? UNBOUNDED : (int) product;
+    }
+
+    // Prefers the candidate whose shortest member is longest: a longer
+    // literal is rarer, so it filters more text out.
+    private static Anchors better(Anchors current, Anchors candidate) {
+        if (candidate == null || shortest(candidate.literals) < MIN_ANCHOR_LENGTH) {
+            return current;
+        }
+        if (current == null) {
+            return candidate;
+        }
+        int candidateLength = shortest(candidate.literals);
+        int currentLength = shortest(current.literals);
+        if (candidateLength > currentLength
+                || (candidateLength == currentLength && candidate.literals.size() < current.literals.size())) {
+            return candidate;
+        }
+        return current;
+    }
+
+    private static int shortest(Set<String> anchors) {
+        int min = Integer.MAX_VALUE;
+        for (String anchor : anchors) {
+            min = Math.min(min, anchor.length());
+        }
+        return min;
+    }
+
+    private static final class Parser {
+        final String src;
+        int pos;
+
+        Parser(String src) {
+            this.src = src;
+            skipLeadingFlags();
+        }
+
+        private void skipLeadingFlags() {
+            if (src.startsWith("(?") && src.length() > 2 && Character.isLetter(src.charAt(2))) {
+                int close = src.indexOf(')');
+                String flags = src.substring(2, close);
+                if (flags.chars().allMatch(Character::isLetter)) {
+                    pos = close + 1;
+                }
+            }
+        }
+
+        Node parseAlternation() {
+            List<Node> alternatives = new ArrayList<>();
+            alternatives.add(parseSequence());
+            while (pos < src.length() && src.charAt(pos) == '|') {
+                pos++;
+                alternatives.add(parseSequence());
+            }
+            if (alternatives.size() == 1) {
+                return alternatives.get(0);
+            }
+            int width = 0;
+            int lead = 0;
+            Set<String> union = new LinkedHashSet<>();
+            for (Node alternative : alternatives) {
+                width = Math.max(width, alternative.maxWidth);
+                if (union != null && alternative.anchors != null) {
+                    union.addAll(alternative.anchors.literals);
+                    lead = Math.max(lead, alternative.anchors.lead);
+                } else {
+                    union = null;
+                }
+            }
+            return new Node(width, union == null ? null : new Anchors(union, lead), null);
+        }
+
+        private Node parseSequence() {
+            int width = 0;
+            Anchors best = null;
+            StringBuilder run = new StringBuilder();
+            int runLead = 0;
+
+            while (pos < src.length() && src.charAt(pos) != '|' && src.charAt(pos) != ')') {
+                Node atom = parseAtom();
+                int[] repeat = parseQuantifier();
+                int min = repeat[0];
+                int max = repeat[1];
+                int widthBefore = width;
+                width = addWidth(width, multiplyWidth(atom.maxWidth, max));
+
+                if (atom.literal != null && min >= 1) {
+                    // A mandatory literal char extends the current run; if
+                    // it may repeat, the run can't continue past it.
+                    if (run.isEmpty()) {
+                        runLead = widthBefore;
+                    }
+                    run.append(atom.literal);
+                    if (max != 1) {
+                        best = better(best, new Anchors(Set.of(run.toString()), runLead));
+                        run.setLength(0);
+                    }
+                    continue;
+                }
+                if (atom.maxWidth == 0 && atom.literal == null && atom.anchors == null) {
+                    // zero-width assertion (\b, ^, $): the matched text
+                    // stays contiguous, so the literal run carries on
+                    continue;
+                }
+                best = better(best, run.isEmpty() ? null : new Anchors(Set.of(run.toString()), runLead));
+                run.setLength(0);
+                if (min >= 1 && atom.anchors != null) {
+                    best = better(best, new Anchors(atom.anchors.literals,
+                            addWidth(widthBefore, atom.anchors.lead)));
+                }
+            }
+            best = better(best, run.isEmpty() ? null : new Anchors(Set.of(run.toString()), runLead));
+            return new Node(width, best, null);
+        }
+
+        private Node parseAtom() {
+            char c = src.charAt(pos++);
+            switch (c) {
+                case '(' -> {
+                    boolean lookaround = false;
+                    if (pos < src.length() && src.charAt(pos) == '?') {
+                        char kind = src.charAt(pos + 1);
+                        if (kind == ':') {
+                            pos += 2;
+                        } else if (kind == '=' || kind == '!') {
+                            pos += 2;
+                            lookaround = true;
+                        } else if (kind == '<' && (src.charAt(pos + 2) == '=' || src.charAt(pos + 2) == '!')) {
+                            pos += 3;
+                            lookaround = true;
+                        } else {
+                            throw new UnsupportedOperationException("group kind");
+                        }
+                    }
+                    Node inner = parseAlternation();
+                    expect(')');
+                    return lookaround ? new Node(0, null, null) : new Node(inner.maxWidth, inner.anchors, null);
+                }
+                case '[' -> {
+                    skipCharClass();
+                    return new Node(1, null, null);
+                }
+                case '.' -> {
+                    return new Node(1, null, null);
+                }
+                case '^', '$' -> {
+                    return new Node(0, null, null);
+                }
+                case '\\' -> {
+                    return parseEscape();
+                }
+                case '*', '+', '?', '{' -> throw new UnsupportedOperationException("dangling quantifier");
+                default -> {
+                    return literal(c);
+                }
+            }
+        }
+
+        private Node parseEscape() {
+            char c = src.charAt(pos++);
+            if ("bBAzZG".indexOf(c) >= 0) {
+                return new Node(0, null, null);
+            }
+            if ("dDsSwWhHvVtnrfae".indexOf(c) >= 0) {
+                return new Node(1, null, null);
+            }
+            if (c == 'R') {
+                // \R also matches the two-char \r\n sequence
+                return new Node(2, null, null);
+            }
+            if (c == 'p' || c == 'P') {
+                if (src.charAt(pos) == '{') {
+                    pos = src.indexOf('}', pos) + 1;
+                } else {
+                    pos++;
+                }
+                return new Node(1, null, null);
+            }
+            if (c == 'x' || c == 'u' || c == '0' || c == 'c') {
+                throw new UnsupportedOperationException("numeric escape");
+            }
+            if (Character.isLetterOrDigit(c)) {
+                // back-references, \Q..\E, \k<name>, ...
+                throw new UnsupportedOperationException("escape \\" + c);
+            }
+            return literal(c);
+        }
+
+        private Node literal(char c) {
+            if (c >= 128) {
+                // Only ASCII case-folding is applied by the prefilter, so a
+                // non-ASCII char ends any literal run.
+                return new Node(1, null, null);
+            }
+            return new Node(1, null, String.valueOf(Character.toLowerCase(c)));
+        }
+
+        private void skipCharClass() {
+            int depth = 1;
+            if (pos < src.length() && src.charAt(pos) == '^') {
+                pos++;
+            }
+            if (pos < src.length() && src.charAt(pos) == ']') {
+                pos++;
+            }
+            while (depth > 0) {
+                char c = src.charAt(pos++);
+                if (c == '\\') {
+                    pos++;
+                } else if (c == '[') {
+                    depth++;
+                } else if (c == ']') {
+                    depth--;
+                }
+            }
+        }
+
+        // Returns {min, max}, with UNBOUNDED for open-ended repetition.
+        private int[] parseQuantifier() {
+            if (pos >= src.length()) {
+                return new int[] { 1, 1 };
+            }
+            int[] result;
+            char c = src.charAt(pos);
+            if (c == '?') {
+                pos++;
+                result = new int[] { 0, 1 };
+            } else if (c == '*') {
+                pos++;
+                result = new int[] { 0, UNBOUNDED };
+            } else if (c == '+') {
+                pos++;
+                result = new int[] { 1, UNBOUNDED };
+            } else if (c == '{') {
+                int close = src.indexOf('}', pos);
+                String body = src.substring(pos + 1, close);
+                pos = close + 1;
+                int comma = body.indexOf(',');
+                if (comma < 0) {
+                    int n = Integer.parseInt(body.trim());
+                    result = new int[] { n, n };
+                } else {
+                    int min = Integer.parseInt(body.substring(0, comma).trim());
+                    String maxText = body.substring(comma + 1).trim();
+                    result = new int[] { min, maxText.isEmpty() ? UNBOUNDED : Integer.parseInt(maxText) };
+                }
+            } else {
+                return new int[] { 1, 1 };
+            }
+            // lazy / possessive suffix doesn't change what can match
+            if (pos < src.length() && (src.charAt(pos) == '?' || src.charAt(pos) == '+')) {
+                pos++;
+            }
+            return result;
+        }
+
+        private void expect(char c) {
+            if (pos >= src.length() || src.charAt(pos) != c) {
+                throw new UnsupportedOperationException("expected " + c);
+            }
+            pos++;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PatternShape" + anchors + "/" + (bounded() ? String.valueOf(maxWidth) : "unbounded")
+                + "/lead=" + (maxLead == UNBOUNDED ? "unbounded" : String.valueOf(maxLead));
+    }
+}
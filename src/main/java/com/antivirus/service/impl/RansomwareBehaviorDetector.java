@@ -0,0 +1,280 @@
+package com.antivirus.service.impl;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Spots mass encryption while it happens, from the change events real-time
+ * protection sees, instead of from the directory listing left behind
+ * (scoreRansomwareDirectoryBehavior).
+ *
+ * Three rates are counted over a sliding window, per directory and for all
+ * watched paths together: renames, rewrites of existing files, and new
+ * files with an extension outside COMMON_EXTENSIONS. Crossing a threshold
+ * raises an Alert, at most once per window for each directory. The
+ * all-paths counters use the thresholds times hostMultiplier; they catch a
+ * process that touches a few files in each of many directories. (The JDK
+ * WatchService does not say which process made a change, so there are no
+ * per-process counters.)
+ *
+ * Memory is fixed: directories live in a table of maxDirectories slots
+ * (rounded up to a power of two). A new directory takes the least recently
+ * active of the four slots its hash points at, so a quiet directory gives
+ * its slot up first.
+ * Counters are lock-free: each window bucket is one long holding the
+ * bucket number and its count, updated by CAS, so a count is never lost
+ * at a bucket boundary.
+ */
+final class RansomwareBehaviorDetector {
+
+    static final String SIGNAL_RENAME_RATE = "RANSOMWARE_RENAME_RATE";
+    static final String SIGNAL_REWRITE_RATE = "RANSOMWARE_REWRITE_RATE";
+    static final String SIGNAL_NEW_EXTENSION_RATE = "RANSOMWARE_NEW_EXTENSION_RATE";
+
+    private static final int BUCKETS = 8;
+    private static final int PROBES = 4;
+
+    record Thresholds(int renames, int rewrites, int unknownExtensions) {
+        Thresholds times(int factor) {
+            return new Thresholds(renames * factor, rewrites * factor, unknownExtensions * factor);
+        }
+    }
+
+    /**
+     * Rates over the threshold. directory is null for the all-paths
+     * counters. counts holds renames, rewrites and new unknown extensions
+     * in the window, in that order.
+     */
+    record Alert(Path directory, List<String> signals, long[] counts, int windowSeconds) {
+        String details() {
+            return String.format("%s in %d s: %d renames, %d rewrites, %d new files with unknown extensions",
+                    directory == null ? "All watched paths" : "Directory", windowSeconds,
+                    counts[0], counts[1], counts[2]);
+        }
+    }
+
+    // Count of events per bucket; a slot holds (bucket << COUNT_BITS | count).
+    static final class SlidingWindow {
+        private static final int COUNT_BITS = 24;
+        private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+        private final AtomicLongArray slots = new AtomicLongArray(BUCKETS);
+
+        void add(long bucket) {
+            int index = (int) (bucket % BUCKETS);
+            while (true) {
+                long current = slots.get(index);
+                long next = current >>> COUNT_BITS == bucket
+                        ? current + ((current & COUNT_MASK) == COUNT_MASK ? 0 : 1)
+                        : bucket << COUNT_BITS | 1;
+                if (slots.compareAndSet(index, current, next)) {
+                    return;
+                }
+            }
+        }
+
+        // Events in the BUCKETS buckets up to and including bucket
+        long sum(long bucket) {
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                long slot = slots.get(i);
+                long slotBucket = slot >>> COUNT_BITS;
+                if (slotBucket <= bucket && slotBucket > bucket - BUCKETS) {
+                    total += slot & COUNT_MASK;
+                }
+            }
+            return total;
+        }
+    }
+
+    private static final class Tracker {
+        final Path directory;
+        final SlidingWindow renames = new SlidingWindow();
+        final SlidingWindow rewrites = new SlidingWindow();
+        final SlidingWindow unknownExtensions = new SlidingWindow();
+        final AtomicLong lastBucket;
+        // first bucket after the last alert's window; -1 before any alert
+        final AtomicLong quietUntil = new AtomicLong(-1);
+
+        Tracker(Path directory, long bucket) {
+            this.directory = directory;
+            this.lastBucket = new AtomicLong(bucket);
+        }
+    }
+
+    private final long bucketNanos;
+    private final int windowSeconds;
+    private final Thresholds thresholds;
+    private final Thresholds hostThresholds;
+    private final AtomicReferenceArray<Tracker> directories;
+    private final Tracker host;
+    private final long origin = System.nanoTime();
+
+    private final LongAdder events = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder alerts = new LongAdder();
+
+    RansomwareBehaviorDetector(int windowSeconds, Thresholds thresholds, int hostMultiplier, int maxDirectories) {
+        this.windowSeconds = Math.max(1, windowSeconds);
+        this.bucketNanos = this.windowSeconds * 1_000_000_000L / BUCKETS;
+        this.thresholds = thresholds;
+        this.hostThresholds = thresholds.times(Math.max(1, hostMultiplier));
+        this.directories = new AtomicReferenceArray<>(Integer.highestOneBit(Math.max(PROBES, maxDirectories - 1)) << 1);
+        this.host = new Tracker(null, 0);
+    }
+
+    /**
+     * A file in its directory was renamed to file. Returns the alerts this
+     * raised (directory, all paths), usually none.
+     */
+    List<Alert> renamed(Path file, long now) {
+        return record(file, now, true, false);
+    }
+
+    List<Alert> created(Path file, long now) {
+        return record(file, now, false, false);
+    }
+
+    /** An existing file was written to. */
+    List<Alert> rewritten(Path file, long now) {
+        return record(file, now, false, true);
+    }
+
+    private List<Alert> record(Path file, long now, boolean rename, boolean rewrite) {
+        Path directory = file.getParent();
+        if (directory == null) {
+            return List.of();
+        }
+        events.increment();
+        long bucket = Math.max(0, now - origin) / bucketNanos;
+        boolean unknownExtension = !rewrite && isUnknownExtension(file);
+        if (!rename && !rewrite && !unknownExtension) {
+            return List.of();
+        }
+        Alert alert = count(tracker(directory, bucket), bucket, rename, rewrite, unknownExtension, thresholds);
+        Alert hostAlert = count(host, bucket, rename, rewrite, unknownExtension, hostThresholds);
+        if (alert == null && hostAlert == null) {
+            return List.of();
+        }
+        return alert == null ? List.of(hostAlert) : hostAlert == null ? List.of(alert) : List.of(alert, hostAlert);
+    }
+
+    private Alert count(Tracker tracker, long bucket, boolean rename, boolean rewrite, boolean unknownExtension,
+            Thresholds limits) {
+        if (rename) {
+            tracker.renames.add(bucket);
+        }
+        if (rewrite) {
+            tracker.rewrites.add(bucket);
+        }
+        if (unknownExtension) {
+            tracker.unknownExtensions.add(bucket);
+        }
+        tracker.lastBucket.accumulateAndGet(bucket, Math::max);
+
+        long[] counts = {tracker.renames.sum(bucket), tracker.rewrites.sum(bucket),
+                tracker.unknownExtensions.sum(bucket)};
+        List<String> signals = new ArrayList<>(3);
+        if (counts[0] >= limits.renames()) {
+            signals.add(SIGNAL_RENAME_RATE);
+        }
+        if (counts[1] >= limits.rewrites()) {
+            signals.add(SIGNAL_REWRITE_RATE);
+        }
+        if (counts[2] >= limits.unknownExtensions()) {
+            signals.add(SIGNAL_NEW_EXTENSION_RATE);
+        }
+        if (signals.isEmpty()) {
+            return null;
+        }
+        long quietUntil = tracker.quietUntil.get();
+        if (bucket < quietUntil || !tracker.quietUntil.compareAndSet(quietUntil, bucket + BUCKETS)) {
+            return null;
+        }
+        alerts.increment();
+        return new Alert(tracker.directory, signals, counts, windowSeconds);
+    }
+
+    // Finds or claims directory's slot among PROBES slots from its hash.
+    private Tracker tracker(Path directory, long bucket) {
+        int mask = directories.length() - 1;
+        int start = spread(directory.hashCode()) & mask;
+        while (true) {
+            int victim = -1;
+            long oldest = Long.MAX_VALUE;
+            for (int probe = 0; probe < PROBES; probe++) {
+                int index = (start + probe) & mask;
+                Tracker tracker = directories.get(index);
+                if (tracker == null) {
+                    victim = index;
+                    oldest = Long.MIN_VALUE;
+                    break;
+                }
+                if (tracker.directory.equals(directory)) {
+                    return tracker;
+                }
+                long last = tracker.lastBucket.get();
+                if (last < oldest) {
+                    oldest = last;
+                    victim = index;
+                }
+            }
+            Tracker current = directories.get(victim);
+            Tracker claimed = new Tracker(directory, bucket);
+            if (directories.compareAndSet(victim, current, claimed)) {
+                if (current != null && oldest > bucket - BUCKETS) {
+                    evictions.increment();
+                }
+                return claimed;
+            }
+        }
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    static boolean isUnknownExtension(Path file) {
+        Path name = file.getFileName();
+        if (name == null) {
+            return false;
+        }
+        String fileName = name.toString();
+        int dot = fileName.lastIndexOf('.');
+        if (dot < 0) {
+            return false;
+        }
+        String extension = fileName.substring(dot).toLowerCase(Locale.ROOT);
+        return SecurityServiceImpl.RANSOMWARE_EXTENSIONS.contains(extension)
+                || !SecurityServiceImpl.COMMON_EXTENSIONS.contains(extension);
+    }
+
+    Map<String, Object> status() {
+        long bucket = (System.nanoTime() - origin) / bucketNanos;
+        int tracked = 0;
+        for (int i = 0; i < directories.length(); i++) {
+            Tracker tracker = directories.get(i);
+            if (tracker != null && tracker.lastBucket.get() > bucket - BUCKETS) {
+                tracked++;
+            }
+        }
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("windowSeconds", windowSeconds);
+        status.put("thresholds", thresholds);
+        status.put("hostThresholds", hostThresholds);
+        status.put("activeDirectories", tracked);
+        status.put("directorySlots", directories.length());
+        status.put("events", events.sum());
+        status.put("evictions", evictions.sum());
+        status.put("alerts", alerts.sum());
+        return status;
+    }
+}
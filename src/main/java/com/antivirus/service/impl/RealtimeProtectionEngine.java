@@ -0,0 +1,678 @@
+package com.antivirus.service.impl;
+
+import com.antivirus.model.ScanResult;
+import com.antivirus.service.SecurityService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Real-time (on-access) protection: files created or modified under the
+ * watched paths are scanned shortly after they change, with no periodic
+ * full scans.
+ *
+ * - Every directory below app.realtime.paths gets a WatchService watch
+ * (inotify on Linux, ReadDirectoryChangesW on Windows; the JDK polls on
+ * macOS). New directories are watched as they appear, and their files
+ * queued, since they may have been written before the watch was in place.
+ * Directories and files the ScanExclusionPolicy excludes are left alone.
+ * - Events are debounced per file (ChangeCoalescer): a burst of writes is
+ * one scan, debounce-ms after the last write and at most max-delay-ms
+ * after the first.
+ * - Due files go into a bounded priority queue: executables and scripts
+ * first, then new files, then modified ones. Scan threads take from it;
+ * a file already queued is not queued twice.
+ * - Nothing is dropped silently. When the kernel reports OVERFLOW (events
+ * lost) or the queue is full, the directory is marked dirty and later
+ * rescanned: its files changed since the last events seen there are
+ * queued again, once the queue has room.
+ *
+ * - The same events feed a RansomwareBehaviorDetector (app.realtime.ransomware):
+ * bursts of renames, rewrites or new files with unknown extensions raise a
+ * RANSOMWARE result for the directory while it is being encrypted, through
+ * SecurityService.reportRansomwareBehavior().
+ *
+ * Results go through SecurityService.scanRealtime(); status() has the
+ * counters and the event-to-verdict latency.
+ */
+@Service
+public class RealtimeProtectionEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(RealtimeProtectionEngine.class);
+
+    // Longest the watcher waits for events before retrying dirty directories.
+    private static final long MAX_POLL_MILLIS = 100;
+
+    // mtime granularity of the slowest file systems (FAT: 2 s) plus clock
+    // skew, subtracted from "changed since" when rescanning a directory.
+    private static final long RESCAN_SLACK_MILLIS = 3_000;
+
+    private static final int PRIORITY_HIGH_RISK = 0;
+    private static final int PRIORITY_CREATED = 1;
+    private static final int PRIORITY_MODIFIED = 2;
+
+    @FunctionalInterface
+    interface FileScanner {
+        ScanResult scan(File file);
+    }
+
+    private record Task(Path file, int priority, long sequence, long firstSeenNanos)
+            implements Comparable<Task> {
+        @Override
+        public int compareTo(Task other) {
+            return priority != other.priority ? Integer.compare(priority, other.priority)
+                    : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private static final class DirectoryWatch {
+        final Path directory;
+        // wall-clock time of the last events drained for this directory
+        long lastEventsMillis;
+
+        DirectoryWatch(Path directory, long now) {
+            this.directory = directory;
+            this.lastEventsMillis = now;
+        }
+    }
+
+    // SecurityServiceImpl depends on SystemMonitorService, which starts
+    // this engine; @Lazy breaks the cycle back to SecurityService.
+    @Lazy
+    @Autowired
+    private SecurityService securityService;
+
+    @Autowired
+    private ScanExclusionPolicy exclusionPolicy;
+
+    @Value("${app.realtime.enabled:false}")
+    private boolean enabledOnStartup = false;
+
+    @Value("${app.realtime.paths:}")
+    private String watchedPaths = "";
+
+    @Value("${app.realtime.debounce-ms:250}")
+    private long debounceMillis = 250;
+
+    @Value("${app.realtime.max-delay-ms:2000}")
+    private long maxDelayMillis = 2_000;
+
+    @Value("${app.realtime.queue-capacity:10000}")
+    private int queueCapacity = 10_000;
+
+    @Value("${app.realtime.scan-threads:2}")
+    private int scanThreads = 2;
+
+    @Value("${app.realtime.max-watched-directories:100000}")
+    private int maxWatchedDirectories = 100_000;
+
+    @Value("${app.realtime.ransomware.enabled:true}")
+    private boolean behaviorDetection = true;
+
+    @Value("${app.realtime.ransomware.window-seconds:10}")
+    private int behaviorWindowSeconds = 10;
+
+    @Value("${app.realtime.ransomware.rename-threshold:50}")
+    private int renameThreshold = 50;
+
+    @Value("${app.realtime.ransomware.rewrite-threshold:100}")
+    private int rewriteThreshold = 100;
+
+    @Value("${app.realtime.ransomware.unknown-extension-threshold:50}")
+    private int unknownExtensionThreshold = 50;
+
+    @Value("${app.realtime.ransomware.host-threshold-multiplier:4}")
+    private int hostThresholdMultiplier = 4;
+
+    @Value("${app.realtime.ransomware.max-tracked-directories:4096}")
+    private int maxTrackedDirectories = 4_096;
+
+    private FileScanner scanner = file -> securityService.scanRealtime(file);
+
+    private BiConsumer<String, RansomwareBehaviorDetector.Alert> alertSink = (path, alert) ->
+            securityService.reportRansomwareBehavior(path, alert.signals(), alert.details());
+
+    private volatile boolean running;
+    private WatchService watchService;
+    private Thread watcherThread;
+    private final List<Thread> scanWorkers = new ArrayList<>();
+
+    // Owned by the watcher thread
+    private final Map<WatchKey, DirectoryWatch> watches = new HashMap<>();
+    private final Map<Path, Long> dirtyDirectories = new LinkedHashMap<>();
+    private ChangeCoalescer coalescer;
+    private volatile RansomwareBehaviorDetector behavior;
+    private boolean watchLimitLogged;
+
+    private final PriorityBlockingQueue<Task> queue = new PriorityBlockingQueue<>();
+    private final Set<Path> queued = ConcurrentHashMap.newKeySet();
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final AtomicInteger watchedDirectories = new AtomicInteger();
+    // Directories that should be watched but could not be (unreadable,
+    // gone, inotify limit): changes under them go unseen.
+    private final LongAdder unwatchedDirectories = new LongAdder();
+    private final AtomicInteger pendingChanges = new AtomicInteger();
+    private final AtomicInteger dirtyDirectoryCount = new AtomicInteger();
+    private final LongAdder events = new LongAdder();
+    private final LongAdder coalescedEvents = new LongAdder();
+    private final LongAdder overflows = new LongAdder();
+    private final LongAdder queueFull = new LongAdder();
+    private final LongAdder rescannedDirectories = new LongAdder();
+    private final LongAdder scanned = new LongAdder();
+    private final LongAdder detections = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder latencyNanos = new LongAdder();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        if (enabledOnStartup) {
+            start();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        stop();
+    }
+
+    /**
+     * Starts watching app.realtime.paths. Returns false, and stays off,
+     * if none of them is an existing directory. Watches are registered on
+     * the watcher thread, so this returns before a large tree is covered.
+     */
+    public synchronized boolean start() {
+        if (running) {
+            return true;
+        }
+        if (watcherThread != null) {
+            // The last watcher died on its own; finish tearing it down.
+            release();
+        }
+        List<Path> roots = configuredRoots();
+        if (roots.isEmpty()) {
+            logger.warn("Real-time protection not started: app.realtime.paths has no existing directory");
+            return false;
+        }
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+        } catch (IOException e) {
+            logger.error("Real-time protection not started: {}", e.getMessage());
+            return false;
+        }
+        coalescer = new ChangeCoalescer(TimeUnit.MILLISECONDS.toNanos(debounceMillis),
+                TimeUnit.MILLISECONDS.toNanos(maxDelayMillis));
+        behavior = behaviorDetection
+                ? new RansomwareBehaviorDetector(behaviorWindowSeconds, new RansomwareBehaviorDetector.Thresholds(
+                        renameThreshold, rewriteThreshold, unknownExtensionThreshold),
+                        hostThresholdMultiplier, maxTrackedDirectories)
+                : null;
+        running = true;
+
+        watcherThread = new Thread(() -> watch(roots), "realtime-watcher");
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+        for (int i = 0; i < Math.max(1, scanThreads); i++) {
+            Thread worker = new Thread(this::scanLoop, "realtime-scan-" + (i + 1));
+            worker.setDaemon(true);
+            worker.start();
+            scanWorkers.add(worker);
+        }
+        logger.info("Real-time protection started on {}", roots);
+        return true;
+    }
+
+    /** Stops watching; queued files that were not scanned yet are dropped. */
+    public synchronized void stop() {
+        if (watcherThread == null) {
+            return;
+        }
+        running = false;
+        release();
+        logger.info("Real-time protection stopped");
+    }
+
+    // Closes the watch service and waits for the threads of the last
+    // start(), however it ended: stop(), or the watcher exiting on its own.
+    private void release() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            logger.debug("Error closing watch service: {}", e.getMessage());
+        }
+        joinQuietly(watcherThread);
+        watcherThread = null;
+        for (Thread worker : scanWorkers) {
+            worker.interrupt();
+            joinQuietly(worker);
+        }
+        scanWorkers.clear();
+        queue.clear();
+        queued.clear();
+        watches.clear();
+        dirtyDirectories.clear();
+        watchedDirectories.set(0);
+        unwatchedDirectories.reset();
+        pendingChanges.set(0);
+        dirtyDirectoryCount.set(0);
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        long scannedFiles = scanned.sum();
+        status.put("running", running);
+        status.put("paths", configuredRoots().stream().map(Path::toString).toList());
+        status.put("watchedDirectories", watchedDirectories.get());
+        status.put("unwatchedDirectories", unwatchedDirectories.sum());
+        status.put("pendingChanges", pendingChanges.get());
+        status.put("queued", queue.size());
+        status.put("queueCapacity", queueCapacity);
+        status.put("dirtyDirectories", dirtyDirectoryCount.get());
+        status.put("events", events.sum());
+        status.put("coalescedEvents", coalescedEvents.sum());
+        status.put("overflows", overflows.sum());
+        status.put("queueFull", queueFull.sum());
+        status.put("rescannedDirectories", rescannedDirectories.sum());
+        status.put("scanned", scannedFiles);
+        status.put("detections", detections.sum());
+        status.put("failures", failures.sum());
+        status.put("averageLatencyMs", scannedFiles == 0 ? 0
+                : Math.round(latencyNanos.sum() / 1e6 / scannedFiles));
+        status.put("maxLatencyMs", Math.round(maxLatencyNanos.get() / 1e6));
+        RansomwareBehaviorDetector detector = behavior;
+        if (detector != null) {
+            status.put("ransomwareBehavior", detector.status());
+        }
+        return status;
+    }
+
+    private List<Path> configuredRoots() {
+        if (watchedPaths == null || watchedPaths.isBlank()) {
+            return List.of();
+        }
+        return Arrays.stream(watchedPaths.split(","))
+                .map(String::trim)
+                .filter(path -> !path.isEmpty())
+                .map(path -> Paths.get(path).toAbsolutePath().normalize())
+                .filter(Files::isDirectory)
+                .distinct()
+                .toList();
+    }
+
+    // ── watcher thread ─────────────────────────────────────────────────
+
+    private void watch(List<Path> roots) {
+        try {
+            for (Path root : roots) {
+                registerTree(root, false);
+            }
+            logger.info("Real-time protection watching {} directories", watches.size());
+            while (running) {
+                long now = System.nanoTime();
+                long untilDue = coalescer.nanosUntilNextDue(now);
+                long timeout = untilDue < 0 ? TimeUnit.MILLISECONDS.toNanos(MAX_POLL_MILLIS)
+                        : Math.min(untilDue, TimeUnit.MILLISECONDS.toNanos(MAX_POLL_MILLIS));
+                WatchKey key = watchService.poll(timeout, TimeUnit.NANOSECONDS);
+                while (key != null) {
+                    try {
+                        handleEvents(key);
+                    } catch (ClosedWatchServiceException e) {
+                        throw e;
+                    } catch (RuntimeException e) {
+                        recoverKey(key, e);
+                    }
+                    key = watchService.poll();
+                }
+                try {
+                    coalescer.drainDue(System.nanoTime(), this::dispatch);
+                    pendingChanges.set(coalescer.pending());
+                    rescanDirtyDirectories();
+                } catch (ClosedWatchServiceException e) {
+                    throw e;
+                } catch (RuntimeException e) {
+                    logger.error("Real-time watcher pass failed: {}", e.getMessage(), e);
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            // stop()
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            logger.error("Real-time watcher failed: {}", e.getMessage(), e);
+        } finally {
+            coalescer.clear();
+            if (running) {
+                // Not stopped, so nothing is watched any more: say so,
+                // and let the next start() begin afresh.
+                running = false;
+                logger.error("Real-time protection stopped: the watcher thread exited");
+            }
+        }
+    }
+
+    // A key whose events could not all be handled: it is reset so the
+    // directory keeps reporting, and rescanned in case a change was among
+    // the events skipped.
+    private void recoverKey(WatchKey key, RuntimeException e) {
+        DirectoryWatch watch = watches.get(key);
+        logger.error("Real-time events for {} failed: {}", watch != null ? watch.directory : key.watchable(),
+                e.getMessage(), e);
+        if (watch != null) {
+            markDirty(watch.directory, watch.lastEventsMillis - RESCAN_SLACK_MILLIS);
+        }
+        if (!key.reset()) {
+            watches.remove(key);
+            watchedDirectories.set(watches.size());
+        }
+    }
+
+    private void handleEvents(WatchKey key) {
+        DirectoryWatch watch = watches.get(key);
+        long nowMillis = System.currentTimeMillis();
+        // A rename within a directory arrives as a delete immediately
+        // followed by a create (inotify MOVED_FROM/MOVED_TO, Windows
+        // RENAMED_OLD_NAME/RENAMED_NEW_NAME).
+        boolean afterDelete = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (watch == null) {
+                continue;
+            }
+            events.increment();
+            boolean renamed = afterDelete;
+            afterDelete = false;
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflows.increment();
+                markDirty(watch.directory, watch.lastEventsMillis - RESCAN_SLACK_MILLIS);
+                continue;
+            }
+            Path child = watch.directory.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                coalescer.forget(child);
+                afterDelete = true;
+                continue;
+            }
+            if (exclusionPolicy.excludes(child)) {
+                continue;
+            }
+            boolean created = event.kind() == StandardWatchEventKinds.ENTRY_CREATE;
+            if (created && Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                registerTree(child, true);
+                continue;
+            }
+            long now = System.nanoTime();
+            boolean newChange = coalescer.record(child, created, now);
+            if (!newChange) {
+                coalescedEvents.increment();
+            }
+            if (behavior != null) {
+                List<RansomwareBehaviorDetector.Alert> alerts = renamed ? behavior.renamed(child, now)
+                        : created ? behavior.created(child, now)
+                        : newChange ? behavior.rewritten(child, now) : List.of();
+                alerts.forEach(this::raise);
+            }
+        }
+        if (watch != null) {
+            watch.lastEventsMillis = nowMillis;
+        }
+        if (!key.reset()) {
+            // Directory deleted or no longer accessible
+            watches.remove(key);
+            watchedDirectories.set(watches.size());
+        }
+    }
+
+    private void raise(RansomwareBehaviorDetector.Alert alert) {
+        String path = alert.directory() != null ? alert.directory().toString()
+                : String.join(",", configuredRoots().stream().map(Path::toString).toList());
+        logger.warn("Real-time protection: ransomware behavior in {}: {}", path, alert.details());
+        try {
+            alertSink.accept(path, alert);
+        } catch (RuntimeException e) {
+            logger.error("Could not report ransomware behavior in {}: {}", path, e.getMessage());
+        }
+    }
+
+    // Watches directory and everything below it. For a directory that
+    // appeared while watching, its files are queued by a rescan, since
+    // they may predate the watch.
+    private void registerTree(Path directory, boolean rescanFiles) {
+        try {
+            Files.walkFileTree(directory, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) {
+                    if (exclusionPolicy.excludes(dir)) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    if (watches.size() >= maxWatchedDirectories) {
+                        if (!watchLimitLogged) {
+                            watchLimitLogged = true;
+                            logger.warn("Real-time protection: watch limit of {} directories reached; {} and "
+                                    + "further directories are not watched", maxWatchedDirectories, dir);
+                        }
+                        return FileVisitResult.TERMINATE;
+                    }
+                    try {
+                        WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                        watches.put(key, new DirectoryWatch(dir, System.currentTimeMillis()));
+                    } catch (IOException e) {
+                        unwatchedDirectories.increment();
+                        logger.warn("Real-time protection cannot watch {}: {}", dir, e.getMessage());
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    if (rescanFiles) {
+                        markDirty(dir, 0);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    // A directory that cannot be opened is never visited,
+                    // so nothing below it is watched.
+                    if (Files.isDirectory(file, LinkOption.NOFOLLOW_LINKS)) {
+                        unwatchedDirectories.increment();
+                        logger.warn("Real-time protection cannot watch {}: {}", file, e.getMessage());
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            unwatchedDirectories.increment();
+            logger.warn("Real-time protection cannot watch {}: {}", directory, e.getMessage());
+        }
+        watchedDirectories.set(watches.size());
+    }
+
+    private void dispatch(ChangeCoalescer.Change change) {
+        int priority = change.created ? PRIORITY_CREATED : PRIORITY_MODIFIED;
+        if (isHighRisk(change.file)) {
+            priority = PRIORITY_HIGH_RISK;
+        }
+        if (!enqueue(change.file, priority, change.firstSeenNanos)) {
+            Path parent = change.file.getParent();
+            if (parent != null) {
+                long firstSeenMillis = System.currentTimeMillis()
+                        - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - change.firstSeenNanos);
+                markDirty(parent, firstSeenMillis - RESCAN_SLACK_MILLIS);
+            }
+        }
+    }
+
+    // False only when the queue is full; a file already queued counts as
+    // queued. The watcher is the only producer, so size() cannot grow
+    // between the check and the offer.
+    private boolean enqueue(Path file, int priority, long firstSeenNanos) {
+        if (queued.contains(file)) {
+            return true;
+        }
+        if (queue.size() >= queueCapacity) {
+            queueFull.increment();
+            return false;
+        }
+        queued.add(file);
+        queue.offer(new Task(file, priority, sequence.incrementAndGet(), firstSeenNanos));
+        return true;
+    }
+
+    private void markDirty(Path directory, long changedSinceMillis) {
+        dirtyDirectories.merge(directory, changedSinceMillis, Math::min);
+        dirtyDirectoryCount.set(dirtyDirectories.size());
+    }
+
+    // Targeted rescan: queues the files of each dirty directory modified
+    // since its mark, until the queue is full again. A directory stays
+    // dirty until all of its files made it into the queue.
+    private void rescanDirtyDirectories() {
+        Iterator<Map.Entry<Path, Long>> dirty = dirtyDirectories.entrySet().iterator();
+        while (dirty.hasNext() && running && queue.size() < queueCapacity) {
+            Map.Entry<Path, Long> entry = dirty.next();
+            if (rescan(entry.getKey(), entry.getValue())) {
+                dirty.remove();
+                rescannedDirectories.increment();
+            }
+        }
+        dirtyDirectoryCount.set(dirtyDirectories.size());
+    }
+
+    private boolean rescan(Path directory, long changedSinceMillis) {
+        long now = System.nanoTime();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                BasicFileAttributes attributes = readAttributes(file);
+                if (attributes == null || !attributes.isRegularFile()
+                        || attributes.lastModifiedTime().toMillis() < changedSinceMillis
+                        || exclusionPolicy.excludes(file)) {
+                    continue;
+                }
+                int priority = isHighRisk(file) ? PRIORITY_HIGH_RISK : PRIORITY_MODIFIED;
+                if (!enqueue(file, priority, now)) {
+                    return false;
+                }
+            }
+        } catch (IOException e) {
+            // Gone or unreadable: nothing left to rescan there.
+            logger.debug("Real-time rescan of {} failed: {}", directory, e.getMessage());
+        }
+        return true;
+    }
+
+    // ── scan threads ───────────────────────────────────────────────────
+
+    private void scanLoop() {
+        while (running) {
+            Task task;
+            try {
+                task = queue.poll(MAX_POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (task == null) {
+                continue;
+            }
+            // Released before scanning, so a write during the scan queues
+            // the file again.
+            queued.remove(task.file());
+            scan(task);
+        }
+    }
+
+    private void scan(Task task) {
+        BasicFileAttributes attributes = readAttributes(task.file());
+        if (attributes == null || !attributes.isRegularFile()) {
+            return;
+        }
+        try {
+            ScanResult result = scanner.scan(task.file().toFile());
+            long latency = System.nanoTime() - task.firstSeenNanos();
+            scanned.increment();
+            latencyNanos.add(latency);
+            maxLatencyNanos.accumulateAndGet(latency, Math::max);
+            if (result != null && (result.isInfected() || "MALICIOUS".equals(result.getVerdict()))) {
+                detections.increment();
+                logger.warn("Real-time protection: threat in {} ({})", task.file(), result.getThreatType());
+            }
+        } catch (RuntimeException e) {
+            failures.increment();
+            logger.error("Real-time scan of {} failed: {}", task.file(), e.getMessage());
+        }
+    }
+
+    private static BasicFileAttributes readAttributes(Path file) {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static boolean isHighRisk(Path file) {
+        Path name = file.getFileName();
+        if (name == null) {
+            return false;
+        }
+        String fileName = name.toString();
+        int dot = fileName.lastIndexOf('.');
+        return dot >= 0 && SecurityServiceImpl.SUSPICIOUS_EXTENSIONS.contains(
+                fileName.substring(dot).toLowerCase(Locale.ROOT));
+    }
+
+    private static void joinQuietly(Thread thread) {
+        if (thread == null) {
+            return;
+        }
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
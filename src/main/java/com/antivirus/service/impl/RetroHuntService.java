@@ -0,0 +1,242 @@
+package com.antivirus.service.impl;
+
+import com.antivirus.repository.ScanResultRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Retro-hunt: when a threat-intel refresh adds malicious hashes, flags
+ * past scan results whose stored content hash matches one of them, so a
+ * file scanned CLEAN last week is reported as soon as its hash is listed,
+ * without rescanning anything from disk.
+ *
+ * - ThreatIntelSignatureService hands over each batch of newly added
+ * digests; they queue here and a single background thread joins them
+ * against scan_results.content_sha256 (indexed, see V9).
+ * - Work is bounded on both sides: app.retro-hunt.hash-batch-size hashes
+ * per query, and matching rows are read and updated
+ * app.retro-hunt.row-batch-size ids at a time by keyset paging, so a hash
+ * seen in millions of past results never loads them all at once.
+ * - The queue holds at most app.retro-hunt.max-pending-hashes digests. A
+ * refresh that would overflow it (typically the first full feed import)
+ * is dropped and replaced by one sweep over every hashed result, checked
+ * against the current signature set page by page.
+ * - Matches get the same verdict scanFile() gives an exact hash match,
+ * plus a RETRO_HUNT_MATCH signal saying how it was found.
+ */
+@Service
+public class RetroHuntService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RetroHuntService.class);
+
+    private static final String RETRO_HUNT_DETAILS = "Known malware signature detected (retro-hunt after signature refresh)";
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    @Autowired
+    private ScanResultRepository scanResultRepository;
+
+    @Autowired
+    private ThreatIntelSignatureService threatIntelSignatureService;
+
+    @Value("${app.retro-hunt.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${app.retro-hunt.hash-batch-size:500}")
+    private int hashBatchSize = 500;
+
+    @Value("${app.retro-hunt.row-batch-size:1000}")
+    private int rowBatchSize = 1000;
+
+    @Value("${app.retro-hunt.max-pending-hashes:1000000}")
+    private int maxPendingHashes = 1_000_000;
+
+    private final Queue<byte[]> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    // Set when a batch was dropped because the queue was full; the next
+    // run sweeps every hashed result instead of joining the queue.
+    private final AtomicBoolean sweepNeeded = new AtomicBoolean();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    private final LongAdder huntedHashes = new LongAdder();
+    private final LongAdder sweptResults = new LongAdder();
+    private final LongAdder flaggedResults = new LongAdder();
+    private volatile Instant lastRun;
+    private volatile long lastDurationMillis;
+
+    private final ExecutorService huntExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "retro-hunt");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    void init() {
+        if (enabled) {
+            threatIntelSignatureService.addSignatureListener(this::enqueue);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        huntExecutor.shutdownNow();
+    }
+
+    /** Queues newly added digests and makes sure a hunt is scheduled. */
+    void enqueue(List<byte[]> digests) {
+        if (digests.isEmpty()) {
+            return;
+        }
+        if (pendingCount.get() + digests.size() > maxPendingHashes) {
+            sweepNeeded.set(true);
+        } else {
+            pending.addAll(digests);
+            pendingCount.addAndGet(digests.size());
+        }
+        schedule();
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true) && !huntExecutor.isShutdown()) {
+            huntExecutor.submit(this::run);
+        }
+    }
+
+    // One scheduled hunt. A failure (database down) drops this run's
+    // batch and waits for the next refresh instead of retrying in a loop.
+    private void run() {
+        boolean succeeded = false;
+        try {
+            hunt();
+            succeeded = true;
+        } catch (RuntimeException e) {
+            logger.warn("Retro-hunt failed: {}", e.getMessage());
+        } finally {
+            scheduled.set(false);
+        }
+        // Anything queued after the last poll would otherwise wait for
+        // the next refresh.
+        if (succeeded && (!pending.isEmpty() || sweepNeeded.get())) {
+            schedule();
+        }
+    }
+
+    /**
+     * Processes everything queued so far on the calling thread. Returns
+     * the number of results flagged.
+     */
+    int hunt() {
+        long start = System.nanoTime();
+        int flagged = 0;
+        if (sweepNeeded.getAndSet(false)) {
+            // The sweep checks against the full current set, which
+            // already covers every queued digest.
+            drainPending(Integer.MAX_VALUE);
+            flagged += sweep();
+        }
+        List<byte[]> batch;
+        while (!(batch = drainPending(hashBatchSize)).isEmpty()) {
+            flagged += huntBatch(batch);
+        }
+        lastRun = Instant.now();
+        lastDurationMillis = (System.nanoTime() - start) / 1_000_000;
+        if (flagged > 0) {
+            logger.warn("Retro-hunt flagged {} past scan result(s) as known malware", flagged);
+        }
+        return flagged;
+    }
+
+    // Joins one batch of digests against the content hash index.
+    private int huntBatch(List<byte[]> digests) {
+        List<String> hashes = digests.stream().map(HEX::formatHex).toList();
+        int flagged = 0;
+        long afterId = 0;
+        while (true) {
+            List<Long> ids = scanResultRepository.findRetroHuntMatches(hashes, afterId,
+                    PageRequest.of(0, rowBatchSize));
+            if (ids.isEmpty()) {
+                break;
+            }
+            flagged += scanResultRepository.flagKnownMalicious(ids, RETRO_HUNT_DETAILS);
+            if (ids.size() < rowBatchSize) {
+                break;
+            }
+            afterId = ids.get(ids.size() - 1);
+        }
+        huntedHashes.add(hashes.size());
+        flaggedResults.add(flagged);
+        return flagged;
+    }
+
+    // Overflow fallback: every hashed, non-malicious result against the
+    // current signature set, one page at a time.
+    private int sweep() {
+        logger.info("Retro-hunt queue overflowed; sweeping all hashed scan results");
+        int flagged = 0;
+        long afterId = 0;
+        while (true) {
+            List<ScanResultRepository.HashedResult> page = scanResultRepository.findHashedResultsAfter(afterId,
+                    PageRequest.of(0, rowBatchSize));
+            if (page.isEmpty()) {
+                break;
+            }
+            List<Long> matches = page.stream()
+                    .filter(result -> threatIntelSignatureService.isKnownMalicious(result.getContentSha256()))
+                    .map(ScanResultRepository.HashedResult::getId)
+                    .toList();
+            if (!matches.isEmpty()) {
+                flagged += scanResultRepository.flagKnownMalicious(matches, RETRO_HUNT_DETAILS);
+            }
+            sweptResults.add(page.size());
+            if (page.size() < rowBatchSize) {
+                break;
+            }
+            afterId = page.get(page.size() - 1).getId();
+        }
+        flaggedResults.add(flagged);
+        return flagged;
+    }
+
+    private List<byte[]> drainPending(int max) {
+        List<byte[]> batch = new ArrayList<>(Math.min(max, Math.max(0, pendingCount.get())));
+        byte[] digest;
+        while (batch.size() < max && (digest = pending.poll()) != null) {
+            batch.add(digest);
+        }
+        pendingCount.addAndGet(-batch.size());
+        return batch;
+    }
+
+    /** Queue depth, totals since startup and the last run's timing. */
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        status.put("pendingHashes", Math.max(0, pendingCount.get()));
+        status.put("huntedHashes", huntedHashes.sum());
+        status.put("sweptResults", sweptResults.sum());
+        status.put("flaggedResults", flaggedResults.sum());
+        status.put("lastRun", lastRun != null ? lastRun.toString() : null);
+        status.put("lastDurationMillis", lastDurationMillis);
+        return status;
+    }
+}
@@ -0,0 +1,107 @@
+package com.antivirus.service.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The exclusion rules every scan type checks: the system scan for each
+ * directory and file it walks, directory scans and directory and archive
+ * jobs for each file, and real-time protection for what it watches.
+ *
+ * Rules come from app.scan.exclusions.rules (syntax in ExclusionRules) and
+ * are compiled once; update() compiles a new set and swaps it in whole, so
+ * a running scan sees either the old rules or the new ones, never a mix.
+ * Updated rules last until the next restart; the configured ones apply
+ * again after that.
+ */
+@Component
+public class ScanExclusionPolicy {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScanExclusionPolicy.class);
+
+    /**
+     * Default for app.scan.exclusions.rules: Linux pseudo file systems,
+     * Windows system directories at a drive root, and OS metadata files.
+     */
+    static final String DEFAULT_RULES = "prefix:/proc,prefix:/sys,"
+            + "?:/windows/**,?:/program files/**,?:/program files (x86)/**,?:/programdata/**,"
+            + "?:/recovery/**,?:/config.msi/**,?:/documents and settings/**,"
+            + "?:/$recycle.bin/**,?:/system volume information/**,"
+            + "thumbs.db,desktop.ini,.ds_store";
+
+    private volatile ExclusionRules rules;
+    private volatile Instant updatedAt;
+    private volatile boolean updatedAtRuntime;
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder excluded = new LongAdder();
+
+    public ScanExclusionPolicy(@Value("${app.scan.exclusions.rules:" + DEFAULT_RULES + "}") String rules) {
+        this.rules = ExclusionRules.compile(split(rules));
+        this.updatedAt = Instant.now();
+    }
+
+    /** True if path (file or directory) is excluded from scanning. */
+    public boolean excludes(Path path) {
+        return excludes(path.toString());
+    }
+
+    public boolean excludes(CharSequence path) {
+        lookups.increment();
+        boolean match = rules.excludes(path);
+        if (match) {
+            excluded.increment();
+        }
+        return match;
+    }
+
+    public List<String> rules() {
+        return rules.rules();
+    }
+
+    /**
+     * Replaces every rule with newRules.
+     *
+     * @throws IllegalArgumentException if a rule does not compile; the
+     *                                  current rules stay in place
+     */
+    public void update(List<String> newRules) {
+        ExclusionRules compiled = ExclusionRules.compile(newRules);
+        rules = compiled;
+        updatedAt = Instant.now();
+        updatedAtRuntime = true;
+        logger.info("Scan exclusion rules updated: {} rules", compiled.rules().size());
+    }
+
+    public Map<String, Object> status() {
+        ExclusionRules current = rules;
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("rules", current.rules());
+        status.put("source", updatedAtRuntime ? "admin" : "configuration");
+        status.put("updatedAt", updatedAt.toString());
+        status.put("compiled", current.shape());
+        status.put("lookups", lookups.sum());
+        status.put("excluded", excluded.sum());
+        return status;
+    }
+
+    static List<String> split(String rules) {
+        if (rules == null || rules.isBlank()) {
+            return List.of();
+        }
+        return Arrays.stream(rules.split(","))
+                .map(String::trim)
+                .filter(rule -> !rule.isEmpty())
+                .toList();
+    }
+}
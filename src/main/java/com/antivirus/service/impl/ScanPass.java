@@ -0,0 +1,490 @@
+package com.antivirus.service.impl;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+
+/**
+ * One sequential read of a file, fanned out to every content detector that
+ * scanFile() needs.
+ *
+ * scanFile() used to open the same file up to seven times (hash, header,
+ * rootkit prefix, ransomware text, code patterns, and the zip inspector
+ * twice). Each byte now goes through update() exactly once, which feeds:
+ * - the SHA-256 digest,
+ * - a fixed-size header buffer (magic bytes + rootkit byte signatures),
+ * - an incremental UTF-8 decoder driving the ransomware, code and kernel
+ * text patterns over the same bounded sliding window the old per-detector
+ * readers each kept for themselves.
+ *
+ * The text patterns are gated by a LiteralPrefilter: decoded chars go
+ * through its automaton once, and a pattern's regex only runs when one of
+ * its literal anchors is inside the current window, starting at most
+ * maxWidth chars before the first such anchor.
+ *
+ * Matching is incremental. Each pattern remembers where its next search
+ * has to resume (a failed search over [start, end) rules out every match
+ * starting before end - maxWidth + 1), patterns retire once they match or
+ * their group is decided, and the window is only kept as wide as the
+ * widest still-live pattern needs. For the bounded patterns that is a few
+ * hundred chars of overlap per chunk however large maxWindowChars is.
+ *
+ * Unbounded patterns (\s*, .*) can't be resumed by width, but their
+ * anchor usually sits at a fixed, small distance from the match start
+ * (PatternShape.maxLead). Those are tried only at the start positions
+ * leading up to each anchor occurrence, with lookingAt(); an occurrence is
+ * kept for the next chunk only if the attempt ran into the end of the
+ * window (hitEnd), i.e. more text could still complete it. As before, a
+ * match can never be longer than maxWindowChars.
+ *
+ * Archive inspection reads the same stream through inspect(), so a zip is
+ * parsed while its bytes are being hashed instead of in a second pass.
+ *
+ * Not thread-safe: one instance per scanned file.
+ */
+final class ScanPass {
+
+    // Large enough for the rootkit binary-signature check, which only ever
+    // looked at the first 4 KB; the masquerade check needs just 8 bytes.
+    static final int HEADER_BYTES = 4096;
+
+    private static final int CHUNK_SIZE = 8192;
+
+    private final long maxPatternScanChars;
+    private final int maxWindowChars;
+    private final int strongMatchesToStop;
+    private final LiteralPrefilter prefilter;
+
+    private final MessageDigest sha256;
+    private final byte[] header = new byte[HEADER_BYTES];
+    private int headerLength;
+    private long totalBytes;
+
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final ByteBuffer pendingBytes = ByteBuffer.allocate(CHUNK_SIZE);
+    private final CharBuffer decodedChars = CharBuffer.allocate(CHUNK_SIZE);
+    private final StringBuilder window;
+    // Absolute char offset of window[0]; grows as the window is trimmed.
+    private long windowStart;
+    private long charsRead;
+    private boolean textDone;
+    private boolean finished;
+
+    private boolean ransomwareMatched;
+    private boolean kernelMatched;
+    private boolean codePatternsDone;
+    private final Set<String> strongMatches = new LinkedHashSet<>();
+    private final Set<String> weakMatches = new LinkedHashSet<>();
+
+    // Prefilter state, indexed like DetectionPatterns.TEXT_PATTERNS.
+    // earliestHit is only trusted while it is still inside the window; once
+    // trimmed away it stays stale until the pattern's anchors have left the
+    // window entirely, and the regex then runs from the window start.
+    private int automatonState = LiteralPrefilter.START_STATE;
+    private final long[] earliestHit;
+    private final long[] latestHit;
+    // Absolute offset below which no match of the pattern can still start.
+    private final long[] resumeAt;
+    private final boolean[] matched;
+    private final Matcher[] matchers;
+    // Anchor occurrences still worth retrying for the anchor-led
+    // (unbounded width, bounded lead) patterns; null for all others.
+    private final long[][] pendingAnchors;
+    private final int[] pendingCount;
+    private final LiteralPrefilter.HitSink hitSink = this::recordHit;
+
+    ScanPass(long maxPatternScanChars, int maxWindowChars, int strongMatchesToStop) {
+        this(maxPatternScanChars, maxWindowChars, strongMatchesToStop, DetectionPatterns.TEXT_PREFILTER);
+    }
+
+    /** prefilter must be built over DetectionPatterns.TEXT_PATTERNS. */
+    ScanPass(long maxPatternScanChars, int maxWindowChars, int strongMatchesToStop, LiteralPrefilter prefilter) {
+        this.maxPatternScanChars = maxPatternScanChars;
+        this.maxWindowChars = maxWindowChars;
+        this.strongMatchesToStop = strongMatchesToStop;
+        this.prefilter = prefilter;
+        this.window = new StringBuilder(maxWindowChars + CHUNK_SIZE);
+        int patternCount = prefilter.size();
+        this.earliestHit = new long[patternCount];
+        this.latestHit = new long[patternCount];
+        this.resumeAt = new long[patternCount];
+        this.matched = new boolean[patternCount];
+        this.matchers = new Matcher[patternCount];
+        this.pendingAnchors = new long[patternCount][];
+        this.pendingCount = new int[patternCount];
+        for (int p = 0; p < patternCount; p++) {
+            if (isAnchorLed(prefilter.shape(p))) {
+                pendingAnchors[p] = new long[8];
+            }
+        }
+        Arrays.fill(earliestHit, -1);
+        Arrays.fill(latestHit, -1);
+        try {
+            this.sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java SE implementation is required to ship SHA-256.
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Wraps a raw stream so every byte read through it, by whichever
+     * consumer (a ZipInputStream, or a plain drain loop), is also fed to
+     * this pass exactly once.
+     */
+    InputStream inspect(InputStream in) {
+        return new InspectingInputStream(in, this);
+    }
+
+    void update(byte[] bytes, int offset, int length) {
+        if (length <= 0) {
+            return;
+        }
+        sha256.update(bytes, offset, length);
+        totalBytes += length;
+
+        if (headerLength < HEADER_BYTES) {
+            int copied = Math.min(length, HEADER_BYTES - headerLength);
+            System.arraycopy(bytes, offset, header, headerLength, copied);
+            headerLength += copied;
+        }
+
+        if (!textDone) {
+            decodeAndMatch(bytes, offset, length);
+        }
+    }
+
+    /** Flushes any partially decoded text. Must be called once, after the last update(). */
+    void finish() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        if (!textDone) {
+            pendingBytes.flip();
+            drainDecoder(true);
+            decoder.flush(decodedChars);
+            matchDecodedChars();
+        }
+        textDone = true;
+    }
+
+    byte[] sha256Digest() {
+        return sha256.digest();
+    }
+
+    long totalBytes() {
+        return totalBytes;
+    }
+
+    byte[] header(int maxBytes) {
+        return Arrays.copyOf(header, Math.min(maxBytes, headerLength));
+    }
+
+    boolean ransomwareTextMatched() {
+        return ransomwareMatched;
+    }
+
+    boolean kernelTextMatched() {
+        return kernelMatched;
+    }
+
+    Set<String> strongMatches() {
+        return Collections.unmodifiableSet(strongMatches);
+    }
+
+    Set<String> weakMatches() {
+        return Collections.unmodifiableSet(weakMatches);
+    }
+
+    private void decodeAndMatch(byte[] bytes, int offset, int length) {
+        int position = offset;
+        int end = offset + length;
+        while (position < end && !textDone) {
+            int copied = Math.min(pendingBytes.remaining(), end - position);
+            pendingBytes.put(bytes, position, copied);
+            position += copied;
+            pendingBytes.flip();
+            drainDecoder(false);
+            pendingBytes.compact();
+        }
+    }
+
+    private void drainDecoder(boolean endOfInput) {
+        CoderResult result;
+        do {
+            result = decoder.decode(pendingBytes, decodedChars, endOfInput);
+            matchDecodedChars();
+        } while (result.isOverflow() && !textDone);
+    }
+
+    // Append the new chunk, run every still-open pattern group from its
+    // resume offset, then trim the window to the overlap the live patterns
+    // need (never more than maxWindowChars) so matches spanning a chunk
+    // boundary are still found.
+    private void matchDecodedChars() {
+        if (decodedChars.position() == 0) {
+            return;
+        }
+        decodedChars.flip();
+        if (charsRead >= maxPatternScanChars) {
+            decodedChars.clear();
+            textDone = true;
+            return;
+        }
+        charsRead += decodedChars.remaining();
+        int appendedFrom = window.length();
+        window.append(decodedChars);
+        decodedChars.clear();
+        automatonState = prefilter.scan(window, appendedFrom, window.length(), windowStart, automatonState, hitSink);
+
+        if (!ransomwareMatched) {
+            ransomwareMatched = anyMatch(DetectionPatterns.RANSOMWARE_FROM, DetectionPatterns.STRONG_FROM);
+        }
+        if (!codePatternsDone) {
+            collectMatches(DetectionPatterns.STRONG_FROM, DetectionPatterns.WEAK_FROM, strongMatches);
+            collectMatches(DetectionPatterns.WEAK_FROM, DetectionPatterns.KERNEL_FROM, weakMatches);
+            // Strong matches alone already cross the MALICIOUS threshold;
+            // the old scorePatterns() stopped reading at this point too.
+            codePatternsDone = strongMatches.size() >= strongMatchesToStop;
+        }
+        if (!kernelMatched) {
+            kernelMatched = anyMatch(DetectionPatterns.KERNEL_FROM, prefilter.size());
+        }
+
+        if (ransomwareMatched && codePatternsDone && kernelMatched) {
+            textDone = true;
+            return;
+        }
+
+        // Trimming shifts the whole StringBuilder, so let the window grow to
+        // twice the needed overlap (at least a chunk more) before paying for
+        // that, which keeps the copy amortized O(1) per char. The extra
+        // chars cost no regex time since every search starts at resumeAt.
+        int keep = liveOverlap();
+        if (window.length() > keep + Math.max(keep, CHUNK_SIZE)) {
+            int trimmed = window.length() - keep;
+            window.delete(0, trimmed);
+            windowStart += trimmed;
+        }
+    }
+
+    // The longest tail of the window any live pattern could still need:
+    // a match of width w that ends in the next chunk starts at most w - 1
+    // chars before the current end.
+    private int liveOverlap() {
+        int keep = 0;
+        for (int p = 0; p < matched.length && keep < maxWindowChars; p++) {
+            if (isLive(p)) {
+                keep = Math.max(keep, overlapWidth(p) - 1);
+            }
+        }
+        return keep;
+    }
+
+    private boolean isLive(int p) {
+        if (p < DetectionPatterns.STRONG_FROM) {
+            return !ransomwareMatched;
+        }
+        if (p < DetectionPatterns.KERNEL_FROM) {
+            return !codePatternsDone && !matched[p];
+        }
+        return !kernelMatched;
+    }
+
+    private int overlapWidth(int p) {
+        PatternShape shape = prefilter.shape(p);
+        if (shape.bounded()) {
+            return Math.min(shape.maxWidth(), maxWindowChars);
+        }
+        if (pendingAnchors[p] != null) {
+            // Enough to re-enter the earliest pending occurrence, plus room
+            // for the lead of an anchor that straddles the next chunk.
+            long needed = shape.maxLead() + longestAnchor(shape);
+            long windowEnd = windowStart + window.length();
+            for (int i = 0; i < pendingCount[p]; i++) {
+                needed = Math.max(needed, windowEnd - pendingAnchors[p][i] + shape.maxLead() + 1);
+            }
+            return (int) Math.min(needed, maxWindowChars);
+        }
+        return maxWindowChars;
+    }
+
+    private static boolean isAnchorLed(PatternShape shape) {
+        return shape.anchored() && !shape.bounded() && shape.maxLead() != PatternShape.UNBOUNDED;
+    }
+
+    private static int longestAnchor(PatternShape shape) {
+        int longest = 0;
+        for (String anchor : shape.anchors()) {
+            longest = Math.max(longest, anchor.length());
+        }
+        return longest;
+    }
+
+    private boolean anyMatch(int from, int to) {
+        for (int p = from; p < to; p++) {
+            if (matches(p)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void collectMatches(int from, int to, Set<String> found) {
+        for (int p = from; p < to; p++) {
+            if (!matched[p] && matches(p)) {
+                found.add(prefilter.pattern(p).pattern());
+            }
+        }
+    }
+
+    private boolean matches(int p) {
+        PatternShape shape = prefilter.shape(p);
+        if (pendingAnchors[p] != null) {
+            return matchesFromAnchors(p, shape);
+        }
+        int width = overlapWidth(p);
+        long windowEnd = windowStart + window.length();
+        long searchFrom = Math.max(windowStart, resumeAt[p]);
+        if (shape.anchored()) {
+            if (latestHit[p] < searchFrom) {
+                // no anchor left where a new match could start, so no
+                // match either
+                return false;
+            }
+            if (earliestHit[p] >= windowStart) {
+                searchFrom = Math.max(searchFrom, earliestHit[p] - width);
+            }
+        }
+        Matcher matcher = matcher(p);
+        matcher.region((int) (searchFrom - windowStart), window.length());
+        if (matcher.find()) {
+            matched[p] = true;
+            return true;
+        }
+        // Any match starting this far back would have ended inside the
+        // text just searched.
+        resumeAt[p] = Math.max(resumeAt[p], windowEnd - width + 1);
+        return false;
+    }
+
+    private boolean matchesFromAnchors(int p, PatternShape shape) {
+        long[] pending = pendingAnchors[p];
+        int kept = 0;
+        Matcher matcher = matcher(p);
+        for (int i = 0; i < pendingCount[p]; i++) {
+            long anchor = pending[i];
+            boolean mayStillMatch = false;
+            for (long start = Math.max(windowStart, anchor - shape.maxLead()); start <= anchor; start++) {
+                matcher.region((int) (start - windowStart), window.length());
+                if (matcher.lookingAt()) {
+                    matched[p] = true;
+                    pendingCount[p] = 0;
+                    return true;
+                }
+                mayStillMatch |= matcher.hitEnd();
+            }
+            if (mayStillMatch) {
+                pending[kept++] = anchor;
+            }
+        }
+        pendingCount[p] = kept;
+        return false;
+    }
+
+    private Matcher matcher(int p) {
+        Matcher matcher = matchers[p];
+        if (matcher == null) {
+            matcher = prefilter.pattern(p).matcher(window)
+                    .useTransparentBounds(true)
+                    .useAnchoringBounds(false);
+            matchers[p] = matcher;
+        }
+        // reset() drops the region but keeps the bounds settings above
+        return matcher.reset(window);
+    }
+
+    private void recordHit(int p, long anchorStart) {
+        if (matched[p]) {
+            return;
+        }
+        if (latestHit[p] < windowStart) {
+            earliestHit[p] = anchorStart;
+        }
+        latestHit[p] = anchorStart;
+        long[] pending = pendingAnchors[p];
+        if (pending != null) {
+            if (pendingCount[p] == pending.length) {
+                pending = Arrays.copyOf(pending, pending.length * 2);
+                pendingAnchors[p] = pending;
+            }
+            pending[pendingCount[p]++] = anchorStart;
+        }
+    }
+
+    private static final class InspectingInputStream extends FilterInputStream {
+        private final ScanPass pass;
+        private final byte[] single = new byte[1];
+
+        InspectingInputStream(InputStream in, ScanPass pass) {
+            super(in);
+            this.pass = pass;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = in.read();
+            if (value != -1) {
+                single[0] = (byte) value;
+                pass.update(single, 0, 1);
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = in.read(b, off, len);
+            if (read > 0) {
+                pass.update(b, off, read);
+            }
+            return read;
+        }
+
+        // Skipped bytes still have to be hashed, so read through them
+        // instead of letting FilterInputStream bypass the pass.
+        @Override
+        public long skip(long n) throws IOException {
+            byte[] scratch = new byte[(int) Math.min(Math.max(n, 0), CHUNK_SIZE)];
+            long skipped = 0;
+            while (skipped < n) {
+                int read = read(scratch, 0, (int) Math.min(scratch.length, n - skipped));
+                if (read == -1) {
+                    break;
+                }
+                skipped += read;
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,387 @@
+package com.antivirus.service.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.task.TaskDecorator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * Three-stage scan pipeline: read → analyze → persist.
+ *
+ * - read: a few I/O threads prefetch each submitted file's bytes into
+ * memory, bounded by a shared byte budget. Files larger than the
+ * per-file prefetch limit (or that fail to read) go through with no
+ * bytes and the analyzer reads them itself, exactly as before.
+ * - analyze: CPU threads run detection over the prefetched bytes. A file
+ * whose analysis throws anything, Errors included, is logged and handed
+ * to the persister as the failure result the caller supplies, so one bad
+ * file can neither stop the scan nor go uncounted.
+ * - persist: one thread hands results to the persister in batches
+ * (flushed on size, or after a short idle), so JPA saves and scan-log
+ * writes no longer sit between two detections.
+ *
+ * Every hand-off is a bounded queue and every put() blocks, so a slow
+ * database fills the persist queue, stalls the analyzers, then the
+ * readers, and finally submit(): backpressure all the way up to the
+ * walker instead of unbounded buffering.
+ *
+ * One instance per scan run; its threads end once finish() has drained
+ * everything. Not reusable.
+ */
+final class ScanPipeline<R> {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScanPipeline.class);
+
+    // How long the persister waits for more results before flushing a
+    // partial batch, so progress stays visible on slow trickles.
+    private static final long PERSIST_IDLE_FLUSH_MS = 200;
+
+    /** Sizing knobs; see app.scan.pipeline.* in application.properties. */
+    record Settings(int readerThreads, int analyzerThreads, int queueCapacity, int persistBatchSize,
+            int maxPrefetchBytes, int prefetchBudgetBytes) {
+    }
+
+    private record Job(Path path, byte[] bytes, int reserved) {
+    }
+
+    /** How the read stage loads a file's bytes. */
+    interface FileReader {
+        byte[] read(Path path) throws IOException;
+    }
+
+    private static final Path END_OF_FILES = Path.of("");
+    private static final Job END_OF_JOBS = new Job(null, null, 0);
+    private static final Object END_OF_RESULTS = new Object();
+
+    private final String name;
+    private final Settings settings;
+    private final BiFunction<Path, byte[], R> analyzer;
+    private final BiFunction<Path, Throwable, R> failure;
+    private final Consumer<List<R>> persister;
+
+    private final BlockingQueue<Path> readQueue;
+    private final BlockingQueue<Job> analyzeQueue;
+    private final BlockingQueue<Object> persistQueue;
+    private final Semaphore prefetchBudget;
+
+    private final Stage readStage;
+    private final Stage analyzeStage;
+    private final Stage persistStage;
+    private final AtomicInteger readersRunning;
+    private final AtomicInteger analyzersRunning;
+    private final List<Thread> threads = new ArrayList<>();
+    private final AtomicBoolean cancelled = new AtomicBoolean(false);
+    private final long startedAt = System.nanoTime();
+    private volatile long finishedAt;
+    // Replaced in tests to make a read fail.
+    private FileReader fileReader = Files::readAllBytes;
+
+    ScanPipeline(String name, Settings settings, TaskDecorator taskDecorator,
+            BiFunction<Path, byte[], R> analyzer, BiFunction<Path, Throwable, R> failure,
+            Consumer<List<R>> persister) {
+        this.name = name;
+        this.settings = settings;
+        this.analyzer = analyzer;
+        this.failure = failure;
+        this.persister = persister;
+        this.readQueue = new ArrayBlockingQueue<>(settings.queueCapacity());
+        this.analyzeQueue = new ArrayBlockingQueue<>(settings.queueCapacity());
+        this.persistQueue = new ArrayBlockingQueue<>(settings.queueCapacity());
+        this.prefetchBudget = new Semaphore(settings.prefetchBudgetBytes());
+        this.readStage = new Stage(readQueue, settings.readerThreads());
+        this.analyzeStage = new Stage(analyzeQueue, settings.analyzerThreads());
+        this.persistStage = new Stage(persistQueue, 1);
+        this.readersRunning = new AtomicInteger(settings.readerThreads());
+        this.analyzersRunning = new AtomicInteger(settings.analyzerThreads());
+
+        for (int i = 1; i <= settings.readerThreads(); i++) {
+            start(name + "-reader-" + i, taskDecorator.decorate(this::runReader));
+        }
+        for (int i = 1; i <= settings.analyzerThreads(); i++) {
+            start(name + "-analyzer-" + i, taskDecorator.decorate(this::runAnalyzer));
+        }
+        start(name + "-persister", taskDecorator.decorate(this::runPersister));
+    }
+
+    private void start(String threadName, Runnable body) {
+        Thread thread = new Thread(body, threadName);
+        thread.setDaemon(true);
+        threads.add(thread);
+        thread.start();
+    }
+
+    /** Queues a file for scanning; blocks while the pipeline is saturated. */
+    void submit(Path file) throws InterruptedException {
+        if (!cancelled.get()) {
+            readQueue.put(file);
+        }
+    }
+
+    /**
+     * Queues bytes that are already in memory (an entry streamed out of an
+     * uploaded archive) straight to the analyzers under path's name,
+     * skipping the read stage. They count against the prefetch budget like
+     * a prefetched file, so this blocks while the analyzers are behind.
+     */
+    void submit(Path path, byte[] bytes) throws InterruptedException {
+        if (cancelled.get()) {
+            return;
+        }
+        int reserved = Math.min(bytes.length, settings.prefetchBudgetBytes());
+        prefetchBudget.acquire(reserved);
+        try {
+            analyzeQueue.put(new Job(path, bytes, reserved));
+        } catch (InterruptedException e) {
+            prefetchBudget.release(reserved);
+            throw e;
+        }
+    }
+
+    /**
+     * Signals that nothing more will be submitted and waits until every
+     * queued file has been analyzed and persisted.
+     */
+    void finish() throws InterruptedException {
+        if (cancelled.get()) {
+            // Readers skip cancelled work anyway; clearing makes room for
+            // the end markers even if the readers were interrupted.
+            readQueue.clear();
+        }
+        for (int i = 0; i < settings.readerThreads(); i++) {
+            readQueue.put(END_OF_FILES);
+        }
+        threads.get(threads.size() - 1).join();
+        logger.info("Scan pipeline {} finished: {}", name, metrics());
+    }
+
+    /** Drops whatever is still queued; finish() then returns promptly. */
+    void cancel() {
+        cancelled.set(true);
+    }
+
+    /** Interrupts every stage thread, e.g. on application shutdown. */
+    void shutdownNow() {
+        cancelled.set(true);
+        threads.forEach(Thread::interrupt);
+    }
+
+    /**
+     * Per-stage queue depth and throughput, shaped for the JSON status
+     * endpoints: {read|analyze|persist: {queueDepth, queueCapacity,
+     * processed, failed, perSecond, busyPercent}}.
+     */
+    Map<String, Object> metrics() {
+        long end = finishedAt != 0 ? finishedAt : System.nanoTime();
+        double elapsedSeconds = Math.max(end - startedAt, 1) / 1e9;
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("read", readStage.snapshot(elapsedSeconds));
+        metrics.put("analyze", analyzeStage.snapshot(elapsedSeconds));
+        metrics.put("persist", persistStage.snapshot(elapsedSeconds));
+        return metrics;
+    }
+
+    private void runReader() {
+        try {
+            while (true) {
+                Path path = readQueue.take();
+                if (path == END_OF_FILES) {
+                    break;
+                }
+                if (cancelled.get()) {
+                    continue;
+                }
+                long started = System.nanoTime();
+                Job job = prefetch(path);
+                readStage.record(started);
+                try {
+                    analyzeQueue.put(job);
+                } catch (InterruptedException e) {
+                    prefetchBudget.release(job.reserved());
+                    throw e;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // As in runAnalyzer: the last reader out always releases the
+            // analyzers, however it ended.
+            if (readersRunning.decrementAndGet() == 0) {
+                try {
+                    for (int i = 0; i < settings.analyzerThreads(); i++) {
+                        analyzeQueue.put(END_OF_JOBS);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    private Job prefetch(Path path) throws InterruptedException {
+        int reserved = 0;
+        try {
+            long size = Files.size(path);
+            if (size > settings.maxPrefetchBytes()) {
+                return new Job(path, null, 0);
+            }
+            reserved = (int) Math.min(size, settings.prefetchBudgetBytes());
+            prefetchBudget.acquire(reserved);
+            return new Job(path, fileReader.read(path), reserved);
+        } catch (IOException | RuntimeException e) {
+            // The analyzer reopens the file and reports the failure the
+            // same way a direct scan would.
+            prefetchBudget.release(reserved);
+            return new Job(path, null, 0);
+        } catch (Error e) {
+            // Typically OutOfMemoryError with the budget's worth of files
+            // in flight: the buffer is garbage by now, so hand the file to
+            // the analyzer unread rather than lose the reader thread.
+            prefetchBudget.release(reserved);
+            logger.warn("Scan pipeline {} could not prefetch {}: {}", name, path, e.toString());
+            return new Job(path, null, 0);
+        }
+    }
+
+    private void runAnalyzer() {
+        try {
+            while (true) {
+                Job job = analyzeQueue.take();
+                if (job == END_OF_JOBS) {
+                    break;
+                }
+                try {
+                    if (cancelled.get()) {
+                        continue;
+                    }
+                    R result = analyze(job);
+                    if (result != null) {
+                        persistQueue.put(result);
+                    }
+                } finally {
+                    prefetchBudget.release(job.reserved());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // Whatever ended this thread, the last analyzer out still
+            // releases the persister, or finish() would wait forever.
+            if (analyzersRunning.decrementAndGet() == 0) {
+                try {
+                    persistQueue.put(END_OF_RESULTS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    private R analyze(Job job) {
+        long started = System.nanoTime();
+        try {
+            R result = analyzer.apply(job.path(), job.bytes());
+            analyzeStage.record(started);
+            return result;
+        } catch (Throwable e) {
+            // Errors too: a StackOverflowError from one file's regex must
+            // not take the analyzer thread down with it.
+            logger.error("Scan pipeline {} failed to analyze {}", name, job.path(), e);
+            analyzeStage.recordFailure(started);
+            return failure.apply(job.path(), e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void runPersister() {
+        List<R> batch = new ArrayList<>(settings.persistBatchSize());
+        try {
+            while (true) {
+                Object next = persistQueue.poll(PERSIST_IDLE_FLUSH_MS, TimeUnit.MILLISECONDS);
+                if (next == END_OF_RESULTS) {
+                    break;
+                }
+                if (next != null) {
+                    batch.add((R) next);
+                }
+                if (batch.size() >= settings.persistBatchSize() || (next == null && !batch.isEmpty())) {
+                    flush(batch);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            flush(batch);
+            finishedAt = System.nanoTime();
+        }
+    }
+
+    private void flush(List<R> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long started = System.nanoTime();
+        try {
+            persister.accept(List.copyOf(batch));
+        } catch (RuntimeException e) {
+            logger.error("Scan pipeline {} failed to persist {} results", name, batch.size(), e);
+        }
+        persistStage.record(started, batch.size());
+        batch.clear();
+    }
+
+    private static final class Stage {
+        private final BlockingQueue<?> queue;
+        private final int threads;
+        private final LongAdder processed = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final AtomicLong busyNanos = new AtomicLong();
+
+        Stage(BlockingQueue<?> queue, int threads) {
+            this.queue = queue;
+            this.threads = threads;
+        }
+
+        void record(long startedNanos) {
+            record(startedNanos, 1);
+        }
+
+        void record(long startedNanos, int items) {
+            processed.add(items);
+            busyNanos.addAndGet(System.nanoTime() - startedNanos);
+        }
+
+        void recordFailure(long startedNanos) {
+            failed.increment();
+            record(startedNanos);
+        }
+
+        Map<String, Object> snapshot(double elapsedSeconds) {
+            long done = processed.sum();
+            Map<String, Object> snapshot = new LinkedHashMap<>();
+            snapshot.put("queueDepth", queue.size());
+            snapshot.put("queueCapacity", queue.size() + queue.remainingCapacity());
+            snapshot.put("processed", done);
+            snapshot.put("failed", failed.sum());
+            snapshot.put("perSecond", Math.round(done / elapsedSeconds));
+            snapshot.put("busyPercent", Math.round(100.0 * busyNanos.get() / 1e9 / (elapsedSeconds * threads)));
+            return snapshot;
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package com.antivirus.service.impl;
+
+import com.antivirus.model.ScanResult;
+import com.antivirus.repository.ScanResultRepository;
+import com.antivirus.service.LogService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write-behind persistence for scan results: scans hand results over and
+ * move on, and a single writer thread saves them in batches.
+ *
+ * - The queue is bounded (app.scan.write-behind.queue-capacity). A full
+ * queue blocks the submitting scan stage rather than growing, so a slow
+ * database slows the scan instead of filling the heap.
+ * - A batch is flushed once it reaches batch-size results or the oldest
+ * of them has waited flush-interval-ms, whichever comes first. Each batch
+ * is one saveAll() in one transaction; with the pooled scan_results_seq
+ * ids (V10) and hibernate.jdbc.batch_size, Hibernate sends it as JDBC
+ * batch inserts instead of one INSERT round trip per row, which IDENTITY
+ * ids used to force.
+ * - flush() waits until everything submitted before it is in the
+ * database (cutting the current batch short rather than waiting out the
+ * interval), so a scan can report itself finished only once its results
+ * are queryable. On shutdown the writer empties the queue before it
+ * stops, and anything left after that is saved on the calling thread,
+ * before the datasource goes away.
+ * - Ids land on the submitted entities when their batch is saved, and
+ * results marked for the scan log are logged then, with their ids.
+ */
+@Service
+public class ScanResultWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScanResultWriter.class);
+
+    // Longest the writer waits on the queue before rechecking for shutdown
+    // or a flush() caller, whatever the flush interval.
+    private static final long MAX_POLL_MILLIS = 50;
+
+    private record Pending(ScanResult result, boolean log) {
+    }
+
+    @Autowired
+    private ScanResultRepository scanResultRepository;
+
+    @Autowired
+    private LogService logService;
+
+    @Value("${app.scan.write-behind.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${app.scan.write-behind.queue-capacity:10000}")
+    private int queueCapacity = 10_000;
+
+    @Value("${app.scan.write-behind.batch-size:500}")
+    private int batchSize = 500;
+
+    @Value("${app.scan.write-behind.flush-interval-ms:200}")
+    private long flushIntervalMillis = 200;
+
+    private BlockingQueue<Pending> queue;
+    private Thread writerThread;
+    private volatile boolean running;
+
+    // submitted counts results accepted; persisted counts those saved (or
+    // given up on), so flush() can wait for persisted to catch up.
+    private final Object progress = new Object();
+    private long submitted;
+    private long persisted;
+    private volatile int flushWaiters;
+
+    private final LongAdder insertedResults = new LongAdder();
+    private final LongAdder failedResults = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder insertNanos = new LongAdder();
+    private volatile int lastBatchSize;
+    private volatile double lastBatchInsertsPerSecond;
+
+    @PostConstruct
+    void start() {
+        queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        writerThread = new Thread(this::run, "scan-result-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        running = false;
+        Thread thread = writerThread;
+        if (thread != null) {
+            // Not interrupted: an interrupt mid-insert can close the
+            // database's file channels. The writer empties the queue and
+            // exits on its own once it sees running is false.
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(30));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // Durable flush: anything still queued (the writer timed out, or
+        // a submit raced the shutdown) is saved here, before the
+        // repository and its datasource shut down.
+        int remaining = drainAndWrite();
+        if (remaining > 0) {
+            logger.info("Saved {} queued scan result(s) on shutdown", remaining);
+        }
+    }
+
+    /**
+     * Queues results for saving; log marks those that also belong in the
+     * scan log. Blocks while the queue is full. Saves on the calling
+     * thread when write-behind is disabled or shut down, or for whatever
+     * is left if the caller is interrupted while waiting for room.
+     */
+    public void submit(List<ScanResult> results, boolean log) {
+        List<Pending> pending = new ArrayList<>(results.size());
+        for (ScanResult result : results) {
+            pending.add(new Pending(result, log));
+        }
+        submitPending(pending);
+    }
+
+    public void submit(ScanResult result, boolean log) {
+        submitPending(List.of(new Pending(result, log)));
+    }
+
+    private void submitPending(List<Pending> pending) {
+        if (!running) {
+            write(pending);
+            return;
+        }
+        for (int i = 0; i < pending.size(); i++) {
+            synchronized (progress) {
+                submitted++;
+            }
+            try {
+                queue.put(pending.get(i));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                synchronized (progress) {
+                    submitted--;
+                }
+                write(pending.subList(i, pending.size()));
+                return;
+            }
+        }
+    }
+
+    /** Waits until every result submitted so far has been saved. */
+    public void flush() throws InterruptedException {
+        synchronized (progress) {
+            long target = submitted;
+            flushWaiters++;
+            try {
+                while (persisted < target && running) {
+                    progress.wait(MAX_POLL_MILLIS);
+                }
+            } finally {
+                flushWaiters--;
+            }
+        }
+        if (!running) {
+            drainAndWrite();
+        }
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(Math.max(1, batchSize));
+        try {
+            while (true) {
+                Pending first = queue.poll(Math.min(flushIntervalMillis, MAX_POLL_MILLIS), TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (!running) {
+                        return;
+                    }
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    // A flush() caller or shutdown cuts the batch short
+                    // instead of waiting out the interval.
+                    if (batch.size() >= batchSize || remaining <= 0 || !running || flushWaiters > 0) {
+                        break;
+                    }
+                    Pending next = queue.poll(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(MAX_POLL_MILLIS)),
+                            TimeUnit.NANOSECONDS);
+                    if (next != null) {
+                        batch.add(next);
+                    }
+                }
+                writeQueued(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writeQueued(batch);
+        }
+    }
+
+    // Saves everything left in the queue on the calling thread; returns
+    // how many results that was.
+    private int drainAndWrite() {
+        List<Pending> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        int size = Math.max(1, batchSize);
+        for (int from = 0; from < remaining.size(); from += size) {
+            writeQueued(remaining.subList(from, Math.min(remaining.size(), from + size)));
+        }
+        return remaining.size();
+    }
+
+    private void writeQueued(List<Pending> batch) {
+        write(batch);
+        synchronized (progress) {
+            persisted += batch.size();
+            progress.notifyAll();
+        }
+    }
+
+    // One saveAll() per batch; a failed batch is retried once, then
+    // dropped with an error rather than wedging the writer.
+    private void write(List<Pending> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<ScanResult> results = new ArrayList<>(batch.size());
+        for (Pending item : batch) {
+            results.add(item.result());
+        }
+        long start = System.nanoTime();
+        boolean saved = false;
+        for (int attempt = 1; attempt <= 2 && !saved; attempt++) {
+            try {
+                scanResultRepository.saveAll(results);
+                saved = true;
+            } catch (RuntimeException e) {
+                logger.warn("Saving {} scan result(s) failed (attempt {}): {}", results.size(), attempt,
+                        e.getMessage());
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if (saved) {
+            insertedResults.add(results.size());
+            batches.increment();
+            insertNanos.add(elapsed);
+            lastBatchSize = results.size();
+            lastBatchInsertsPerSecond = results.size() * 1e9 / Math.max(1, elapsed);
+            for (Pending item : batch) {
+                if (item.log()) {
+                    logService.logScanResult(item.result());
+                }
+            }
+        } else {
+            failedResults.add(results.size());
+            logger.error("Dropped {} scan result(s) after repeated save failures", results.size());
+        }
+    }
+
+    /** Queue depth, totals since startup and insert throughput. */
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        long inserted = insertedResults.sum();
+        long nanos = insertNanos.sum();
+        status.put("enabled", enabled);
+        status.put("queued", queue != null ? queue.size() : 0);
+        status.put("insertedResults", inserted);
+        status.put("failedResults", failedResults.sum());
+        status.put("batches", batches.sum());
+        status.put("lastBatchSize", lastBatchSize);
+        status.put("lastBatchInsertsPerSecond", Math.round(lastBatchInsertsPerSecond));
+        status.put("insertsPerSecond", nanos > 0 ? Math.round(inserted * 1e9 / nanos) : 0);
+        return status;
+    }
+}
@@ -0,0 +1,104 @@
+package com.antivirus.service.impl;
+
+import com.antivirus.model.ScanResult;
+import com.antivirus.model.ScanSummary;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running totals of one bulk scan, counted on the persist stage threads
+ * and written as its ScanSummary when the scan ends.
+ *
+ * Outcomes are counted the way the directory job counts them: infected or
+ * MALICIOUS first, then ERROR/SKIPPED (files that got no content verdict),
+ * then SUSPICIOUS, and everything else CLEAN. stored says whether the
+ * result also got a scan_results row.
+ */
+final class ScanTally {
+
+    enum Outcome { CLEAN, SUSPICIOUS, MALICIOUS, ERROR }
+
+    private final String scanType;
+    private final String ownerUsername;
+    private final String targetName;
+    private final LocalDateTime startedAt = LocalDateTime.now();
+    private final long startNanos = System.nanoTime();
+
+    private final LongAdder files = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder clean = new LongAdder();
+    private final LongAdder suspicious = new LongAdder();
+    private final LongAdder malicious = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder stored = new LongAdder();
+    private final LongAdder storedClean = new LongAdder();
+
+    ScanTally(String scanType, String ownerUsername, String targetName) {
+        this.scanType = scanType;
+        this.ownerUsername = ownerUsername;
+        this.targetName = targetName;
+    }
+
+    static Outcome outcomeOf(ScanResult result) {
+        return outcomeOf(result.getVerdict(), result.isInfected(), result.getThreatType());
+    }
+
+    static Outcome outcomeOf(String verdict, boolean infected, String threatType) {
+        if (infected || "MALICIOUS".equals(verdict)) {
+            return Outcome.MALICIOUS;
+        }
+        if ("ERROR".equals(threatType) || "SKIPPED".equals(threatType)) {
+            return Outcome.ERROR;
+        }
+        if ("SUSPICIOUS".equals(verdict)) {
+            return Outcome.SUSPICIOUS;
+        }
+        return Outcome.CLEAN;
+    }
+
+    void record(ScanResult result, boolean storedRow) {
+        files.increment();
+        Long size = result.getFileSize();
+        if (size != null) {
+            bytes.add(size);
+        }
+        Outcome outcome = outcomeOf(result);
+        switch (outcome) {
+            case CLEAN -> clean.increment();
+            case SUSPICIOUS -> suspicious.increment();
+            case MALICIOUS -> malicious.increment();
+            case ERROR -> errors.increment();
+        }
+        if (storedRow) {
+            stored.increment();
+            if (outcome == Outcome.CLEAN) {
+                storedClean.increment();
+            }
+        }
+    }
+
+    long files() {
+        return files.sum();
+    }
+
+    ScanSummary toSummary() {
+        ScanSummary summary = new ScanSummary();
+        summary.setScanType(scanType);
+        summary.setOwnerUsername(ownerUsername);
+        summary.setTargetName(targetName);
+        summary.setStartedAt(startedAt);
+        summary.setFinishedAt(LocalDateTime.now());
+        summary.setDurationMillis(Duration.ofNanos(System.nanoTime() - startNanos).toMillis());
+        summary.setFilesScanned(files.sum());
+        summary.setBytesScanned(bytes.sum());
+        summary.setCleanFiles(clean.sum());
+        summary.setSuspiciousFiles(suspicious.sum());
+        summary.setMaliciousFiles(malicious.sum());
+        summary.setErrorFiles(errors.sum());
+        summary.setStoredResults(stored.sum());
+        summary.setStoredClean(storedClean.sum());
+        return summary;
+    }
+}
@@ -1,20 +1,27 @@
 package com.antivirus.service.impl;
 
 import com.antivirus.dto.PagedResponse;
+import com.antivirus.dto.ScanHistoryResponse;
 import com.antivirus.model.ScanResult;
+import com.antivirus.model.ScanSummary;
 import com.antivirus.service.SecurityService;
 import jakarta.annotation.PreDestroy;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import com.antivirus.service.SystemMonitorService;
 import com.antivirus.repository.ScanResultRepository;
+import com.antivirus.repository.ScanSummaryRepository;
 import com.antivirus.service.LogService;
+import com.antivirus.util.PathSecurityUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.concurrent.DelegatingSecurityContextRunnable;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -24,29 +31,35 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.io.*;
+import java.nio.channels.ClosedChannelException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.PosixFileAttributeView;
 import java.nio.file.attribute.PosixFilePermission;
+import java.security.DigestInputStream;
 import java.security.MessageDigest;
 import java.time.Duration;
 import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.regex.Pattern;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.util.stream.Stream;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.nio.file.AccessDeniedException;
-import java.nio.file.DirectoryStream;
 
 @Service
 public class SecurityServiceImpl implements SecurityService {
@@ -89,6 +102,110 @@ public class SecurityServiceImpl implements SecurityService {
     @Value("${app.scan.system.result-chunk-size:100}")
     private int systemScanResultChunkSize = 100;
 
+    // Threads the system scan walks the filesystem with (see
+    // ParallelFileWalker). 0 means one per available processor; 1 gives
+    // the old strictly sequential walk. Set via SYSTEM_SCAN_PARALLELISM.
+    // The walker only lists directories and hands files to the scan
+    // pipeline below; reading and detection happen on the pipeline.
+    @Value("${app.scan.system.parallelism:0}")
+    private int systemScanParallelism = 0;
+
+    // Skip index for repeat system scans (see FileManifest): files whose
+    // size and mtime match their last CLEAN scan are not read again. A
+    // full rescan (POST /scan/system?full=true) ignores it and rebuilds it.
+    @Value("${app.scan.system.skip-index.enabled:true}")
+    private boolean systemScanSkipIndexEnabled = true;
+
+    @Value("${app.scan.system.skip-index.file:data/system-scan-manifest.bin}")
+    private String systemScanSkipIndexFile = "data/system-scan-manifest.bin";
+
+    // Scope of the system scan on Linux (see SystemScanScope): mounts of
+    // these file system types are never entered, network file systems
+    // only if skip-network-filesystems is false, and other devices only
+    // with cross-devices=true.
+    @Value("${app.scan.system.excluded-filesystem-types:" + SystemScanScope.DEFAULT_EXCLUDED_TYPES + "}")
+    private String systemScanExcludedFilesystemTypes = SystemScanScope.DEFAULT_EXCLUDED_TYPES;
+
+    @Value("${app.scan.system.skip-network-filesystems:true}")
+    private boolean systemScanSkipNetworkFilesystems = true;
+
+    @Value("${app.scan.system.cross-devices:false}")
+    private boolean systemScanCrossDevices = false;
+
+    // Persistence policy of bulk scans (system, directory, archive): when
+    // true, CLEAN files are only counted in the scan's ScanSummary and get
+    // no scan_results row; SUSPICIOUS, MALICIOUS and ERROR/SKIPPED results
+    // always do. Off by default because retro-hunt can only flag files it
+    // has a row for; with it on, every signature refresh also empties the
+    // system scan's skip index. Single-file scans always store their row.
+    @Value("${app.scan.persistence.aggregate-clean-results:false}")
+    private boolean aggregateCleanResults = false;
+
+    // Sizing of the read → analyze → persist ScanPipeline used by system,
+    // directory-job and server-path scans. analyzer-threads 0 means one
+    // per available processor. Files up to max-prefetch-file-mb are read
+    // into memory by the I/O stage, with at most prefetch-budget-mb held
+    // at once; bigger files are read by the analyzer as before.
+    @Value("${app.scan.pipeline.reader-threads:2}")
+    private int pipelineReaderThreads = 2;
+
+    @Value("${app.scan.pipeline.analyzer-threads:0}")
+    private int pipelineAnalyzerThreads = 0;
+
+    @Value("${app.scan.pipeline.queue-capacity:256}")
+    private int pipelineQueueCapacity = 256;
+
+    @Value("${app.scan.pipeline.persist-batch-size:100}")
+    private int pipelinePersistBatchSize = 100;
+
+    @Value("${app.scan.pipeline.max-prefetch-file-mb:8}")
+    private int pipelineMaxPrefetchFileMb = 8;
+
+    @Value("${app.scan.pipeline.prefetch-budget-mb:64}")
+    private int pipelinePrefetchBudgetMb = 64;
+
+    // Nested archive scanning (zip/jar/war, tar, gzip): how many archive
+    // levels are opened, and the entry and decompressed-byte budgets
+    // shared by every archive inside one scanned file.
+    @Value("${app.scan.archive.max-depth:3}")
+    private int archiveMaxDepth = 3;
+
+    @Value("${app.scan.archive.max-entries:1000}")
+    private int archiveMaxEntries = 1_000;
+
+    @Value("${app.scan.archive.max-uncompressed-mb:500}")
+    private long archiveMaxUncompressedMb = 500;
+
+    // Archive uploads (PUT /scan/archive/{jobId}): entries are scanned as
+    // they are decompressed from the request body. Entries up to
+    // memory-threshold-mb stay in memory; larger ones are spilled to the
+    // job's temp directory. The budgets bound the whole upload.
+    @Value("${app.scan.archive-upload.max-entries:10000}")
+    private int archiveUploadMaxEntries = 10_000;
+
+    @Value("${app.scan.archive-upload.max-uncompressed-mb:4096}")
+    private long archiveUploadMaxUncompressedMb = 4096;
+
+    @Value("${app.scan.archive-upload.memory-threshold-mb:8}")
+    private int archiveUploadMemoryThresholdMb = 8;
+
+    // A job whose upload has not started this long after it was created
+    // is failed and its temp directory deleted.
+    @Value("${app.scan.archive-upload.start-timeout-minutes:15}")
+    private long archiveUploadStartTimeoutMinutes = 15;
+
+    // Chunked uploads (/scan/upload): the largest file one may declare,
+    // how many may be open at once, and how long one may sit idle before
+    // it is dropped and its temp file deleted.
+    @Value("${app.scan.chunked-upload.max-file-mb:4096}")
+    private long chunkedUploadMaxFileMb = 4096;
+
+    @Value("${app.scan.chunked-upload.max-sessions:64}")
+    private int chunkedUploadMaxSessions = 64;
+
+    @Value("${app.scan.chunked-upload.idle-timeout-minutes:30}")
+    private long chunkedUploadIdleTimeoutMinutes = 30;
+
     private final AtomicBoolean systemScanRunning = new AtomicBoolean(false);
     private final AtomicBoolean stopSystemScan = new AtomicBoolean(false);
     private final Object systemScanSessionLock = new Object();
@@ -109,6 +226,13 @@ public class SecurityServiceImpl implements SecurityService {
         return thread;
     });
     private final AtomicInteger systemScanFilesScanned = new AtomicInteger(0);
+    private final AtomicInteger systemScanFilesUnchanged = new AtomicInteger(0);
+    private final AtomicInteger systemScanFilesKnownGood = new AtomicInteger(0);
+    // The running scan's walker pool, so shutdown can interrupt it too.
+    private volatile ForkJoinPool systemScanPool;
+    // The latest system scan's pipeline; kept after the scan ends so the
+    // status endpoint can still report its final stage metrics.
+    private volatile ScanPipeline<FileVerdict> systemScanPipeline;
 
     // Each active system scan gets its own temp directory, and the results
     // are split into ordered JSON chunk files so they can be reloaded later
@@ -139,7 +263,8 @@ public class SecurityServiceImpl implements SecurityService {
         final String id;
         final String ownerUsername;
         final String directoryName;
-        final int totalFiles;
+        // Grows while an archive upload is still streaming in.
+        volatile int totalFiles;
         final Path tempDir;
         final Instant createdAt = Instant.now();
         final AtomicInteger processedFiles = new AtomicInteger(0);
@@ -150,17 +275,27 @@ public class SecurityServiceImpl implements SecurityService {
         final List<ScanResult> results = Collections.synchronizedList(new ArrayList<>());
         volatile DirectoryScanStatus status = DirectoryScanStatus.RUNNING;
         volatile String errorMessage;
-
-        DirectoryScanJob(String id, String ownerUsername, String directoryName, int totalFiles, Path tempDir) {
+        volatile ScanPipeline<FileVerdict> pipeline;
+        // Archive-upload jobs only: set until the upload has been read to
+        // the end, and how many entries were too large to keep in memory.
+        volatile boolean uploading;
+        final AtomicBoolean uploadStarted = new AtomicBoolean(false);
+        final AtomicInteger spilledEntries = new AtomicInteger(0);
+        final ScanTally tally;
+
+        DirectoryScanJob(String id, String ownerUsername, String directoryName, int totalFiles, Path tempDir,
+                String scanType) {
             this.id = id;
             this.ownerUsername = ownerUsername;
             this.directoryName = directoryName;
             this.totalFiles = totalFiles;
             this.tempDir = tempDir;
+            this.tally = new ScanTally(scanType, ownerUsername, directoryName);
         }
     }
 
     private final Map<String, DirectoryScanJob> directoryScanJobs = new ConcurrentHashMap<>();
+    private final Map<String, ChunkedUpload> chunkedUploads = new ConcurrentHashMap<>();
     private static final Duration DIRECTORY_SCAN_JOB_RETENTION = Duration.ofMinutes(15);
 
     private final ExecutorService directoryScanExecutor = Executors.newFixedThreadPool(2, runnable -> {
@@ -181,6 +316,10 @@ public class SecurityServiceImpl implements SecurityService {
     // ── R-06: Signatures updated to SHA-256 (64 hex chars) ──
     // MD5 is cryptographically broken; SHA-256 is the minimum standard
     // used by all modern threat-intel feeds (VirusTotal, MalwareBazaar).
+    // The raw digests from digests() go straight to the signature
+    // snapshot and the verdict cache; no hex string is built per file.
+    // SHA-1 and MD5 are only computed once a feed has listed some, and
+    // then in the same read pass as SHA-256.
     //
     // Known-hash lookups (EICAR plus a live threat-intel feed) are now
     // owned by ThreatIntelSignatureService, a proper Spring bean with
@@ -194,8 +333,43 @@ public class SecurityServiceImpl implements SecurityService {
     @Autowired
     private ThreatIntelSignatureService threatIntelSignatureService;
 
-    // Suspicious file extensions
-    private static final Set<String> SUSPICIOUS_EXTENSIONS = new HashSet<>(Arrays.asList(
+    // Allowlist of stock OS/vendor file hashes, checked before the verdict
+    // cache so known-good files never reach the content detectors.
+    @Autowired
+    private KnownGoodHashService knownGoodHashService;
+
+    // Flags past results when a refresh lists their content hash; only
+    // read here for the definitions status.
+    @Autowired
+    private RetroHuntService retroHuntService;
+
+    // Saves scan results in batches off the scan threads.
+    @Autowired
+    private ScanResultWriter scanResultWriter;
+
+    // Which directories and files scans leave alone; shared by every scan
+    // type and changeable at runtime through the admin API.
+    @Autowired
+    private ScanExclusionPolicy scanExclusionPolicy = new ScanExclusionPolicy(ScanExclusionPolicy.DEFAULT_RULES);
+
+    // One totals row per bulk scan; history reads it next to scan_results.
+    @Autowired
+    private ScanSummaryRepository scanSummaryRepository;
+
+    // Verdicts of the content detectors, shared by every file with the
+    // same bytes. The initializer covers plain-Mockito unit tests, the
+    // same way objectMapper's does.
+    @Autowired
+    private VerdictCache verdictCache = new VerdictCache(VerdictCache.DEFAULT_MAX_ENTRIES);
+
+    // Per-directory summaries for ransomware directory scoring, shared by
+    // every scan thread; defaulted the same way as verdictCache.
+    @Autowired
+    private DirectorySummaryCache directorySummaryCache = new DirectorySummaryCache(
+            DirectorySummaryCache.DEFAULT_MAX_MB, DirectorySummaryCache.DEFAULT_EXPIRE_SECONDS);
+
+    // Suspicious file extensions; real-time protection also scans these first
+    static final Set<String> SUSPICIOUS_EXTENSIONS = new HashSet<>(Arrays.asList(
             ".exe", ".dll", ".bat", ".cmd", ".scr", ".js", ".vbs", ".hta",
             ".sys", ".bin", ".com", ".msi", ".pif", ".gadget", ".msp",
             ".cpl", ".hta", ".msc", ".jar", ".ps1", ".psm1", ".vbe",
@@ -208,28 +382,16 @@ public class SecurityServiceImpl implements SecurityService {
             "stealer", "reverse_shell", "wscript.shell");
 
     // ── Ransomware-specific constants ──────────────────────────────────
-    private static final Set<String> RANSOMWARE_EXTENSIONS = Set.of(
+    static final Set<String> RANSOMWARE_EXTENSIONS = Set.of(
             ".encrypted", ".crypto", ".locked", ".crypted", ".crypt",
             ".vault", ".petya", ".wannacry", ".wcry", ".wncry",
             ".locky", ".zepto", ".thor", ".aesir", ".zzzzz");
 
-    private static final List<Pattern> RANSOMWARE_PATTERNS = List.of(
-            Pattern.compile("(?i)\\byour files have been encrypted\\b"),
-            Pattern.compile("(?i)\\byour important files\\b"),
-            Pattern.compile("(?i)\\bbtc wallet\\b"),
-            Pattern.compile("(?i)\\.(?:onion|tor)\\b"),
-            Pattern.compile("(?i)\\bdecrypt.{0,30}ransom|ransom.{0,30}decrypt\\b"),
-            Pattern.compile("(?i)\\bbitcoin\\b.{0,80}(?:wallet|payment|transfer)"),
-            Pattern.compile("(?i)\\bransom\\b.{0,80}(?:payment|demand|note)"));
-
-    private final ThreadLocal<Map<String, File[]>> dirListingCache = ThreadLocal.withInitial(HashMap::new);
-
     private static final int MAX_SYSTEM_SCAN_RESULTS = 2_000;
     private static final long MAX_SYSTEM_SCAN_DURATION_MS = 5 * 60 * 1000L;
     private static final long MAX_PATTERN_SCAN_BYTES = 10L * 1024 * 1024L;
     private static final int MAX_PATTERN_WINDOW_CHARS = 16 * 1024;
-    private static final int MAX_ZIP_ENTRIES = 1_000;
-    private static final long MAX_ZIP_UNCOMPRESSED_BYTES = 500L * 1024 * 1024L;
+    private static final long MAX_SCAN_FILE_BYTES = 100L * 1024 * 1024;
 
     // ── Scoring engine ──────────────────────────────────────────────────
     // Every detector below contributes points instead of an instant true/false
@@ -254,62 +416,11 @@ public class SecurityServiceImpl implements SecurityService {
     private static final int THRESHOLD_MALICIOUS = 60;
     private static final int THRESHOLD_SUSPICIOUS = 25;
 
-    // Strong patterns require a specific, hard-to-hit combination of tokens
-    // (e.g. PowerShell + a real encoding/bypass flag together, not either
-    // alone). These carry real weight because legitimate code rarely matches
-    // them by accident.
-    private static final List<Pattern> STRONG_PATTERNS = List.of(
-            Pattern.compile("(?i)\\bpowershell\\b.{0,120}(?:-enc\\b|-encodedcommand|-w\\s+hidden)"),
-            Pattern.compile("(?i)\\bpowershell\\b.{0,120}downloadstring"),
-            Pattern.compile("(?i)\\bpowershell\\b.{0,120}\\bbypass\\b"),
-            Pattern.compile("(?i)\\bicacls\\b.{0,80}\\bgrant\\b.{0,80}\\beveryone\\b"),
-            Pattern.compile("(?i)\\bconnect\\s*\\(.*\\d{1,3}(?:\\.\\d{1,3}){3}"),
-            Pattern.compile("(?i)\\bpost\\b.{0,80}\\bpassword\\b.{0,80}(?:https?://|socket|connect)"),
-            Pattern.compile("(?i)\\bkeylog(?:ger)?\\b.{0,80}(?:getasynckeystate|setwindowshookex|keyboard_event)"));
-
-    // Weak patterns show up constantly in ordinary code (JS libraries, web
-    // pages, admin scripts). Each one alone is near-meaningless, so they are
-    // capped in total contribution rather than being individually decisive.
-    private static final List<Pattern> WEAK_PATTERNS = List.of(
-            Pattern.compile("(?i)\\beval\\s*\\("),
-            Pattern.compile("(?i)\\bdocument\\.write\\s*\\("),
-            Pattern.compile("(?i)<script\\b"),
-            Pattern.compile("(?i)\\bbase64_decode\\b"),
-            Pattern.compile("(?i)\\bshell_exec\\s*\\("),
-            Pattern.compile("(?i)\\bruntime\\.exec\\s*\\("),
-            Pattern.compile("(?i)\\bsystem\\s*\\("),
-            Pattern.compile("(?i)\\bpassthru\\s*\\("),
-            Pattern.compile("(?i)\\bprocess\\.spawn\\b"),
-            Pattern.compile("(?i)\\bcreateprocess\\w*\\b"),
-            Pattern.compile("(?i)\\bnew\\s+socket\\s*\\("),
-            Pattern.compile("(?i)\\bwget\\s+https?://"),
-            Pattern.compile("(?i)\\bcurl\\b.{0,80}\\s-O\\b"),
-            Pattern.compile("(?i)\\breg\\b.{0,80}\\badd\\b"),
-            Pattern.compile("(?i)\\bregistry\\.setvalue\\b"),
-            Pattern.compile("(?i)\\.encrypt\\s*\\("),
-            Pattern.compile("(?i)\\bchmod\\b.{0,40}\\b777\\b"),
-            Pattern.compile("(?i)\\.upload\\s*\\("),
-            Pattern.compile("(?i)\\\\startup\\\\"),
-            Pattern.compile("(?i)\\\\system32\\\\drivers\\\\"),
-            Pattern.compile("(?i)\\\\tasks\\\\"),
-            Pattern.compile("(?i)\\bunescape\\b"),
-            Pattern.compile("(?i)\\bdecode(?:uri)?\\b"),
-            Pattern.compile("(?i)\\bfromcharcode\\b"));
-
-    // Narrower kernel-manipulation phrases. Dropped the old bare "driver load"
-    // pattern, since it matched routine system/driver documentation and logs.
-    private static final Pattern[] KERNEL_PATTERNS = {
-            Pattern.compile("(?i)kernel.{0,20}hook"),
-            Pattern.compile("(?i)syscall.{0,20}table"),
-            Pattern.compile("(?i)interrupt.{0,20}descriptor.{0,20}table"),
-            Pattern.compile("(?i)idt.{0,20}hook"),
-            Pattern.compile("(?i)process.{0,20}hiding")
-    };
-
     // Extensions a scan directory is expected to contain in normal use.
     // Used to spot ransomware's mass-rename behavior without blocklisting
-    // every non-media, non-office extension the way the old code did.
-    private static final Set<String> COMMON_EXTENSIONS = Set.of(
+    // every non-media, non-office extension the way the old code did;
+    // RansomwareBehaviorDetector counts new files outside it as it watches.
+    static final Set<String> COMMON_EXTENSIONS = Set.of(
             ".txt", ".md", ".json", ".yaml", ".yml", ".xml", ".java", ".js", ".ts", ".jsx", ".tsx",
             ".py", ".c", ".cpp", ".h", ".css", ".html", ".htm", ".jpg", ".jpeg", ".png", ".gif",
             ".bmp", ".svg", ".ico", ".mp3", ".mp4", ".wav", ".avi", ".mov", ".mkv", ".pdf", ".doc",
@@ -325,170 +436,526 @@ public class SecurityServiceImpl implements SecurityService {
         static final ScoreResult NONE = new ScoreResult(0, List.of());
     }
 
-    // ── Generic bounded pattern scanner ───────────────────────────────
-    private boolean scanWithPatterns(File file, List<Pattern> patterns) {
-        try (Reader reader = new BufferedReader(new InputStreamReader(
-                new FileInputStream(file), StandardCharsets.UTF_8))) {
-            char[] buffer = new char[8192];
-            StringBuilder window = new StringBuilder(MAX_PATTERN_WINDOW_CHARS);
-            long charsRead = 0L;
-            int read;
+    // Everything scanFile() needs from the file's bytes, gathered in one
+    // read by inspectFile(). archive is null for non-archive files.
+    private record FileInspection(ScanPass content, ArchiveEvaluation archive) {
+    }
+
+    // Strong-pattern matches needed before the code-pattern detector can
+    // stop reading: past this point strong matches alone already cross the
+    // MALICIOUS threshold.
+    private static final int STRONG_MATCHES_TO_STOP =
+            (THRESHOLD_MALICIOUS + SCORE_STRONG_PATTERN - 1) / SCORE_STRONG_PATTERN;
 
-            while ((read = reader.read(buffer)) != -1 && charsRead < MAX_PATTERN_SCAN_BYTES) {
-                charsRead += read;
-                window.append(buffer, 0, read);
+    // Per-thread read buffer for inspectFile(). Scans run on a handful of
+    // long-lived worker threads, so this stays a fixed, small footprint
+    // instead of a fresh 64 KB array per file.
+    private static final ThreadLocal<byte[]> SCAN_READ_BUFFER = ThreadLocal.withInitial(() -> new byte[64 * 1024]);
 
-                for (Pattern pattern : patterns) {
-                    if (pattern.matcher(window).find()) {
-                        logger.debug("Pattern matched: {}", pattern.pattern());
-                        return true;
-                    }
-                }
+    private static final HexFormat HEX = HexFormat.of();
 
-                if (window.length() > MAX_PATTERN_WINDOW_CHARS) {
-                    window.delete(0, window.length() - MAX_PATTERN_WINDOW_CHARS);
-                }
+    // Per-thread digest instances for digests(), reset after every file.
+    private static final ThreadLocal<Map<HashType, MessageDigest>> SCAN_DIGESTS = ThreadLocal.withInitial(() -> {
+        Map<HashType, MessageDigest> digests = new EnumMap<>(HashType.class);
+        for (HashType type : HashType.values()) {
+            digests.put(type, type.newDigest());
+        }
+        return digests;
+    });
+
+    // Single pass over a file's bytes, already in memory (prefetched by
+    // the pipeline's read stage, or read by contentVerdict()): every byte
+    // is fed to the digest, header, text-pattern and rootkit detectors via
+    // ScanPass. For archives the ArchiveInspector consumes that same
+    // stream, and whatever it leaves unread (a zip's central directory, or
+    // the rest of the file after a bomb bail-out) is drained afterwards so
+    // the hash still covers the whole file.
+    private FileInspection inspectFile(File file, byte[] content, boolean inspectArchive,
+            SignatureSnapshot signatures) throws IOException {
+        ScanPass pass = newScanPass();
+        ArchiveEvaluation archive = null;
+        byte[] buffer = SCAN_READ_BUFFER.get();
+        try (InputStream in = pass.inspect(new ByteArrayInputStream(content))) {
+            if (inspectArchive) {
+                archive = evaluateArchive(in, file, signatures);
+            }
+            while (in.read(buffer) != -1) {
+                // drain: ScanPass sees every byte as it is read
             }
-            return false;
-        } catch (IOException e) {
-            logger.error("Error scanning {} with patterns: {}",
-                    file.getAbsolutePath(), e.getMessage(), e);
-            return false;
         }
+        pass.finish();
+        return new FileInspection(pass, archive);
+    }
+
+    private static ScanPass newScanPass() {
+        return new ScanPass(MAX_PATTERN_SCAN_BYTES, MAX_PATTERN_WINDOW_CHARS, STRONG_MATCHES_TO_STOP);
+    }
+
+    // Content detectors for scanFile() and the detect*() checks, through
+    // the verdict cache. Files small enough to prefetch are held in memory
+    // and hashed first, so a cache hit costs one hashing pass over the
+    // bytes and nothing else. Larger ones are read from disk once, with
+    // the digests taken and the detectors run in the same pass (as for an
+    // upload), and the verdict seeds the cache. The signature snapshot is
+    // read once, so the cache key, the hash lookup and the recorded
+    // version all refer to the same set even if a refresh lands mid-scan.
+    // A known-good hash stops here, unless it is also a known-malicious one.
+    private ContentVerdict contentVerdict(File file, byte[] prefetched) throws IOException {
+        byte[] bytes = prefetched;
+        if (bytes == null && file.length() <= pipelineMaxPrefetchFileMb * 1024L * 1024L) {
+            bytes = Files.readAllBytes(file.toPath());
+        }
+        SignatureSnapshot signatures = threatIntelSignatureService.snapshot();
+        if (bytes == null) {
+            boolean archive = isArchiveFile(file);
+            StreamInspection inspection;
+            try (InputStream in = Files.newInputStream(file.toPath())) {
+                inspection = inspectStream(in, file, archive, signatures);
+            }
+            if (inspection == null) {
+                throw new IOException("File grew past the scan size limit while being read");
+            }
+            return inspectedVerdict(inspection.inspection(), inspection.digests(), archive, signatures);
+        }
+        FileDigests digests = digests(bytes, signatures.activeTypes());
+        byte[] fileHash = digests.sha256();
+        if (knownGoodHashService.isKnownGood(fileHash) && !signatures.isKnownMalicious(digests)) {
+            return ContentVerdict.knownGood(HEX.formatHex(fileHash), signatures.version());
+        }
+        boolean archive = isArchiveFile(file);
+        byte[] content = bytes;
+        return verdictCache.get(fileHash, archive, signatures.version(),
+                () -> inspectContent(file, content, digests, archive, signatures));
+    }
+
+    // The uncached path: one ScanPass over the file, reduced to the
+    // name-independent facts the scoring engine needs.
+    private ContentVerdict inspectContent(File file, byte[] content, FileDigests digests, boolean archive,
+            SignatureSnapshot signatures) throws IOException {
+        return verdictOf(inspectFile(file, content, archive, signatures), digests, signatures);
+    }
+
+    private ContentVerdict verdictOf(FileInspection inspection, FileDigests digests, SignatureSnapshot signatures) {
+        ScanPass pass = inspection.content();
+        ArchiveEvaluation entries = inspection.archive();
+        if (entries == null) {
+            entries = ArchiveEvaluation.NONE;
+        }
+        // Entry findings count as the archive's own: a ransom note or
+        // dropper script is no less present for being zipped.
+        Set<String> strongMatches = new HashSet<>(pass.strongMatches());
+        strongMatches.addAll(entries.strongMatches());
+        Set<String> weakMatches = new HashSet<>(pass.weakMatches());
+        weakMatches.addAll(entries.weakMatches());
+        return new ContentVerdict(
+                HEX.formatHex(digests.sha256()),
+                false,
+                signatures.isKnownMalicious(digests),
+                entries.knownMaliciousEntry(),
+                entries.bomb(),
+                entries.suspiciousEntries(),
+                containsSuspiciousBytes(pass.header(8)),
+                detectRootkitBinaryPatterns(pass.header(ScanPass.HEADER_BYTES)) || entries.rootkitBinaryBytes(),
+                pass.ransomwareTextMatched() || entries.ransomwareText(),
+                pass.kernelTextMatched() || entries.kernelText(),
+                strongMatches.size(),
+                weakMatches.size(),
+                signatures.version());
+    }
+
+    // SHA-256 plus each of the extra types, in one pass over the bytes.
+    private static FileDigests digests(byte[] content, Set<HashType> types) {
+        Map<HashType, MessageDigest> all = SCAN_DIGESTS.get();
+        MessageDigest sha256 = all.get(HashType.SHA256);
+        MessageDigest sha1 = types.contains(HashType.SHA1) ? all.get(HashType.SHA1) : null;
+        MessageDigest md5 = types.contains(HashType.MD5) ? all.get(HashType.MD5) : null;
+        sha256.update(content);
+        if (sha1 != null) {
+            sha1.update(content);
+        }
+        if (md5 != null) {
+            md5.update(content);
+        }
+        return new FileDigests(sha256.digest(),
+                sha1 != null ? sha1.digest() : null,
+                md5 != null ? md5.digest() : null);
+    }
+
+    // An upload read once, straight off the request, or a file too large
+    // to hold in memory read once off the disk: the ScanPass (and the
+    // archive walk, for archive names) consumes the stream as it arrives,
+    // with SHA-1/MD5 taken on the way through. Only the detectors' bounded
+    // windows are held, never the content. Returns null, having read no
+    // more than one byte past the limit, if the upload is too large to scan.
+    private StreamInspection inspectStream(InputStream body, File file, boolean inspectArchive,
+            SignatureSnapshot signatures) throws IOException {
+        Set<HashType> types = signatures.activeTypes();
+        Map<HashType, MessageDigest> all = SCAN_DIGESTS.get();
+        MessageDigest sha1 = types.contains(HashType.SHA1) ? all.get(HashType.SHA1) : null;
+        MessageDigest md5 = types.contains(HashType.MD5) ? all.get(HashType.MD5) : null;
+        InputStream source = BoundedInputStream.builder()
+                .setInputStream(body)
+                .setMaxCount(MAX_SCAN_FILE_BYTES + 1)
+                .get();
+        if (sha1 != null) {
+            source = new DigestInputStream(source, sha1);
+        }
+        if (md5 != null) {
+            source = new DigestInputStream(source, md5);
+        }
+        ScanPass pass = newScanPass();
+        ArchiveEvaluation archive = null;
+        byte[] buffer = SCAN_READ_BUFFER.get();
+        try (InputStream in = pass.inspect(source)) {
+            if (inspectArchive) {
+                archive = evaluateArchive(in, file, signatures);
+            }
+            while (in.read(buffer) != -1) {
+                // drain: ScanPass sees every byte as it is read
+            }
+            if (pass.totalBytes() > MAX_SCAN_FILE_BYTES) {
+                return null;
+            }
+            pass.finish();
+            FileDigests digests = new FileDigests(pass.sha256Digest(),
+                    sha1 != null ? sha1.digest() : null,
+                    md5 != null ? md5.digest() : null);
+            return new StreamInspection(new FileInspection(pass, archive), digests);
+        } finally {
+            if (sha1 != null) {
+                sha1.reset();
+            }
+            if (md5 != null) {
+                md5.reset();
+            }
+        }
+    }
+
+    private record StreamInspection(FileInspection inspection, FileDigests digests) {
+    }
+
+    // A scanned file's result plus whether it belongs in the scan log.
+    // The early "cannot scan" outcomes (missing, unreadable, too large)
+    // have always been saved without being logged.
+    private record FileVerdict(ScanResult result, boolean loggable) {
     }
 
     @Override
     public ScanResult scanFile(File file) {
-        ScanResult result = new ScanResult();
-        result.setFilePath(file.getAbsolutePath());
-        result.setOwnerUsername(resolveCurrentUsername());
-        result.setInfected(false);
-        result.setVerdict("CLEAN");
-        result.setRiskScore(0);
-        result.setScanType("FILE");
-        result.setActionTaken("NONE");
+        FileVerdict verdict = evaluateFile(file, null);
+        saveScanResult(verdict.result());
+        if (verdict.loggable()) {
+            logService.logScanResult(verdict.result());
+        }
+        return verdict.result();
+    }
+
+    @Override
+    public ScanResult scanRealtime(File file) {
+        FileVerdict verdict = evaluateFile(file, null);
+        ScanResult result = verdict.result();
+        result.setScanType("REALTIME");
+        if (ScanTally.outcomeOf(result) != ScanTally.Outcome.CLEAN) {
+            scanResultWriter.submit(result, verdict.loggable());
+        }
+        return result;
+    }
+
+    @Override
+    public ScanResult reportRansomwareBehavior(String path, List<String> signals, String details) {
+        ScanResult result = newFileResult(path);
+        result.setScanType("REALTIME");
+        applyVerdict(result, "MALICIOUS", "RANSOMWARE", details, 100, signals);
+        scanResultWriter.submit(result, true);
+        return result;
+    }
+
+    @Override
+    public ScanResult scanStream(InputStream body, String fileName) {
+        FileVerdict verdict = evaluateStream(body, fileName);
+        saveScanResult(verdict.result());
+        if (verdict.loggable()) {
+            logService.logScanResult(verdict.result());
+        }
+        return verdict.result();
+    }
+
+    // evaluateFile() for an upload that never touches the disk. The verdict
+    // is ready as soon as the last byte has gone through the detectors; it
+    // also seeds the verdict cache, so the same bytes found on disk later
+    // cost a hashing pass and nothing else.
+    private FileVerdict evaluateStream(InputStream body, String fileName) {
+        ScanResult result = newFileResult(fileName);
 
         try {
-            if (!file.exists()) {
+            File file = new File(fileName);
+            boolean archive = isArchiveFile(file);
+            SignatureSnapshot signatures = threatIntelSignatureService.snapshot();
+            StreamInspection inspection = inspectStream(body, file, archive, signatures);
+            if (inspection == null) {
+                result.setThreatType("WARNING");
+                result.setThreatDetails("File too large to scan");
+                return new FileVerdict(result, false);
+            }
+
+            scoreInspection(result, file, archive, inspection.inspection(), inspection.digests(), signatures);
+
+        } catch (Exception e) {
+            logger.error("Error scanning upload: {}", e.getMessage());
+            result.setThreatType("ERROR");
+            result.setThreatDetails("Error scanning file");
+            result.setActionTaken("NONE");
+        }
+
+        return new FileVerdict(result, true);
+    }
+
+    // Detection only: builds the result for one file without saving or
+    // logging it, so the pipeline can persist results in batches on its
+    // own stage. prefetched is the file's content if the read stage
+    // already loaded it, or null to read from disk.
+    private FileVerdict evaluateFile(File file, byte[] prefetched) {
+        ScanResult result = newFileResult(file.getAbsolutePath());
+
+        try {
+            // Prefetched bytes already prove the file existed and was readable.
+            if (prefetched == null && !file.exists()) {
                 result.setThreatType("ERROR");
                 result.setThreatDetails("File does not exist");
-                saveScanResult(result);
-                return result;
+                return new FileVerdict(result, false);
             }
 
-            if (!file.canRead()) {
+            if (prefetched == null && !file.canRead()) {
                 result.setThreatType("ERROR");
                 result.setThreatDetails("Cannot read file");
-                saveScanResult(result);
-                return result;
+                return new FileVerdict(result, false);
             }
 
             // Check file size
-            if (file.length() > 100 * 1024 * 1024) { // 100MB limit
+            long size = prefetched != null ? prefetched.length : file.length();
+            if (size > MAX_SCAN_FILE_BYTES) {
                 result.setThreatType("WARNING");
                 result.setThreatDetails("File too large to scan");
-                saveScanResult(result);
-                return result;
+                return new FileVerdict(result, false);
             }
 
-            // Calculate file hash (SHA-256 — R-06)
-            String fileHash = calculateFileHash(file);
+            ContentVerdict content = contentVerdict(file, prefetched);
+            result.setSignatureVersion(content.signatureVersion());
+            result.setContentSha256(content.contentSha256());
+            result.setFileSize(size);
+            result.setFileModifiedAt(LocalDateTime.ofInstant(
+                    Instant.ofEpochMilli(file.lastModified()), ZoneId.systemDefault()));
 
-            // Check against known malware signatures (thread-safe — R-04).
-            // This is the only check allowed to short-circuit straight to
-            // MALICIOUS on its own: an exact hash match against a curated
-            // threat-intel feed is a confirmed identification, not a heuristic.
-            if (threatIntelSignatureService.isKnownMalicious(fileHash)) {
-                applyVerdict(result, "MALICIOUS", "VIRUS", "Known malware signature detected",
-                        SCORE_KNOWN_HASH, List.of("KNOWN_HASH_MATCH"));
-                saveScanResult(result);
-                logService.logScanResult(result);
-                return result;
-            }
-
-            // Zip-bomb / archive-abuse protection is a resource-safety check,
-            // not a content-based threat verdict, so it is reported as
-            // SUSPICIOUS (not scored against the malware engine) rather than
-            // folded into the malware score.
-            if (isZipFile(file)) {
-                ZipEvaluation zipEval = evaluateZipArchive(file);
-                if (zipEval.bomb()) {
-                    applyVerdict(result, "SUSPICIOUS", "WARNING",
-                            "Archive exceeds safe processing limits (possible zip bomb)",
-                            THRESHOLD_SUSPICIOUS, List.of("ZIP_BOMB_LIMIT_EXCEEDED"));
-                    saveScanResult(result);
-                    logService.logScanResult(result);
-                    return result;
-                }
-            }
+            scoreContent(result, file, content, true);
 
-            int score = 0;
-            List<String> signals = new ArrayList<>();
+        } catch (Exception e) {
+            logger.error("Error scanning file: {}", e.getMessage());
+            result.setThreatType("ERROR");
+            result.setThreatDetails("Error scanning file");
+            result.setActionTaken("NONE");
+        }
 
-            byte[] header = readFilePrefix(file, 8);
+        return new FileVerdict(result, true);
+    }
 
-            int masqueradeScore = checkExtensionMasquerade(file, header);
-            if (masqueradeScore > 0) {
-                score += masqueradeScore;
-                signals.add("EXTENSION_MASQUERADE");
-            }
+    private ScanResult newFileResult(String filePath) {
+        ScanResult result = new ScanResult();
+        result.setFilePath(filePath);
+        result.setOwnerUsername(resolveCurrentUsername());
+        result.setInfected(false);
+        result.setVerdict("CLEAN");
+        result.setRiskScore(0);
+        result.setScanType("FILE");
+        result.setActionTaken("NONE");
+        return result;
+    }
 
-            String extension = getFileExtension(file).toLowerCase();
-            if (RANSOMWARE_EXTENSIONS.contains(extension)) {
-                score += SCORE_RANSOMWARE_EXTENSION;
-                signals.add("RANSOMWARE_EXTENSION");
-            }
-            if (containsRansomwarePatterns(file)) {
-                score += SCORE_RANSOMWARE_TEXT_PATTERN;
-                signals.add("RANSOMWARE_NOTE_TEXT");
-            }
-            int dirBehaviorScore = scoreRansomwareDirectoryBehavior(file);
-            if (dirBehaviorScore > 0) {
-                score += dirBehaviorScore;
-                signals.add("RANSOMWARE_DIRECTORY_BEHAVIOR");
-            }
+    // The end of a scan whose bytes were inspected as they arrived
+    // (streamed and chunked uploads): allowlist check, content verdict
+    // (seeded into the verdict cache), then scoring by name only.
+    private void scoreInspection(ScanResult result, File file, boolean archive, FileInspection inspection,
+            FileDigests digests, SignatureSnapshot signatures) throws IOException {
+        ContentVerdict content = inspectedVerdict(inspection, digests, archive, signatures);
+        result.setSignatureVersion(content.signatureVersion());
+        result.setContentSha256(content.contentSha256());
+        result.setFileSize(inspection.content().totalBytes());
+        result.setFileModifiedAt(LocalDateTime.now());
+
+        scoreContent(result, file, content, false);
+    }
+
+    // The content verdict of bytes already inspected as they were read:
+    // allowlist check, then the inspection's verdict, seeded into the
+    // verdict cache (or the cached one, if the same bytes beat it there).
+    private ContentVerdict inspectedVerdict(FileInspection inspection, FileDigests digests, boolean archive,
+            SignatureSnapshot signatures) throws IOException {
+        byte[] fileHash = digests.sha256();
+        if (knownGoodHashService.isKnownGood(fileHash) && !signatures.isKnownMalicious(digests)) {
+            return ContentVerdict.knownGood(HEX.formatHex(fileHash), signatures.version());
+        }
+        return verdictCache.get(fileHash, archive, signatures.version(),
+                () -> verdictOf(inspection, digests, signatures));
+    }
+
+    // The scoring engine: turns the content verdict plus the file's name
+    // and location into the result's verdict. onDisk is false for a
+    // streamed upload, which has a name but no directory to look around in.
+    private void scoreContent(ScanResult result, File file, ContentVerdict content, boolean onDisk) {
+        // An exact match on the known-good allowlist (stock OS/vendor
+        // files) is CLEAN without scoring, the mirror image of the
+        // known-malware match below.
+        if (content.knownGood()) {
+            applyVerdict(result, "CLEAN", "CLEAN", "Known-good file (allowlisted hash)",
+                    0, List.of("KNOWN_GOOD_HASH"));
+            return;
+        }
 
-            String fileName = file.getName().toLowerCase();
-            for (String sig : TROJAN_NAME_SIGNATURES) {
-                if (fileName.contains(sig)) {
-                    score += SCORE_TROJAN_NAME;
-                    signals.add("TROJAN_NAME_SIGNATURE");
-                    break;
-                }
-            }
+        // Check against known malware signatures (thread-safe — R-04).
+        // This is the only check allowed to short-circuit straight to
+        // MALICIOUS on its own: an exact hash match against a curated
+        // threat-intel feed is a confirmed identification, not a heuristic.
+        if (content.knownMalicious()) {
+            applyVerdict(result, "MALICIOUS", "VIRUS", "Known malware signature detected",
+                    SCORE_KNOWN_HASH, List.of("KNOWN_HASH_MATCH"));
+            return;
+        }
+        if (content.archiveMaliciousEntry() != null) {
+            applyVerdict(result, "MALICIOUS", "VIRUS",
+                    "Known malware signature detected in archive entry " + content.archiveMaliciousEntry(),
+                    SCORE_KNOWN_HASH, List.of("KNOWN_HASH_MATCH", "ARCHIVE_ENTRY_MATCH"));
+            return;
+        }
 
-            ScoreResult patternScore = scorePatterns(file);
-            score += patternScore.total();
-            signals.addAll(patternScore.signals());
+        // Zip-bomb / archive-abuse protection is a resource-safety check,
+        // not a content-based threat verdict, so it is reported as
+        // SUSPICIOUS (not scored against the malware engine) rather than
+        // folded into the malware score.
+        if (content.zipBomb()) {
+            applyVerdict(result, "SUSPICIOUS", "WARNING",
+                    "Archive exceeds safe processing limits (possible zip bomb)",
+                    THRESHOLD_SUSPICIOUS, List.of("ZIP_BOMB_LIMIT_EXCEEDED"));
+            return;
+        }
+
+        int score = 0;
+        List<String> signals = new ArrayList<>();
 
-            ScoreResult rootkitScore = scoreRootkit(file, header);
-            score += rootkitScore.total();
-            signals.addAll(rootkitScore.signals());
+        int masqueradeScore = checkExtensionMasquerade(file, content);
+        if (masqueradeScore > 0) {
+            score += masqueradeScore;
+            signals.add("EXTENSION_MASQUERADE");
+        }
 
-            if (isZipFile(file)) {
-                ZipEvaluation zipEval = evaluateZipArchive(file);
-                if (zipEval.suspiciousEntries() > 0) {
-                    score += SCORE_ZIP_SUSPICIOUS_ENTRY;
-                    signals.add("ZIP_CONTAINS_EXECUTABLE_ENTRY");
-                }
+        String extension = getFileExtension(file).toLowerCase();
+        if (RANSOMWARE_EXTENSIONS.contains(extension)) {
+            score += SCORE_RANSOMWARE_EXTENSION;
+            signals.add("RANSOMWARE_EXTENSION");
+        }
+        if (content.ransomwareText()) {
+            score += SCORE_RANSOMWARE_TEXT_PATTERN;
+            signals.add("RANSOMWARE_NOTE_TEXT");
+        }
+        int dirBehaviorScore = onDisk ? scoreRansomwareDirectoryBehavior(file) : 0;
+        if (dirBehaviorScore > 0) {
+            score += dirBehaviorScore;
+            signals.add("RANSOMWARE_DIRECTORY_BEHAVIOR");
+        }
+
+        String fileName = file.getName().toLowerCase();
+        for (String sig : TROJAN_NAME_SIGNATURES) {
+            if (fileName.contains(sig)) {
+                score += SCORE_TROJAN_NAME;
+                signals.add("TROJAN_NAME_SIGNATURE");
+                break;
             }
+        }
 
-            score = Math.min(score, 100);
-            String verdict = score >= THRESHOLD_MALICIOUS ? "MALICIOUS"
-                    : score >= THRESHOLD_SUSPICIOUS ? "SUSPICIOUS" : "CLEAN";
+        ScoreResult patternScore = scorePatterns(content);
+        score += patternScore.total();
+        signals.addAll(patternScore.signals());
 
-            applyVerdictFromScore(result, verdict, score, signals);
+        ScoreResult rootkitScore = scoreRootkit(file, content);
+        score += rootkitScore.total();
+        signals.addAll(rootkitScore.signals());
 
-        } catch (Exception e) {
-            logger.error("Error scanning file: {}", e.getMessage());
-            result.setThreatType("ERROR");
-            result.setThreatDetails("Error scanning file");
-            result.setActionTaken("NONE");
+        if (content.zipSuspiciousEntries() > 0) {
+            score += SCORE_ZIP_SUSPICIOUS_ENTRY;
+            signals.add("ZIP_CONTAINS_EXECUTABLE_ENTRY");
         }
 
-        saveScanResult(result);
-        logService.logScanResult(result);
-        return result;
+        score = Math.min(score, 100);
+        String verdict = score >= THRESHOLD_MALICIOUS ? "MALICIOUS"
+                : score >= THRESHOLD_SUSPICIOUS ? "SUSPICIOUS" : "CLEAN";
+
+        applyVerdictFromScore(result, verdict, score, signals);
+    }
+
+    // The pipeline's persist stage: results go to the write-behind
+    // writer, which saves them in large JDBC batches and writes the scan
+    // log entries once they have ids. The entities passed in are the ones
+    // callers keep, so ids land on them as before, just a little later;
+    // each scan flush()es the writer before reporting itself finished.
+    // Every result is counted in the scan's tally; under
+    // aggregate-clean-results a CLEAN one is only counted (and logged),
+    // and keeps a null id.
+    private void persistVerdicts(List<FileVerdict> batch, ScanTally tally) {
+        for (FileVerdict verdict : batch) {
+            ScanResult result = verdict.result();
+            assignOwnerIfMissing(result);
+            boolean stored = storesResultRow(result);
+            tally.record(result, stored);
+            if (stored) {
+                scanResultWriter.submit(result, verdict.loggable());
+            } else if (verdict.loggable()) {
+                logService.logScanResult(result);
+            }
+        }
+    }
+
+    private boolean storesResultRow(ScanResult result) {
+        return !aggregateCleanResults || ScanTally.outcomeOf(result) != ScanTally.Outcome.CLEAN;
+    }
+
+    // Saves the scan's totals once its results are all persisted. A
+    // failure here only loses the summary, not the scan.
+    private void saveScanSummary(ScanTally tally) {
+        try {
+            scanSummaryRepository.save(tally.toSummary());
+        } catch (RuntimeException e) {
+            logger.warn("Could not save scan summary: {}", e.getMessage());
+        }
+    }
+
+    private <R> ScanPipeline<R> newScanPipeline(String name, SecurityContext callerContext,
+            BiFunction<Path, byte[], R> analyzer, BiFunction<Path, Throwable, R> failure,
+            Consumer<List<R>> persister) {
+        int analyzers = pipelineAnalyzerThreads > 0
+                ? pipelineAnalyzerThreads
+                : Runtime.getRuntime().availableProcessors();
+        int readers = Math.max(1, pipelineReaderThreads);
+        ScanPipeline.Settings settings = new ScanPipeline.Settings(
+                readers,
+                analyzers,
+                Math.max(pipelineQueueCapacity, Math.max(readers, analyzers)),
+                Math.max(1, pipelinePersistBatchSize),
+                pipelineMaxPrefetchFileMb * 1024 * 1024,
+                Math.max(pipelinePrefetchBudgetMb, pipelineMaxPrefetchFileMb) * 1024 * 1024);
+        // Stage threads run as the user who started the scan, so results
+        // are owned by them rather than by "system".
+        return new ScanPipeline<>(name, settings,
+                runnable -> new DelegatingSecurityContextRunnable(runnable, callerContext),
+                analyzer, failure, persister);
+    }
+
+    // What a scan records for a file whose analysis threw past
+    // evaluateFile's own handling (an Error such as StackOverflowError):
+    // the same ERROR result evaluateFile gives for an exception.
+    private FileVerdict analysisFailed(Path path, String scanType) {
+        ScanResult result = newFileResult(path.toFile().getAbsolutePath());
+        result.setThreatType("ERROR");
+        result.setThreatDetails("Error scanning file");
+        result.setScanType(scanType);
+        return new FileVerdict(result, true);
     }
 
     // Sets a confirmed, single-signal verdict (currently only used for the
@@ -599,30 +1066,6 @@ public class SecurityServiceImpl implements SecurityService {
         return scanResultRepository.save(result);
     }
 
-    // ── R-06: Switched from MD5 to SHA-256 ────────────────────────────
-    // MD5 is cryptographically broken; collision attacks can bypass
-    // signature matching. SHA-256 is the minimum standard used by all
-    // modern threat-intel feeds (VirusTotal, MalwareBazaar).
-    private String calculateFileHash(File file) throws Exception {
-        MessageDigest md = MessageDigest.getInstance("SHA-256");
-        try (InputStream is = Files.newInputStream(file.toPath())) {
-            byte[] buffer = new byte[8192];
-            int read;
-            while ((read = is.read(buffer)) > 0) {
-                md.update(buffer, 0, read);
-            }
-        }
-        return bytesToHex(md.digest()); // now returns 64-char hex string
-    }
-
-    private String bytesToHex(byte[] bytes) {
-        StringBuilder result = new StringBuilder();
-        for (byte b : bytes) {
-            result.append(String.format("%02x", b));
-        }
-        return result.toString();
-    }
-
     private String getFileExtension(File file) {
         String name = file.getName();
         int lastIndexOf = name.lastIndexOf(".");
@@ -635,63 +1078,72 @@ public class SecurityServiceImpl implements SecurityService {
     // NOTE: the old scanFileContent()/containsMaliciousZipContent() pair was
     // never actually called from scanFile() (both were dead code left over
     // from an earlier version), which meant zip-bomb protection existed on
-    // paper but never ran. evaluateZipArchive() below is now wired directly
+    // paper but never ran. evaluateArchive() below is now wired directly
     // into scanFile().
 
-    private boolean isZipFile(File file) {
-        return file.getName().toLowerCase().endsWith(".zip") ||
-                file.getName().toLowerCase().endsWith(".jar") ||
-                file.getName().toLowerCase().endsWith(".war");
+    private boolean isArchiveFile(File file) {
+        String name = file.getName().toLowerCase();
+        return name.endsWith(".zip") || name.endsWith(".jar") || name.endsWith(".war") || name.endsWith(".ear")
+                || name.endsWith(".tar") || name.endsWith(".gz") || name.endsWith(".tgz");
     }
 
     // Resource-safety result (entry count / decompression bomb) kept separate
     // from a content-based suspicious-entry count, since the former is a
-    // hard block and the latter is only a minor scoring signal.
-    private record ZipEvaluation(boolean bomb, int suspiciousEntries) {
-    }
-
-    private ZipEvaluation evaluateZipArchive(File file) {
-        int entryCount = 0;
-        int suspiciousEntries = 0;
-        long totalUncompressed = 0L;
-        byte[] buffer = new byte[8192];
-
-        try (ZipInputStream zis = new ZipInputStream(new BufferedInputStream(new FileInputStream(file)))) {
-            ZipEntry entry;
-            while ((entry = zis.getNextEntry()) != null) {
-                entryCount++;
-                if (entryCount > MAX_ZIP_ENTRIES) {
-                    logger.warn("ZIP bomb suspected: entry count exceeds {}", MAX_ZIP_ENTRIES);
-                    return new ZipEvaluation(true, suspiciousEntries);
-                }
-
-                // ZipEntry#getSize() is frequently -1 for entries written with
-                // a data descriptor (size unknown until the entry is fully
-                // read), which let oversized entries slip past a getSize()-only
-                // check. Read the actual decompressed bytes instead, and bail
-                // out mid-entry the moment the running total crosses the limit
-                // rather than waiting for the whole entry to finish.
-                int read;
-                while ((read = zis.read(buffer)) != -1) {
-                    totalUncompressed += read;
-                    if (totalUncompressed > MAX_ZIP_UNCOMPRESSED_BYTES) {
-                        logger.warn("ZIP bomb suspected: uncompressed size exceeds {} bytes",
-                                MAX_ZIP_UNCOMPRESSED_BYTES);
-                        return new ZipEvaluation(true, suspiciousEntries);
+    // hard block and the latter is only a minor scoring signal. The rest is
+    // what the content detectors found in the entries themselves;
+    // knownMaliciousEntry is the path of the first entry whose SHA-256 is a
+    // known-malware hash.
+    private record ArchiveEvaluation(boolean bomb, int suspiciousEntries, String knownMaliciousEntry,
+            boolean rootkitBinaryBytes, boolean ransomwareText, boolean kernelText,
+            Set<String> strongMatches, Set<String> weakMatches) {
+
+        static final ArchiveEvaluation NONE =
+                new ArchiveEvaluation(false, 0, null, false, false, false, Set.of(), Set.of());
+    }
+
+    // Reads the archive from the caller's stream (inspectFile()'s single
+    // pass) rather than reopening the file. Every entry, at every nesting
+    // level, streams through its own ScanPass as it is inflated; nothing is
+    // written to disk. The entry and byte budgets are checked on the actual
+    // decompressed bytes (ZipEntry#getSize() is frequently -1 for entries
+    // written with a data descriptor) and shared across the whole tree.
+    private ArchiveEvaluation evaluateArchive(InputStream in, File file, SignatureSnapshot signatures) {
+        int[] suspiciousEntries = new int[1];
+        String[] knownMaliciousEntry = new String[1];
+        boolean[] rootkitBinaryBytes = new boolean[1];
+        boolean[] ransomwareText = new boolean[1];
+        boolean[] kernelText = new boolean[1];
+        Set<String> strongMatches = new HashSet<>();
+        Set<String> weakMatches = new HashSet<>();
+        ArchiveInspector inspector = new ArchiveInspector(archiveMaxDepth, archiveMaxEntries,
+                archiveMaxUncompressedMb * 1024 * 1024, SecurityServiceImpl::newScanPass, (path, pass) -> {
+                    if (SUSPICIOUS_EXTENSIONS.contains(getFileExtension(new File(path)).toLowerCase())) {
+                        suspiciousEntries[0]++;
                     }
-                }
-
-                if (SUSPICIOUS_EXTENSIONS.contains(getFileExtension(new File(entry.getName())))) {
-                    suspiciousEntries++;
-                }
-
-                zis.closeEntry();
+                    if (knownMaliciousEntry[0] == null && signatures.isKnownMalicious(pass.sha256Digest())) {
+                        knownMaliciousEntry[0] = path;
+                    }
+                    rootkitBinaryBytes[0] |= detectRootkitBinaryPatterns(pass.header(ScanPass.HEADER_BYTES));
+                    ransomwareText[0] |= pass.ransomwareTextMatched();
+                    kernelText[0] |= pass.kernelTextMatched();
+                    strongMatches.addAll(pass.strongMatches());
+                    weakMatches.addAll(pass.weakMatches());
+                });
+        try {
+            ArchiveInspector.Result result = inspector.inspect(in, file.getName());
+            if (result.bomb()) {
+                logger.warn("Archive bomb suspected in {}: over {} entries or {} MB uncompressed",
+                        file.getName(), archiveMaxEntries, archiveMaxUncompressedMb);
+            } else if (result.depthLimitReached()) {
+                logger.debug("Archive {} nests deeper than {} levels; innermost archives scanned as bytes only",
+                        file.getName(), archiveMaxDepth);
             }
+            return new ArchiveEvaluation(result.bomb(), suspiciousEntries[0], knownMaliciousEntry[0],
+                    rootkitBinaryBytes[0], ransomwareText[0], kernelText[0], strongMatches, weakMatches);
         } catch (IOException e) {
-            logger.error("Error scanning ZIP file {}: {}", file.getAbsolutePath(), e.getMessage(), e);
-            return new ZipEvaluation(false, 0);
+            logger.error("Error scanning archive {}: {}", file.getAbsolutePath(), e.getMessage(), e);
+            return ArchiveEvaluation.NONE;
         }
-        return new ZipEvaluation(false, suspiciousEntries);
     }
 
     // Executable magic-byte check (MZ for PE, 0x7F 'ELF' for ELF binaries).
@@ -721,88 +1173,33 @@ public class SecurityServiceImpl implements SecurityService {
     // behind a non-executable extension (e.g. "invoice.pdf" that is really a
     // PE binary). A .exe or .dll legitimately having an MZ header is expected
     // and not scored at all.
-    private int checkExtensionMasquerade(File file, byte[] header) {
+    private int checkExtensionMasquerade(File file, ContentVerdict content) {
         String ext = getFileExtension(file).toLowerCase();
         if (ext.isEmpty() || SUSPICIOUS_EXTENSIONS.contains(ext)) {
             return 0;
         }
-        return containsSuspiciousBytes(header) ? SCORE_EXTENSION_MASQUERADE : 0;
+        return content.executableHeader() ? SCORE_EXTENSION_MASQUERADE : 0;
     }
 
-    // Aggregates strong- and weak-pattern hits into a single bounded score in
-    // one pass over the file, instead of returning true on the first match.
-    private ScoreResult scorePatterns(File file) {
-        Set<String> matchedStrong = new LinkedHashSet<>();
-        Set<String> matchedWeak = new LinkedHashSet<>();
-
-        try (Reader reader = new BufferedReader(new InputStreamReader(
-                new FileInputStream(file), StandardCharsets.UTF_8))) {
-            char[] buffer = new char[8192];
-            StringBuilder window = new StringBuilder(MAX_PATTERN_WINDOW_CHARS);
-            long charsRead = 0L;
-            int read;
-
-            while ((read = reader.read(buffer)) != -1 && charsRead < MAX_PATTERN_SCAN_BYTES) {
-                charsRead += read;
-                window.append(buffer, 0, read);
-
-                for (Pattern pattern : STRONG_PATTERNS) {
-                    if (pattern.matcher(window).find()) {
-                        matchedStrong.add(pattern.pattern());
-                    }
-                }
-                for (Pattern pattern : WEAK_PATTERNS) {
-                    if (pattern.matcher(window).find()) {
-                        matchedWeak.add(pattern.pattern());
-                    }
-                }
-
-                if (window.length() > MAX_PATTERN_WINDOW_CHARS) {
-                    window.delete(0, window.length() - MAX_PATTERN_WINDOW_CHARS);
-                }
-
-                // Stop early once strong matches alone already cross the
-                // MALICIOUS threshold; no need to keep reading the file.
-                if (matchedStrong.size() * SCORE_STRONG_PATTERN >= THRESHOLD_MALICIOUS) {
-                    break;
-                }
-            }
-        } catch (IOException e) {
-            logger.error("Error scanning {} with patterns: {}",
-                    file.getAbsolutePath(), e.getMessage(), e);
-        }
-
-        int strongScore = matchedStrong.size() * SCORE_STRONG_PATTERN;
-        int weakScore = Math.min(matchedWeak.size() * SCORE_WEAK_PATTERN, MAX_WEAK_PATTERN_SCORE);
+    // Aggregates strong- and weak-pattern hits into a single bounded score,
+    // instead of returning true on the first match. The matching itself
+    // happens inside ScanPass while the file is being read.
+    private ScoreResult scorePatterns(ContentVerdict content) {
+        int strongCount = content.strongMatches();
+        int weakCount = content.weakMatches();
+        int strongScore = strongCount * SCORE_STRONG_PATTERN;
+        int weakScore = Math.min(weakCount * SCORE_WEAK_PATTERN, MAX_WEAK_PATTERN_SCORE);
 
         List<String> signals = new ArrayList<>();
         if (strongScore > 0) {
-            signals.add("STRONG_CODE_PATTERN(x" + matchedStrong.size() + ")");
+            signals.add("STRONG_CODE_PATTERN(x" + strongCount + ")");
         }
         if (weakScore > 0) {
-            signals.add("WEAK_CODE_PATTERN(x" + matchedWeak.size() + ")");
+            signals.add("WEAK_CODE_PATTERN(x" + weakCount + ")");
         }
         return new ScoreResult(strongScore + weakScore, signals);
     }
 
-    private boolean containsRansomwarePatterns(File file) {
-        return scanWithPatterns(file, RANSOMWARE_PATTERNS);
-    }
-
-    private byte[] readFilePrefix(File file, int maxBytes) throws IOException {
-        try (InputStream is = new BufferedInputStream(Files.newInputStream(file.toPath()));
-                ByteArrayOutputStream out = new ByteArrayOutputStream(Math.min(maxBytes, 8 * 1024))) {
-            byte[] buffer = new byte[8192];
-            int remaining = maxBytes;
-            int read;
-            while (remaining > 0 && (read = is.read(buffer, 0, Math.min(buffer.length, remaining))) != -1) {
-                out.write(buffer, 0, read);
-                remaining -= read;
-            }
-            return out.toByteArray();
-        }
-    }
-
     @SuppressWarnings("unused")
     private boolean checkElevatedPrivileges() {
         try {
@@ -821,7 +1218,7 @@ public class SecurityServiceImpl implements SecurityService {
     }
 
     @Override
-    public void performSystemScan() {
+    public void performSystemScan(boolean fullRescan) {
         if (!systemScanRunning.compareAndSet(false, true)) {
             throw new ResponseStatusException(HttpStatus.CONFLICT, "System scan is already in progress");
         }
@@ -829,13 +1226,15 @@ public class SecurityServiceImpl implements SecurityService {
             initializeSystemScanSession();
             stopSystemScan.set(false);
             systemScanFilesScanned.set(0);
+            systemScanFilesUnchanged.set(0);
+            systemScanFilesKnownGood.set(0);
             // SecurityContextHolder is thread-local by default, so without this
             // explicit capture/propagation, scanFile() running on
             // systemScanExecutor's thread would see an empty context and
             // attribute every result to "system" instead of the admin who
             // triggered the scan.
             SecurityContext callerContext = SecurityContextHolder.getContext();
-            systemScanExecutor.submit(() -> runSystemScan(callerContext));
+            systemScanExecutor.submit(() -> runSystemScan(callerContext, fullRescan));
         } catch (IOException e) {
             systemScanRunning.set(false);
             stopSystemScan.set(false);
@@ -844,10 +1243,10 @@ public class SecurityServiceImpl implements SecurityService {
         }
     }
 
-    private void runSystemScan(SecurityContext callerContext) {
+    private void runSystemScan(SecurityContext callerContext, boolean fullRescan) {
         SecurityContextHolder.setContext(callerContext);
         try {
-            runSystemScanInternal();
+            runSystemScanInternal(fullRescan);
         } finally {
             SecurityContextHolder.clearContext();
         }
@@ -893,16 +1292,24 @@ public class SecurityServiceImpl implements SecurityService {
         return session != null ? session.totalResults.get() : 0;
     }
 
-    private void recordSystemScanResult(ScanResult result) {
+    // Returns false once the session already holds MAX_SYSTEM_SCAN_RESULTS.
+    // With several walker threads finishing files at once, checking the
+    // count before calling this is no longer enough to keep the cap exact,
+    // so the check happens here under the lock.
+    private boolean recordSystemScanResult(ScanResult result) {
         if (result == null) {
-            return;
+            return false;
         }
 
         synchronized (systemScanSessionLock) {
             SystemScanSession session = currentSystemScanSession;
             if (session == null) {
                 logger.warn("Attempted to record a system scan result without an active session");
-                return;
+                return false;
+            }
+            if (session.totalResults.get() >= MAX_SYSTEM_SCAN_RESULTS) {
+                stopSystemScan.set(true);
+                return false;
             }
 
             session.pendingResults.add(result);
@@ -917,6 +1324,7 @@ public class SecurityServiceImpl implements SecurityService {
             if (totalResults >= MAX_SYSTEM_SCAN_RESULTS) {
                 stopSystemScan.set(true);
             }
+            return true;
         }
     }
 
@@ -951,81 +1359,106 @@ public class SecurityServiceImpl implements SecurityService {
         }
     }
 
-    private void runSystemScanInternal() {
+    private void runSystemScanInternal(boolean fullRescan) {
         AtomicInteger skippedFiles = new AtomicInteger(0);
         long scanDeadline = System.currentTimeMillis() + MAX_SYSTEM_SCAN_DURATION_MS;
+        ForkJoinPool pool = newSystemScanPool();
+        systemScanPool = pool;
+        FileManifest manifest = openSystemScanManifest();
+        // Size/mtime each queued file had when the walker saw it, keyed by
+        // path, until its verdict is persisted and can go into the manifest.
+        Map<String, ManifestStamp> manifestStamps = new ConcurrentHashMap<>();
+        ScanTally tally = new ScanTally("SYSTEM", resolveCurrentUsername(), null);
+        ScanPipeline<FileVerdict> pipeline = newScanPipeline("system-scan",
+                SecurityContextHolder.getContext(),
+                (path, bytes) -> evaluateFile(path.toFile(), bytes),
+                (path, error) -> analysisFailed(path, "FILE"),
+                batch -> persistSystemScanBatch(batch, tally, manifest, manifestStamps));
+        systemScanPipeline = pipeline;
 
         try {
             logger.info("Starting system scan...");
-            File[] roots = File.listRoots();
-            if (roots == null || roots.length == 0) {
+            SystemScanScope scope = SystemScanScope.resolve(
+                    SystemScanScope.parseTypes(systemScanExcludedFilesystemTypes),
+                    systemScanSkipNetworkFilesystems, systemScanCrossDevices);
+            List<Path> roots = scope.roots();
+            if (roots.isEmpty()) {
                 throw new RuntimeException("No root directories found");
             }
 
-            logger.info("Found {} root directories to scan", roots.length);
+            logger.info("Found {} root directories to scan with {} threads", roots.size(), pool.getParallelism());
+            logger.info("Mount points left out of the system scan: {}", scope.boundarySummary());
 
-            Set<String> skipDirectories = new HashSet<>(Arrays.asList(
-                    "$Recycle.Bin",
-                    "System Volume Information",
-                    "Windows",
-                    "Program Files",
-                    "Program Files (x86)",
-                    "ProgramData",
-                    "Recovery",
-                    "Config.Msi",
-                    "Documents and Settings"));
+            // Walker threads don't inherit the SecurityContext runSystemScan()
+            // installed on this thread; the visitor re-installs it for the
+            // error results it saves itself. Directory symlinks are not
+            // followed: whatever they point at inside the scope is walked at
+            // its real location, and outside it (/proc, another device) it
+            // should not be walked at all.
+            ParallelFileWalker walker = new ParallelFileWalker(pool, new SystemScanVisitor(
+                    scope, skippedFiles, scanDeadline, SecurityContextHolder.getContext(), pipeline,
+                    tally, fullRescan ? null : manifest, manifestStamps), false);
 
-            for (File root : roots) {
+            for (Path root : roots) {
                 if (stopSystemScan.get()) {
                     logger.info("System scan stopped by user");
                     break;
                 }
 
-                logger.info("Scanning root directory: {}", root.getAbsolutePath());
+                logger.info("Scanning root directory: {}", root.toAbsolutePath());
 
                 try {
-                    scanDirectory(root.toPath(), skipDirectories, systemScanFilesScanned, skippedFiles, scanDeadline);
-                } catch (AccessDeniedException e) {
-                    logger.debug("Access denied to root directory: {}", root, e);
-                    ScanResult errorResult = new ScanResult();
-                    errorResult.setFilePath(root.getPath());
-                    errorResult.setInfected(false);
-                    errorResult.setThreatType("ERROR");
-                    errorResult.setThreatDetails(SAFE_ERROR_MESSAGES.get("ACCESS_DENIED"));
-                    errorResult.setScanType("SYSTEM");
-                    errorResult.setActionTaken("NONE");
-                    saveScanResult(errorResult);
-                    recordSystemScanResult(errorResult);
-                } catch (IOException e) {
-                    logger.error("IO error scanning root directory: {}", root, e);
-                    ScanResult errorResult = new ScanResult();
-                    errorResult.setFilePath(root.getPath());
-                    errorResult.setInfected(false);
-                    errorResult.setThreatType("ERROR");
-                    errorResult.setThreatDetails(SAFE_ERROR_MESSAGES.get("IO_ERROR"));
-                    errorResult.setScanType("SYSTEM");
-                    errorResult.setActionTaken("NONE");
-                    saveScanResult(errorResult);
-                    recordSystemScanResult(errorResult);
+                    walker.walk(root);
                 } catch (Exception e) {
                     logger.error("Unexpected error scanning root directory: {}", root, e);
                     ScanResult errorResult = new ScanResult();
-                    errorResult.setFilePath(root.getPath());
+                    errorResult.setFilePath(root.toString());
                     errorResult.setInfected(false);
                     errorResult.setThreatType("ERROR");
                     errorResult.setThreatDetails(SAFE_ERROR_MESSAGES.get("SCAN_ERROR"));
                     errorResult.setScanType("SYSTEM");
                     errorResult.setActionTaken("NONE");
                     saveScanResult(errorResult);
+                    tally.record(errorResult, true);
                     recordSystemScanResult(errorResult);
                 }
             }
 
-            logger.info("System scan completed. Scanned: {}, Skipped: {}, Total Results: {}",
-                    systemScanFilesScanned.get(), skippedFiles.get(), getCurrentSystemScanResultCount());
+            // A stopped scan drops whatever is still queued instead of
+            // reading and scanning it anyway.
+            boolean completed = !stopSystemScan.get();
+            if (!completed) {
+                pipeline.cancel();
+            }
+            pipeline.finish();
+            scanResultWriter.flush();
+            saveScanSummary(tally);
+
+            // Only a scan that visited everything knows which manifest
+            // entries belong to files that no longer exist.
+            if (manifest != null && completed) {
+                manifest.compact();
+            }
+
+            logger.info("System scan completed. Scanned: {}, Known-good: {} ({}%), Unchanged: {}, Skipped: {}, "
+                    + "Total Results: {}",
+                    systemScanFilesScanned.get(), systemScanFilesKnownGood.get(),
+                    Math.round(getSystemScanKnownGoodRatio() * 100), systemScanFilesUnchanged.get(),
+                    skippedFiles.get(), getCurrentSystemScanResultCount());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("System scan interrupted");
         } catch (Exception e) {
             logger.error("Critical error during system scan: {}", e.getMessage(), e);
         } finally {
+            systemScanPool = null;
+            pool.shutdownNow();
+            // No-op after finish(); stops the stage threads if the scan
+            // bailed out before reaching it.
+            pipeline.shutdownNow();
+            if (manifest != null) {
+                manifest.close();
+            }
             synchronized (systemScanSessionLock) {
                 SystemScanSession session = currentSystemScanSession;
                 if (session != null) {
@@ -1037,11 +1470,125 @@ public class SecurityServiceImpl implements SecurityService {
         }
     }
 
+    // Walker-time metadata of a queued file, for the skip manifest.
+    private record ManifestStamp(String key, long size, long mtimeMillis) {
+    }
+
+    // Path plus device/inode where the filesystem has one, so a file
+    // replaced in place (new inode, same size and mtime) is not skipped,
+    // and a renamed file, whose name-based signals may differ, is not
+    // either.
+    private static String manifestKey(Path file, BasicFileAttributes attributes) {
+        Object fileKey = attributes.fileKey();
+        return fileKey != null ? file + "\0" + fileKey : file.toString();
+    }
+
+    // Signatures whose changes empty the skip index (see FileManifest):
+    // retro-hunt covers new SHA-256 digests, but only for files that have
+    // a scan_results row to match, and never SHA-1 or MD5.
+    private Set<HashType> manifestSignatureTypes() {
+        return aggregateCleanResults
+                ? EnumSet.allOf(HashType.class)
+                : EnumSet.complementOf(EnumSet.of(HashType.SHA256));
+    }
+
+    private FileManifest openSystemScanManifest() {
+        if (!systemScanSkipIndexEnabled) {
+            return null;
+        }
+        Path manifestPath = Paths.get(systemScanSkipIndexFile);
+        try {
+            FileManifest manifest = FileManifest.open(manifestPath,
+                    threatIntelSignatureService.signatureFingerprint(manifestSignatureTypes()));
+            logger.info("System scan skip index {} holds {} entries", manifestPath, manifest.size());
+            return manifest;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("System scan skip index {} unavailable, scanning every file: {}",
+                    manifestPath, e.getMessage());
+            return null;
+        }
+    }
+
+    // Persist stage of the system scan: save the batch, then record each
+    // result into the session the same way the walker used to per file,
+    // and into the skip manifest.
+    private void persistSystemScanBatch(List<FileVerdict> batch, ScanTally tally, FileManifest manifest,
+            Map<String, ManifestStamp> manifestStamps) {
+        persistVerdicts(batch, tally);
+        for (FileVerdict verdict : batch) {
+            ScanResult result = verdict.result();
+            ManifestStamp stamp = manifestStamps.remove(result.getFilePath());
+            if (manifest != null && stamp != null) {
+                try {
+                    manifest.record(stamp.key(), stamp.size(), stamp.mtimeMillis(),
+                            "CLEAN".equals(result.getThreatType()));
+                } catch (IOException e) {
+                    logger.warn("Could not update system scan skip index: {}", e.getMessage());
+                }
+            }
+            if (!recordSystemScanResult(result)) {
+                continue;
+            }
+            systemScanFilesScanned.incrementAndGet();
+            if (isKnownGoodResult(result)) {
+                systemScanFilesKnownGood.incrementAndGet();
+            }
+
+            if (result.isInfected()) {
+                logger.warn("Infected file found: {} (Type: {})", result.getFilePath(), result.getThreatType());
+            }
+        }
+    }
+
+    private ForkJoinPool newSystemScanPool() {
+        int parallelism = systemScanParallelism > 0
+                ? systemScanParallelism
+                : Runtime.getRuntime().availableProcessors();
+        return new ForkJoinPool(parallelism, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("system-scan-walker-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+
     @Override
     public int getSystemScanFilesScanned() {
         return systemScanFilesScanned.get();
     }
 
+    @Override
+    public int getSystemScanFilesUnchanged() {
+        return systemScanFilesUnchanged.get();
+    }
+
+    @Override
+    public int getSystemScanFilesKnownGood() {
+        return systemScanFilesKnownGood.get();
+    }
+
+    @Override
+    public double getSystemScanKnownGoodRatio() {
+        int scanned = systemScanFilesScanned.get();
+        return scanned == 0 ? 0.0 : (double) systemScanFilesKnownGood.get() / scanned;
+    }
+
+    private static boolean isKnownGoodResult(ScanResult result) {
+        String signals = result.getDetectionSignals();
+        return signals != null && signals.contains("KNOWN_GOOD_HASH");
+    }
+
+    @Override
+    public Map<String, Object> getSystemScanPipelineMetrics() {
+        ScanPipeline<FileVerdict> pipeline = systemScanPipeline;
+        if (pipeline == null) {
+            return Map.of();
+        }
+        Map<String, Object> metrics = new LinkedHashMap<>(pipeline.metrics());
+        metrics.put("persistence", scanResultWriter.status());
+        return metrics;
+    }
+
     @Override
     public List<ScanResult> getCurrentSystemScanResults() {
         SystemScanSession session;
@@ -1081,104 +1628,164 @@ public class SecurityServiceImpl implements SecurityService {
 
     @PreDestroy
     void shutdownScanExecutors() {
+        ForkJoinPool pool = systemScanPool;
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+        ScanPipeline<FileVerdict> pipeline = systemScanPipeline;
+        if (pipeline != null) {
+            pipeline.shutdownNow();
+        }
+        directoryScanJobs.values().forEach(job -> {
+            ScanPipeline<FileVerdict> jobPipeline = job.pipeline;
+            if (jobPipeline != null) {
+                jobPipeline.shutdownNow();
+            }
+        });
         systemScanExecutor.shutdownNow();
         directoryScanExecutor.shutdownNow();
-    }
-
-    private void scanDirectory(Path directory, Set<String> skipDirectories,
-            AtomicInteger scannedFiles,
-            AtomicInteger skippedFiles,
-            long scanDeadline) throws IOException {
-        try {
-            if (stopSystemScan.get() || System.currentTimeMillis() >= scanDeadline
-                    || getCurrentSystemScanResultCount() >= MAX_SYSTEM_SCAN_RESULTS) {
-                if (getCurrentSystemScanResultCount() >= MAX_SYSTEM_SCAN_RESULTS) {
+        chunkedUploads.values().forEach(this::closeQuietly);
+        chunkedUploads.clear();
+    }
+
+    // Per-scan callbacks for ParallelFileWalker. Same stop conditions and
+    // error results the old recursive scanDirectory() had; directories and
+    // files are skipped by the shared ScanExclusionPolicy, and mount
+    // points by the SystemScanScope;
+    // every method here runs concurrently on the walker pool. Files are
+    // handed to the scan pipeline rather than scanned on the walker.
+    private final class SystemScanVisitor implements ParallelFileWalker.Visitor {
+        private final SystemScanScope scope;
+        private final AtomicInteger skippedFiles;
+        private final long scanDeadline;
+        private final SecurityContext callerContext;
+        private final ScanPipeline<FileVerdict> pipeline;
+        private final ScanTally tally;
+        // null on a full rescan: nothing is skipped, but results are
+        // still recorded through manifestStamps.
+        private final FileManifest manifest;
+        private final Map<String, ManifestStamp> manifestStamps;
+
+        SystemScanVisitor(SystemScanScope scope, AtomicInteger skippedFiles, long scanDeadline, SecurityContext callerContext, ScanPipeline<FileVerdict> pipeline, ScanTally tally,
+                FileManifest manifest, Map<String, ManifestStamp> manifestStamps) {
+            this.scope = scope;
+            this.skippedFiles = skippedFiles;
+            this.scanDeadline = scanDeadline;
+            this.callerContext = callerContext;
+            this.pipeline = pipeline;
+            this.tally = tally;
+            this.manifest = manifest;
+            this.manifestStamps = manifestStamps;
+        }
+
+        @Override
+        public boolean shouldStop() {
+            if (stopSystemScan.get()) {
+                return true;
+            }
+            boolean capped = getCurrentSystemScanResultCount() >= MAX_SYSTEM_SCAN_RESULTS;
+            boolean expired = System.currentTimeMillis() >= scanDeadline;
+            if (!capped && !expired) {
+                return false;
+            }
+            // Only the thread that flips the flag logs why.
+            if (stopSystemScan.compareAndSet(false, true)) {
+                if (capped) {
                     logger.warn("System scan capped at {} results to avoid resource exhaustion",
                             MAX_SYSTEM_SCAN_RESULTS);
                 }
-                if (System.currentTimeMillis() >= scanDeadline) {
+                if (expired) {
                     logger.warn("System scan stopped after exceeding {} ms", MAX_SYSTEM_SCAN_DURATION_MS);
                 }
-                stopSystemScan.set(true);
-                return;
             }
+            return true;
+        }
 
-            if (skipDirectories.stream()
-                    .anyMatch(dir -> directory.toString().toLowerCase().contains(dir.toLowerCase()))) {
-                logger.debug("Skipping restricted directory: {}", directory);
+        @Override
+        public boolean skipDirectory(Path directory) {
+            String outOfScope = scope.skipReason(directory);
+            if (outOfScope != null) {
+                logger.debug("Skipping mount point {}: {}", directory, outOfScope);
+                return true;
+            }
+            if (scanExclusionPolicy.excludes(directory)) {
+                logger.debug("Skipping excluded directory: {}", directory);
                 skippedFiles.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void visitFile(Path file, BasicFileAttributes attributes) {
+            if (scanExclusionPolicy.excludes(file)) {
+                skippedFiles.incrementAndGet();
+                return;
+            }
+            String key = manifestKey(file, attributes);
+            long size = attributes.size();
+            long mtime = attributes.lastModifiedTime().toMillis();
+            if (manifest != null && manifest.unchanged(key, size, mtime)) {
+                systemScanFilesUnchanged.incrementAndGet();
                 return;
             }
 
-            DirectoryStream<Path> stream = Files.newDirectoryStream(directory);
-            try (stream) {
-                for (Path path : stream) {
-                    if (stopSystemScan.get()) {
-                        return;
-                    }
+            logger.debug("Queueing file for scan: {}", file);
+            // Stamped before the read stage opens the file: if it changes
+            // while being scanned, the stored mtime is the older one and
+            // the next scan looks at it again.
+            manifestStamps.put(file.toFile().getAbsolutePath(), new ManifestStamp(key, size, mtime));
+            try {
+                // Blocks while the pipeline is full, which is what keeps
+                // the walker from racing ahead of a slow disk or database.
+                pipeline.submit(file);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                stopSystemScan.set(true);
+            }
+        }
 
-                    try {
-                        boolean isDirectory = Files.isDirectory(path);
-                        boolean isReadable = Files.isReadable(path);
-                        boolean isRegularFile = Files.isRegularFile(path);
-
-                        if (isDirectory) {
-                            scanDirectory(path, skipDirectories, scannedFiles, skippedFiles, scanDeadline);
-                        } else if (isRegularFile && isReadable) {
-                            logger.debug("Scanning file: {}", path);
-                            ScanResult result = scanFile(path.toFile());
-                            if (getCurrentSystemScanResultCount() >= MAX_SYSTEM_SCAN_RESULTS) {
-                                stopSystemScan.set(true);
-                                return;
-                            }
-                            recordSystemScanResult(result);
-                            scannedFiles.incrementAndGet();
+        @Override
+        public void accessDenied(Path path) {
+            logger.debug("Access denied to path: {}", path);
+            skippedFiles.incrementAndGet();
+        }
 
-                            if (result.isInfected()) {
-                                logger.warn("Infected file found: {} (Type: {})",
-                                        path, result.getThreatType());
-                            }
+        @Override
+        public void loopDetected(Path directory) {
+            logger.debug("Skipping directory loop (bind mount of a parent): {}", directory);
+        }
 
-                            if (System.currentTimeMillis() >= scanDeadline
-                                    || getCurrentSystemScanResultCount() >= MAX_SYSTEM_SCAN_RESULTS) {
-                                stopSystemScan.set(true);
-                                return;
-                            }
-                        }
-                    } catch (AccessDeniedException e) {
-                        logger.debug("Access denied to path: {}", path);
-                        skippedFiles.incrementAndGet();
-                    } catch (IOException e) {
-                        logger.error("IO error processing path: {}", path, e);
-                        ScanResult errorResult = new ScanResult();
-                        errorResult.setFilePath(path.getFileName().toString());
-                        errorResult.setInfected(false);
-                        errorResult.setThreatType("ERROR");
-                        errorResult.setThreatDetails(SAFE_ERROR_MESSAGES.get("IO_ERROR"));
-                        errorResult.setScanType("SYSTEM");
-                        errorResult.setActionTaken("NONE");
-                        saveScanResult(errorResult);
-                        recordSystemScanResult(errorResult);
-                    } catch (Exception e) {
-                        logger.error("Unexpected error processing path: {}", path, e);
-                        ScanResult errorResult = new ScanResult();
-                        errorResult.setFilePath(path.getFileName().toString());
-                        errorResult.setInfected(false);
-                        errorResult.setThreatType("ERROR");
-                        errorResult.setThreatDetails(SAFE_ERROR_MESSAGES.get("SCAN_ERROR"));
-                        errorResult.setScanType("SYSTEM");
-                        errorResult.setActionTaken("NONE");
-                        saveScanResult(errorResult);
-                        recordSystemScanResult(errorResult);
-                    }
-                }
-            } catch (AccessDeniedException e) {
-                logger.debug("Access denied to directory: {}", directory);
-                skippedFiles.incrementAndGet();
-            }
-        } catch (Exception e) {
+        @Override
+        public void directoryFailed(Path directory, Exception e) {
             logger.error("Error scanning directory {}: {}", directory, e.getMessage());
         }
+
+        @Override
+        public void entryFailed(Path path, Exception e) {
+            boolean ioError = e instanceof IOException;
+            if (ioError) {
+                logger.error("IO error processing path: {}", path, e);
+            } else {
+                logger.error("Unexpected error processing path: {}", path, e);
+            }
+            ScanResult errorResult = new ScanResult();
+            Path fileName = path.getFileName();
+            errorResult.setFilePath(fileName != null ? fileName.toString() : path.toString());
+            errorResult.setInfected(false);
+            errorResult.setThreatType("ERROR");
+            errorResult.setThreatDetails(SAFE_ERROR_MESSAGES.get(ioError ? "IO_ERROR" : "SCAN_ERROR"));
+            errorResult.setScanType("SYSTEM");
+            errorResult.setActionTaken("NONE");
+            SecurityContextHolder.setContext(callerContext);
+            try {
+                saveScanResult(errorResult);
+            } finally {
+                SecurityContextHolder.clearContext();
+            }
+            tally.record(errorResult, true);
+            recordSystemScanResult(errorResult);
+        }
     }
 
     @Override
@@ -1217,11 +1824,88 @@ public class SecurityServiceImpl implements SecurityService {
 
     private static final int MAX_PAGE_SIZE = 100;
 
+    // Open ends of the history time line, for the first and last pages.
+    private static final LocalDateTime HISTORY_START = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime HISTORY_END = LocalDateTime.of(9999, 12, 31, 0, 0);
+
     @Override
-    public PagedResponse<ScanResult> getScanHistory(int page, int size) {
+    public ScanHistoryResponse getScanHistory(int page, int size) {
         Pageable pageable = PageRequest.of(page, normalizePageSize(size),
                 Sort.by(Sort.Direction.DESC, "scanDateTime"));
-        return PagedResponse.from(scanResultRepository.findAllByOrderByScanDateTimeDesc(pageable));
+        return scanHistory(scanResultRepository.findAllByOrderByScanDateTimeDesc(pageable), null);
+    }
+
+    @Override
+    public ScanHistoryResponse getScanHistoryForOwner(String ownerUsername, int page, int size) {
+        Pageable pageable = PageRequest.of(page, normalizePageSize(size),
+                Sort.by(Sort.Direction.DESC, "scanDateTime"));
+        return scanHistory(scanResultRepository.findByOwnerUsernameOrderByScanDateTimeDesc(ownerUsername, pageable),
+                ownerUsername);
+    }
+
+    // A bulk scan's summary goes on the page whose rows span its finish
+    // time: from the oldest row on the page up to the newest row of the
+    // page before (open-ended on the first and last pages), so paging
+    // through the rows shows every summary exactly once. A scan that kept
+    // no rows at all still shows up between its neighbours.
+    private ScanHistoryResponse scanHistory(Page<ScanResult> results, String ownerUsername) {
+        List<ScanResult> rows = results.getContent();
+        LocalDateTime from = results.isLast() || rows.isEmpty()
+                ? HISTORY_START
+                : rows.get(rows.size() - 1).getScanDateTime();
+        LocalDateTime to = results.isFirst() ? HISTORY_END : newestResultBefore(results, ownerUsername);
+
+        List<ScanSummary> scans = List.of();
+        if (to != null) {
+            Pageable cap = PageRequest.of(0, MAX_PAGE_SIZE);
+            scans = ownerUsername == null
+                    ? scanSummaryRepository.findByFinishedAtGreaterThanEqualAndFinishedAtLessThanOrderByFinishedAtDesc(
+                            from, to, cap)
+                    : scanSummaryRepository
+                            .findByOwnerUsernameAndFinishedAtGreaterThanEqualAndFinishedAtLessThanOrderByFinishedAtDesc(
+                                    ownerUsername, from, to, cap);
+        }
+        Map<String, Long> totals = ownerUsername == null
+                ? historyTotals(scanResultRepository.countByOutcome(), scanSummaryRepository.totals())
+                : historyTotals(scanResultRepository.countByOutcomeForOwner(ownerUsername),
+                        scanSummaryRepository.totalsForOwner(ownerUsername));
+        return new ScanHistoryResponse(results, scans, totals);
+    }
+
+    // Scan time of the row just above this page, or null past the end.
+    private LocalDateTime newestResultBefore(Page<ScanResult> results, String ownerUsername) {
+        long offset = results.getPageable().getOffset();
+        Pageable previous = PageRequest.of((int) (offset - 1), 1, Sort.by(Sort.Direction.DESC, "scanDateTime"));
+        Page<ScanResult> row = ownerUsername == null
+                ? scanResultRepository.findAllByOrderByScanDateTimeDesc(previous)
+                : scanResultRepository.findByOwnerUsernameOrderByScanDateTimeDesc(ownerUsername, previous);
+        return row.hasContent() ? row.getContent().get(0).getScanDateTime() : null;
+    }
+
+    // Files per outcome over both tables. Rows a summarized scan stored
+    // are already in its counters, so they are taken out of the row
+    // counts; outcomes other than CLEAN always have their rows, so their
+    // summary counters add nothing new.
+    private static Map<String, Long> historyTotals(List<ScanResultRepository.OutcomeCount> rowCounts,
+            ScanSummaryRepository.Totals summaries) {
+        long[] rows = new long[ScanTally.Outcome.values().length];
+        long allRows = 0;
+        for (ScanResultRepository.OutcomeCount count : rowCounts) {
+            ScanTally.Outcome outcome = ScanTally.outcomeOf(count.getVerdict(), count.isInfected(),
+                    count.getThreatType());
+            rows[outcome.ordinal()] += count.getResults();
+            allRows += count.getResults();
+        }
+        Map<String, Long> totals = new LinkedHashMap<>();
+        totals.put("files", allRows - summaries.getStoredResults() + summaries.getFilesScanned());
+        totals.put("clean", rows[ScanTally.Outcome.CLEAN.ordinal()] - summaries.getStoredClean()
+                + summaries.getCleanFiles());
+        totals.put("suspicious", rows[ScanTally.Outcome.SUSPICIOUS.ordinal()]);
+        totals.put("malicious", rows[ScanTally.Outcome.MALICIOUS.ordinal()]);
+        totals.put("errors", rows[ScanTally.Outcome.ERROR.ordinal()]);
+        totals.put("bulkScans", summaries.getScans());
+        totals.put("bulkScanBytes", summaries.getBytesScanned());
+        return totals;
     }
 
     @Override
@@ -1244,6 +1928,32 @@ public class SecurityServiceImpl implements SecurityService {
         threatIntelSignatureService.refreshAsync();
     }
 
+    @Override
+    public Map<String, Object> getVirusDefinitionStatus() {
+        Map<String, Object> status = new LinkedHashMap<>(threatIntelSignatureService.refreshStatus());
+        status.put("knownGood", knownGoodHashService.status());
+        status.put("retroHunt", retroHuntService.status());
+        return status;
+    }
+
+    @Override
+    public Map<String, Object> getScanExclusions() {
+        return scanExclusionPolicy.status();
+    }
+
+    @Override
+    public Map<String, Object> updateScanExclusions(List<String> rules) {
+        if (rules == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "rules is required");
+        }
+        try {
+            scanExclusionPolicy.update(rules);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        return scanExclusionPolicy.status();
+    }
+
     @Override
     public void quarantineFile(File file) {
         try {
@@ -1360,7 +2070,7 @@ public class SecurityServiceImpl implements SecurityService {
             if (RANSOMWARE_EXTENSIONS.contains(extension)) {
                 score += SCORE_RANSOMWARE_EXTENSION;
             }
-            if (containsRansomwarePatterns(file)) {
+            if (contentVerdict(file, null).ransomwareText()) {
                 score += SCORE_RANSOMWARE_TEXT_PATTERN;
             }
             score += scoreRansomwareDirectoryBehavior(file);
@@ -1376,43 +2086,15 @@ public class SecurityServiceImpl implements SecurityService {
     // replaces the old "extension longer than 4 chars" check, which matched
     // ordinary extensions like .json, .yaml, and .properties and flagged
     // almost any project directory containing a readme.txt.
-    @SuppressWarnings("null")
     private int scoreRansomwareDirectoryBehavior(File file) {
         File parentDir = file.getParentFile();
         if (parentDir == null || !parentDir.exists()) {
             return 0;
         }
 
-        // Use cached listing — ONE listFiles() call per directory, not per file.
-        File[] files = dirListingCache.get()
-                .computeIfAbsent(parentDir.getAbsolutePath(), k -> parentDir.listFiles());
-        if (files == null) {
-            return 0;
-        }
-
-        boolean hasRansomNote = false;
-        Map<String, Integer> unknownExtCounts = new HashMap<>();
-        for (File f : files) {
-            String name = f.getName().toLowerCase();
-            if ((name.contains("readme") && name.contains("txt")) ||
-                    name.contains("how_to_decrypt") ||
-                    name.contains("recovery") ||
-                    name.contains("help_decrypt") ||
-                    name.contains("decrypt_instructions")) {
-                hasRansomNote = true;
-            }
-            String ext = getFileExtension(f).toLowerCase();
-            if (!ext.isEmpty() && !COMMON_EXTENSIONS.contains(ext) && !RANSOMWARE_EXTENSIONS.contains(ext)) {
-                unknownExtCounts.merge(ext, 1, Integer::sum);
-            }
-        }
-
-        if (!hasRansomNote) {
-            return 0;
-        }
-
-        int maxSameUnknownExt = unknownExtCounts.values().stream().mapToInt(Integer::intValue).max().orElse(0);
-        return maxSameUnknownExt >= 5 ? SCORE_RANSOMWARE_DIR_BEHAVIOR : 0;
+        // ONE listing per directory, summarized once and shared by every
+        // scan thread; each file then costs a cache lookup.
+        return directorySummaryCache.get(parentDir).looksEncrypted() ? SCORE_RANSOMWARE_DIR_BEHAVIOR : 0;
     }
 
     @Override
@@ -1426,7 +2108,7 @@ public class SecurityServiceImpl implements SecurityService {
                     break;
                 }
             }
-            score += scorePatterns(file).total();
+            score += scorePatterns(contentVerdict(file, null)).total();
             return score >= THRESHOLD_MALICIOUS;
         } catch (Exception e) {
             logger.error("Trojan detection failed for file: {}", file.getName(), e);
@@ -1449,22 +2131,21 @@ public class SecurityServiceImpl implements SecurityService {
     @Override
     public boolean detectMalware(File file) {
         try {
-            String fileHash = calculateFileHash(file);
-            if (threatIntelSignatureService.isKnownMalicious(fileHash)) {
+            ContentVerdict content = contentVerdict(file, null);
+            if (content.knownMalicious()) {
                 return true;
             }
 
             int score = 0;
-            byte[] header = readFilePrefix(file, 8);
-            score += checkExtensionMasquerade(file, header);
-            score += scorePatterns(file).total();
-            score += scoreRootkit(file, header).total();
+            score += checkExtensionMasquerade(file, content);
+            score += scorePatterns(content).total();
+            score += scoreRootkit(file, content).total();
 
             String extension = getFileExtension(file).toLowerCase();
             if (RANSOMWARE_EXTENSIONS.contains(extension)) {
                 score += SCORE_RANSOMWARE_EXTENSION;
             }
-            if (containsRansomwarePatterns(file)) {
+            if (content.ransomwareText()) {
                 score += SCORE_RANSOMWARE_TEXT_PATTERN;
             }
             score += scoreRansomwareDirectoryBehavior(file);
@@ -1493,59 +2174,38 @@ public class SecurityServiceImpl implements SecurityService {
     @Override
     public boolean detectRootkit(File file) {
         try {
-            byte[] header = readFilePrefix(file, 8);
-            return scoreRootkit(file, header).total() >= THRESHOLD_MALICIOUS;
+            return scoreRootkit(file, contentVerdict(file, null)).total() >= THRESHOLD_MALICIOUS;
         } catch (IOException e) {
             logger.error("Error during rootkit detection for file: {}", file.getName(), e);
             return false;
         }
     }
 
-    private ScoreResult scoreRootkit(File file, byte[] header8) {
+    private ScoreResult scoreRootkit(File file, ContentVerdict content) {
         int score = 0;
         List<String> signals = new ArrayList<>();
-        try {
-            String absPath = file.getAbsolutePath().toLowerCase();
-
-            boolean inRootkitLocation = absPath.contains("/lib/modules/") ||
-                    absPath.contains("/boot/") ||
-                    absPath.contains("\\system32\\drivers\\") ||
-                    absPath.contains("\\syswow64\\drivers\\");
-
-            if (inRootkitLocation) {
-                byte[] header = readFilePrefix(file, 4096);
-                if (detectRootkitBinaryPatterns(header)) {
-                    logger.warn("Rootkit binary patterns in driver location: {}", file.getName());
-                    score += SCORE_ROOTKIT_BINARY;
-                    signals.add("ROOTKIT_BINARY_IN_DRIVER_LOCATION");
-                }
-            }
+        String absPath = file.getAbsolutePath().toLowerCase();
 
-            int sampleSize = (int) Math.min(file.length(), MAX_PATTERN_SCAN_BYTES);
-            byte[] content = readFilePrefix(file, sampleSize);
-            String contentStr = new String(content, StandardCharsets.UTF_8);
+        boolean inRootkitLocation = absPath.contains("/lib/modules/") ||
+                absPath.contains("/boot/") ||
+                absPath.contains("\\system32\\drivers\\") ||
+                absPath.contains("\\syswow64\\drivers\\");
 
-            for (Pattern pattern : KERNEL_PATTERNS) {
-                if (pattern.matcher(contentStr).find()) {
-                    score += SCORE_ROOTKIT_TEXT;
-                    signals.add("ROOTKIT_TEXT_PATTERN");
-                    break;
-                }
-            }
-        } catch (IOException e) {
-            logger.error("Error during rootkit scoring for file: {}", file.getName(), e);
+        if (inRootkitLocation && content.rootkitBinaryBytes()) {
+            logger.warn("Rootkit binary patterns in driver location: {}", file.getName());
+            score += SCORE_ROOTKIT_BINARY;
+            signals.add("ROOTKIT_BINARY_IN_DRIVER_LOCATION");
+        }
+
+        if (content.kernelText()) {
+            score += SCORE_ROOTKIT_TEXT;
+            signals.add("ROOTKIT_TEXT_PATTERN");
         }
         return new ScoreResult(score, signals);
     }
 
     private boolean detectRootkitBinaryPatterns(byte[] content) {
-        byte[][] signatures = {
-                new byte[] { 0x68, 0x69, 0x64, 0x65, 0x70, 0x72, 0x6F, 0x63 },
-                new byte[] { 0x73, 0x79, 0x73, 0x63, 0x61, 0x6C, 0x6C },
-                new byte[] { 0x6B, 0x65, 0x72, 0x6E, 0x65, 0x6C, 0x33, 0x32 }
-        };
-
-        for (byte[] signature : signatures) {
+        for (byte[] signature : DetectionPatterns.ROOTKIT_BINARY_SIGNATURES) {
             if (containsSequence(content, signature)) {
                 return true;
             }
@@ -1581,7 +2241,6 @@ public class SecurityServiceImpl implements SecurityService {
         AtomicInteger processedFiles = new AtomicInteger(0);
         AtomicInteger infectedFiles = new AtomicInteger(0);
         String absolutePath;
-        dirListingCache.get().clear();
 
         try {
             if (directoryPath.startsWith("/") || directoryPath.matches("^[A-Za-z]:\\\\.*")) {
@@ -1608,49 +2267,72 @@ public class SecurityServiceImpl implements SecurityService {
 
             logger.info("Found {} files to scan", totalFiles.get());
 
+            // Skipped and error entries are built here on the calling
+            // thread; scanned files go through the pipeline, whose persist
+            // stage saves them and adds them to results.
+            List<ScanResult> unscanned = new ArrayList<>();
+            Path dirName = dir.getFileName();
+            ScanTally tally = new ScanTally("DIRECTORY", resolveCurrentUsername(),
+                    dirName != null ? dirName.toString() : null);
+            ScanPipeline<FileVerdict> pipeline = newScanPipeline("directory-scan", SecurityContextHolder.getContext(),
+                    (path, bytes) -> {
+                        FileVerdict verdict = evaluateFile(path.toFile(), bytes);
+                        verdict.result().setScanType("DIRECTORY");
+                        return verdict;
+                    },
+                    (path, error) -> analysisFailed(path, "DIRECTORY"),
+                    batch -> {
+                        persistVerdicts(batch, tally);
+                        for (FileVerdict verdict : batch) {
+                            results.add(verdict.result());
+                            if (verdict.result().isInfected()) {
+                                infectedFiles.incrementAndGet();
+                            }
+                            int processed = processedFiles.incrementAndGet();
+                            if (processed % 50 == 0 || processed == totalFiles.get()) {
+                                logger.info("Scanned {} files, {} infected so far", processed, infectedFiles.get());
+                            }
+                        }
+                    });
+
             try (Stream<Path> paths = recursive ? Files.walk(dir) : Files.list(dir)) {
-                paths.filter(Files::isRegularFile)
+                Iterator<Path> files = paths.filter(Files::isRegularFile)
                         .filter(p -> !isFileExcluded(p))
-                        .forEach(path -> {
-                            try {
-                                if (isFileExcluded(path)) {
-                                    logSkippedFile(path, results, "File excluded by filter");
-                                    return;
-                                }
-
-                                if (Files.size(path) > 100 * 1024 * 1024) {
-                                    logSkippedFile(path, results, "File too large (>100MB)");
-                                    return;
-                                }
-
-                                ScanResult result = scanFile(path.toFile());
-                                result.setScanType("DIRECTORY");
-                                results.add(result);
-
-                                if (result.isInfected()) {
-                                    infectedFiles.incrementAndGet();
-                                }
-
-                                int processed = processedFiles.incrementAndGet();
-                                if (processed % 50 == 0 || processed == totalFiles.get()) {
-                                    logger.info("Scanned {} files, {} infected so far", processed, infectedFiles.get());
-                                }
-
-                            } catch (AccessDeniedException e) {
-                                logger.debug("Access denied to file: {}", path);
-                                logErrorFile(path, results, SAFE_ERROR_MESSAGES.get("ACCESS_DENIED"));
-                            } catch (IOException e) {
-                                logger.error("IO error scanning file: {}", path, e);
-                                logErrorFile(path, results, SAFE_ERROR_MESSAGES.get("IO_ERROR"));
-                            } catch (Exception e) {
-                                logger.error("Unexpected error scanning file: {}", path, e);
-                                logErrorFile(path, results, SAFE_ERROR_MESSAGES.get("SCAN_ERROR"));
-                            }
-                        });
+                        .iterator();
+                while (files.hasNext()) {
+                    Path path = files.next();
+                    try {
+                        if (isFileExcluded(path)) {
+                            logSkippedFile(path, unscanned, "File excluded by filter");
+                            continue;
+                        }
+
+                        if (Files.size(path) > 100 * 1024 * 1024) {
+                            logSkippedFile(path, unscanned, "File too large (>100MB)");
+                            continue;
+                        }
+
+                        pipeline.submit(path);
+
+                    } catch (AccessDeniedException e) {
+                        logger.debug("Access denied to file: {}", path);
+                        logErrorFile(path, unscanned, SAFE_ERROR_MESSAGES.get("ACCESS_DENIED"));
+                    } catch (IOException e) {
+                        logger.error("IO error scanning file: {}", path, e);
+                        logErrorFile(path, unscanned, SAFE_ERROR_MESSAGES.get("IO_ERROR"));
+                    }
+                }
+                pipeline.finish();
+            } finally {
+                pipeline.shutdownNow();
             }
 
+            results.addAll(unscanned);
             logScanSummary(absolutePath, totalFiles.get(), infectedFiles.get(), results.size());
-            saveResultsInBatches(results);
+            saveResultsInBatches(unscanned);
+            unscanned.forEach(result -> tally.record(result, true));
+            scanResultWriter.flush();
+            saveScanSummary(tally);
             return results;
 
         } catch (AccessDeniedException e) {
@@ -1665,38 +2347,32 @@ public class SecurityServiceImpl implements SecurityService {
             results.add(errorResult);
             saveScanResult(errorResult);
             return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Directory scan interrupted: {}", directoryPath);
+            ScanResult errorResult = createErrorResult(directoryPath, SAFE_ERROR_MESSAGES.get("SCAN_ERROR"));
+            results.add(errorResult);
+            saveScanResult(errorResult);
+            return results;
         } catch (Exception e) {
             logger.error("Unexpected error scanning directory: {}", directoryPath, e);
             ScanResult errorResult = createErrorResult(directoryPath, SAFE_ERROR_MESSAGES.get("SCAN_ERROR"));
             results.add(errorResult);
             saveScanResult(errorResult);
             return results;
-        } finally {
-            dirListingCache.remove();
         }
     }
 
+    // Hidden files (dot files, and the hidden attribute on Windows) are left
+    // out of uploaded-directory scans; everything else is up to the shared
+    // exclusion rules.
     private boolean isFileExcluded(Path path) {
         try {
-            String fileName = path.getFileName().toString().toLowerCase();
-
-            if (Files.isHidden(path) || fileName.startsWith(".")) {
-                return true;
-            }
-
-            if (fileName.equals("thumbs.db") ||
-                    fileName.equals("desktop.ini") ||
-                    fileName.equals(".ds_store")) {
+            Path fileName = path.getFileName();
+            if (fileName != null && fileName.toString().startsWith(".") || Files.isHidden(path)) {
                 return true;
             }
-
-            String pathStr = path.toString().toLowerCase();
-            return pathStr.contains("\\windows\\") ||
-                    pathStr.contains("\\program files\\") ||
-                    pathStr.contains("\\program files (x86)\\") ||
-                    pathStr.contains("/proc/") ||
-                    pathStr.contains("/sys/");
-
+            return scanExclusionPolicy.excludes(path);
         } catch (IOException e) {
             logger.error("Error checking if file is excluded: {}", path, e);
             return false;
@@ -1746,14 +2422,8 @@ public class SecurityServiceImpl implements SecurityService {
     }
 
     private void saveResultsInBatches(List<ScanResult> results) {
-        final int BATCH_SIZE = 100;
-        for (int i = 0; i < results.size(); i += BATCH_SIZE) {
-            int end = Math.min(i + BATCH_SIZE, results.size());
-            List<ScanResult> batch = results.subList(i, end);
-            batch.forEach(this::assignOwnerIfMissing);
-            scanResultRepository.saveAll(batch);
-            logger.debug("Saved batch of {} results to database", batch.size());
-        }
+        results.forEach(this::assignOwnerIfMissing);
+        scanResultWriter.submit(results, false);
     }
 
     // ── Async directory scan job management ──────────────────────────
@@ -1762,7 +2432,8 @@ public class SecurityServiceImpl implements SecurityService {
     public String startDirectoryScanJob(Path tempDir, String directoryName, int totalFiles) {
         String ownerUsername = resolveCurrentUsername();
         String jobId = UUID.randomUUID().toString();
-        DirectoryScanJob job = new DirectoryScanJob(jobId, ownerUsername, directoryName, totalFiles, tempDir);
+        DirectoryScanJob job = new DirectoryScanJob(jobId, ownerUsername, directoryName, totalFiles, tempDir,
+                "DIRECTORY");
         directoryScanJobs.put(jobId, job);
         pruneOldDirectoryScanJobs();
         // Same SecurityContext propagation reasoning as performSystemScan():
@@ -1793,37 +2464,88 @@ public class SecurityServiceImpl implements SecurityService {
     }
 
     private void runDirectoryScanJobInternal(DirectoryScanJob job) {
-        dirListingCache.get().clear();
+        ScanPipeline<FileVerdict> pipeline = newScanPipeline("directory-scan-" + job.id.substring(0, 8),
+                SecurityContextHolder.getContext(),
+                (path, bytes) -> evaluateJobFile(job, path, bytes),
+                (path, error) -> jobAnalysisFailed(job, path),
+                batch -> recordJobBatch(job, batch));
+        job.pipeline = pipeline;
         try (Stream<Path> paths = Files.walk(job.tempDir)) {
-            paths.filter(Files::isRegularFile)
+            Iterator<Path> files = paths.filter(Files::isRegularFile)
                     .filter(p -> !isFileExcluded(p))
-                    .forEach(path -> scanOneJobFile(job, path));
+                    .iterator();
+            while (files.hasNext()) {
+                pipeline.submit(files.next());
+            }
+            // Every result is persisted and counted before the job reports
+            // COMPLETED, so processedFiles has reached its final value.
+            pipeline.finish();
+            scanResultWriter.flush();
+            saveScanSummary(job.tally);
+            // Cleaned up before COMPLETED too, so a client that sees the
+            // job finish never finds its files still on disk.
+            deleteTempDirQuietly(job.tempDir);
 
             job.status = DirectoryScanStatus.COMPLETED;
             logger.info("Directory scan job {} completed: {}/{} files, {} infected",
                     job.id, job.processedFiles.get(), job.totalFiles, job.infectedFiles.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Directory scan job {} interrupted", job.id);
+            job.status = DirectoryScanStatus.FAILED;
+            job.errorMessage = SAFE_ERROR_MESSAGES.get("SCAN_ERROR");
         } catch (Exception e) {
             logger.error("Directory scan job {} failed: {}", job.id, e.getMessage(), e);
             job.status = DirectoryScanStatus.FAILED;
             job.errorMessage = SAFE_ERROR_MESSAGES.get("SCAN_ERROR");
         } finally {
-            dirListingCache.remove();
+            pipeline.shutdownNow();
             deleteTempDirQuietly(job.tempDir);
         }
     }
 
-    private void scanOneJobFile(DirectoryScanJob job, Path path) {
+    // Analyze stage of a directory job. Files the job skips outright are
+    // counted here and produce no result to persist.
+    private FileVerdict evaluateJobFile(DirectoryScanJob job, Path path, byte[] prefetched) {
         try {
-            if (Files.size(path) > 100 * 1024 * 1024) {
+            long size = prefetched != null ? prefetched.length : Files.size(path);
+            if (size > 100 * 1024 * 1024) {
                 job.skippedFiles.incrementAndGet();
-                return;
+                job.processedFiles.incrementAndGet();
+                return null;
             }
 
-            ScanResult result = scanFile(path.toFile());
+            FileVerdict verdict = evaluateFile(path.toFile(), prefetched);
+            ScanResult result = verdict.result();
             result.setScanType("DIRECTORY");
             // Report a path relative to the job's own temp root, not the
             // server's absolute temp-directory path.
             result.setFileName(job.tempDir.relativize(path).toString());
+            return verdict;
+        } catch (IOException e) {
+            logger.error("IO error scanning file in job {}: {}", job.id, path, e);
+        } catch (Exception e) {
+            logger.error("Unexpected error scanning file in job {}: {}", job.id, path, e);
+        }
+        job.skippedFiles.incrementAndGet();
+        job.processedFiles.incrementAndGet();
+        return null;
+    }
+
+    // A job file whose analysis threw an Error: recorded as an ERROR result
+    // like any other, reported relative to the job's temp root.
+    private FileVerdict jobAnalysisFailed(DirectoryScanJob job, Path path) {
+        FileVerdict verdict = analysisFailed(path, "DIRECTORY");
+        verdict.result().setFileName(job.tempDir.relativize(path).toString());
+        return verdict;
+    }
+
+    // Persist stage of a directory job: save the batch, then publish each
+    // result to the job and its counters.
+    private void recordJobBatch(DirectoryScanJob job, List<FileVerdict> batch) {
+        persistVerdicts(batch, job.tally);
+        for (FileVerdict verdict : batch) {
+            ScanResult result = verdict.result();
             job.results.add(result);
 
             if (result.isInfected()) {
@@ -1835,18 +2557,14 @@ public class SecurityServiceImpl implements SecurityService {
             } else {
                 job.cleanFiles.incrementAndGet();
             }
-        } catch (IOException e) {
-            logger.error("IO error scanning file in job {}: {}", job.id, path, e);
-            job.skippedFiles.incrementAndGet();
-        } catch (Exception e) {
-            logger.error("Unexpected error scanning file in job {}: {}", job.id, path, e);
-            job.skippedFiles.incrementAndGet();
-        } finally {
             job.processedFiles.incrementAndGet();
         }
     }
 
     private void deleteTempDirQuietly(Path dir) {
+        if (!Files.exists(dir)) {
+            return;
+        }
         try (Stream<Path> paths = Files.walk(dir)) {
             paths.sorted(Comparator.reverseOrder()).forEach(p -> {
                 try {
@@ -1860,8 +2578,170 @@ public class SecurityServiceImpl implements SecurityService {
         }
     }
 
+    // ── Archive upload scan jobs ─────────────────────────────────────
+    // /scan/directory needs every file written to disk before its job can
+    // start. An archive upload is instead one zip/tar(.gz) request body,
+    // unpacked entry by entry while it is still arriving; each entry goes
+    // straight into the job's pipeline, so scanning overlaps the upload
+    // and the whole thing takes about as long as the upload alone. The job
+    // is created first, so its id can be polled while the body streams.
+
     @Override
-    public Map<String, Object> getDirectoryScanJobStatus(String jobId) {
+    public String createArchiveScanJob(String archiveName) throws IOException {
+        String ownerUsername = resolveCurrentUsername();
+        String jobId = UUID.randomUUID().toString();
+        // Only entries too large to keep in memory ever land here.
+        Path tempDir = Files.createTempDirectory("scan_");
+        DirectoryScanJob job = new DirectoryScanJob(jobId, ownerUsername, archiveName, 0, tempDir, "ARCHIVE");
+        job.uploading = true;
+        reapAbandonedArchiveScanJobs();
+        directoryScanJobs.put(jobId, job);
+        pruneOldDirectoryScanJobs();
+        return jobId;
+    }
+
+    // Fails archive jobs whose upload never started within the timeout
+    // and deletes their temp directories; they are RUNNING until then,
+    // which pruneOldDirectoryScanJobs() never removes. Claiming the
+    // upload first means a late PUT gets 409 rather than racing this.
+    // Runs on the scheduler and before each new archive job is created.
+    @Scheduled(fixedDelay = 60_000, initialDelay = 60_000)
+    public void reapAbandonedArchiveScanJobs() {
+        Instant cutoff = Instant.now().minus(Duration.ofMinutes(archiveUploadStartTimeoutMinutes));
+        for (DirectoryScanJob job : directoryScanJobs.values()) {
+            if (job.uploading && job.createdAt.isBefore(cutoff) && job.uploadStarted.compareAndSet(false, true)) {
+                logger.info("Archive scan job {} expired: no upload within {} min",
+                        job.id, archiveUploadStartTimeoutMinutes);
+                job.uploading = false;
+                job.errorMessage = "Archive upload was not received in time";
+                deleteTempDirQuietly(job.tempDir);
+                job.status = DirectoryScanStatus.FAILED;
+            }
+        }
+    }
+
+    @Override
+    public Map<String, Object> uploadArchiveScanJob(String jobId, InputStream body) {
+        DirectoryScanJob job = ownedDirectoryScanJob(jobId);
+        if (!job.uploading || !job.uploadStarted.compareAndSet(false, true)) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Archive already uploaded for this scan job");
+        }
+        ScanPipeline<FileVerdict> pipeline = newScanPipeline("archive-scan-" + job.id.substring(0, 8),
+                SecurityContextHolder.getContext(),
+                (path, bytes) -> evaluateJobFile(job, path, bytes),
+                (path, error) -> jobAnalysisFailed(job, path),
+                batch -> recordJobBatch(job, batch));
+        job.pipeline = pipeline;
+        long memoryThreshold = archiveUploadMemoryThresholdMb * 1024L * 1024L;
+        ArchiveInspector.Result upload = null;
+        String failure = SAFE_ERROR_MESSAGES.get("IO_ERROR");
+        try {
+            upload = ArchiveInspector.forEachEntry(body, job.directoryName, archiveUploadMaxEntries,
+                    archiveUploadMaxUncompressedMb * 1024 * 1024,
+                    (entryPath, content) -> submitArchiveEntry(job, pipeline, entryPath, content, memoryThreshold));
+        } catch (IOException e) {
+            logger.warn("Archive upload for scan job {} failed: {}", job.id, e.getMessage());
+        } catch (RuntimeException e) {
+            logger.error("Archive upload for scan job {} failed: {}", job.id, e.getMessage(), e);
+            failure = SAFE_ERROR_MESSAGES.get("SCAN_ERROR");
+        } finally {
+            job.uploading = false;
+            if (upload == null || upload.bomb() || upload.truncated() || upload.entries() == 0) {
+                job.errorMessage = upload == null ? failure
+                        : upload.bomb() ? "Archive exceeds safe processing limits"
+                        : upload.truncated() ? "Archive upload was incomplete or corrupt"
+                        : "No archive entries found (expected zip, tar or tar.gz)";
+            }
+            // Whatever ended the upload, the job is finished, which shuts
+            // its pipeline down and deletes its temp directory.
+            SecurityContext callerContext = SecurityContextHolder.getContext();
+            directoryScanExecutor.submit(() -> {
+                SecurityContextHolder.setContext(callerContext);
+                try {
+                    finishArchiveScanJob(job, pipeline);
+                } finally {
+                    SecurityContextHolder.clearContext();
+                }
+            });
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("jobId", job.id);
+        response.put("entries", job.totalFiles);
+        response.put("spilledEntries", job.spilledEntries.get());
+        if (job.errorMessage != null) {
+            response.put("error", job.errorMessage);
+        }
+        return response;
+    }
+
+    // Upload thread, once per top-level entry. Blocks in submit() while
+    // the pipeline is behind, which in turn slows the client's upload.
+    private void submitArchiveEntry(DirectoryScanJob job, ScanPipeline<FileVerdict> pipeline,
+            String entryPath, InputStream content, long memoryThreshold) throws IOException {
+        Path target;
+        try {
+            target = PathSecurityUtil.resolveSafely(job.tempDir,
+                    entryPath.replace(ArchiveInspector.PATH_SEPARATOR, "/"));
+        } catch (SecurityException e) {
+            logger.warn("Rejected unsafe archive entry path in scan job {}: {}", job.id, entryPath);
+            return;
+        }
+        if (isFileExcluded(target)) {
+            return;
+        }
+        job.totalFiles++;
+        try {
+            byte[] head = content.readNBytes((int) Math.min(memoryThreshold + 1, Integer.MAX_VALUE - 8));
+            if (head.length <= memoryThreshold) {
+                pipeline.submit(target, head);
+                return;
+            }
+            Files.createDirectories(target.getParent());
+            try (OutputStream out = Files.newOutputStream(target)) {
+                out.write(head);
+                content.transferTo(out);
+            }
+            job.spilledEntries.incrementAndGet();
+            pipeline.submit(target);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new java.io.InterruptedIOException("Archive scan interrupted");
+        }
+    }
+
+    // Scan side of an archive job, on directoryScanExecutor: waits for the
+    // entries already submitted, then completes or fails the job.
+    private void finishArchiveScanJob(DirectoryScanJob job, ScanPipeline<FileVerdict> pipeline) {
+        DirectoryScanStatus outcome = DirectoryScanStatus.FAILED;
+        try {
+            pipeline.finish();
+            scanResultWriter.flush();
+            saveScanSummary(job.tally);
+            if (job.errorMessage == null) {
+                outcome = DirectoryScanStatus.COMPLETED;
+            }
+            logger.info("Archive scan job {} finished: {}/{} entries, {} infected, {} spilled to disk",
+                    job.id, job.processedFiles.get(), job.totalFiles, job.infectedFiles.get(),
+                    job.spilledEntries.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Archive scan job {} interrupted", job.id);
+            job.errorMessage = SAFE_ERROR_MESSAGES.get("SCAN_ERROR");
+        } catch (RuntimeException e) {
+            logger.error("Archive scan job {} failed: {}", job.id, e.getMessage(), e);
+            job.errorMessage = SAFE_ERROR_MESSAGES.get("SCAN_ERROR");
+        } finally {
+            pipeline.shutdownNow();
+            // Cleaned up before the job reports its outcome, so a client
+            // that sees it finish never finds its entries still on disk.
+            deleteTempDirQuietly(job.tempDir);
+            job.status = outcome;
+        }
+    }
+
+    // The job, if it exists and belongs to the calling user.
+    private DirectoryScanJob ownedDirectoryScanJob(String jobId) {
         DirectoryScanJob job = directoryScanJobs.get(jobId);
         if (job == null) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Scan job not found");
@@ -1871,6 +2751,12 @@ public class SecurityServiceImpl implements SecurityService {
         if (!job.ownerUsername.equalsIgnoreCase(requestingUser)) {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "You are not allowed to view this scan job");
         }
+        return job;
+    }
+
+    @Override
+    public Map<String, Object> getDirectoryScanJobStatus(String jobId) {
+        DirectoryScanJob job = ownedDirectoryScanJob(jobId);
 
         Map<String, Object> status = new HashMap<>();
         status.put("jobId", job.id);
@@ -1883,12 +2769,155 @@ public class SecurityServiceImpl implements SecurityService {
         status.put("infectedFiles", job.infectedFiles.get());
         status.put("suspiciousFiles", job.suspiciousFiles.get());
         status.put("skippedFiles", job.skippedFiles.get());
+        if (job.uploadStarted.get() || job.uploading) {
+            status.put("uploading", job.uploading);
+            status.put("spilledEntries", job.spilledEntries.get());
+        }
         if (job.status != DirectoryScanStatus.RUNNING) {
             status.put("results", new ArrayList<>(job.results));
         }
         if (job.errorMessage != null) {
             status.put("error", job.errorMessage);
         }
+        ScanPipeline<FileVerdict> pipeline = job.pipeline;
+        if (pipeline != null) {
+            status.put("pipeline", pipeline.metrics());
+        }
         return status;
     }
+
+    // ── Chunked uploads ──────────────────────────────────────────────
+    // Large files over flaky links: one request per chunk, so a dropped
+    // connection costs a chunk rather than the whole upload. Each chunk is
+    // written at its offset into a temp file and, once contiguous with
+    // what came before, fed through the detectors (see ChunkedUpload), so
+    // completeChunkedUpload() only scores what has already been inspected.
+    // Archive entries are the exception: their walk needs the stream in
+    // order from the start, so it runs over the temp file on completion.
+
+    @Override
+    public String createChunkedUpload(String fileName, long size) throws IOException {
+        if (size <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Upload size must be positive");
+        }
+        if (size > chunkedUploadMaxFileMb * 1024 * 1024) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                    "Upload exceeds " + chunkedUploadMaxFileMb + " MB");
+        }
+        reapExpiredChunkedUploads();
+        if (chunkedUploads.size() >= chunkedUploadMaxSessions) {
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "Too many uploads in progress");
+        }
+        String uploadId = UUID.randomUUID().toString();
+        Path file = Files.createTempFile("upload_", ".part");
+        try {
+            chunkedUploads.put(uploadId, new ChunkedUpload(uploadId, resolveCurrentUsername(), fileName, size,
+                    file, newScanPass()));
+        } catch (IOException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        return uploadId;
+    }
+
+    @Override
+    public Map<String, Object> appendChunk(String uploadId, long offset, InputStream body) throws IOException {
+        ChunkedUpload upload = ownedChunkedUpload(uploadId);
+        try {
+            upload.append(offset, body);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (ClosedChannelException e) {
+            // Expired or completed while this chunk was arriving.
+            throw new ResponseStatusException(HttpStatus.GONE, "Upload is no longer open");
+        }
+        return chunkedUploadStatus(upload);
+    }
+
+    @Override
+    public Map<String, Object> getChunkedUploadStatus(String uploadId) {
+        return chunkedUploadStatus(ownedChunkedUpload(uploadId));
+    }
+
+    @Override
+    public ScanResult completeChunkedUpload(String uploadId) {
+        ChunkedUpload upload = ownedChunkedUpload(uploadId);
+        if (!upload.isComplete()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Upload is missing bytes; see receivedRanges");
+        }
+        if (!chunkedUploads.remove(uploadId, upload)) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Upload is already being completed");
+        }
+
+        ScanResult result = newFileResult(upload.fileName());
+        try {
+            File file = new File(upload.fileName());
+            boolean archive = isArchiveFile(file);
+            SignatureSnapshot signatures = threatIntelSignatureService.snapshot();
+            FileDigests digests = upload.finish();
+            ArchiveEvaluation entries = null;
+            if (archive) {
+                try (InputStream in = Files.newInputStream(upload.file())) {
+                    entries = evaluateArchive(in, file, signatures);
+                }
+            }
+            scoreInspection(result, file, archive, new FileInspection(upload.pass(), entries), digests, signatures);
+        } catch (Exception e) {
+            logger.error("Error scanning chunked upload {}: {}", uploadId, e.getMessage());
+            result.setThreatType("ERROR");
+            result.setThreatDetails("Error scanning file");
+            result.setActionTaken("NONE");
+        } finally {
+            closeQuietly(upload);
+        }
+        saveScanResult(result);
+        logService.logScanResult(result);
+        return result;
+    }
+
+    // Drops uploads idle past the timeout and deletes their temp files.
+    // Runs on the scheduler and before each new upload is opened.
+    @Scheduled(fixedDelay = 60_000, initialDelay = 60_000)
+    public void reapExpiredChunkedUploads() {
+        long now = System.nanoTime();
+        long timeout = Duration.ofMinutes(chunkedUploadIdleTimeoutMinutes).toNanos();
+        for (ChunkedUpload upload : chunkedUploads.values()) {
+            if (now - upload.lastActivityNanos() > timeout && chunkedUploads.remove(upload.id(), upload)) {
+                logger.info("Chunked upload {} expired after {} min idle; {} of {} bytes received",
+                        upload.id(), chunkedUploadIdleTimeoutMinutes, upload.receivedBytes(), upload.size());
+                closeQuietly(upload);
+            }
+        }
+    }
+
+    private ChunkedUpload ownedChunkedUpload(String uploadId) {
+        ChunkedUpload upload = chunkedUploads.get(uploadId);
+        if (upload == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Upload not found");
+        }
+        if (!upload.ownerUsername().equalsIgnoreCase(resolveCurrentUsername())) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "You are not allowed to access this upload");
+        }
+        return upload;
+    }
+
+    private Map<String, Object> chunkedUploadStatus(ChunkedUpload upload) {
+        Map<String, Object> status = new HashMap<>();
+        status.put("uploadId", upload.id());
+        status.put("fileName", upload.fileName());
+        status.put("size", upload.size());
+        status.put("receivedBytes", upload.receivedBytes());
+        status.put("scannedBytes", upload.scannedBytes());
+        status.put("receivedRanges", upload.receivedRanges());
+        status.put("complete", upload.isComplete());
+        return status;
+    }
+
+    private void closeQuietly(ChunkedUpload upload) {
+        try {
+            upload.close();
+        } catch (IOException e) {
+            logger.warn("Could not delete chunked upload temp file {}: {}", upload.file(), e.getMessage());
+        }
+    }
 }
@@ -0,0 +1,312 @@
+package com.antivirus.service.impl;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * On-disk home of the threat-intel signature set: a SignatureStore image
+ * mapped straight from the cache file, plus an append-only journal of
+ * digests added since that image was written.
+ *
+ * - Startup maps the image read-only and checks its checksum; there is
+ * nothing to parse, so a few million signatures load as fast as the page
+ * cache can supply them. A missing, truncated or corrupt image is treated
+ * as empty.
+ * - A refresh appends only its new digests to the journal (one record of
+ * the digest's width each, fsynced), instead of rewriting and re-sorting
+ * the whole set. The width is in the journal header (0 in journals from
+ * before SHA-1/MD5 support, meaning 32).
+ * - The journal header also holds the SignatureSnapshot version the set
+ * had after the last append (0 in older journals), written with the
+ * digests and kept across compaction, so the version scans record does
+ * not start over from 0 on every restart.
+ * - compact() folds the journal into a new image in a temp file, moves it
+ * over the old one and only then empties the journal, so a crash at any
+ * point leaves either the old image plus the journal or the new image.
+ * Replaying a journal whose digests are already in the image is harmless.
+ *
+ * Not thread-safe; ThreatIntelSignatureService serializes its writers.
+ */
+final class SignatureCacheFile implements AutoCloseable {
+
+    private static final int JOURNAL_MAGIC = 0x54494A4C; // "TIJL"
+    private static final int JOURNAL_VERSION = 1;
+    private static final int JOURNAL_HEADER_BYTES = 16;
+    private static final int JOURNAL_WIDTH_OFFSET = 8;
+    private static final int JOURNAL_SET_VERSION_OFFSET = 12;
+
+    private final Path file;
+    private final HashType type;
+    private final FileChannel journal;
+    private SignatureStore base;
+    private int journalEntries;
+    private long setVersion;
+
+    private SignatureCacheFile(Path file, HashType type, FileChannel journal, SignatureStore base,
+            int journalEntries, long setVersion) {
+        this.file = file;
+        this.type = type;
+        this.journal = journal;
+        this.base = base;
+        this.journalEntries = journalEntries;
+        this.setVersion = setVersion;
+    }
+
+    /** A SHA-256 cache; see open(Path, HashType). */
+    static SignatureCacheFile open(Path file) throws IOException {
+        return open(file, HashType.SHA256);
+    }
+
+    /**
+     * Maps the image at file (if it is a valid one of type's width) and
+     * opens its journal at file + ".journal", creating either as needed.
+     */
+    static SignatureCacheFile open(Path file, HashType type) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        SignatureStore base = map(file, type);
+
+        Path journalFile = journalPath(file);
+        FileChannel journal = FileChannel.open(journalFile, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            int entries = validJournalEntries(journal, type);
+            long setVersion = 0;
+            if (entries < 0) {
+                resetJournal(journal, type, 0);
+                entries = 0;
+            } else {
+                // Drop a record torn by a crash mid-append.
+                journal.truncate(JOURNAL_HEADER_BYTES + (long) entries * type.digestBytes());
+                setVersion = readSetVersion(journal);
+            }
+            return new SignatureCacheFile(file, type, journal, base, entries, setVersion);
+        } catch (IOException | RuntimeException e) {
+            journal.close();
+            throw e;
+        }
+    }
+
+    /** A SHA-256 image; see map(Path, HashType). */
+    static SignatureStore map(Path file) {
+        return map(file, HashType.SHA256);
+    }
+
+    /**
+     * Maps the image at file read-only, or returns an empty store if there
+     * is none or it is corrupt, from another format version or of another
+     * digest width (the next write replaces it).
+     */
+    static SignatureStore map(Path file, HashType type) {
+        if (!Files.isRegularFile(file)) {
+            return SignatureStore.empty(type);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                return SignatureStore.empty(type);
+            }
+            SignatureStore store = SignatureStore.open(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            return store.digestBytes() == type.digestBytes() ? store : SignatureStore.empty(type);
+        } catch (IOException e) {
+            return SignatureStore.empty(type);
+        }
+    }
+
+    /**
+     * Writes store as the image at file, replacing any previous one
+     * atomically, and returns the new image mapped. Has no journal; for
+     * sets that are rebuilt whole rather than appended to.
+     */
+    static SignatureStore write(Path file, SignatureStore store) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        return writeImage(file, store::copy);
+    }
+
+    /** The mapped image as of open() or the last compact(). */
+    SignatureStore base() {
+        return base;
+    }
+
+    int journalEntries() {
+        return journalEntries;
+    }
+
+    /** The set version recorded by the last append, or 0 if none was. */
+    long setVersion() {
+        return setVersion;
+    }
+
+    /** Digests recorded in the journal, in append order. */
+    List<byte[]> readJournal() throws IOException {
+        List<byte[]> digests = new ArrayList<>(journalEntries);
+        ByteBuffer buffer = ByteBuffer.allocate(type.digestBytes() * 4096);
+        long position = JOURNAL_HEADER_BYTES;
+        long end = JOURNAL_HEADER_BYTES + (long) journalEntries * type.digestBytes();
+        while (position < end) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), end - position));
+            while (buffer.hasRemaining()) {
+                int read = journal.read(buffer, position + buffer.position());
+                if (read < 0) {
+                    throw new IOException("journal shorter than its record count");
+                }
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                byte[] digest = new byte[type.digestBytes()];
+                buffer.get(digest);
+                digests.add(digest);
+            }
+            position += buffer.limit();
+        }
+        return digests;
+    }
+
+    /** Appends digests to the journal and forces them to disk. */
+    void append(Collection<byte[]> digests) throws IOException {
+        append(digests, setVersion);
+    }
+
+    /**
+     * Appends digests and records setVersion, the version of the set that
+     * includes them, in the header; forces both to disk.
+     */
+    void append(Collection<byte[]> digests, long setVersion) throws IOException {
+        if (digests.isEmpty()) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(digests.size() * type.digestBytes());
+        digests.forEach(buffer::put);
+        buffer.flip();
+        long position = JOURNAL_HEADER_BYTES + (long) journalEntries * type.digestBytes();
+        while (buffer.hasRemaining()) {
+            position += journal.write(buffer, position);
+        }
+        if (setVersion != this.setVersion) {
+            writeSetVersion(journal, setVersion);
+        }
+        journal.force(false);
+        journalEntries += digests.size();
+        this.setVersion = setVersion;
+    }
+
+    /**
+     * Writes base plus delta as the new image, swaps it in and empties the
+     * journal. Returns the new, mapped base.
+     */
+    SignatureStore compact(Collection<byte[]> delta) throws IOException {
+        SignatureStore merged = writeImage(file, allocator -> base.merge(delta, allocator));
+        // null: every journaled digest was already in the image.
+        if (merged != null) {
+            base = merged;
+        }
+        resetJournal(journal, type, setVersion);
+        journalEntries = 0;
+        return base;
+    }
+
+    @Override
+    public void close() throws IOException {
+        journal.close();
+    }
+
+    static Path journalPath(Path file) {
+        return file.resolveSibling(file.getFileName() + ".journal");
+    }
+
+    // Runs writer against an allocator that maps a temp file next to file,
+    // then forces it and moves it over file. Returns the store writer
+    // built, or null (and leaves file alone) if it never allocated.
+    private static SignatureStore writeImage(Path file,
+            Function<IntFunction<ByteBuffer>, SignatureStore> writer) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.deleteIfExists(temp);
+        MappedByteBuffer[] mapped = new MappedByteBuffer[1];
+        SignatureStore written;
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            written = writer.apply(bytes -> {
+                try {
+                    mapped[0] = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+                    return mapped[0];
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            Files.deleteIfExists(temp);
+            throw e.getCause();
+        }
+
+        if (mapped[0] == null) {
+            Files.deleteIfExists(temp);
+            return null;
+        }
+        mapped[0].force();
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return written;
+    }
+
+    // Whole records after a valid header, or -1 if the header is missing,
+    // not ours or for another digest width.
+    private static int validJournalEntries(FileChannel journal, HashType type) throws IOException {
+        long size = journal.size();
+        if (size < JOURNAL_HEADER_BYTES) {
+            return -1;
+        }
+        ByteBuffer header = ByteBuffer.allocate(JOURNAL_HEADER_BYTES);
+        while (header.hasRemaining() && journal.read(header, header.position()) >= 0) {
+            // fill
+        }
+        int digestBytes = header.getInt(JOURNAL_WIDTH_OFFSET);
+        if (header.getInt(0) != JOURNAL_MAGIC || header.getInt(4) != JOURNAL_VERSION
+                || (digestBytes == 0 ? SignatureStore.DIGEST_BYTES : digestBytes) != type.digestBytes()) {
+            return -1;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, (size - JOURNAL_HEADER_BYTES) / type.digestBytes());
+    }
+
+    // Unsigned: an int of versions outlasts any refresh schedule.
+    private static long readSetVersion(FileChannel journal) throws IOException {
+        ByteBuffer field = ByteBuffer.allocate(Integer.BYTES);
+        while (field.hasRemaining() && journal.read(field, JOURNAL_SET_VERSION_OFFSET + field.position()) >= 0) {
+            // fill
+        }
+        return Integer.toUnsignedLong(field.getInt(0));
+    }
+
+    private static void writeSetVersion(FileChannel journal, long setVersion) throws IOException {
+        ByteBuffer field = ByteBuffer.allocate(Integer.BYTES);
+        field.putInt(0, (int) Math.min(setVersion, 0xFFFF_FFFFL));
+        while (field.hasRemaining()) {
+            journal.write(field, JOURNAL_SET_VERSION_OFFSET + field.position());
+        }
+    }
+
+    private static void resetJournal(FileChannel journal, HashType type, long setVersion) throws IOException {
+        journal.truncate(0);
+        ByteBuffer header = ByteBuffer.allocate(JOURNAL_HEADER_BYTES);
+        header.putInt(JOURNAL_MAGIC).putInt(JOURNAL_VERSION).putInt(type.digestBytes())
+                .putInt((int) Math.min(setVersion, 0xFFFF_FFFFL)).clear();
+        while (header.hasRemaining()) {
+            journal.write(header, header.position());
+        }
+        journal.force(false);
+    }
+}
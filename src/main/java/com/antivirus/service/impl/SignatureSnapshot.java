@@ -0,0 +1,163 @@
+package com.antivirus.service.impl;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * One immutable, versioned view of the threat-intel signature set: a
+ * separate Index per hash type (SHA-256, SHA-1, MD5), each the mapped
+ * cache image plus the in-memory delta added since it was written
+ * (journal replay, refreshes, EICAR). Base and delta never overlap.
+ *
+ * ThreatIntelSignatureService builds each new snapshot off to the side and
+ * swaps it in. A scan takes one snapshot with a single volatile read and
+ * judges the file entirely against it, so the verdict, the VerdictCache
+ * key and the version recorded on the ScanResult always agree.
+ *
+ * version goes up by one whenever the set gains digests and never
+ * otherwise; compaction moves digests from delta to base without changing
+ * the set, so it keeps the version. It is journaled with the digests (see
+ * SignatureCacheFile) and restored at startup, so it keeps going up across
+ * restarts and can be stored on scan results.
+ */
+final class SignatureSnapshot {
+
+    /** One hash type's digests. */
+    record Index(SignatureStore base, SignatureStore delta) {
+
+        boolean contains(byte[] digest) {
+            return base.contains(digest) || delta.contains(digest);
+        }
+
+        int size() {
+            return base.size() + delta.size();
+        }
+    }
+
+    static final SignatureSnapshot EMPTY = new SignatureSnapshot(emptyIndexes(), 0);
+
+    private final Map<HashType, Index> indexes;
+    private final long version;
+    // Types with at least one digest: the only ones a scan needs to compute.
+    private final Set<HashType> activeTypes;
+
+    private SignatureSnapshot(Map<HashType, Index> indexes, long version) {
+        this.indexes = indexes;
+        this.version = version;
+        EnumSet<HashType> active = EnumSet.noneOf(HashType.class);
+        indexes.forEach((type, index) -> {
+            if (index.size() > 0) {
+                active.add(type);
+            }
+        });
+        this.activeTypes = Collections.unmodifiableSet(active);
+    }
+
+    long version() {
+        return version;
+    }
+
+    Index index(HashType type) {
+        return indexes.get(type);
+    }
+
+    Set<HashType> activeTypes() {
+        return activeTypes;
+    }
+
+    /** SHA-256 lookup. */
+    boolean isKnownMalicious(byte[] sha256Digest) {
+        return isKnownMalicious(HashType.SHA256, sha256Digest);
+    }
+
+    boolean isKnownMalicious(HashType type, byte[] digest) {
+        return indexes.get(type).contains(digest);
+    }
+
+    /** True if any digest of the file is listed under its type. */
+    boolean isKnownMalicious(FileDigests digests) {
+        for (HashType type : activeTypes) {
+            byte[] digest = digests.get(type);
+            if (digest != null && indexes.get(type).contains(digest)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Digests across every hash type. */
+    int size() {
+        int size = 0;
+        for (Index index : indexes.values()) {
+            size += index.size();
+        }
+        return size;
+    }
+
+    int size(HashType type) {
+        return indexes.get(type).size();
+    }
+
+    /**
+     * Order-independent digest of the whole set (XOR of each hash's first
+     * 64 bits). Unlike version it is the same across restarts for the
+     * same set, so it can be persisted alongside scan state.
+     */
+    long fingerprint() {
+        return fingerprint(indexes.keySet());
+    }
+
+    /** fingerprint() of the digests of types only. */
+    long fingerprint(Set<HashType> types) {
+        long fingerprint = 0;
+        for (HashType type : types) {
+            Index index = indexes.get(type);
+            fingerprint ^= index.base().fingerprint() ^ index.delta().fingerprint();
+        }
+        return fingerprint;
+    }
+
+    /** The next version, with type's delta replaced by a superset of it. */
+    SignatureSnapshot withDelta(HashType type, SignatureStore grown) {
+        return withDeltas(Map.of(type, grown));
+    }
+
+    /** The next version, with each listed type's delta replaced by a superset of it. */
+    SignatureSnapshot withDeltas(Map<HashType, SignatureStore> grown) {
+        Map<HashType, Index> next = new EnumMap<>(indexes);
+        grown.forEach((type, delta) -> next.put(type, new Index(index(type).base(), delta)));
+        return new SignatureSnapshot(next, version + 1);
+    }
+
+    /** The next version, with type's base set to a freshly mapped image. */
+    SignatureSnapshot withBase(HashType type, SignatureStore base) {
+        return with(type, new Index(base, index(type).delta()), version + 1);
+    }
+
+    /** The same set under version, restored from the cache at startup. */
+    SignatureSnapshot withVersion(long restored) {
+        return new SignatureSnapshot(indexes, restored);
+    }
+
+    /** The same set and version, after type's delta was folded into base. */
+    SignatureSnapshot compacted(HashType type, SignatureStore merged) {
+        return with(type, new Index(merged, SignatureStore.empty(type)), version);
+    }
+
+    private SignatureSnapshot with(HashType type, Index index, long nextVersion) {
+        Map<HashType, Index> next = new EnumMap<>(indexes);
+        next.put(type, index);
+        return new SignatureSnapshot(next, nextVersion);
+    }
+
+    private static Map<HashType, Index> emptyIndexes() {
+        Map<HashType, Index> indexes = new EnumMap<>(HashType.class);
+        for (HashType type : HashType.values()) {
+            indexes.put(type, new Index(SignatureStore.empty(type), SignatureStore.empty(type)));
+        }
+        return indexes;
+    }
+}
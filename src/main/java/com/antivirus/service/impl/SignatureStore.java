@@ -0,0 +1,357 @@
+package com.antivirus.service.impl;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.zip.CRC32C;
+
+/**
+ * Immutable set of fixed-width digests (SHA-256, SHA-1 or MD5; one width
+ * per store) behind ThreatIntelSignatureService.
+ *
+ * The old ConcurrentHashMap of 64-char hex strings cost roughly 150+
+ * bytes of heap per hash and allocated a lowercase copy per lookup. Here
+ * each digest is 32 raw bytes, sorted, in one buffer that is either
+ * direct memory or a mapped cache file (see SignatureCacheFile):
+ *
+ * - a Bloom filter (~10 bits per entry, 7 probes, ~1% false positives)
+ * answers the common "not a known hash" case without touching the table;
+ * - a 65,536-bucket fanout index on the first two bytes narrows the rest
+ * to a binary search over a few dozen entries even at millions of hashes.
+ *
+ * The buffer holds the whole store, index and filter included, so the
+ * cache file is this image byte for byte and loading it is a map plus a
+ * checksum check:
+ *
+ * header (64 bytes): magic, format version, count, Bloom words,
+ * fingerprint, CRC32C of everything after the header, digest width (0 in
+ * images written before SHA-1/MD5 support, meaning 32)
+ * fanout: 65,537 ints, padded to 8 bytes
+ * bloom: Bloom words longs
+ * digests: count x width bytes, ascending unsigned order
+ *
+ * Digests are uniformly distributed, so the Bloom probes and fanout use
+ * the digest's own bits instead of hashing again. Updates build a new
+ * store with merge() and swap it in; readers never see a partial one.
+ */
+final class SignatureStore {
+
+    /** Width of a SHA-256 digest, the default and the widest. */
+    static final int DIGEST_BYTES = 32;
+
+    private static final int MAGIC = 0x54495347; // "TISG"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+
+    private static final int FANOUT = 1 << 16;
+    private static final int BLOOM_BITS_PER_ENTRY = 10;
+    private static final int BLOOM_PROBES = 7;
+
+    // Header field offsets.
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 4;
+    private static final int H_COUNT = 8;
+    private static final int H_BLOOM_WORDS = 12;
+    private static final int H_FINGERPRINT = 16;
+    private static final int H_CHECKSUM = 24;
+    private static final int H_DIGEST_BYTES = 32;
+
+    // Section offsets. The fanout table is FANOUT + 1 ints plus one int of
+    // padding so the Bloom words stay 8-byte aligned.
+    private static final int FANOUT_OFFSET = HEADER_BYTES;
+    private static final int BLOOM_OFFSET = FANOUT_OFFSET + (FANOUT + 2) * Integer.BYTES;
+
+    private static final VarHandle LONG_VIEW =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle INT_VIEW =
+            MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private static final Map<HashType, SignatureStore> EMPTY = new EnumMap<>(HashType.class);
+
+    static {
+        for (HashType type : HashType.values()) {
+            EMPTY.put(type, seal(allocate(0, type.digestBytes(), ByteBuffer::allocateDirect), 0, 0L));
+        }
+    }
+
+    // Big-endian throughout, so comparing 8-byte words of a digest as
+    // unsigned longs matches unsigned byte order.
+    private final ByteBuffer image;
+    private final int count;
+    private final long bloomMask;
+    private final int digestsOffset;
+    private final long fingerprint;
+    private final int digestBytes;
+    // Bloom probes use the 16 bytes from here: bytes 8-23 for SHA-256 (as
+    // images have always been built), the last 16 for narrower digests.
+    private final int probeOffset;
+
+    private SignatureStore(ByteBuffer image) {
+        this.image = image;
+        this.digestBytes = digestBytes(image);
+        this.probeOffset = Math.min(8, digestBytes - 16);
+        this.count = image.getInt(H_COUNT);
+        int bloomWords = image.getInt(H_BLOOM_WORDS);
+        this.bloomMask = (long) bloomWords * Long.SIZE - 1;
+        this.digestsOffset = BLOOM_OFFSET + bloomWords * Long.BYTES;
+        this.fingerprint = image.getLong(H_FINGERPRINT);
+    }
+
+    /** The empty SHA-256 store. */
+    static SignatureStore empty() {
+        return EMPTY.get(HashType.SHA256);
+    }
+
+    static SignatureStore empty(HashType type) {
+        return EMPTY.get(type);
+    }
+
+    /**
+     * Wraps a previously written image (typically a mapped cache file)
+     * after checking its header, size and checksum. Nothing is copied.
+     */
+    static SignatureStore open(ByteBuffer image) throws IOException {
+        image.order(ByteOrder.BIG_ENDIAN);
+        if (image.limit() < BLOOM_OFFSET
+                || image.getInt(H_MAGIC) != MAGIC
+                || image.getInt(H_VERSION) != FORMAT_VERSION) {
+            throw new IOException("not a signature store image");
+        }
+        int count = image.getInt(H_COUNT);
+        int bloomWords = image.getInt(H_BLOOM_WORDS);
+        int digestBytes = digestBytes(image);
+        if (HashType.ofDigestBytes(digestBytes) == null) {
+            throw new IOException("unsupported digest width " + digestBytes);
+        }
+        if (count < 0 || bloomWords <= 0 || Integer.bitCount(bloomWords) != 1
+                || image.limit() < BLOOM_OFFSET + (long) bloomWords * Long.BYTES + (long) count * digestBytes) {
+            throw new IOException("truncated signature store image");
+        }
+        int end = BLOOM_OFFSET + bloomWords * Long.BYTES + count * digestBytes;
+        if (checksum(image, end) != image.getLong(H_CHECKSUM)) {
+            throw new IOException("signature store checksum mismatch");
+        }
+        return new SignatureStore(image);
+    }
+
+    /** Bytes an image for up to capacity digests of the given width needs. */
+    static long imageBytes(int capacity, int digestBytes) {
+        return BLOOM_OFFSET + (long) bloomWords(capacity) * Long.BYTES + (long) capacity * digestBytes;
+    }
+
+    int size() {
+        return count;
+    }
+
+    int digestBytes() {
+        return digestBytes;
+    }
+
+    /**
+     * XOR of every digest's first 8 bytes: the same for the same set in
+     * any order, so it identifies the set across restarts.
+     */
+    long fingerprint() {
+        return fingerprint;
+    }
+
+    boolean contains(byte[] digest) {
+        if (digest == null || digest.length != digestBytes || count == 0) {
+            return false;
+        }
+        long h1 = (long) LONG_VIEW.get(digest, probeOffset);
+        long h2 = (long) LONG_VIEW.get(digest, probeOffset + 8) | 1;
+        for (int probe = 0; probe < BLOOM_PROBES; probe++) {
+            long bit = (h1 + probe * h2) & bloomMask;
+            if ((image.getLong(BLOOM_OFFSET + (int) (bit >>> 6) * Long.BYTES) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        int index = insertionPoint(digest);
+        return index > 0 && compareAt(index - 1, digest) == 0;
+    }
+
+    /** Same as merge(added, ByteBuffer::allocateDirect). */
+    SignatureStore merge(Collection<byte[]> added) {
+        return merge(added, ByteBuffer::allocateDirect);
+    }
+
+    /**
+     * Returns a store holding this one's digests plus added (those not
+     * exactly digestBytes() long are ignored), or this store itself if nothing was new. The new
+     * image goes into a zero-filled buffer of the requested size from
+     * allocator: direct memory, or a freshly mapped file for compaction.
+     *
+     * Runs of existing digests between two new ones are bulk-copied, so
+     * folding a small delta into millions of entries costs about one
+     * memcpy of the table.
+     */
+    SignatureStore merge(Collection<byte[]> added, IntFunction<ByteBuffer> allocator) {
+        byte[][] incoming = added.stream()
+                .filter(digest -> digest.length == digestBytes && !contains(digest))
+                .sorted(Arrays::compareUnsigned)
+                .toArray(byte[][]::new);
+        if (incoming.length == 0) {
+            return this;
+        }
+
+        ByteBuffer merged = allocate(count + incoming.length, digestBytes, allocator);
+        int mergedDigests = BLOOM_OFFSET + merged.getInt(H_BLOOM_WORDS) * Long.BYTES;
+        long mergedFingerprint = fingerprint;
+        byte[] previous = null;
+        int from = 0;
+        int written = 0;
+        for (byte[] next : incoming) {
+            // incoming may repeat a digest; only the first counts.
+            if (previous != null && Arrays.equals(previous, next)) {
+                continue;
+            }
+            int to = insertionPoint(next);
+            merged.put(mergedDigests + written * digestBytes, image, digestsOffset + from * digestBytes,
+                    (to - from) * digestBytes);
+            written += to - from;
+            merged.put(mergedDigests + written * digestBytes, next);
+            written++;
+            mergedFingerprint ^= (long) LONG_VIEW.get(next, 0);
+            from = to;
+            previous = next;
+        }
+        merged.put(mergedDigests + written * digestBytes, image, digestsOffset + from * digestBytes,
+                (count - from) * digestBytes);
+        written += count - from;
+        return seal(merged, written, mergedFingerprint);
+    }
+
+    /**
+     * The same store in a buffer from allocator: a byte-for-byte copy of
+     * the image, e.g. to write it to a mapped file.
+     */
+    SignatureStore copy(IntFunction<ByteBuffer> allocator) {
+        ByteBuffer copy = allocator.apply(image.limit()).order(ByteOrder.BIG_ENDIAN);
+        copy.put(0, image, 0, image.limit());
+        return new SignatureStore(copy);
+    }
+
+    /** Visits every digest in sorted order; each array is a fresh copy. */
+    void forEach(Consumer<byte[]> action) {
+        for (int i = 0; i < count; i++) {
+            byte[] digest = new byte[digestBytes];
+            image.get(digestsOffset + i * digestBytes, digest);
+            action.accept(digest);
+        }
+    }
+
+    // Index of the first digest greater than digest: the fanout bucket
+    // bounds the search, binary search finishes it.
+    private int insertionPoint(byte[] digest) {
+        int bucket = ((digest[0] & 0xFF) << 8) | (digest[1] & 0xFF);
+        int low = image.getInt(FANOUT_OFFSET + bucket * Integer.BYTES);
+        int high = image.getInt(FANOUT_OFFSET + (bucket + 1) * Integer.BYTES);
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareAt(mid, digest) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int compareAt(int index, byte[] digest) {
+        int offset = digestsOffset + index * digestBytes;
+        // Eight bytes at a time instead of single-byte compares; SHA-1's
+        // last four bytes are compared as an int.
+        int i = 0;
+        for (; i + 8 <= digestBytes; i += 8) {
+            long stored = image.getLong(offset + i);
+            long wanted = (long) LONG_VIEW.get(digest, i);
+            if (stored != wanted) {
+                return Long.compareUnsigned(stored, wanted);
+            }
+        }
+        if (i < digestBytes) {
+            int stored = image.getInt(offset + i);
+            int wanted = (int) INT_VIEW.get(digest, i);
+            if (stored != wanted) {
+                return Integer.compareUnsigned(stored, wanted);
+            }
+        }
+        return 0;
+    }
+
+    // Buffer for up to capacity digests with the Bloom size already in
+    // the header; seal() fills in the rest.
+    private static ByteBuffer allocate(int capacity, int digestBytes, IntFunction<ByteBuffer> allocator) {
+        long bytes = imageBytes(capacity, digestBytes);
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Too many signatures for one store: " + capacity);
+        }
+        ByteBuffer image = allocator.apply((int) bytes).order(ByteOrder.BIG_ENDIAN);
+        image.putInt(H_BLOOM_WORDS, bloomWords(capacity));
+        image.putInt(H_DIGEST_BYTES, digestBytes);
+        return image;
+    }
+
+    // Builds the fanout table and Bloom filter over the sorted digests
+    // already in image, then writes the header and checksum.
+    private static SignatureStore seal(ByteBuffer image, int count, long fingerprint) {
+        int bloomWords = image.getInt(H_BLOOM_WORDS);
+        long bloomMask = (long) bloomWords * Long.SIZE - 1;
+        int digestsOffset = BLOOM_OFFSET + bloomWords * Long.BYTES;
+        int digestBytes = digestBytes(image);
+        int probeOffset = Math.min(8, digestBytes - 16);
+
+        int bucket = 0;
+        for (int i = 0; i < count; i++) {
+            int offset = digestsOffset + i * digestBytes;
+            int prefix = image.getShort(offset) & 0xFFFF;
+            while (bucket <= prefix) {
+                image.putInt(FANOUT_OFFSET + bucket++ * Integer.BYTES, i);
+            }
+            long h1 = image.getLong(offset + probeOffset);
+            long h2 = image.getLong(offset + probeOffset + 8) | 1;
+            for (int probe = 0; probe < BLOOM_PROBES; probe++) {
+                long bit = (h1 + probe * h2) & bloomMask;
+                int word = BLOOM_OFFSET + (int) (bit >>> 6) * Long.BYTES;
+                image.putLong(word, image.getLong(word) | (1L << bit));
+            }
+        }
+        while (bucket <= FANOUT) {
+            image.putInt(FANOUT_OFFSET + bucket++ * Integer.BYTES, count);
+        }
+
+        image.putInt(H_MAGIC, MAGIC);
+        image.putInt(H_VERSION, FORMAT_VERSION);
+        image.putInt(H_COUNT, count);
+        image.putLong(H_FINGERPRINT, fingerprint);
+        image.putLong(H_CHECKSUM, checksum(image, digestsOffset + count * digestBytes));
+        return new SignatureStore(image);
+    }
+
+    private static int digestBytes(ByteBuffer image) {
+        int digestBytes = image.getInt(H_DIGEST_BYTES);
+        return digestBytes == 0 ? DIGEST_BYTES : digestBytes;
+    }
+
+    private static long checksum(ByteBuffer image, int end) {
+        CRC32C crc = new CRC32C();
+        crc.update(image.slice(HEADER_BYTES, end - HEADER_BYTES));
+        return crc.getValue();
+    }
+
+    // Power-of-two word count giving at least BLOOM_BITS_PER_ENTRY bits
+    // per entry, so probes can mask instead of divide.
+    private static int bloomWords(int capacity) {
+        long bits = Long.highestOneBit(Math.max(Long.SIZE, (long) capacity * BLOOM_BITS_PER_ENTRY) * 2 - 1);
+        return (int) (bits / Long.SIZE);
+    }
+}
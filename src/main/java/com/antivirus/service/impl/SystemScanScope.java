@@ -0,0 +1,284 @@
+package com.antivirus.service.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Which parts of the machine a system scan walks.
+ *
+ * The roots are File.listRoots() ("/" on Linux, one per drive on
+ * Windows). A root is never dropped for an excluded type: in a container
+ * "/" is itself an overlay, and excluding it would leave nothing to scan.
+ * Only a network root (a mapped drive) is left out, when skipNetwork is
+ * set. Below
+ * the roots, the mount table (/proc/self/mountinfo, or /proc/mounts on
+ * kernels without it) says where other file systems are mounted, and
+ * skipReason() stops the walk at the mount points it should not enter:
+ *
+ * - pseudo and in-memory file systems (procfs, sysfs, devtmpfs, cgroup,
+ * tmpfs, overlay layers...), listed in excludedTypes;
+ * - network file systems (NFS, SMB/CIFS, sshfs...) when skipNetwork is set;
+ * - any other device, unless crossDevices is set: like find -xdev, a walk
+ * stays on the file system of its root;
+ * - bind mounts that show a part of a file system the walk already covers
+ * through another mount of the same device.
+ *
+ * Without a mount table (Windows, macOS) only the network-root filter
+ * applies.
+ * Mount points are matched by exact path, so the check is one map lookup
+ * per directory.
+ */
+final class SystemScanScope {
+
+    /** Default for app.scan.system.excluded-filesystem-types. */
+    static final String DEFAULT_EXCLUDED_TYPES = "proc,sysfs,devtmpfs,devpts,cgroup,cgroup2,securityfs,"
+            + "debugfs,tracefs,pstore,bpf,configfs,fusectl,mqueue,hugetlbfs,binfmt_misc,efivarfs,selinuxfs,"
+            + "autofs,rpc_pipefs,nsfs,tmpfs,ramfs,overlay,aufs";
+
+    static final Set<String> NETWORK_TYPES = Set.of("nfs", "nfs4", "cifs", "smb3", "smbfs", "ncpfs", "afs",
+            "ceph", "glusterfs", "lustre", "9p", "davfs", "sshfs", "s3fs", "rclone", "gcsfuse", "beegfs", "gpfs");
+
+    private static final Path MOUNT_INFO = Paths.get("/proc/self/mountinfo");
+    private static final Path MOUNTS = Paths.get("/proc/mounts");
+
+    /**
+     * One line of the mount table. device is major:minor and root the
+     * directory of that device shown at mountPoint ("/" unless it is a
+     * bind mount); both are null when read from /proc/mounts.
+     */
+    record Mount(String mountPoint, String type, String device, String root) {
+    }
+
+    private final List<Path> roots;
+    // Mount point -> why the walk stops there; mount points the walk
+    // may enter are not in the map.
+    private final Map<String, String> boundaries;
+
+    private SystemScanScope(List<Path> roots, Map<String, String> boundaries) {
+        this.roots = roots;
+        this.boundaries = boundaries;
+    }
+
+    /** Scope of this machine, read from its roots and mount table. */
+    static SystemScanScope resolve(Set<String> excludedTypes, boolean skipNetwork, boolean crossDevices) {
+        File[] listed = File.listRoots();
+        List<Path> candidates = Arrays.stream(listed == null ? new File[0] : listed).map(File::toPath).toList();
+        return of(roots(candidates, SystemScanScope::fileStoreType, skipNetwork), readMountTable(),
+                excludedTypes, skipNetwork, crossDevices);
+    }
+
+    /**
+     * The listed roots the scan walks, given each one's file system type
+     * (null if unknown): all of them but network roots when skipNetwork.
+     */
+    static List<Path> roots(List<Path> listed, Function<Path, String> typeOf, boolean skipNetwork) {
+        List<Path> roots = new ArrayList<>();
+        for (Path root : listed) {
+            String type = skipNetwork ? typeOf.apply(root) : null;
+            if (type != null && isNetwork(type)) {
+                continue;
+            }
+            roots.add(root);
+        }
+        return roots;
+    }
+
+    static SystemScanScope of(List<Path> roots, List<Mount> mounts, Set<String> excludedTypes,
+            boolean skipNetwork, boolean crossDevices) {
+        // A later mount on the same point hides the earlier one.
+        Map<String, Mount> byMountPoint = new HashMap<>();
+        for (Mount mount : mounts) {
+            byMountPoint.put(mount.mountPoint(), mount);
+        }
+        List<Mount> visible = mounts.stream()
+                .filter(mount -> byMountPoint.get(mount.mountPoint()) == mount)
+                .toList();
+
+        Set<String> rootPaths = roots.stream().map(Path::toString).collect(Collectors.toSet());
+        Map<String, String> boundaries = new HashMap<>();
+        for (Mount mount : visible) {
+            if (rootPaths.contains(mount.mountPoint())) {
+                continue;
+            }
+            String reason = null;
+            if (excluded(mount.type(), excludedTypes, skipNetwork)) {
+                reason = isNetwork(mount.type()) ? "network file system " + mount.type() : mount.type();
+            } else if (!crossDevices) {
+                reason = "other device (" + mount.type() + ")";
+            } else if (isBindDuplicate(mount, visible, excludedTypes, skipNetwork)) {
+                reason = "bind mount of " + mount.root();
+            }
+            if (reason != null) {
+                boundaries.put(mount.mountPoint(), reason);
+            }
+        }
+        return new SystemScanScope(List.copyOf(roots), boundaries);
+    }
+
+    List<Path> roots() {
+        return roots;
+    }
+
+    /** Why the walk should not enter directory, or null if it may. */
+    String skipReason(Path directory) {
+        return boundaries.isEmpty() ? null : boundaries.get(directory.toString());
+    }
+
+    /** Excluded mount points, counted per reason, for the scan log. */
+    Map<String, Long> boundarySummary() {
+        return boundaries.values().stream()
+                .collect(Collectors.groupingBy(reason -> reason, Collectors.counting()));
+    }
+
+    static Set<String> parseTypes(String types) {
+        Set<String> parsed = new LinkedHashSet<>();
+        if (types == null) {
+            return parsed;
+        }
+        for (String type : types.split(",")) {
+            String trimmed = type.trim().toLowerCase(Locale.ROOT);
+            if (!trimmed.isEmpty()) {
+                parsed.add(trimmed);
+            }
+        }
+        return parsed;
+    }
+
+    /**
+     * /proc/self/mountinfo lines: "id parent major:minor root mountPoint
+     * options [optional fields...] - type source superOptions".
+     */
+    static List<Mount> parseMountInfo(List<String> lines) {
+        List<Mount> mounts = new ArrayList<>();
+        for (String line : lines) {
+            String[] fields = line.trim().split(" ");
+            int separator = Arrays.asList(fields).indexOf("-");
+            if (fields.length < 6 || separator < 6 || separator + 1 >= fields.length) {
+                continue;
+            }
+            mounts.add(new Mount(unescape(fields[4]), fields[separator + 1], fields[2], unescape(fields[3])));
+        }
+        return mounts;
+    }
+
+    /** /proc/mounts lines: "source mountPoint type options dump pass". */
+    static List<Mount> parseMounts(List<String> lines) {
+        List<Mount> mounts = new ArrayList<>();
+        for (String line : lines) {
+            String[] fields = line.trim().split(" ");
+            if (fields.length < 3) {
+                continue;
+            }
+            mounts.add(new Mount(unescape(fields[1]), fields[2], null, null));
+        }
+        return mounts;
+    }
+
+    private static List<Mount> readMountTable() {
+        try {
+            if (Files.isReadable(MOUNT_INFO)) {
+                return parseMountInfo(Files.readAllLines(MOUNT_INFO));
+            }
+            if (Files.isReadable(MOUNTS)) {
+                return parseMounts(Files.readAllLines(MOUNTS));
+            }
+        } catch (IOException | RuntimeException e) {
+            // No mount table: the walk is limited by the root filter only.
+        }
+        return List.of();
+    }
+
+    private static String fileStoreType(Path root) {
+        try {
+            return Files.getFileStore(root).type();
+        } catch (IOException | RuntimeException e) {
+            // Empty drive, unreachable share: walked (and reported) as before.
+            return null;
+        }
+    }
+
+    private static boolean excluded(String type, Set<String> excludedTypes, boolean skipNetwork) {
+        String normalized = type.toLowerCase(Locale.ROOT);
+        return excludedTypes.contains(normalized) || (skipNetwork && isNetwork(normalized));
+    }
+
+    // FUSE mounts report fuse.<driver>, e.g. fuse.sshfs.
+    private static boolean isNetwork(String type) {
+        String normalized = type.toLowerCase(Locale.ROOT);
+        if (normalized.startsWith("fuse.")) {
+            normalized = normalized.substring("fuse.".length());
+        }
+        return NETWORK_TYPES.contains(normalized);
+    }
+
+    /**
+     * True if another walked mount of the same device shows a directory
+     * containing mount's root, so its files are reached there already.
+     * Of two mounts of the very same directory, the one listed first wins.
+     */
+    private static boolean isBindDuplicate(Mount mount, List<Mount> mounts, Set<String> excludedTypes,
+            boolean skipNetwork) {
+        if (mount.device() == null || mount.root() == null) {
+            return false;
+        }
+        for (Mount other : mounts) {
+            if (other == mount || !mount.device().equals(other.device()) || other.root() == null
+                    || excluded(other.type(), excludedTypes, skipNetwork)) {
+                continue;
+            }
+            boolean sameRoot = other.root().equals(mount.root());
+            if (sameRoot ? mounts.indexOf(other) < mounts.indexOf(mount) : contains(other.root(), mount.root())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean contains(String parent, String child) {
+        return parent.equals("/") || child.startsWith(parent + "/");
+    }
+
+    // The mount table escapes space, tab, newline and backslash as \ooo.
+    private static String unescape(String field) {
+        if (field.indexOf('\\') < 0) {
+            return field;
+        }
+        StringBuilder unescaped = new StringBuilder(field.length());
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == '\\' && isOctal(field, i + 1)) {
+                unescaped.append((char) Integer.parseInt(field.substring(i + 1, i + 4), 8));
+                i += 3;
+            } else {
+                unescaped.append(c);
+            }
+        }
+        return unescaped.toString();
+    }
+
+    private static boolean isOctal(String field, int from) {
+        if (from + 3 > field.length()) {
+            return false;
+        }
+        for (int i = from; i < from + 3; i++) {
+            char c = field.charAt(i);
+            if (c < '0' || c > '7') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -9,30 +9,50 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 /**
- * Owns the known-malware-hash set used by SecurityServiceImpl's
- * known-hash-match check.
+ * Owns the known-malware-hash sets used by SecurityServiceImpl's
+ * known-hash-match check: SHA-256, plus SHA-1 and MD5 for feeds that
+ * publish those, each in its own index and cache file.
  *
  * Design notes (replacing an earlier version of this logic that lived in a
  * static initializer on SecurityServiceImpl):
@@ -43,9 +63,28 @@ import java.util.regex.Pattern;
  * loaded by the JVM (which happened even in plain unit tests that never
  * touch Spring).
  * - The local cache file is loaded synchronously at startup (fast, no
- * network) so lookups work immediately. The remote feed refresh runs on a
- * background daemon thread and never blocks application startup or a
- * request thread.
+ * network) so lookups work immediately. It is a binary SignatureStore
+ * image that is memory-mapped rather than parsed, with refreshes appended
+ * to a journal and compacted in the background (see SignatureCacheFile).
+ * The remote feed refresh runs on a background daemon thread and never
+ * blocks application startup or a request thread.
+ * - The set is published as immutable, versioned SignatureSnapshots
+ * behind an AtomicReference. A refresh builds the next snapshot off to
+ * the side and swaps it in; scans read it with one volatile load and
+ * record its version on each ScanResult.
+ * - Feed tokens of 64, 40 and 32 hex digits are SHA-256, SHA-1 and MD5
+ * digests, for whichever types app.threat-intel.hash-types enables. The
+ * SHA-256 cache is app.threat-intel.cache-file; the others sit next to it
+ * with the type before the extension (threat-intel-signatures.md5.bin).
+ * - Feeds are fetched in parallel and streamed: digests are parsed
+ * straight off the response InputStream and only those not already in
+ * the set are kept, so memory grows with what a feed adds rather than
+ * with the size of the export. A feed's new digests are published as
+ * one version once its body is read, and a delta that reaches the
+ * compaction threshold is folded into the cache image there and then,
+ * so a large import stays linear. Each feed's
+ * ETag / Last-Modified is kept and sent back, so an unchanged feed costs
+ * a 304 instead of a full download.
  * - HttpClient is injected so tests can substitute a fake/mock instead of
  * making real network calls.
  * - Feature is gated by app.threat-intel.enabled (defaults on, but a fully
@@ -61,11 +100,72 @@ public class ThreatIntelSignatureService {
     // SHA-256 of the EICAR standard antivirus test string, the one hash
     // every AV product can safely ship. See
     // https://www.eicar.org/download-anti-malware-testfile/
-    static final String EICAR_SHA256 = "275a021bbfb6489e54d471899f7db9d1663fc695ec2fe2a2c4538aabf651fd0";
+    static final String EICAR_SHA256 = "275a021bbfb6489e54d471899f7db9d1663fc695ec2fe2a2c4538aabf651fd0f";
 
     private static final Pattern SHA256_PATTERN = Pattern.compile("\\b[a-fA-F0-9]{64}\\b");
 
-    private final Set<String> signatures = ConcurrentHashMap.newKeySet();
+    private static final HexFormat HEX = HexFormat.of();
+
+    // Current signature set. Readers do one get() and never lock; writers
+    // build the next snapshot off to the side and set() it, serialized by
+    // this object's monitor so no update is lost.
+    private final AtomicReference<SignatureSnapshot> snapshot = new AtomicReference<>(SignatureSnapshot.EMPTY);
+
+    // Binary cache image and journal per hash type; a type is missing when
+    // the feed is disabled or its cache file is unusable (its signatures
+    // then live in memory only).
+    private final Map<HashType, SignatureCacheFile> cacheFiles = new EnumMap<>(HashType.class);
+
+    /**
+     * Refresh bookkeeping for one feed URL. Written only by that feed's
+     * fetch; volatile so the status endpoint reads current values.
+     */
+    private static final class FeedState {
+        private final String url;
+        private volatile String etag;
+        private volatile String lastModified;
+        private volatile Instant lastCheck;
+        private volatile String lastResult;
+        private volatile long lastDurationMillis;
+        private volatile long lastListed;
+        private volatile long lastAdded;
+        private volatile long totalAdded;
+        private volatile long refreshes;
+
+        private FeedState(String url) {
+            this.url = url;
+        }
+
+        private void finish(String result, long listed, long added, long startNanos) {
+            lastResult = result;
+            lastListed = listed;
+            lastAdded = added;
+            totalAdded += added;
+            refreshes++;
+            lastDurationMillis = (System.nanoTime() - startNanos) / 1_000_000;
+        }
+
+        private Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("url", url);
+            map.put("lastResult", lastResult);
+            map.put("lastCheck", lastCheck != null ? lastCheck.toString() : null);
+            map.put("lastDurationMillis", lastDurationMillis);
+            map.put("lastListed", lastListed);
+            map.put("lastAdded", lastAdded);
+            map.put("totalAdded", totalAdded);
+            map.put("refreshes", refreshes);
+            map.put("etag", etag);
+            map.put("lastModified", lastModified);
+            return map;
+        }
+    }
+
+    private final Map<String, FeedState> feedStates = new ConcurrentHashMap<>();
+
+    // Told about the digests each feed or import adds (not journal
+    // replay or EICAR seeding), after they are published.
+    private final List<Consumer<List<byte[]>>> signatureListeners = new CopyOnWriteArrayList<>();
 
     @Autowired
     private HttpClient threatIntelHttpClient;
@@ -76,9 +176,30 @@ public class ThreatIntelSignatureService {
     @Value("${app.threat-intel.urls:https://bazaar.abuse.ch/export/txt/sha256/recent/}")
     private String feedUrlsConfig;
 
-    @Value("${app.threat-intel.cache-file:data/threat-intel-signatures.sha256}")
+    @Value("${app.threat-intel.cache-file:data/threat-intel-signatures.bin}")
     private String cacheFileConfig;
 
+    // Text cache written by earlier versions; imported once if there is
+    // no binary cache yet.
+    @Value("${app.threat-intel.legacy-cache-file:data/threat-intel-signatures.sha256}")
+    private String legacyCacheFileConfig;
+
+    // Fold the journal into a new cache image once it holds this many
+    // digests. Until then lookups check the image and a small in-memory
+    // delta.
+    @Value("${app.threat-intel.journal-compact-threshold:100000}")
+    private int journalCompactThreshold = 100_000;
+
+    // Feeds fetched at once; each fetch holds one connection and one
+    // read buffer.
+    @Value("${app.threat-intel.max-parallel-feeds:4}")
+    private int maxParallelFeeds = 4;
+
+    // Digest types taken from feeds. SHA-256 is always on; a scan only
+    // computes SHA-1/MD5 once a feed has actually listed some.
+    @Value("${app.threat-intel.hash-types:SHA-256,SHA-1,MD5}")
+    private String hashTypesConfig = "SHA-256,SHA-1,MD5";
+
     @Value("${app.threat-intel.refresh-on-startup:false}")
     private boolean refreshOnStartup;
 
@@ -93,25 +214,23 @@ public class ThreatIntelSignatureService {
 
     @PostConstruct
     void init() {
-        signatures.add(EICAR_SHA256);
-
         if (!enabled) {
+            addSignatures(Set.of(EICAR_SHA256), false);
             logger.info("Threat-intel feed disabled (app.threat-intel.enabled=false); using EICAR signature only");
             return;
         }
 
-        Set<String> cached = loadCache();
-        if (!cached.isEmpty()) {
-            signatures.addAll(cached);
-            logger.info("Loaded {} cached threat-intel signatures", cached.size());
-        }
+        boolean cached = openCache();
+        // Seeded in memory on every start; not worth a journal entry.
+        addSignatures(Set.of(EICAR_SHA256), false);
+        restoreVersion();
 
         // Fire-and-forget: never block application startup on an external
         // network call. If the feed is slow or unreachable, the app starts
         // normally with whatever the cache (or just EICAR) provided, and
         // picks up the remote signatures whenever the background task
         // finishes.
-        if (refreshOnStartup || cached.isEmpty()) {
+        if (refreshOnStartup || !cached) {
             refreshExecutor.submit(this::refreshFromRemote);
         }
     }
@@ -119,15 +238,142 @@ public class ThreatIntelSignatureService {
     @PreDestroy
     void shutdown() {
         refreshExecutor.shutdownNow();
+        for (SignatureCacheFile cacheFile : cacheFiles.values()) {
+            try {
+                cacheFile.close();
+            } catch (IOException e) {
+                logger.debug("Failed to close threat-intel journal: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * The current signature set, for the scanning path: take it once per
+     * file and do every lookup and version read against that snapshot.
+     */
+    SignatureSnapshot snapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     * Thread-safe lookup against the current snapshot: takes the raw
+     * 32-byte SHA-256 digest, so no hex string is built per file.
+     */
+    public boolean isKnownMalicious(byte[] sha256Digest) {
+        return snapshot.get().isKnownMalicious(sha256Digest);
     }
 
-    /** Thread-safe lookup used by the scanning path. */
-    public boolean isKnownMalicious(String sha256Hash) {
-        return sha256Hash != null && signatures.contains(sha256Hash.toLowerCase(Locale.ROOT));
+    /**
+     * Hex convenience overload for any supported type, told apart by
+     * length; case-insensitive, false for anything that isn't a digest.
+     */
+    public boolean isKnownMalicious(String hash) {
+        byte[] digest = parseDigest(hash);
+        return digest != null
+                && snapshot.get().isKnownMalicious(HashType.ofDigestBytes(digest.length), digest);
+    }
+
+    /**
+     * Registers a listener for newly added digests. It is called on the
+     * refresh thread while writers are locked out, once per feed with
+     * everything it added, so it should only hand the digests off, as
+     * RetroHuntService does.
+     */
+    public void addSignatureListener(Consumer<List<byte[]>> listener) {
+        signatureListeners.add(listener);
+    }
+
+    /**
+     * Version of the current snapshot; goes up by one every time the set
+     * gains signatures, so verdicts cached against an older set (see
+     * VerdictCache) are not reused. Survives restarts with the cache.
+     */
+    public long signatureVersion() {
+        return snapshot.get().version();
+    }
+
+    /** See SignatureSnapshot.fingerprint(Set). */
+    long signatureFingerprint(Set<HashType> types) {
+        return snapshot.get().fingerprint(types);
+    }
+
+    private int addSignatures(Collection<String> added, boolean journal) {
+        Map<HashType, List<byte[]>> digests = new EnumMap<>(HashType.class);
+        for (String signature : added) {
+            byte[] digest = parseDigest(signature);
+            if (digest != null) {
+                digests.computeIfAbsent(HashType.ofDigestBytes(digest.length), type -> new ArrayList<>()).add(digest);
+            }
+        }
+        return addDigests(digests, journal);
+    }
+
+    // Only the refresh executor and init() write, but synchronize anyway
+    // so two merges (or a merge and a compaction) can never race and drop
+    // each other's additions. Everything new in digests is published as
+    // one version. Returns how many digests were new.
+    private synchronized int addDigests(Map<HashType, List<byte[]>> digests, boolean journal) {
+        SignatureSnapshot current = snapshot.get();
+        Map<HashType, List<byte[]>> added = new EnumMap<>(HashType.class);
+        Map<HashType, SignatureStore> grown = new EnumMap<>(HashType.class);
+        for (Map.Entry<HashType, List<byte[]>> entry : digests.entrySet()) {
+            HashType type = entry.getKey();
+            List<byte[]> fresh = entry.getValue().stream()
+                    .filter(digest -> !current.isKnownMalicious(type, digest))
+                    .toList();
+            if (!fresh.isEmpty()) {
+                added.put(type, fresh);
+                grown.put(type, current.index(type).delta().merge(fresh));
+            }
+        }
+        if (added.isEmpty()) {
+            return 0;
+        }
+        SignatureSnapshot next = current.withDeltas(grown);
+        if (journal) {
+            added.forEach((type, fresh) -> {
+                SignatureCacheFile cacheFile = cacheFiles.get(type);
+                if (cacheFile == null) {
+                    return;
+                }
+                try {
+                    cacheFile.append(fresh, next.version());
+                } catch (IOException e) {
+                    logger.warn("Failed to journal {} threat-intel {} signatures: {}",
+                            fresh.size(), type.algorithm(), e.getMessage());
+                }
+            });
+        }
+        snapshot.set(next);
+        // Each merge copies the whole delta, so once it is as big as the
+        // journal may grow it goes into the image now rather than after
+        // the refresh; otherwise a large import would merge ever-larger
+        // deltas.
+        if (journal) {
+            for (HashType type : added.keySet()) {
+                SignatureCacheFile cacheFile = cacheFiles.get(type);
+                if (cacheFile != null && cacheFile.journalEntries() >= journalCompactThreshold) {
+                    compact(type, cacheFile);
+                }
+            }
+        }
+        // Scan results only keep SHA-256, so only those are worth a
+        // retro-hunt.
+        List<byte[]> sha256 = added.get(HashType.SHA256);
+        if (journal && sha256 != null) {
+            for (Consumer<List<byte[]>> listener : signatureListeners) {
+                try {
+                    listener.accept(sha256);
+                } catch (RuntimeException e) {
+                    logger.warn("Threat-intel signature listener failed: {}", e.getMessage());
+                }
+            }
+        }
+        return added.values().stream().mapToInt(List::size).sum();
     }
 
     public int signatureCount() {
-        return signatures.size();
+        return snapshot.get().size();
     }
 
     /**
@@ -142,74 +388,305 @@ public class ThreatIntelSignatureService {
         return CompletableFuture.supplyAsync(this::refreshFromRemote, refreshExecutor);
     }
 
+    /**
+     * Fetches every configured feed, in parallel up to
+     * app.threat-intel.max-parallel-feeds, and returns how many digests
+     * the feeds listed (not how many were new). Feeds that answer 304 Not
+     * Modified contribute nothing.
+     */
     int refreshFromRemote() {
-        Set<String> fetched = new LinkedHashSet<>();
-        for (String feedUrl : resolveFeedUrls()) {
-            try {
-                HttpRequest request = HttpRequest.newBuilder(URI.create(feedUrl))
-                        .timeout(Duration.ofSeconds(10))
-                        .header("User-Agent", "SecureGuard-Antivirus/1.0")
-                        .GET()
-                        .build();
-                HttpResponse<String> response = threatIntelHttpClient.send(
-                        request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        List<String> feedUrls = resolveFeedUrls();
+        if (feedUrls.isEmpty()) {
+            return 0;
+        }
+        int before = signatureCount();
+        long listed = 0;
+        ExecutorService feedExecutor = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(feedUrls.size(), maxParallelFeeds)), runnable -> {
+                    Thread thread = new Thread(runnable, "threat-intel-feed");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        try {
+            List<Callable<Long>> fetches = feedUrls.stream()
+                    .<Callable<Long>>map(url -> () -> refreshFeed(url))
+                    .toList();
+            for (Future<Long> fetch : feedExecutor.invokeAll(fetches)) {
+                listed += fetch.get();
+            }
+        } catch (InterruptedException e) {
+            // Shutting down; the finally interrupts the fetches too.
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.warn("Threat-intel feed fetch failed: {}", e.getCause().getMessage());
+        } finally {
+            feedExecutor.shutdownNow();
+        }
+
+        long updated = feedStates.values().stream().filter(state -> "UPDATED".equals(state.lastResult)).count();
+        long notModified = feedStates.values().stream()
+                .filter(state -> "NOT_MODIFIED".equals(state.lastResult)).count();
+        if (updated > 0 || notModified > 0) {
+            logger.info("Threat-intel refresh: {} feed(s), {} updated, {} not modified; {} new signatures, {} total",
+                    feedUrls.size(), updated, notModified, signatureCount() - before, signatureCount());
+            scheduleCompactionIfDue();
+        } else {
+            logger.warn("No threat-intel signatures were returned by the configured feeds");
+        }
+        return (int) Math.min(Integer.MAX_VALUE, listed);
+    }
 
+    // One conditional GET, parsed as it streams in. Never throws: a bad
+    // feed must not take down the other fetches or, via an uncaught
+    // exception on the refresh executor, the JVM's default handler.
+    private long refreshFeed(String feedUrl) {
+        FeedState state = feedStates.computeIfAbsent(feedUrl, FeedState::new);
+        long start = System.nanoTime();
+        state.lastCheck = Instant.now();
+        try {
+            HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(feedUrl))
+                    .timeout(Duration.ofSeconds(10))
+                    .header("User-Agent", "SecureGuard-Antivirus/1.0")
+                    .GET();
+            if (state.etag != null) {
+                request.header("If-None-Match", state.etag);
+            }
+            if (state.lastModified != null) {
+                request.header("If-Modified-Since", state.lastModified);
+            }
+            HttpResponse<InputStream> response = threatIntelHttpClient.send(
+                    request.build(), HttpResponse.BodyHandlers.ofInputStream());
+
+            try (InputStream body = response.body()) {
+                if (response.statusCode() == 304) {
+                    state.finish("NOT_MODIFIED", 0, 0, start);
+                    return 0;
+                }
                 if (response.statusCode() / 100 != 2) {
                     logger.warn("Threat-intel feed {} returned HTTP {}", feedUrl, response.statusCode());
+                    state.finish("HTTP_" + response.statusCode(), 0, 0, start);
+                    return 0;
+                }
+
+                // Digests already in the set are dropped as they stream
+                // past; the rest are published together once the body
+                // has been read.
+                Map<HashType, Set<ByteBuffer>> pending = new EnumMap<>(HashType.class);
+                long listed = parseDigests(body, resolveHashTypes(), (type, digest) -> {
+                    if (!snapshot.get().isKnownMalicious(type, digest)) {
+                        pending.computeIfAbsent(type, t -> new LinkedHashSet<>()).add(ByteBuffer.wrap(digest));
+                    }
+                });
+                Map<HashType, List<byte[]>> fresh = new EnumMap<>(HashType.class);
+                pending.forEach((type, digests) -> fresh.put(type,
+                        digests.stream().map(ByteBuffer::array).toList()));
+                int added = addDigests(fresh, true);
+
+                // Only remembered once the whole body was read, so a
+                // truncated download is fetched in full next time.
+                state.etag = response.headers().firstValue("ETag").orElse(null);
+                state.lastModified = response.headers().firstValue("Last-Modified").orElse(null);
+                state.finish("UPDATED", listed, added, start);
+                return listed;
+            }
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            logger.warn("Failed to load threat-intel feed {}: {}", feedUrl, e.getMessage());
+            state.finish("FAILED", 0, 0, start);
+            return 0;
+        }
+    }
+
+    /**
+     * Signature counts plus each feed's last refresh: result (UPDATED,
+     * NOT_MODIFIED, HTTP_xxx or FAILED), when, how long, and how many
+     * digests it listed and added.
+     */
+    public Map<String, Object> refreshStatus() {
+        SignatureSnapshot current = snapshot.get();
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("signatureCount", current.size());
+        Map<String, Integer> byType = new LinkedHashMap<>();
+        for (HashType type : HashType.values()) {
+            byType.put(type.algorithm(), current.size(type));
+        }
+        status.put("signatureCounts", byType);
+        status.put("signatureVersion", current.version());
+        status.put("feeds", feedStates.values().stream().map(FeedState::toMap).toList());
+        return status;
+    }
+
+    /** SHA-256 digests only; see parseDigests(InputStream, Set, BiConsumer). */
+    static long parseDigests(InputStream in, Consumer<byte[]> sink) throws IOException {
+        return parseDigests(in, EnumSet.of(HashType.SHA256), (type, digest) -> sink.accept(digest));
+    }
+
+    /**
+     * Streams digests out of a feed body: every run of exactly 64, 40 or
+     * 32 hex digits (for the enabled types) bounded by non-word
+     * characters, the same tokens SHA256_PATTERN finds for 64, without
+     * building a String per line or holding more than one read buffer.
+     * Returns how many were found.
+     */
+    static long parseDigests(InputStream in, Set<HashType> types, BiConsumer<HashType, byte[]> sink)
+            throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        byte[] digest = new byte[SignatureStore.DIGEST_BYTES];
+        int maxHexDigits = SignatureStore.DIGEST_BYTES * 2;
+        // Length of the current run of word characters, and whether it has
+        // been all hex so far.
+        int run = 0;
+        boolean hex = true;
+        long found = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            for (int i = 0; i < read; i++) {
+                int c = buffer[i] & 0xFF;
+                int nibble = Character.digit(c, 16);
+                if (nibble >= 0 || isWordCharacter(c)) {
+                    if (nibble < 0) {
+                        hex = false;
+                    } else if (hex && run < maxHexDigits) {
+                        digest[run >> 1] = (byte) ((run & 1) == 0 ? nibble << 4 : digest[run >> 1] | nibble);
+                    }
+                    run++;
                     continue;
                 }
-                fetched.addAll(extractSha256Signatures(response.body()));
-            } catch (Exception e) {
-                // Deliberately broad: a bad feed must never take down the
-                // refresh task or, via an uncaught exception on this
-                // executor, the JVM's default handler.
-                logger.warn("Failed to load threat-intel feed {}: {}", feedUrl, e.getMessage());
+                found += emitDigest(digest, hex ? run : 0, types, sink);
+                run = 0;
+                hex = true;
             }
         }
+        found += emitDigest(digest, hex ? run : 0, types, sink);
+        return found;
+    }
 
-        if (!fetched.isEmpty()) {
-            signatures.addAll(fetched);
-            // Persist the full accumulated set, not just this round's
-            // fetch: the feed only exports "recent" hashes, so a hash we
-            // added on an earlier refresh could drop out of a later
-            // fetch's window. Writing just `fetched` each time would
-            // silently lose those on the next restart.
-            persistCache(signatures);
-            logger.info("Loaded {} new threat-intel signatures from {} feed(s), {} total in memory",
-                    fetched.size(), resolveFeedUrls().size(), signatures.size());
-        } else {
-            logger.warn("No threat-intel signatures were returned by the configured feeds");
+    // Hands the first hexDigits / 2 bytes of digest to sink if that is
+    // the length of an enabled type. Returns 1 if it did.
+    private static int emitDigest(byte[] digest, int hexDigits, Set<HashType> types,
+            BiConsumer<HashType, byte[]> sink) {
+        if (hexDigits == 0 || (hexDigits & 1) != 0) {
+            return 0;
         }
-        return fetched.size();
+        HashType type = HashType.ofDigestBytes(hexDigits / 2);
+        if (type == null || !types.contains(type)) {
+            return 0;
+        }
+        sink.accept(type, Arrays.copyOf(digest, type.digestBytes()));
+        return 1;
+    }
+
+    private static boolean isWordCharacter(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
     }
 
-    private Set<String> loadCache() {
-        Path cachePath = resolveCachePath();
-        if (!Files.isRegularFile(cachePath)) {
-            return Set.of();
+    /**
+     * Maps each enabled type's binary cache and replays its journal,
+     * importing the old text cache instead if there is nothing at all.
+     * Returns true if anything was loaded.
+     */
+    private boolean openCache() {
+        for (HashType type : resolveHashTypes()) {
+            Path cachePath = resolveCachePath(type);
+            long start = System.nanoTime();
+            try {
+                SignatureCacheFile cacheFile = SignatureCacheFile.open(cachePath, type);
+                cacheFiles.put(type, cacheFile);
+                if (cacheFile.base().size() > 0) {
+                    setBase(type, cacheFile.base());
+                }
+                int journaled = addDigests(Map.of(type, cacheFile.readJournal()), false);
+                if (type == HashType.SHA256 || cacheFile.base().size() + journaled > 0) {
+                    logger.info("Mapped {} cached threat-intel {} signatures (+{} journaled) from {} in {} ms",
+                            cacheFile.base().size(), type.algorithm(), journaled, cachePath,
+                            (System.nanoTime() - start) / 1_000_000);
+                }
+            } catch (IOException e) {
+                logger.warn("Threat-intel cache {} unusable, keeping {} signatures in memory only: {}",
+                        cachePath, type.algorithm(), e.getMessage());
+                cacheFiles.remove(type);
+            }
         }
-        try {
+
+        if (signatureCount() == 0) {
+            importLegacyCache();
+        }
+        scheduleCompactionIfDue();
+        return signatureCount() > 0;
+    }
+
+    /**
+     * Startup only, once the cache and EICAR are loaded: carries on from
+     * the highest version any journal recorded, so the set keeps the
+     * version it had before the restart and later ones stay above every
+     * version already stored on scan results.
+     */
+    private synchronized void restoreVersion() {
+        long journaled = cacheFiles.values().stream()
+                .mapToLong(SignatureCacheFile::setVersion)
+                .max().orElse(0);
+        SignatureSnapshot current = snapshot.get();
+        if (journaled > current.version()) {
+            snapshot.set(current.withVersion(journaled));
+            logger.info("Threat-intel signature version restored to {}", journaled);
+        }
+    }
+
+    // Startup only: the mapped image becomes the base of a new version.
+    private synchronized void setBase(HashType type, SignatureStore base) {
+        snapshot.set(snapshot.get().withBase(type, base));
+    }
+
+    private void importLegacyCache() {
+        Path legacyPath = Paths.get(legacyCacheFileConfig);
+        if (!Files.isRegularFile(legacyPath)) {
+            return;
+        }
+        try (Stream<String> lines = Files.lines(legacyPath, StandardCharsets.UTF_8)) {
             Set<String> loaded = new LinkedHashSet<>();
-            for (String line : Files.readAllLines(cachePath, StandardCharsets.UTF_8)) {
-                loaded.addAll(extractSha256Signatures(line));
-            }
-            return loaded;
-        } catch (IOException e) {
-            logger.warn("Failed to load cached threat-intel signatures from {}: {}", cachePath, e.getMessage());
-            return Set.of();
+            lines.forEach(line -> loaded.addAll(extractSha256Signatures(line)));
+            int added = addSignatures(loaded, true);
+            logger.info("Imported {} threat-intel signatures from legacy text cache {}", added, legacyPath);
+        } catch (IOException | UncheckedIOException e) {
+            logger.warn("Failed to import legacy threat-intel cache {}: {}", legacyPath, e.getMessage());
         }
     }
 
-    private void persistCache(Set<String> newSignatures) {
-        Path cachePath = resolveCachePath();
+    private void scheduleCompactionIfDue() {
+        boolean due = cacheFiles.values().stream()
+                .anyMatch(cacheFile -> cacheFile.journalEntries() >= journalCompactThreshold);
+        if (due && !refreshExecutor.isShutdown()) {
+            refreshExecutor.submit(this::compactCache);
+        }
+    }
+
+    /**
+     * Folds each type's in-memory delta into a new cache image and empties
+     * its journal. Runs on the refresh thread, so lookups carry on against
+     * the old images until the new ones are swapped in.
+     */
+    synchronized void compactCache() {
+        cacheFiles.forEach(this::compact);
+    }
+
+    private synchronized void compact(HashType type, SignatureCacheFile cacheFile) {
+        SignatureSnapshot current = snapshot.get();
+        SignatureStore pending = current.index(type).delta();
+        if (cacheFile.journalEntries() == 0 && pending.size() == 0) {
+            return;
+        }
+        long start = System.nanoTime();
+        List<byte[]> delta = new ArrayList<>(pending.size());
+        pending.forEach(delta::add);
         try {
-            Path parent = cachePath.getParent();
-            if (parent != null) {
-                Files.createDirectories(parent);
-            }
-            Files.write(cachePath, newSignatures.stream().sorted().toList(), StandardCharsets.UTF_8);
+            SignatureStore base = cacheFile.compact(delta);
+            snapshot.set(current.compacted(type, base));
+            logger.info("Compacted threat-intel {} cache to {} signatures in {} ms",
+                    type.algorithm(), base.size(), (System.nanoTime() - start) / 1_000_000);
         } catch (IOException e) {
-            logger.warn("Failed to persist threat-intel cache to {}: {}", cachePath, e.getMessage());
+            logger.warn("Failed to compact threat-intel {} cache: {}", type.algorithm(), e.getMessage());
         }
     }
 
@@ -225,6 +702,34 @@ public class ThreatIntelSignatureService {
         return found;
     }
 
+    // Raw digest of a 64, 40 or 32 hex-digit hash, or null.
+    private static byte[] parseDigest(String hash) {
+        if (hash == null || (hash.length() & 1) != 0 || HashType.ofDigestBytes(hash.length() / 2) == null) {
+            return null;
+        }
+        try {
+            return HEX.parseHex(hash);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // SHA-256 plus whichever other configured types parse.
+    private Set<HashType> resolveHashTypes() {
+        Set<HashType> types = EnumSet.of(HashType.SHA256);
+        for (String name : hashTypesConfig.split("[,;\\s]+")) {
+            if (name.isBlank()) {
+                continue;
+            }
+            try {
+                types.add(HashType.parse(name));
+            } catch (IllegalArgumentException e) {
+                logger.warn("Ignoring unknown threat-intel hash type '{}'", name);
+            }
+        }
+        return types;
+    }
+
     @SuppressWarnings("null")
     private List<String> resolveFeedUrls() {
         return Arrays.stream(feedUrlsConfig.split("[,;\\s]+"))
@@ -233,7 +738,16 @@ public class ThreatIntelSignatureService {
                 .toList();
     }
 
-    private Path resolveCachePath() {
-        return Paths.get(cacheFileConfig);
+    private Path resolveCachePath(HashType type) {
+        Path sha256Path = Paths.get(cacheFileConfig);
+        if (type == HashType.SHA256) {
+            return sha256Path;
+        }
+        String name = sha256Path.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String suffix = "." + type.name().toLowerCase(Locale.ROOT);
+        return sha256Path.resolveSibling(dot > 0
+                ? name.substring(0, dot) + suffix + name.substring(dot)
+                : name + suffix);
     }
 }
\ No newline at end of file
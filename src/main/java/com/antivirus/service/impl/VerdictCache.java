@@ -0,0 +1,100 @@
+package com.antivirus.service.impl;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Content-hash verdict cache for SecurityServiceImpl.scanFile().
+ *
+ * The same bytes get scanned over and over: identical node_modules files
+ * across directory uploads, one installer uploaded by many users, every
+ * unchanged file on a repeated system scan. Entries are keyed by SHA-256
+ * plus the ThreatIntelSignatureService signature-set version, so a hit
+ * skips the pattern, archive and header detectors entirely.
+ *
+ * - Single-flight: concurrent lookups of the same key share one
+ * in-flight computation instead of each running the detectors.
+ * - Invalidation: the first lookup that sees a newer signature version
+ * drops every entry; the version in the key already keeps stale entries
+ * from being served in the meantime.
+ * - Failures are not cached; the next lookup computes again.
+ */
+@Component
+public class VerdictCache {
+
+    static final long DEFAULT_MAX_ENTRIES = 100_000;
+
+    @FunctionalInterface
+    interface Loader {
+        ContentVerdict load() throws IOException;
+    }
+
+    // The digest as four longs rather than a hex string: no per-lookup
+    // formatting and a quarter of the key memory.
+    private record Key(long d0, long d1, long d2, long d3, long version, boolean archive) {
+    }
+
+    private final AsyncCache<Key, ContentVerdict> cache;
+    private final AtomicLong signatureVersion = new AtomicLong(Long.MIN_VALUE);
+
+    public VerdictCache(@Value("${app.scan.verdict-cache.max-entries:100000}") long maxEntries) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .buildAsync();
+    }
+
+    /**
+     * Returns the cached verdict for this content, or runs loader on the
+     * calling thread (once per key, however many callers are waiting).
+     * archive separates entries computed with archive inspection from
+     * those without, since that part of the verdict depends on it.
+     */
+    ContentVerdict get(byte[] sha256, boolean archive, long version, Loader loader) throws IOException {
+        invalidateIfStale(version);
+        ByteBuffer digest = ByteBuffer.wrap(sha256);
+        Key key = new Key(digest.getLong(0), digest.getLong(8), digest.getLong(16), digest.getLong(24),
+                version, archive);
+
+        CompletableFuture<ContentVerdict> mine = new CompletableFuture<>();
+        CompletableFuture<ContentVerdict> inFlight = cache.asMap().putIfAbsent(key, mine);
+        if (inFlight != null) {
+            try {
+                return inFlight.join();
+            } catch (CompletionException e) {
+                // The shared computation failed; try once on our own so
+                // this caller sees its own error (or success).
+                return loader.load();
+            }
+        }
+
+        try {
+            ContentVerdict verdict = loader.load();
+            mine.complete(verdict);
+            return verdict;
+        } catch (IOException | RuntimeException e) {
+            cache.asMap().remove(key, mine);
+            mine.completeExceptionally(e instanceof IOException io ? new UncheckedIOException(io) : e);
+            throw e;
+        }
+    }
+
+    long size() {
+        return cache.synchronous().estimatedSize();
+    }
+
+    private void invalidateIfStale(long version) {
+        long seen = signatureVersion.get();
+        if (version > seen && signatureVersion.compareAndSet(seen, version)) {
+            cache.synchronous().invalidateAll();
+        }
+    }
+}
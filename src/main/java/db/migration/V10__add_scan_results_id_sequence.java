@@ -0,0 +1,41 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * V10: sequence for scan_results ids, so Hibernate can hand out ids from a
+ * pooled block of 50 and send inserts as JDBC batches (ScanResult used
+ * IDENTITY ids, which need each row inserted before its id is known).
+ *
+ * A Java migration rather than SQL because the sequence has to start
+ * above the ids already in the table, and there is no single statement
+ * for that which both H2 and PostgreSQL accept (H2 has no setval(), and
+ * PostgreSQL only takes a literal in START WITH / RESTART WITH).
+ *
+ * It starts allocationSize above the current maximum: Hibernate's pooled
+ * optimizer treats each value it fetches as the top of a block and uses
+ * the 49 ids below it, which must all be unused. The id column keeps its
+ * identity default (GENERATED BY DEFAULT), so an explicit id is accepted
+ * and nothing else has to change.
+ */
+public class V10__add_scan_results_id_sequence extends BaseJavaMigration {
+
+    private static final int ALLOCATION_SIZE = 50;
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        try (Statement statement = context.getConnection().createStatement()) {
+            long maxId;
+            try (ResultSet rs = statement.executeQuery("SELECT COALESCE(MAX(id), 0) FROM scan_results")) {
+                rs.next();
+                maxId = rs.getLong(1);
+            }
+            statement.execute("CREATE SEQUENCE scan_results_seq START WITH " + (maxId + ALLOCATION_SIZE)
+                    + " INCREMENT BY " + ALLOCATION_SIZE);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+-- One row per bulk scan (system scan, directory scan, directory or
+-- archive job): how many files it looked at, how many bytes, how they
+-- came out, and how long it took. With
+-- app.scan.persistence.aggregate-clean-results=true, CLEAN files of a bulk
+-- scan get no scan_results row and are only counted here; SUSPICIOUS,
+-- MALICIOUS and ERROR/SKIPPED outcomes always keep their full row.
+--
+-- target_name is what the user scanned (directory or archive name), never
+-- a server path, the same way scan results only expose file names; it is
+-- null for system scans.
+--
+-- stored_results / stored_clean count the scan_results rows the scan did
+-- write (all of them, or only the clean ones), so totals over both tables
+-- are scan_results minus the stored rows plus the summaries, without
+-- counting any file twice whichever mode wrote it.
+CREATE TABLE scan_summaries (
+    id                BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    scan_type         VARCHAR(255) NOT NULL,
+    owner_username    VARCHAR(255),
+    target_name       VARCHAR(1024),
+    started_at        TIMESTAMP NOT NULL,
+    finished_at       TIMESTAMP NOT NULL,
+    duration_ms       BIGINT NOT NULL,
+    files_scanned     BIGINT NOT NULL,
+    bytes_scanned     BIGINT NOT NULL,
+    clean_files       BIGINT NOT NULL,
+    suspicious_files  BIGINT NOT NULL,
+    malicious_files   BIGINT NOT NULL,
+    error_files       BIGINT NOT NULL,
+    stored_results    BIGINT NOT NULL,
+    stored_clean      BIGINT NOT NULL
+);
+
+-- History pages read summaries by finish time, per owner for /history/me.
+CREATE INDEX idx_scan_summaries_finished_at ON scan_summaries (finished_at);
+CREATE INDEX idx_scan_summaries_owner_finished_at ON scan_summaries (owner_username, finished_at);
@@ -0,0 +1,9 @@
+-- Records which threat-intel signature snapshot each scan result was
+-- judged against (ThreatIntelSignatureService bumps the version every time
+-- the signature set grows). Lets results, caches and re-checks tell a
+-- verdict reached before a feed refresh from one reached after it.
+--
+-- Nullable: rows written before this migration, and results that never
+-- reached a content verdict (unreadable, too large), have no version.
+ALTER TABLE scan_results
+ADD COLUMN signature_version BIGINT;
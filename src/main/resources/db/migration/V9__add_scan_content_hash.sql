@@ -0,0 +1,17 @@
+-- Stores what a scanned file's content was: its SHA-256 (lowercase hex),
+-- size and last-modified time at scan time. When a threat-intel refresh
+-- adds new malicious hashes, RetroHuntService joins them against this
+-- column and flags past CLEAN/SUSPICIOUS results for the same content,
+-- without rescanning anything from disk.
+--
+-- Nullable: rows written before this migration, and results that never
+-- reached a content verdict (missing, unreadable, too large), have no hash.
+ALTER TABLE scan_results
+ADD COLUMN content_sha256 VARCHAR(64);
+ALTER TABLE scan_results
+ADD COLUMN file_size BIGINT;
+ALTER TABLE scan_results
+ADD COLUMN file_modified_at TIMESTAMP;
+
+-- Retro-hunt looks results up by hash, a few hundred hashes at a time.
+CREATE INDEX idx_scan_results_content_sha256 ON scan_results (content_sha256);
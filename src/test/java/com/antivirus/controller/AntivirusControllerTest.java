@@ -1,10 +1,10 @@
 package com.antivirus.controller;
 
 import com.antivirus.config.SecurityConfig;
-import com.antivirus.dto.PagedResponse;
+import com.antivirus.dto.ScanHistoryResponse;
 import com.antivirus.exception.MultipartUploadExceptionHandler;
 import com.antivirus.model.ScanResult;
-import com.antivirus.repository.ScanResultRepository;
+import com.antivirus.model.ScanSummary;
 import com.antivirus.service.LogService;
 import com.antivirus.service.SecurityService;
 import com.antivirus.service.SystemMonitorService;
@@ -32,6 +32,7 @@ import static org.springframework.security.test.web.servlet.request.SecurityMock
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -49,9 +50,6 @@ class AntivirusControllerTest {
         @MockitoBean
         private SystemMonitorService systemMonitorService;
 
-        @MockitoBean
-        private ScanResultRepository scanResultRepository;
-
         @MockitoBean
         private LogService logService;
 
@@ -65,7 +63,8 @@ class AntivirusControllerTest {
                 ScanResult cleanResult = new ScanResult();
                 cleanResult.setVerdict("CLEAN");
                 cleanResult.setInfected(false);
-                when(securityService.scanFile(any())).thenReturn(cleanResult);
+                when(securityService.scanStream(any(), org.mockito.ArgumentMatchers.eq("document.pdf")))
+                                .thenReturn(cleanResult);
 
                 mockMvc.perform(multipart("/api/antivirus/scan/file")
                                 .file(file)
@@ -110,6 +109,38 @@ class AntivirusControllerTest {
                                 .andExpect(status().is3xxRedirection());
         }
 
+        @Test
+        void scanFileStream_ShouldScanRawBodyForUserRole() throws Exception {
+                ScanResult cleanResult = new ScanResult();
+                when(securityService.scanStream(any(), org.mockito.ArgumentMatchers.eq("report.pdf")))
+                                .thenAnswer(invocation -> {
+                                        byte[] body = invocation.<java.io.InputStream>getArgument(0).readAllBytes();
+                                        cleanResult.setVerdict(body.length == 8 ? "CLEAN" : "ERROR");
+                                        return cleanResult;
+                                });
+
+                mockMvc.perform(post("/api/antivirus/scan/file/stream")
+                                .param("name", "report.pdf")
+                                .content("%PDF-1.7".getBytes())
+                                .contentType("application/pdf")
+                                .with(csrf())
+                                .with(user("testuser").roles("USER")))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.verdict").value("CLEAN"))
+                                .andExpect(jsonPath("$.fileName").value("report.pdf"));
+        }
+
+        @Test
+        void scanFileStream_ShouldReturnBadRequestForUnsupportedContentType() throws Exception {
+                mockMvc.perform(post("/api/antivirus/scan/file/stream")
+                                .param("name", "archive.rar")
+                                .content("Rar!".getBytes())
+                                .contentType("application/x-unknown")
+                                .with(csrf())
+                                .with(user("testuser").roles("USER")))
+                                .andExpect(status().isBadRequest());
+        }
+
         // ── /history (ADMIN only) ────────────────────────────────────────
 
         @Test
@@ -122,14 +153,20 @@ class AntivirusControllerTest {
         void getScanHistory_ShouldReturnOkForAdminRole() throws Exception {
                 ScanResult scanResult = new ScanResult();
                 scanResult.setVerdict("CLEAN");
-                PagedResponse<ScanResult> page = PagedResponse.from(
-                                new PageImpl<>(List.of(scanResult), PageRequest.of(0, 10), 1));
+                ScanSummary scan = new ScanSummary();
+                scan.setScanType("SYSTEM");
+                scan.setFilesScanned(100_000);
+                ScanHistoryResponse page = new ScanHistoryResponse(
+                                new PageImpl<>(List.of(scanResult), PageRequest.of(0, 10), 1),
+                                List.of(scan), Map.of("files", 100_001L));
                 when(securityService.getScanHistory(0, 10)).thenReturn(page);
 
                 mockMvc.perform(get("/api/antivirus/history").with(user("admin").roles("ADMIN")))
                                 .andExpect(status().isOk())
                                 .andExpect(jsonPath("$.content").isArray())
-                                .andExpect(jsonPath("$.totalElements").value(1));
+                                .andExpect(jsonPath("$.totalElements").value(1))
+                                .andExpect(jsonPath("$.scans[0].filesScanned").value(100_000))
+                                .andExpect(jsonPath("$.totals.files").value(100_001));
         }
 
         // ── /history/me (USER or ADMIN) ──────────────────────────────────
@@ -138,12 +175,14 @@ class AntivirusControllerTest {
         void getMyHistory_ShouldReturnOwnedHistoryForUserRole() throws Exception {
                 ScanResult scanResult = new ScanResult();
                 scanResult.setVerdict("CLEAN");
-                when(scanResultRepository.findByOwnerUsernameOrderByScanDateTimeDesc(
-                                org.mockito.ArgumentMatchers.eq("testuser"), any()))
-                                .thenReturn(new PageImpl<>(List.of(scanResult)));
+                when(securityService.getScanHistoryForOwner(org.mockito.ArgumentMatchers.eq("testuser"),
+                                org.mockito.ArgumentMatchers.eq(0), org.mockito.ArgumentMatchers.eq(10)))
+                                .thenReturn(new ScanHistoryResponse(new PageImpl<>(List.of(scanResult)), List.of(),
+                                                Map.of()));
 
-                mockMvc.perform(get("/api/antivirus/history/me").with(user("testuser").roles("USER")))
-                                .andExpect(status().isOk());
+                mockMvc.perform(get("/api/antivirus/history/me").with(user("TestUser").roles("USER")))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.totalElements").value(1));
         }
 
         // ── /scan/system (ADMIN only) ────────────────────────────────────
@@ -156,7 +195,17 @@ class AntivirusControllerTest {
                                 .andExpect(status().isAccepted())
                                 .andExpect(jsonPath("$.started").value(true));
 
-                verify(securityService, times(1)).performSystemScan();
+                verify(securityService, times(1)).performSystemScan(false);
+        }
+
+        @Test
+        void performSystemScan_ShouldForwardFullRescanFlag() throws Exception {
+                mockMvc.perform(post("/api/antivirus/scan/system").param("full", "true")
+                                .with(csrf())
+                                .with(user("admin").roles("ADMIN")))
+                                .andExpect(status().isAccepted());
+
+                verify(securityService, times(1)).performSystemScan(true);
         }
 
         @Test
@@ -181,6 +230,59 @@ class AntivirusControllerTest {
                                 .andExpect(jsonPath("$.filesScanned").value(42));
         }
 
+        // ── /update/status (ADMIN only) ──────────────────────────────────
+
+        @Test
+        void getVirusDefinitionStatus_ShouldReturnFeedStateForAdminRole() throws Exception {
+                Map<String, Object> feed = new HashMap<>();
+                feed.put("url", "https://feed.example/recent.txt");
+                feed.put("lastResult", "NOT_MODIFIED");
+                Map<String, Object> definitionStatus = new HashMap<>();
+                definitionStatus.put("signatureCount", 1000);
+                definitionStatus.put("feeds", List.of(feed));
+                when(securityService.getVirusDefinitionStatus()).thenReturn(definitionStatus);
+
+                mockMvc.perform(get("/api/antivirus/update/status").with(user("admin").roles("ADMIN")))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.signatureCount").value(1000))
+                                .andExpect(jsonPath("$.feeds[0].lastResult").value("NOT_MODIFIED"));
+        }
+
+        @Test
+        void getVirusDefinitionStatus_ShouldReturnForbiddenForUserRole() throws Exception {
+                mockMvc.perform(get("/api/antivirus/update/status").with(user("testuser").roles("USER")))
+                                .andExpect(status().isForbidden());
+        }
+
+        // ── /exclusions (ADMIN only) ─────────────────────────────────────
+
+        @Test
+        void updateScanExclusions_ShouldReplaceRulesForAdminRole() throws Exception {
+                Map<String, Object> exclusions = new HashMap<>();
+                exclusions.put("rules", List.of("**/node_modules/**", "ext:iso"));
+                when(securityService.updateScanExclusions(List.of("**/node_modules/**", "ext:iso")))
+                                .thenReturn(exclusions);
+
+                mockMvc.perform(put("/api/antivirus/exclusions")
+                                .with(user("admin").roles("ADMIN"))
+                                .with(csrf())
+                                .contentType("application/json")
+                                .content("{\"rules\": [\"**/node_modules/**\", \"ext:iso\"]}"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.rules[1]").value("ext:iso"));
+        }
+
+        @Test
+        void updateScanExclusions_ShouldReturnForbiddenForUserRole() throws Exception {
+                mockMvc.perform(put("/api/antivirus/exclusions")
+                                .with(user("testuser").roles("USER"))
+                                .with(csrf())
+                                .contentType("application/json")
+                                .content("{\"rules\": []}"))
+                                .andExpect(status().isForbidden());
+                verify(securityService, times(0)).updateScanExclusions(any());
+        }
+
         // ── /scan/directory (USER + ADMIN) ───────────────────────────────
 
         @Test
@@ -211,6 +313,85 @@ class AntivirusControllerTest {
                                 .andExpect(status().isBadRequest());
         }
 
+        // ── /scan/archive (USER + ADMIN) ─────────────────────────────────
+
+        @Test
+        void createArchiveScan_ShouldReturnCreatedWithJobIdForUserRole() throws Exception {
+                when(securityService.createArchiveScanJob("build.zip")).thenReturn("job-456");
+
+                mockMvc.perform(post("/api/antivirus/scan/archive")
+                                .param("name", "build.zip")
+                                .with(csrf())
+                                .with(user("testuser").roles("USER")))
+                                .andExpect(status().isCreated())
+                                .andExpect(jsonPath("$.jobId").value("job-456"))
+                                .andExpect(jsonPath("$.uploadUrl").value("/api/antivirus/scan/archive/job-456"));
+        }
+
+        @Test
+        void uploadArchiveScan_ShouldStreamRawBodyToJobForUserRole() throws Exception {
+                byte[] archive = { 'P', 'K', 3, 4 };
+                when(securityService.uploadArchiveScanJob(org.mockito.ArgumentMatchers.eq("job-456"), any()))
+                                .thenAnswer(invocation -> {
+                                        byte[] body = invocation.<java.io.InputStream>getArgument(1).readAllBytes();
+                                        return Map.of("jobId", "job-456", "entries", body.length);
+                                });
+
+                mockMvc.perform(put("/api/antivirus/scan/archive/job-456")
+                                .content(archive)
+                                .contentType("application/zip")
+                                .with(csrf())
+                                .with(user("testuser").roles("USER")))
+                                .andExpect(status().isAccepted())
+                                .andExpect(jsonPath("$.entries").value(4));
+        }
+
+        // ── /scan/upload (USER + ADMIN) ──────────────────────────────────
+
+        @Test
+        void createChunkedUpload_ShouldReturnCreatedWithUploadUrlForUserRole() throws Exception {
+                when(securityService.createChunkedUpload("disk.img", 5_000_000_000L)).thenReturn("up-1");
+
+                mockMvc.perform(post("/api/antivirus/scan/upload")
+                                .param("name", "disk.img")
+                                .param("size", "5000000000")
+                                .with(csrf())
+                                .with(user("testuser").roles("USER")))
+                                .andExpect(status().isCreated())
+                                .andExpect(jsonPath("$.uploadUrl").value("/api/antivirus/scan/upload/up-1"));
+        }
+
+        @Test
+        void appendChunk_ShouldPassOffsetAndRawBodyForUserRole() throws Exception {
+                when(securityService.appendChunk(org.mockito.ArgumentMatchers.eq("up-1"),
+                                org.mockito.ArgumentMatchers.eq(1024L), any()))
+                                .thenAnswer(invocation -> Map.of("receivedBytes",
+                                                invocation.<java.io.InputStream>getArgument(2).readAllBytes().length));
+
+                mockMvc.perform(put("/api/antivirus/scan/upload/up-1")
+                                .param("offset", "1024")
+                                .content(new byte[512])
+                                .contentType("application/octet-stream")
+                                .with(csrf())
+                                .with(user("testuser").roles("USER")))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.receivedBytes").value(512));
+        }
+
+        @Test
+        void completeChunkedUpload_ShouldReturnScanResultForUserRole() throws Exception {
+                ScanResult result = new ScanResult();
+                result.setFilePath("disk.img");
+                result.setVerdict("CLEAN");
+                when(securityService.completeChunkedUpload("up-1")).thenReturn(result);
+
+                mockMvc.perform(post("/api/antivirus/scan/upload/up-1/complete")
+                                .with(csrf())
+                                .with(user("testuser").roles("USER")))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.verdict").value("CLEAN"));
+        }
+
         // ── /scan/directory/status/{jobId} (USER + ADMIN) ────────────────
         //
         // Regression coverage for a real bug: this endpoint was added
@@ -263,14 +444,11 @@ class AntivirusControllerTest {
                                 .mock(com.antivirus.service.SecurityService.class);
                 com.antivirus.service.SystemMonitorService systemMonitorService = org.mockito.Mockito
                                 .mock(com.antivirus.service.SystemMonitorService.class);
-                com.antivirus.repository.ScanResultRepository scanResultRepository = org.mockito.Mockito
-                                .mock(com.antivirus.repository.ScanResultRepository.class);
                 com.antivirus.service.LogService logService = org.mockito.Mockito
                                 .mock(com.antivirus.service.LogService.class);
 
                 inject(controller, "securityService", securityService);
                 inject(controller, "systemMonitorService", systemMonitorService);
-                inject(controller, "scanResultRepository", scanResultRepository);
                 inject(controller, "logService", logService);
 
                 com.antivirus.model.ScanResult result = new com.antivirus.model.ScanResult();
@@ -305,14 +483,11 @@ class AntivirusControllerTest {
                                 .mock(com.antivirus.service.SecurityService.class);
                 com.antivirus.service.SystemMonitorService systemMonitorService = org.mockito.Mockito
                                 .mock(com.antivirus.service.SystemMonitorService.class);
-                com.antivirus.repository.ScanResultRepository scanResultRepository = org.mockito.Mockito
-                                .mock(com.antivirus.repository.ScanResultRepository.class);
                 com.antivirus.service.LogService logService = org.mockito.Mockito
                                 .mock(com.antivirus.service.LogService.class);
 
                 inject(controller, "securityService", securityService);
                 inject(controller, "systemMonitorService", systemMonitorService);
-                inject(controller, "scanResultRepository", scanResultRepository);
                 inject(controller, "logService", logService);
 
                 org.mockito.Mockito.when(securityService.isSystemScanRunning()).thenReturn(false);
@@ -93,4 +93,64 @@ class ScanResultRepositoryTest {
         assertThat(aliceResults.getContent()).hasSize(2);
         assertThat(aliceResults.getContent()).allMatch(r -> "alice".equals(r.getOwnerUsername()));
     }
+
+    @Test
+    void findRetroHuntMatches_ShouldPageNonMaliciousResultsForHashes() {
+        String listed = "a".repeat(64);
+        for (int i = 0; i < 5; i++) {
+            entityManager.persist(hashedResult("/tmp/copy" + i + ".bin", listed, "CLEAN"));
+        }
+        entityManager.persist(hashedResult("/tmp/already.bin", listed, "MALICIOUS"));
+        entityManager.persist(hashedResult("/tmp/other.bin", "b".repeat(64), "CLEAN"));
+        entityManager.flush();
+
+        List<Long> firstPage = scanResultRepository.findRetroHuntMatches(List.of(listed), 0, PageRequest.of(0, 3));
+        List<Long> secondPage = scanResultRepository.findRetroHuntMatches(List.of(listed),
+                firstPage.get(2), PageRequest.of(0, 3));
+
+        assertThat(firstPage).hasSize(3).isSorted();
+        assertThat(secondPage).hasSize(2).allMatch(id -> id > firstPage.get(2));
+    }
+
+    @Test
+    void flagKnownMalicious_ShouldMarkResultsAsKnownHashMatches() {
+        ScanResult clean = entityManager.persist(hashedResult("/tmp/clean.bin", "a".repeat(64), "CLEAN"));
+        entityManager.flush();
+
+        int updated = scanResultRepository.flagKnownMalicious(List.of(clean.getId()), "retro");
+        entityManager.clear();
+
+        ScanResult flagged = scanResultRepository.findById(clean.getId()).orElseThrow();
+        assertThat(updated).isEqualTo(1);
+        assertThat(flagged.getVerdict()).isEqualTo("MALICIOUS");
+        assertThat(flagged.isInfected()).isTrue();
+        assertThat(flagged.getDetectionSignals()).contains("KNOWN_HASH_MATCH", "RETRO_HUNT_MATCH");
+        assertThat(scanResultRepository.findHashedResultsAfter(0, PageRequest.of(0, 10))).isEmpty();
+    }
+
+    @Test
+    void countByOutcome_ShouldGroupRowsByVerdictInfectedAndThreatType() {
+        entityManager.persist(newScanResult("/tmp/a.txt", "FILE", false, "alice"));
+        entityManager.persist(newScanResult("/tmp/b.txt", "FILE", false, "alice"));
+        entityManager.persist(newScanResult("/tmp/c.exe", "FILE", true, "alice"));
+        entityManager.persist(newScanResult("/tmp/d.txt", "FILE", false, "bob"));
+        entityManager.flush();
+
+        List<ScanResultRepository.OutcomeCount> all = scanResultRepository.countByOutcome();
+        List<ScanResultRepository.OutcomeCount> alice = scanResultRepository.countByOutcomeForOwner("alice");
+
+        assertThat(all).hasSize(2);
+        assertThat(all).filteredOn(count -> !count.isInfected())
+                .singleElement().satisfies(count -> assertThat(count.getResults()).isEqualTo(3));
+        assertThat(alice).extracting(ScanResultRepository.OutcomeCount::getResults).containsExactlyInAnyOrder(2L, 1L);
+        assertThat(alice).filteredOn(ScanResultRepository.OutcomeCount::isInfected)
+                .singleElement().satisfies(count -> assertThat(count.getThreatType()).isEqualTo("TROJAN"));
+    }
+
+    private ScanResult hashedResult(String filePath, String contentSha256, String verdict) {
+        ScanResult scanResult = newScanResult(filePath, "SYSTEM", "MALICIOUS".equals(verdict), "alice");
+        scanResult.setVerdict(verdict);
+        scanResult.setContentSha256(contentSha256);
+        return scanResult;
+    }
 }
@@ -0,0 +1,80 @@
+package com.antivirus.repository;
+
+import com.antivirus.model.ScanSummary;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jpa.test.autoconfigure.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@TestPropertySource(properties = "spring.jpa.hibernate.ddl-auto=create-drop")
+class ScanSummaryRepositoryTest {
+
+    private static final LocalDateTime NOON = LocalDateTime.of(2026, 1, 1, 12, 0);
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private ScanSummaryRepository scanSummaryRepository;
+
+    private ScanSummary newScanSummary(String owner, LocalDateTime finishedAt, long files, long clean, long stored) {
+        ScanSummary summary = new ScanSummary();
+        summary.setScanType("SYSTEM");
+        summary.setOwnerUsername(owner);
+        summary.setStartedAt(finishedAt.minusMinutes(5));
+        summary.setFinishedAt(finishedAt);
+        summary.setDurationMillis(300_000);
+        summary.setFilesScanned(files);
+        summary.setBytesScanned(files * 1024);
+        summary.setCleanFiles(clean);
+        summary.setMaliciousFiles(files - clean);
+        summary.setStoredResults(stored);
+        return summary;
+    }
+
+    @Test
+    void findByFinishedAt_ShouldReturnScansInHalfOpenWindowNewestFirst() {
+        entityManager.persist(newScanSummary("alice", NOON.minusHours(1), 10, 10, 0));
+        entityManager.persist(newScanSummary("alice", NOON, 10, 10, 0));
+        entityManager.persist(newScanSummary("bob", NOON.plusHours(1), 10, 10, 0));
+        entityManager.persist(newScanSummary("alice", NOON.plusHours(2), 10, 10, 0));
+        entityManager.flush();
+
+        List<ScanSummary> window = scanSummaryRepository
+                .findByFinishedAtGreaterThanEqualAndFinishedAtLessThanOrderByFinishedAtDesc(
+                        NOON, NOON.plusHours(2), PageRequest.of(0, 10));
+        List<ScanSummary> aliceWindow = scanSummaryRepository
+                .findByOwnerUsernameAndFinishedAtGreaterThanEqualAndFinishedAtLessThanOrderByFinishedAtDesc(
+                        "alice", NOON, NOON.plusHours(2), PageRequest.of(0, 10));
+
+        assertThat(window).extracting(ScanSummary::getFinishedAt).containsExactly(NOON.plusHours(1), NOON);
+        assertThat(aliceWindow).extracting(ScanSummary::getFinishedAt).containsExactly(NOON);
+    }
+
+    @Test
+    void totals_ShouldSumCountersOverAllOrOwnedScans() {
+        entityManager.persist(newScanSummary("alice", NOON, 1000, 998, 2));
+        entityManager.persist(newScanSummary("bob", NOON, 500, 500, 0));
+        entityManager.flush();
+
+        ScanSummaryRepository.Totals all = scanSummaryRepository.totals();
+        ScanSummaryRepository.Totals alice = scanSummaryRepository.totalsForOwner("alice");
+        ScanSummaryRepository.Totals nobody = scanSummaryRepository.totalsForOwner("carol");
+
+        assertThat(all.getScans()).isEqualTo(2);
+        assertThat(all.getFilesScanned()).isEqualTo(1500);
+        assertThat(all.getCleanFiles()).isEqualTo(1498);
+        assertThat(all.getBytesScanned()).isEqualTo(1500 * 1024);
+        assertThat(alice.getStoredResults()).isEqualTo(2);
+        assertThat(nobody.getScans()).isZero();
+        assertThat(nobody.getFilesScanned()).isZero();
+    }
+}
@@ -0,0 +1,56 @@
+package com.antivirus.service;
+
+import com.antivirus.service.impl.RealtimeProtectionEngine;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+/**
+ * Real-time protection is reported from the engine's running state, not
+ * from a flag of its own that could say "on" while nothing is watched.
+ */
+@ExtendWith(MockitoExtension.class)
+class SystemMonitorServiceTest {
+
+    @Mock
+    private RealtimeProtectionEngine realtimeProtectionEngine;
+
+    @InjectMocks
+    private SystemMonitorService systemMonitorService;
+
+    @Test
+    void isRealtimeProtectionEnabled_ShouldBeOffUntilTheEngineRuns() {
+        when(realtimeProtectionEngine.status()).thenReturn(Map.of("running", false));
+
+        assertFalse(systemMonitorService.isRealtimeProtectionEnabled());
+        assertEquals(false, systemMonitorService.getSystemStatus().get("realtimeProtection"));
+        assertEquals(false, systemMonitorService.getSystemStatus().get("systemProtected"));
+    }
+
+    @Test
+    void enableRealtimeProtection_ShouldStayOffWhenTheEngineFailsToStart() {
+        when(realtimeProtectionEngine.start()).thenReturn(false);
+        when(realtimeProtectionEngine.status()).thenReturn(Map.of("running", false));
+
+        assertFalse(systemMonitorService.enableRealtimeProtection());
+        assertFalse(systemMonitorService.isRealtimeProtectionEnabled());
+    }
+
+    @Test
+    void enableRealtimeProtection_ShouldReportOnOnceTheEngineRuns() {
+        when(realtimeProtectionEngine.start()).thenReturn(true);
+        when(realtimeProtectionEngine.isRunning()).thenReturn(true);
+        when(realtimeProtectionEngine.status()).thenReturn(Map.of("running", true));
+
+        assertTrue(systemMonitorService.enableRealtimeProtection());
+        assertTrue(systemMonitorService.isRealtimeProtectionEnabled());
+        assertEquals(true, systemMonitorService.getSystemStatus().get("realtimeProtection"));
+    }
+}
@@ -0,0 +1,175 @@
+package com.antivirus.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ArchiveInspector: streaming zip/tar/gzip entries through
+ * per-entry ScanPasses, nesting, and the budgets shared across the tree.
+ */
+class ArchiveInspectorTest {
+
+    private final Map<String, Long> visited = new LinkedHashMap<>();
+
+    @Test
+    void inspect_ShouldStreamEntriesOfZipNestedInTarGz() throws Exception {
+        byte[] innerZip = zip(Map.of("payload.js", "eval(atob('x'))", "readme.txt", "hello"));
+        byte[] tarGz = gzip(tar(Map.of("inner.zip", innerZip)));
+
+        ArchiveInspector.Result result = inspector(3, 100, 1_000_000).inspect(
+                new ByteArrayInputStream(tarGz), "app.tar.gz");
+
+        assertFalse(result.bomb());
+        assertFalse(result.depthLimitReached());
+        assertEquals(4, result.entries());
+        assertEquals(15L, visited.get("app.tar!/inner.zip!/payload.js"));
+        assertEquals(5L, visited.get("app.tar!/inner.zip!/readme.txt"));
+        assertEquals((long) innerZip.length, visited.get("app.tar!/inner.zip"));
+        assertTrue(visited.containsKey("app.tar"));
+    }
+
+    @Test
+    void inspect_ShouldOpenArchiveByMagicBytesWhateverItsName() throws Exception {
+        byte[] renamed = zip(Map.of("dropper.exe", "MZ"));
+
+        ArchiveInspector.Result result = inspector(3, 100, 1_000_000).inspect(
+                new ByteArrayInputStream(renamed), "invoice.pdf");
+
+        assertEquals(1, result.entries());
+        assertTrue(visited.containsKey("dropper.exe"));
+    }
+
+    @Test
+    void inspect_ShouldShareEntryBudgetAcrossNestedArchives() throws Exception {
+        // 3 inner zips of 3 entries each: 12 entries in all, though no
+        // single archive holds more than 3.
+        Map<String, byte[]> inner = new LinkedHashMap<>();
+        for (int i = 0; i < 3; i++) {
+            inner.put("part" + i + ".zip", zip(Map.of("a.txt", "a", "b.txt", "b", "c.txt", "c")));
+        }
+        byte[] outer = zipBytes(inner);
+
+        ArchiveInspector.Result result = inspector(3, 10, 1_000_000).inspect(
+                new ByteArrayInputStream(outer), "outer.zip");
+
+        assertTrue(result.bomb());
+        assertEquals(11, result.entries());
+    }
+
+    @Test
+    void inspect_ShouldReportBombWhenDecompressedBytesExceedBudget() throws Exception {
+        byte[] zeros = new byte[1024 * 1024];
+        byte[] bomb = zipBytes(Map.of("zeros.bin", zeros));
+
+        ArchiveInspector.Result result = inspector(3, 100, 100_000).inspect(
+                new ByteArrayInputStream(bomb), "bomb.zip");
+
+        assertTrue(result.bomb());
+        assertTrue(result.uncompressedBytes() > 100_000);
+        assertTrue(bomb.length < 100_000, "compressed far below the budget");
+    }
+
+    @Test
+    void inspect_ShouldStopOpeningArchivesBeyondMaxDepth() throws Exception {
+        byte[] level3 = zip(Map.of("deep.txt", "deep"));
+        byte[] level2 = zipBytes(Map.of("level3.zip", level3));
+        byte[] level1 = zipBytes(Map.of("level2.zip", level2));
+
+        ArchiveInspector.Result result = inspector(2, 100, 1_000_000).inspect(
+                new ByteArrayInputStream(level1), "level1.zip");
+
+        assertTrue(result.depthLimitReached());
+        assertFalse(result.bomb());
+        assertTrue(visited.containsKey("level2.zip!/level3.zip"));
+        assertFalse(visited.containsKey("level2.zip!/level3.zip!/deep.txt"));
+    }
+
+    @Test
+    void inspect_ShouldLeaveNonArchiveStreamUntouched() throws Exception {
+        ArchiveInspector.Result result = inspector(3, 100, 1_000_000).inspect(
+                new ByteArrayInputStream("plain text".getBytes(StandardCharsets.UTF_8)), "notes.zip");
+
+        assertEquals(0, result.entries());
+        assertTrue(visited.isEmpty());
+    }
+
+    private ArchiveInspector inspector(int maxDepth, int maxEntries, long maxBytes) {
+        return new ArchiveInspector(maxDepth, maxEntries, maxBytes,
+                () -> new ScanPass(1024 * 1024, 16 * 1024, 3),
+                (path, pass) -> visited.put(path, pass.totalBytes()));
+    }
+
+    private static byte[] zip(Map<String, String> entries) throws IOException {
+        Map<String, byte[]> bytes = new LinkedHashMap<>();
+        entries.forEach((name, text) -> bytes.put(name, text.getBytes(StandardCharsets.UTF_8)));
+        return zipBytes(bytes);
+    }
+
+    private static byte[] zipBytes(Map<String, byte[]> entries) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zos = new ZipOutputStream(out)) {
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                zos.putNextEntry(new ZipEntry(entry.getKey()));
+                zos.write(entry.getValue());
+                zos.closeEntry();
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(content);
+        }
+        return out.toByteArray();
+    }
+
+    // Minimal ustar writer: one regular-file header per entry, data padded
+    // to 512 bytes, two zero blocks at the end.
+    static byte[] tar(Map<String, byte[]> entries) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+            byte[] header = new byte[512];
+            put(header, 0, entry.getKey());
+            put(header, 100, "0000644");
+            put(header, 108, "0000000");
+            put(header, 116, "0000000");
+            put(header, 124, String.format("%011o", entry.getValue().length));
+            put(header, 136, String.format("%011o", 0));
+            header[156] = '0';
+            put(header, 257, "ustar");
+            put(header, 263, "00");
+            for (int i = 148; i < 156; i++) {
+                header[i] = ' ';
+            }
+            long sum = 0;
+            for (byte b : header) {
+                sum += b & 0xFF;
+            }
+            put(header, 148, String.format("%06o", sum));
+            header[154] = 0;
+            out.writeBytes(header);
+            out.writeBytes(entry.getValue());
+            out.writeBytes(new byte[(512 - entry.getValue().length % 512) % 512]);
+        }
+        out.writeBytes(new byte[1024]);
+        return out.toByteArray();
+    }
+
+    private static void put(byte[] header, int offset, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(bytes, 0, header, offset, bytes.length);
+    }
+}
@@ -0,0 +1,77 @@
+package com.antivirus.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the real-time engine's event debouncing, on a fake clock.
+ */
+class ChangeCoalescerTest {
+
+    private static final long MS = 1_000_000L;
+
+    private final ChangeCoalescer coalescer = new ChangeCoalescer(100 * MS, 1_000 * MS);
+
+    private List<ChangeCoalescer.Change> drain(long now) {
+        List<ChangeCoalescer.Change> due = new ArrayList<>();
+        coalescer.drainDue(now, due::add);
+        return due;
+    }
+
+    @Test
+    void drainDue_ShouldHandOverABurstOnceAfterItsLastEvent() {
+        Path file = Path.of("/watched/report.docx");
+        coalescer.record(file, true, 0);
+        coalescer.record(file, false, 50 * MS);
+        coalescer.record(file, false, 120 * MS);
+
+        assertTrue(drain(200 * MS).isEmpty());
+        List<ChangeCoalescer.Change> due = drain(220 * MS);
+
+        assertEquals(1, due.size());
+        assertEquals(file, due.get(0).file);
+        assertTrue(due.get(0).created);
+        assertEquals(3, due.get(0).events);
+        assertEquals(2, coalescer.coalesced());
+        assertEquals(0, coalescer.pending());
+    }
+
+    @Test
+    void drainDue_ShouldNotDelayAFileWrittenWithoutPauseBeyondMaxDelay() {
+        Path file = Path.of("/watched/growing.log");
+        for (long t = 0; t < 1_000 * MS; t += 50 * MS) {
+            coalescer.record(file, false, t);
+        }
+
+        assertTrue(drain(990 * MS).isEmpty());
+        List<ChangeCoalescer.Change> due = drain(1_000 * MS);
+
+        assertEquals(1, due.size());
+        assertEquals(20, due.get(0).events);
+        // The next write starts a new change.
+        coalescer.record(file, false, 1_010 * MS);
+        assertEquals(1, coalescer.pending());
+    }
+
+    @Test
+    void drainDue_ShouldReturnChangesEarliestFirstAndSkipForgottenOnes() {
+        Path first = Path.of("/watched/a.txt");
+        Path deleted = Path.of("/watched/b.txt");
+        Path last = Path.of("/watched/c.txt");
+        coalescer.record(first, false, 0);
+        coalescer.record(deleted, true, 10 * MS);
+        coalescer.record(last, false, 20 * MS);
+        coalescer.forget(deleted);
+
+        assertEquals(0, coalescer.nanosUntilNextDue(100 * MS));
+        List<ChangeCoalescer.Change> due = drain(200 * MS);
+
+        assertEquals(List.of(first, last), due.stream().map(change -> change.file).toList());
+        assertEquals(-1, coalescer.nanosUntilNextDue(200 * MS));
+    }
+}
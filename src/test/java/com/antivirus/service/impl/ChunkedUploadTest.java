@@ -0,0 +1,157 @@
+package com.antivirus.service.impl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ChunkedUpload: out-of-order and parallel chunks, byte-exact
+ * resume after a cut-off chunk, and incremental scanning up to the frontier.
+ */
+class ChunkedUploadTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ChunkedUpload upload;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (upload != null) {
+            upload.close();
+        }
+    }
+
+    @Test
+    void append_ShouldHashParallelOutOfOrderChunksAsWholeFile() throws Exception {
+        byte[] content = new byte[1_000_000];
+        new Random(42).nextBytes(content);
+        upload = open(content.length);
+
+        int chunkSize = 64 * 1024;
+        List<Integer> offsets = new ArrayList<>();
+        for (int offset = 0; offset < content.length; offset += chunkSize) {
+            offsets.add(offset);
+        }
+        Collections.shuffle(offsets, new Random(7));
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Long>> writes = new ArrayList<>();
+            for (int offset : offsets) {
+                int length = Math.min(chunkSize, content.length - offset);
+                writes.add(pool.submit(() -> upload.append(offset,
+                        new ByteArrayInputStream(content, offset, length))));
+            }
+            for (Future<Long> write : writes) {
+                write.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertTrue(upload.isComplete());
+        FileDigests digests = upload.finish();
+        assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(content), digests.sha256());
+        assertArrayEquals(MessageDigest.getInstance("MD5").digest(content), digests.md5());
+        assertEquals(content.length, upload.scannedBytes());
+    }
+
+    @Test
+    void append_ShouldScanOnlyUpToFirstGap() throws Exception {
+        upload = open(300);
+
+        upload.append(200, new ByteArrayInputStream(new byte[100]));
+        assertEquals(0, upload.scannedBytes());
+
+        upload.append(0, new ByteArrayInputStream(new byte[100]));
+        assertEquals(100, upload.scannedBytes());
+        assertFalse(upload.isComplete());
+
+        upload.append(100, new ByteArrayInputStream(new byte[100]));
+        assertEquals(300, upload.scannedBytes());
+        assertTrue(upload.isComplete());
+    }
+
+    @Test
+    void append_ShouldKeepBytesOfChunkCutOffMidRequest() throws Exception {
+        upload = open(1000);
+        InputStream dropped = new InputStream() {
+            private int sent;
+
+            @Override
+            public int read() throws IOException {
+                if (sent == 400) {
+                    throw new IOException("connection reset");
+                }
+                sent++;
+                return 'a';
+            }
+        };
+
+        assertThrows(IOException.class, () -> upload.append(0, dropped));
+
+        List<long[]> ranges = upload.receivedRanges();
+        assertEquals(1, ranges.size());
+        assertArrayEquals(new long[] { 0, 400 }, ranges.get(0));
+        assertEquals(400, upload.scannedBytes());
+    }
+
+    @Test
+    void append_ShouldRejectChunkRunningPastDeclaredSize() throws Exception {
+        upload = open(10);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> upload.append(5, new ByteArrayInputStream(new byte[6])));
+        assertThrows(IllegalArgumentException.class,
+                () -> upload.append(11, new ByteArrayInputStream(new byte[1])));
+    }
+
+    @Test
+    void append_ShouldAcceptResentBytesOnlyIfTheyMatch() throws Exception {
+        byte[] content = "0123456789".getBytes(java.nio.charset.StandardCharsets.US_ASCII);
+        upload = open(content.length);
+        upload.append(0, new ByteArrayInputStream(content, 0, 6));
+
+        // Overlaps the scanned prefix with the same bytes, then runs on.
+        upload.append(4, new ByteArrayInputStream(content, 4, 6));
+        assertTrue(upload.isComplete());
+
+        byte[] tampered = "45X789".getBytes(java.nio.charset.StandardCharsets.US_ASCII);
+        assertThrows(IllegalArgumentException.class,
+                () -> upload.append(4, new ByteArrayInputStream(tampered)));
+        assertArrayEquals(content, Files.readAllBytes(upload.file()));
+        assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(content), upload.finish().sha256());
+    }
+
+    @Test
+    void close_ShouldDeleteTempFile() throws Exception {
+        upload = open(10);
+        Path file = upload.file();
+
+        upload.close();
+
+        assertFalse(Files.exists(file));
+    }
+
+    private ChunkedUpload open(long size) throws IOException {
+        return new ChunkedUpload("upload-1", "testuser", "big.bin", size,
+                Files.createTempFile(tempDir, "upload_", ".part"),
+                new ScanPass(1024 * 1024, 16 * 1024, 3));
+    }
+}
@@ -0,0 +1,101 @@
+package com.antivirus.service.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DirectorySummaryCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void summarize_ShouldFlagARansomNoteWithManyFilesSharingAnUnknownExtension() {
+        DirectorySummaryCache.Summary encrypted = DirectorySummaryCache.summarize(List.of(
+                "HOW_TO_DECRYPT.html", "a.docx.xyz1", "b.pdf.xyz1", "c.xlsx.xyz1", "d.jpg.xyz1", "e.txt.xyz1",
+                "notes.abc"));
+        DirectorySummaryCache.Summary project = DirectorySummaryCache.summarize(List.of(
+                "README.txt", "pom.xml", "a.java", "b.java", "c.locked", "d.properties"));
+
+        assertTrue(encrypted.ransomNote());
+        assertEquals(5, encrypted.maxSameUnknownExtension());
+        assertTrue(encrypted.looksEncrypted());
+        assertTrue(project.ransomNote());
+        assertEquals(0, project.maxSameUnknownExtension());
+        assertFalse(project.looksEncrypted());
+        assertSame(DirectorySummaryCache.Summary.EMPTY, DirectorySummaryCache.summarize(List.of("a.txt", "b")));
+    }
+
+    @Test
+    void get_ShouldListTheDirectoryOnceAndReflectItsContents() throws Exception {
+        Path directory = Files.createDirectory(tempDir.resolve("victim"));
+        Files.writeString(directory.resolve("readme_recovery.txt"), "pay");
+        for (int i = 0; i < 5; i++) {
+            Files.writeString(directory.resolve("file" + i + ".qwerty"), "x");
+        }
+        DirectorySummaryCache cache = new DirectorySummaryCache(1, 60);
+
+        DirectorySummaryCache.Summary summary = cache.get(directory.toFile());
+
+        assertTrue(summary.looksEncrypted());
+        assertSame(summary, cache.get(directory.toFile()));
+        assertSame(DirectorySummaryCache.Summary.EMPTY, cache.get(tempDir.resolve("missing").toFile()));
+    }
+
+    @Test
+    void get_ShouldShareOneListingBetweenConcurrentScanThreads() throws Exception {
+        AtomicInteger listings = new AtomicInteger();
+        CountDownLatch listing = new CountDownLatch(1);
+        DirectorySummaryCache cache = new DirectorySummaryCache(1, 60, directory -> {
+            listings.incrementAndGet();
+            try {
+                listing.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return DirectorySummaryCache.Summary.EMPTY;
+        });
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<DirectorySummaryCache.Summary>> lookups = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                lookups.add(pool.submit(() -> cache.get(new File("/data/shared"))));
+            }
+            Thread.sleep(100);
+            listing.countDown();
+            for (Future<DirectorySummaryCache.Summary> lookup : lookups) {
+                assertSame(DirectorySummaryCache.Summary.EMPTY, lookup.get());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(1, listings.get());
+    }
+
+    @Test
+    void get_ShouldStayWithinItsWeightBudgetAcrossManyDirectories() {
+        DirectorySummaryCache cache = new DirectorySummaryCache(1, 60,
+                directory -> new DirectorySummaryCache.Summary(false, directory.length()));
+
+        for (int i = 0; i < 100_000; i++) {
+            cache.get(new File("/data/projects/customer-" + i % 977 + "/documents/" + i));
+        }
+        cache.cleanUp();
+
+        assertTrue(cache.weight() <= 1024 * 1024, "weight " + cache.weight());
+        assertTrue(cache.size() < 10_000, "entries " + cache.size());
+    }
+}
@@ -0,0 +1,103 @@
+package com.antivirus.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the compiled exclusion matcher: each rule shape, on Unix
+ * and Windows paths.
+ */
+class ExclusionRulesTest {
+
+    @Test
+    void excludes_ShouldMatchPrefixRulesAtSegmentBoundariesOnly() {
+        ExclusionRules rules = ExclusionRules.compile(List.of("prefix:/proc", "prefix:C:\\Windows\\"));
+
+        assertTrue(rules.excludes("/proc"));
+        assertTrue(rules.excludes("/proc/1/maps"));
+        assertFalse(rules.excludes("/processes/list.txt"));
+        assertFalse(rules.excludes("/home/proc/notes.txt"));
+        assertTrue(rules.excludes("c:\\windows\\System32\\kernel32.dll"));
+        assertTrue(rules.excludes("C:/WINDOWS"));
+        assertFalse(rules.excludes("C:\\WindowsApps\\app.exe"));
+    }
+
+    @Test
+    void excludes_ShouldMatchExtensionRulesOnTheLastDotOfTheFileName() {
+        ExclusionRules rules = ExclusionRules.compile(List.of("ext:iso", "ext:.VMDK", "*.log"));
+
+        assertTrue(rules.excludes("/data/images/ubuntu.ISO"));
+        assertTrue(rules.excludes("/vm/disk.vmdk"));
+        assertTrue(rules.excludes("/var/log/app.2024.log"));
+        assertFalse(rules.excludes("/data/iso/readme.txt"));
+        assertFalse(rules.excludes("/data/archive.iso.gz"));
+        assertFalse(rules.excludes("/data/iso"));
+    }
+
+    @Test
+    void excludes_ShouldMatchFileNamesAndDirectoryNamesAnywhere() {
+        ExclusionRules rules = ExclusionRules.compile(List.of("thumbs.db", "**/node_modules/**", "**/.git"));
+
+        assertTrue(rules.excludes("/photos/Thumbs.db"));
+        assertFalse(rules.excludes("/photos/thumbs.db.bak"));
+        assertTrue(rules.excludes("/src/app/node_modules"));
+        assertTrue(rules.excludes("/src/app/node_modules/lodash/index.js"));
+        assertFalse(rules.excludes("/src/app/node_modules_old/index.js"));
+        assertTrue(rules.excludes("/src/app/.git"));
+        // A file-name rule does not cover what is below a directory of that name.
+        assertFalse(rules.excludes("/src/app/.git/config"));
+    }
+
+    @Test
+    void excludes_ShouldRunOtherGlobsThroughTheAutomaton() {
+        ExclusionRules rules = ExclusionRules.compile(List.of("?:/program files/**", "/home/*/cache/**",
+                "/srv/**/tmp/*.part", "~$*"));
+
+        assertTrue(rules.excludes("D:\\Program Files\\App\\app.exe"));
+        assertTrue(rules.excludes("D:\\Program Files"));
+        assertFalse(rules.excludes("D:\\Users\\me\\Program Files\\app.exe"));
+        assertTrue(rules.excludes("/home/alice/cache/blob"));
+        assertFalse(rules.excludes("/home/alice/work/cache/blob"));
+        assertTrue(rules.excludes("/srv/tmp/upload.part"));
+        assertTrue(rules.excludes("/srv/a/b/tmp/upload.part"));
+        assertFalse(rules.excludes("/srv/a/tmp/sub/upload.part"));
+        assertTrue(rules.excludes("C:\\Docs\\~$report.docx"));
+        assertFalse(rules.excludes("C:\\Docs\\report~$.docx"));
+    }
+
+    @Test
+    void excludes_ShouldKeepTheDefaultRulesBehaviour() {
+        ExclusionRules rules = ExclusionRules.compile(ScanExclusionPolicy.split(ScanExclusionPolicy.DEFAULT_RULES));
+
+        assertTrue(rules.excludes("/proc/self/status"));
+        assertTrue(rules.excludes("/sys"));
+        assertTrue(rules.excludes("C:\\Windows"));
+        assertTrue(rules.excludes("E:\\$Recycle.Bin\\S-1-5-21\\file.exe"));
+        assertTrue(rules.excludes("C:\\Program Files (x86)\\Vendor\\tool.dll"));
+        assertTrue(rules.excludes("/Users/me/Desktop/.DS_Store"));
+        assertFalse(rules.excludes("/home/me/windows/setup.exe"));
+        assertFalse(rules.excludes("/tmp/upload_123/Downloads/invoice.pdf.exe"));
+    }
+
+    @Test
+    void compile_ShouldRejectRulesThatCannotBeMatched() {
+        assertThrows(IllegalArgumentException.class, () -> ExclusionRules.compile(List.of("prefix:  ")));
+        assertThrows(IllegalArgumentException.class, () -> ExclusionRules.compile(List.of("ext:tar.gz")));
+        assertThrows(IllegalArgumentException.class, () -> ExclusionRules.compile(List.of("**")));
+        assertThrows(IllegalArgumentException.class,
+                () -> ExclusionRules.compile(List.of("/" + "a/".repeat(40) + "*")));
+    }
+
+    @Test
+    void compile_ShouldIgnoreBlankRulesAndKeepTheRestInOrder() {
+        ExclusionRules rules = ExclusionRules.compile(List.of(" ext:iso ", "", "glob:*.tmp"));
+
+        assertEquals(List.of("ext:iso", "glob:*.tmp"), rules.rules());
+        assertEquals(2, rules.shape().get("rules"));
+        assertTrue(rules.excludes("/x/a.tmp"));
+        assertFalse(rules.excludes(""));
+    }
+}
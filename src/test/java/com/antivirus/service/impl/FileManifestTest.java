@@ -0,0 +1,114 @@
+package com.antivirus.service.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the memory-mapped skip manifest behind repeat system
+ * scans. Each test works on a real manifest file in a temp directory.
+ */
+class FileManifestTest {
+
+    private static final long FINGERPRINT = 42L;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void unchanged_ShouldMatchOnlyIdenticalSizeAndMtimeOfCleanFiles() throws Exception {
+        try (FileManifest manifest = FileManifest.open(dir.resolve("m.bin"), FINGERPRINT)) {
+            manifest.record("/a", 10, 1000, true);
+            manifest.record("/b", 10, 1000, false);
+
+            assertTrue(manifest.unchanged("/a", 10, 1000));
+            assertFalse(manifest.unchanged("/a", 11, 1000));
+            assertFalse(manifest.unchanged("/a", 10, 1001));
+            assertFalse(manifest.unchanged("/b", 10, 1000));
+            assertFalse(manifest.unchanged("/c", 10, 1000));
+        }
+    }
+
+    @Test
+    void open_ShouldKeepEntriesAcrossRuns() throws Exception {
+        Path file = dir.resolve("m.bin");
+        try (FileManifest manifest = FileManifest.open(file, FINGERPRINT)) {
+            manifest.record("/a", 10, 1000, true);
+        }
+
+        try (FileManifest manifest = FileManifest.open(file, FINGERPRINT)) {
+            assertTrue(manifest.unchanged("/a", 10, 1000));
+        }
+    }
+
+    @Test
+    void open_ShouldStartEmptyUnderDifferentSignatureFingerprint() throws Exception {
+        Path file = dir.resolve("m.bin");
+        try (FileManifest manifest = FileManifest.open(file, FINGERPRINT)) {
+            manifest.record("/a", 10, 1000, true);
+        }
+
+        try (FileManifest manifest = FileManifest.open(file, FINGERPRINT + 1)) {
+            assertEquals(0, manifest.size());
+            assertFalse(manifest.unchanged("/a", 10, 1000));
+        }
+    }
+
+    @Test
+    void open_ShouldReplaceCorruptFile() throws Exception {
+        Path file = dir.resolve("m.bin");
+        Files.write(file, new byte[] { 1, 2, 3 });
+
+        try (FileManifest manifest = FileManifest.open(file, FINGERPRINT)) {
+            assertEquals(0, manifest.size());
+            manifest.record("/a", 10, 1000, true);
+            assertTrue(manifest.unchanged("/a", 10, 1000));
+        }
+    }
+
+    @Test
+    void record_ShouldGrowTableBeyondInitialCapacity() throws Exception {
+        Path file = dir.resolve("m.bin");
+        try (FileManifest manifest = FileManifest.open(file, FINGERPRINT)) {
+            for (int i = 0; i < 20_000; i++) {
+                manifest.record("/file-" + i, i, i * 7L, true);
+            }
+            assertEquals(20_000, manifest.size());
+        }
+
+        try (FileManifest manifest = FileManifest.open(file, FINGERPRINT)) {
+            for (int i = 0; i < 20_000; i++) {
+                assertTrue(manifest.unchanged("/file-" + i, i, i * 7L), "entry " + i);
+            }
+        }
+    }
+
+    @Test
+    void compact_ShouldDropEntriesTheLastScanNeverSaw() throws Exception {
+        Path file = dir.resolve("m.bin");
+        try (FileManifest manifest = FileManifest.open(file, FINGERPRINT)) {
+            for (int i = 0; i < 100; i++) {
+                manifest.record("/file-" + i, 1, 1, true);
+            }
+        }
+
+        // Next scan only finds the first 50 files; the rest were deleted.
+        try (FileManifest manifest = FileManifest.open(file, FINGERPRINT)) {
+            for (int i = 0; i < 50; i++) {
+                assertTrue(manifest.unchanged("/file-" + i, 1, 1));
+            }
+            manifest.compact();
+            assertEquals(50, manifest.size());
+            assertTrue(manifest.unchanged("/file-0", 1, 1));
+            assertFalse(manifest.unchanged("/file-99", 1, 1));
+        }
+
+        try (FileManifest manifest = FileManifest.open(file, FINGERPRINT)) {
+            assertEquals(50, manifest.size());
+        }
+    }
+}
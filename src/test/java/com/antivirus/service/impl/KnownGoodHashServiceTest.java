@@ -0,0 +1,125 @@
+package com.antivirus.service.impl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for KnownGoodHashService: building the mapped index from
+ * NSRL-style source files, reusing it across restarts, and the hit ratio.
+ */
+class KnownGoodHashServiceTest {
+
+    private static final String GOOD = "0f343b0931126a20f133d67c2b018a3b5f0c1ab6f3a1bfb8c2a4f4e1b2c3d4e5";
+    private static final String OTHER_GOOD = "a3f5c1e2d4b6a8c0e2f4a6b8c0d2e4f6a8b0c2d4e6f8a0b2c4d6e8f0a2b4c6d8";
+    private static final String UNKNOWN = "1111111111111111111111111111111111111111111111111111111111111111";
+
+    @TempDir
+    Path tempDir;
+
+    private Path sourceDir;
+    private Path cacheFile;
+    private KnownGoodHashService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        sourceDir = Files.createDirectory(tempDir.resolve("known-good"));
+        cacheFile = tempDir.resolve("known-good.bin");
+        service = newService();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void rebuild_ShouldIndexSha256ColumnOfNsrlStyleCsv() throws Exception {
+        // RDS-style export: SHA-1 and MD5 columns must not be mistaken for
+        // SHA-256 digests.
+        Files.write(sourceDir.resolve("NSRLFile.csv"), List.of(
+                "\"SHA-1\",\"MD5\",\"SHA-256\",\"FileName\"",
+                "\"00000A1F5CC2C1E8A4B3F1F4C9D1B2A3C4D5E6F7\",\"0000D1B2A3C4D5E6F7A8B9C0D1E2F3A4\",\""
+                        + GOOD.toUpperCase() + "\",\"kernel32.dll\""));
+        Files.write(sourceDir.resolve("vendor.sha256"), List.of(OTHER_GOOD + "  vendor-tool.exe"));
+
+        assertEquals(2, service.rebuild());
+
+        assertTrue(service.isKnownGood(HexFormat.of().parseHex(GOOD)));
+        assertTrue(service.isKnownGood(HexFormat.of().parseHex(OTHER_GOOD)));
+        assertFalse(service.isKnownGood(HexFormat.of().parseHex(UNKNOWN)));
+        assertTrue(Files.isRegularFile(cacheFile));
+    }
+
+    @Test
+    void init_ShouldMapExistingIndexWithoutRebuildingWhenSourcesUnchanged() throws Exception {
+        Path source = sourceDir.resolve("hashes.txt");
+        Files.write(source, List.of(GOOD));
+        service.rebuild();
+        // Sources older than the index; drop the source so a rebuild would
+        // produce an empty set.
+        Files.delete(source);
+        Files.setLastModifiedTime(sourceDir, FileTime.from(Instant.now().minusSeconds(3600)));
+
+        KnownGoodHashService restarted = newService();
+        restarted.init();
+
+        assertEquals(1, restarted.size());
+        assertTrue(restarted.isKnownGood(HexFormat.of().parseHex(GOOD)));
+        restarted.shutdown();
+    }
+
+    @Test
+    void init_ShouldRebuildInBackgroundWhenSourceIsNewerThanIndex() throws Exception {
+        Files.write(sourceDir.resolve("hashes.txt"), List.of(GOOD));
+        service.rebuild();
+        Files.setLastModifiedTime(cacheFile, FileTime.from(Instant.now().minusSeconds(3600)));
+        Files.write(sourceDir.resolve("more.txt"), List.of(OTHER_GOOD));
+
+        KnownGoodHashService restarted = newService();
+        restarted.init();
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (restarted.size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(2, restarted.size());
+        restarted.shutdown();
+    }
+
+    @Test
+    void status_ShouldReportHitRatio() throws Exception {
+        Files.write(sourceDir.resolve("hashes.txt"), List.of(GOOD));
+        service.rebuild();
+
+        service.isKnownGood(HexFormat.of().parseHex(GOOD));
+        service.isKnownGood(HexFormat.of().parseHex(GOOD));
+        service.isKnownGood(HexFormat.of().parseHex(GOOD));
+        service.isKnownGood(HexFormat.of().parseHex(UNKNOWN));
+
+        Map<String, Object> status = service.status();
+        assertEquals(1, status.get("hashCount"));
+        assertEquals(4L, status.get("lookups"));
+        assertEquals(3L, status.get("hits"));
+        assertEquals(0.75, (double) status.get("hitRatio"), 1e-9);
+    }
+
+    private KnownGoodHashService newService() {
+        KnownGoodHashService knownGood = new KnownGoodHashService();
+        ReflectionTestUtils.setField(knownGood, "sourceDirConfig", sourceDir.toString());
+        ReflectionTestUtils.setField(knownGood, "cacheFileConfig", cacheFile.toString());
+        return knownGood;
+    }
+}
@@ -0,0 +1,115 @@
+package com.antivirus.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for PatternShape and the LiteralPrefilter automaton built
+ * from it. The point of both is that skipping a regex when its anchors are
+ * absent can never lose a match, so most of these check the anchors and
+ * widths the analysis derives for real DetectionPatterns entries.
+ */
+class LiteralPrefilterTest {
+
+    // ── PatternShape ────────────────────────────────────────────────────
+
+    @Test
+    void shape_ShouldPickLongestMandatoryLiteralAndBoundedWidth() {
+        PatternShape shape = PatternShape.of(Pattern.compile("(?i)\\bpowershell\\b.{0,120}downloadstring"));
+
+        assertEquals(Set.of("downloadstring"), shape.anchors());
+        assertEquals(10 + 120 + 14, shape.maxWidth());
+    }
+
+    @Test
+    void shape_ShouldUnionAnchorsAcrossTopLevelAlternation() {
+        PatternShape shape = PatternShape.of(Pattern.compile("(?i)\\.(?:onion|tor)\\b"));
+
+        assertEquals(Set.of("onion", "tor"), shape.anchors());
+        assertEquals(6, shape.maxWidth());
+    }
+
+    @Test
+    void shape_ShouldReportUnboundedWidthForOpenRepetition() {
+        PatternShape shape = PatternShape.of(Pattern.compile("(?i)\\bconnect\\s*\\(.*\\d{1,3}(?:\\.\\d{1,3}){3}"));
+
+        assertTrue(shape.anchored());
+        assertFalse(shape.bounded());
+    }
+
+    @Test
+    void shape_ShouldReportHowFarIntoAMatchTheAnchorCanStart() {
+        assertEquals(0, PatternShape.of(Pattern.compile("(?i)\\bconnect\\s*\\(.*\\d")).maxLead());
+        assertEquals(14, PatternShape.of(Pattern.compile("(?i)\\bpost\\b.{0,10}\\bpassword\\b")).maxLead());
+        assertEquals(PatternShape.UNBOUNDED, PatternShape.of(Pattern.compile("a*\\s+hidden")).maxLead());
+    }
+
+    @Test
+    void shape_ShouldNotUseOptionalGroupsOrShortLiteralsAsAnchors() {
+        assertEquals(Set.of("keylog"),
+                PatternShape.of(Pattern.compile("(?i)\\bkeylog(?:ger)?\\b")).anchors());
+        assertFalse(PatternShape.of(Pattern.compile("(?i)\\b(?:ab|cd)\\s*\\(")).anchored());
+    }
+
+    @Test
+    void shape_ShouldFallBackToUnanchoredForUnsupportedSyntax() {
+        PatternShape shape = PatternShape.of(Pattern.compile("(abc)\\1"));
+
+        assertFalse(shape.anchored());
+        assertFalse(shape.bounded());
+    }
+
+    @Test
+    void shape_ShouldAnchorEveryDetectionPattern() {
+        for (Pattern pattern : DetectionPatterns.TEXT_PATTERNS) {
+            assertTrue(PatternShape.of(pattern).anchored(), pattern.pattern());
+        }
+    }
+
+    // ── LiteralPrefilter ────────────────────────────────────────────────
+
+    @Test
+    void scan_ShouldReportCaseInsensitiveHitsWithAbsoluteOffsets() {
+        LiteralPrefilter prefilter = LiteralPrefilter.compile(List.of(
+                Pattern.compile("(?i)kernel.{0,20}hook"),
+                Pattern.compile("(?i)\\bbtc wallet\\b")));
+        List<long[]> hits = new ArrayList<>();
+
+        prefilter.scan("xx KERNEL", 0, 9, 100, LiteralPrefilter.START_STATE,
+                (p, start) -> hits.add(new long[] { p, start }));
+
+        assertEquals(1, hits.size());
+        assertEquals(0, hits.get(0)[0]);
+        assertEquals(103, hits.get(0)[1]);
+    }
+
+    @Test
+    void scan_ShouldCarryAutomatonStateAcrossChunks() {
+        LiteralPrefilter prefilter = LiteralPrefilter.compile(List.of(Pattern.compile("(?i)\\bbtc wallet\\b")));
+        List<Long> starts = new ArrayList<>();
+        String text = "pay to btc wallet";
+
+        int state = prefilter.scan(text, 0, 10, 0, LiteralPrefilter.START_STATE, (p, start) -> starts.add(start));
+        prefilter.scan(text, 10, text.length(), 0, state, (p, start) -> starts.add(start));
+
+        assertEquals(List.of(7L), starts);
+    }
+
+    @Test
+    void scan_ShouldReportOverlappingAnchorsOfDifferentPatterns() {
+        LiteralPrefilter prefilter = LiteralPrefilter.compile(List.of(
+                Pattern.compile("(?i)\\bdecode(?:uri)?\\b"),
+                Pattern.compile("(?i)\\bbase64_decode\\b")));
+        List<Integer> patterns = new ArrayList<>();
+
+        prefilter.scan("base64_decode", 0, 13, 0, LiteralPrefilter.START_STATE, (p, start) -> patterns.add(p));
+
+        assertTrue(patterns.containsAll(List.of(0, 1)));
+    }
+}
@@ -0,0 +1,206 @@
+package com.antivirus.service.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Unit tests for the ForkJoin walker behind performSystemScan(). Each test
+ * runs on a real multi-threaded pool over a generated directory tree.
+ */
+class ParallelFileWalkerTest {
+
+    @TempDir
+    Path root;
+
+    @Test
+    void walk_ShouldVisitEveryRegularFileExactlyOnce() throws Exception {
+        createTree(root, 3, 4, 5);
+        RecordingVisitor visitor = new RecordingVisitor();
+
+        walk(visitor, 4);
+
+        // 4 + 16 + 64 directories below root, 5 files in root and in each
+        assertEquals((1 + 4 + 16 + 64) * 5, visitor.files.size());
+        assertEquals(visitor.files.size(), visitor.visits.get());
+    }
+
+    @Test
+    void walk_ShouldNotDescendIntoSkippedDirectories() throws Exception {
+        createTree(root, 2, 2, 1);
+        Path skipped = root.resolve("d0");
+        RecordingVisitor visitor = new RecordingVisitor() {
+            @Override
+            public boolean skipDirectory(Path directory) {
+                return directory.equals(skipped);
+            }
+        };
+
+        walk(visitor, 2);
+
+        assertEquals(1 + 3, visitor.files.size());
+        assertTrue(visitor.files.stream().noneMatch(file -> file.startsWith(skipped)));
+    }
+
+    @Test
+    void walk_ShouldStopVisitingOnceStopIsRequested() throws Exception {
+        createTree(root, 3, 4, 5);
+        AtomicInteger budget = new AtomicInteger(20);
+        RecordingVisitor visitor = new RecordingVisitor() {
+            @Override
+            public boolean shouldStop() {
+                return budget.get() <= 0;
+            }
+
+            @Override
+            public void visitFile(Path file, BasicFileAttributes attributes) {
+                super.visitFile(file, attributes);
+                budget.decrementAndGet();
+            }
+        };
+
+        walk(visitor, 4);
+
+        // Each thread may finish the file it was already on.
+        assertTrue(visitor.files.size() <= 20 + 4, "visited " + visitor.files.size());
+    }
+
+    @Test
+    void walk_ShouldReportUnreadableDirectoryAndKeepGoing() throws Exception {
+        createTree(root, 1, 2, 1);
+        Path missing = root.resolve("gone");
+        RecordingVisitor visitor = new RecordingVisitor();
+
+        new ParallelFileWalker(ForkJoinPool.commonPool(), visitor).walk(missing);
+        walk(visitor, 2);
+
+        assertEquals(1, visitor.directoryFailures.get());
+        assertEquals(3, visitor.files.size());
+    }
+
+    @Test
+    void walk_ShouldReportSymlinkLoopInsteadOfWalkingItForever() throws Exception {
+        createTree(root, 2, 2, 1);
+        Path loop = createDirectoryLink(root.resolve("d0").resolve("d1").resolve("up"), root);
+        RecordingVisitor visitor = new RecordingVisitor();
+
+        walk(visitor, 2);
+
+        assertEquals(Set.of(loop), visitor.loops);
+        assertEquals(1 + 2 + 4, visitor.files.size());
+    }
+
+    @Test
+    void walk_ShouldFollowDirectoryLinksOutsideTheTreeOnlyWhenAsked() throws Exception {
+        createTree(root, 1, 1, 1);
+        Path elsewhere = Files.createDirectories(root.resolveSibling(root.getFileName() + "-elsewhere"));
+        try {
+            Files.writeString(elsewhere.resolve("linked.txt"), "linked");
+            createDirectoryLink(root.resolve("link"), elsewhere);
+            Files.createSymbolicLink(root.resolve("file-link.txt"), root.resolve("f0.txt"));
+
+            RecordingVisitor following = new RecordingVisitor();
+            walk(following, 2, true);
+            RecordingVisitor notFollowing = new RecordingVisitor();
+            walk(notFollowing, 2, false);
+
+            assertTrue(following.files.contains(root.resolve("link").resolve("linked.txt")));
+            assertEquals(4, following.files.size());
+            // File links are still followed either way.
+            assertEquals(Set.of(root.resolve("f0.txt"), root.resolve("d0").resolve("f0.txt"),
+                    root.resolve("file-link.txt")), notFollowing.files);
+        } finally {
+            Files.deleteIfExists(elsewhere.resolve("linked.txt"));
+            Files.deleteIfExists(elsewhere);
+        }
+    }
+
+    private void walk(RecordingVisitor visitor, int threads) {
+        walk(visitor, threads, true);
+    }
+
+    private void walk(RecordingVisitor visitor, int threads, boolean followDirectoryLinks) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            new ParallelFileWalker(pool, visitor, followDirectoryLinks).walk(root);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static Path createDirectoryLink(Path link, Path target) throws IOException {
+        try {
+            return Files.createSymbolicLink(link, target);
+        } catch (UnsupportedOperationException | IOException e) {
+            // e.g. Windows without the symlink privilege
+            assumeTrue(false, "symbolic links not supported: " + e);
+            return link;
+        }
+    }
+
+    private static void createTree(Path directory, int depth, int fanOut, int filesPerDirectory) throws IOException {
+        for (int i = 0; i < filesPerDirectory; i++) {
+            Files.writeString(directory.resolve("f" + i + ".txt"), "content " + i);
+        }
+        if (depth == 0) {
+            return;
+        }
+        for (int i = 0; i < fanOut; i++) {
+            createTree(Files.createDirectory(directory.resolve("d" + i)), depth - 1, fanOut, filesPerDirectory);
+        }
+    }
+
+    private static class RecordingVisitor implements ParallelFileWalker.Visitor {
+        final Set<Path> files = ConcurrentHashMap.newKeySet();
+        final AtomicInteger visits = new AtomicInteger();
+        final AtomicInteger directoryFailures = new AtomicInteger();
+        final Set<Path> loops = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public boolean shouldStop() {
+            return false;
+        }
+
+        @Override
+        public boolean skipDirectory(Path directory) {
+            return false;
+        }
+
+        @Override
+        public void visitFile(Path file, BasicFileAttributes attributes) {
+            assertTrue(attributes.isRegularFile());
+            files.add(file);
+            visits.incrementAndGet();
+        }
+
+        @Override
+        public void accessDenied(Path path) {
+        }
+
+        @Override
+        public void directoryFailed(Path directory, Exception e) {
+            directoryFailures.incrementAndGet();
+        }
+
+        @Override
+        public void entryFailed(Path path, Exception e) {
+            fail("unexpected failure on " + path + ": " + e);
+        }
+
+        @Override
+        public void loopDetected(Path directory) {
+            loops.add(directory);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.antivirus.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the change-rate ransomware detector. Times are nanoTime
+ * values offset from the test's start, with a 10 s window.
+ */
+class RansomwareBehaviorDetectorTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final RansomwareBehaviorDetector detector = new RansomwareBehaviorDetector(10,
+            new RansomwareBehaviorDetector.Thresholds(10, 20, 10), 3, 64);
+    private final long start = System.nanoTime();
+
+    @Test
+    void renamed_ShouldAlertOncePerWindowWhenADirectoryCrossesTheThreshold() {
+        Path docs = Path.of("/home/me/docs");
+        for (int i = 0; i < 9; i++) {
+            assertTrue(detector.renamed(docs.resolve("report" + i + ".docx.locked"), start).isEmpty());
+        }
+
+        List<RansomwareBehaviorDetector.Alert> alerts = detector.renamed(docs.resolve("report9.docx.locked"), start);
+
+        assertEquals(1, alerts.size());
+        RansomwareBehaviorDetector.Alert alert = alerts.get(0);
+        assertEquals(docs, alert.directory());
+        assertEquals(List.of(RansomwareBehaviorDetector.SIGNAL_RENAME_RATE,
+                RansomwareBehaviorDetector.SIGNAL_NEW_EXTENSION_RATE), alert.signals());
+        assertEquals(10, alert.counts()[0]);
+        assertTrue(detector.renamed(docs.resolve("more.docx.locked"), start + 5 * SECOND).isEmpty());
+        // Still renaming a window later: alerts again, once.
+        int later = 0;
+        for (int i = 0; i < 20; i++) {
+            later += detector.renamed(docs.resolve("late" + i + ".docx.locked"), start + 12 * SECOND).size();
+        }
+        assertEquals(1, later);
+    }
+
+    @Test
+    void created_ShouldCountOnlyUnknownExtensionsWithinTheWindow() {
+        Path downloads = Path.of("/home/me/downloads");
+        for (int i = 0; i < 50; i++) {
+            assertTrue(detector.created(downloads.resolve("photo" + i + ".jpg"), start).isEmpty());
+        }
+        // Ten unknown extensions, but spread over more than one window.
+        for (int i = 0; i < 10; i++) {
+            assertTrue(detector.created(downloads.resolve("part" + i + ".xyz"), start + i * 2 * SECOND).isEmpty());
+        }
+        for (int i = 0; i < 19; i++) {
+            assertTrue(detector.rewritten(downloads.resolve("photo" + i + ".jpg"), start).isEmpty());
+        }
+        List<RansomwareBehaviorDetector.Alert> alerts = detector.rewritten(downloads.resolve("photo19.jpg"), start);
+        assertEquals(List.of(RansomwareBehaviorDetector.SIGNAL_REWRITE_RATE), alerts.get(0).signals());
+    }
+
+    @Test
+    void hostCounters_ShouldCatchRenamesSpreadOverManyDirectories() {
+        List<RansomwareBehaviorDetector.Alert> alerts = List.of();
+        for (int i = 0; i < 30 && alerts.isEmpty(); i++) {
+            alerts = detector.renamed(Path.of("/share/folder" + i, "file.pdf.enc"), start);
+        }
+
+        assertEquals(1, alerts.size());
+        RansomwareBehaviorDetector.Alert alert = alerts.get(0);
+        assertNull(alert.directory());
+        assertEquals(30, alert.counts()[0]);
+        assertTrue(alert.details().startsWith("All watched paths in 10 s: 30 renames"));
+    }
+
+    @Test
+    void tracker_ShouldKeepMemoryFixedWhenManyDirectoriesAreActive() {
+        for (int i = 0; i < 10_000; i++) {
+            detector.rewritten(Path.of("/data/d" + i, "f.bin"), start);
+        }
+
+        assertEquals(64, detector.status().get("directorySlots"));
+        assertTrue((int) detector.status().get("activeDirectories") <= 64);
+        assertTrue((long) detector.status().get("evictions") > 0);
+        assertEquals(10_000L, detector.status().get("events"));
+    }
+
+    @Test
+    void slidingWindow_ShouldNotLoseCountsUnderConcurrentUpdates() throws Exception {
+        RansomwareBehaviorDetector.SlidingWindow window = new RansomwareBehaviorDetector.SlidingWindow();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                writers.add(pool.submit(() -> {
+                    for (int i = 0; i < 50_000; i++) {
+                        // half of them a bucket later, in the next slot
+                        window.add(100 + i % 2);
+                    }
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(400_000, window.sum(101));
+        assertEquals(200_000, window.sum(100));
+        assertEquals(0, window.sum(200));
+    }
+}
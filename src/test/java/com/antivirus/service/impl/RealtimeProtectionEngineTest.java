@@ -0,0 +1,259 @@
+package com.antivirus.service.impl;
+
+import com.antivirus.model.ScanResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Real-time protection against a real WatchService on a temporary tree,
+ * with the scanner replaced by a recorder.
+ */
+class RealtimeProtectionEngineTest {
+
+    @TempDir
+    Path root;
+
+    private final RealtimeProtectionEngine engine = new RealtimeProtectionEngine();
+    private final Map<Path, AtomicInteger> scans = new ConcurrentHashMap<>();
+
+    private void configure(String exclusionRules, int queueCapacity, int scanThreads,
+            RealtimeProtectionEngine.FileScanner scanner) {
+        ReflectionTestUtils.setField(engine, "exclusionPolicy", new ScanExclusionPolicy(exclusionRules));
+        ReflectionTestUtils.setField(engine, "watchedPaths", root.toString());
+        ReflectionTestUtils.setField(engine, "debounceMillis", 100L);
+        ReflectionTestUtils.setField(engine, "queueCapacity", queueCapacity);
+        ReflectionTestUtils.setField(engine, "scanThreads", scanThreads);
+        ReflectionTestUtils.setField(engine, "scanner", scanner);
+    }
+
+    private ScanResult record(File file) {
+        scans.computeIfAbsent(file.toPath(), path -> new AtomicInteger()).incrementAndGet();
+        ScanResult result = new ScanResult();
+        result.setVerdict(file.getName().endsWith(".exe") ? "MALICIOUS" : "CLEAN");
+        return result;
+    }
+
+    // Waits until the watcher has registered the tree, so a write right
+    // after start() is not missed by the test.
+    private void startAndAwaitWatches(int directories) {
+        assertTrue(engine.start());
+        awaitTrue(() -> (int) engine.status().get("watchedDirectories") >= directories);
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not met within 10 s");
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail("interrupted");
+            }
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.stop();
+    }
+
+    @Test
+    void start_ShouldStayOffWhenNoConfiguredPathExists() {
+        configure("", 100, 1, this::record);
+        ReflectionTestUtils.setField(engine, "watchedPaths", root.resolve("missing").toString());
+
+        assertFalse(engine.start());
+        assertFalse(engine.isRunning());
+    }
+
+    @Test
+    void modifiedFile_ShouldBeScannedOnceAfterABurstOfWrites() throws IOException {
+        configure("", 100, 1, this::record);
+        startAndAwaitWatches(1);
+
+        Path file = root.resolve("setup.exe");
+        for (int i = 0; i < 10; i++) {
+            Files.writeString(file, "chunk " + i);
+        }
+
+        awaitTrue(() -> scans.containsKey(file));
+        awaitTrue(() -> (long) engine.status().get("detections") == 1);
+        assertEquals(1, scans.get(file).get());
+        assertTrue((long) engine.status().get("coalescedEvents") > 0);
+    }
+
+    @Test
+    void newDirectory_ShouldBeWatchedAndFilesWrittenBeforeTheWatchScanned() throws IOException {
+        configure("", 100, 1, this::record);
+        startAndAwaitWatches(1);
+
+        Path nested = Files.createDirectories(root.resolve("a/b"));
+        Path early = Files.writeString(nested.resolve("early.txt"), "written immediately");
+        awaitTrue(() -> (int) engine.status().get("watchedDirectories") == 3);
+        Path late = Files.writeString(nested.resolve("late.txt"), "written once watched");
+
+        awaitTrue(() -> scans.containsKey(early) && scans.containsKey(late));
+    }
+
+    @Test
+    void excludedPaths_ShouldNotBeWatchedOrScanned() throws IOException {
+        Files.createDirectories(root.resolve("node_modules/lib"));
+        configure("**/node_modules/**,*.tmp", 100, 1, this::record);
+        startAndAwaitWatches(1);
+
+        Files.writeString(root.resolve("node_modules/lib/index.js"), "x");
+        Files.writeString(root.resolve("download.tmp"), "x");
+        Path kept = Files.writeString(root.resolve("kept.txt"), "x");
+
+        awaitTrue(() -> scans.containsKey(kept));
+        assertEquals(List.of(kept), List.copyOf(scans.keySet()));
+        assertEquals(1, engine.status().get("watchedDirectories"));
+        // Excluded on purpose, not a failure to watch.
+        assertEquals(0L, engine.status().get("unwatchedDirectories"));
+    }
+
+    @Test
+    void fullQueue_ShouldFallBackToRescanningTheDirectory() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        configure("", 1, 1, file -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return record(file);
+        });
+        startAndAwaitWatches(1);
+
+        for (int i = 0; i < 20; i++) {
+            Files.writeString(root.resolve("file-" + i + ".txt"), "content " + i);
+        }
+        awaitTrue(() -> (long) engine.status().get("queueFull") > 0);
+        release.countDown();
+
+        awaitTrue(() -> scans.size() == 20);
+        awaitTrue(() -> (long) engine.status().get("rescannedDirectories") > 0);
+        assertEquals(0, engine.status().get("dirtyDirectories"));
+    }
+
+    // ── ransomware behavior (load) ─────────────────────────────────────
+
+    private List<RansomwareBehaviorDetector.Alert> captureAlerts() {
+        List<RansomwareBehaviorDetector.Alert> alerts = new CopyOnWriteArrayList<>();
+        ReflectionTestUtils.setField(engine, "alertSink",
+                (BiConsumer<String, RansomwareBehaviorDetector.Alert>) (path, alert) -> alerts.add(alert));
+        return alerts;
+    }
+
+    @Test
+    void massRenames_ShouldRaiseOneRansomwareAlertPerDirectoryWhileItHappens() throws IOException {
+        Path documents = Files.createDirectories(root.resolve("documents"));
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            files.add(Files.writeString(documents.resolve("invoice-" + i + ".pdf"), "invoice " + i));
+        }
+        configure("", 10_000, 2, this::record);
+        List<RansomwareBehaviorDetector.Alert> alerts = captureAlerts();
+        startAndAwaitWatches(2);
+
+        long start = System.nanoTime();
+        for (Path file : files) {
+            Path encrypted = file.resolveSibling(file.getFileName() + ".crypz");
+            Files.writeString(file, "x".repeat(64));
+            Files.move(file, encrypted, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        awaitTrue(() -> alerts.stream().anyMatch(alert -> documents.equals(alert.directory())));
+        long detectedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        RansomwareBehaviorDetector.Alert alert = alerts.stream()
+                .filter(a -> documents.equals(a.directory())).findFirst().orElseThrow();
+        // Whichever rate crosses first raises it; the renames are seen as such.
+        assertFalse(alert.signals().isEmpty());
+        assertTrue(alert.counts()[0] >= 40, "renames counted: " + alert.counts()[0]);
+        assertEquals(1, alerts.stream().filter(a -> documents.equals(a.directory())).count());
+        assertTrue(detectedMillis < 10_000, "detected after " + detectedMillis + " ms");
+    }
+
+    @Test
+    void ordinaryEdits_ShouldNotRaiseARansomwareAlert() throws IOException {
+        configure("", 10_000, 1, this::record);
+        List<RansomwareBehaviorDetector.Alert> alerts = captureAlerts();
+        startAndAwaitWatches(1);
+
+        for (int i = 0; i < 30; i++) {
+            Path draft = Files.writeString(root.resolve("draft-" + i + ".docx"), "draft " + i);
+            Files.move(draft, root.resolve("chapter-" + i + ".docx"), StandardCopyOption.ATOMIC_MOVE);
+            Files.writeString(root.resolve("notes.txt"), "edit " + i);
+        }
+
+        awaitTrue(() -> scans.containsKey(root.resolve("chapter-29.docx")));
+        assertTrue(alerts.isEmpty());
+        assertTrue((long) ((Map<?, ?>) engine.status().get("ransomwareBehavior")).get("events") > 0);
+    }
+
+    @Test
+    void failingEvent_ShouldNotStopTheWatcher() throws IOException {
+        configure("", 100, 1, this::record);
+        AtomicInteger failures = new AtomicInteger();
+        ReflectionTestUtils.setField(engine, "exclusionPolicy", new ScanExclusionPolicy("") {
+            @Override
+            public boolean excludes(Path path) {
+                if (path.getFileName().toString().equals("poison.txt") && failures.getAndIncrement() == 0) {
+                    throw new IllegalStateException("bad rule");
+                }
+                return super.excludes(path);
+            }
+        });
+        startAndAwaitWatches(1);
+
+        Path poison = Files.writeString(root.resolve("poison.txt"), "x");
+        awaitTrue(() -> failures.get() > 0);
+        Path later = Files.writeString(root.resolve("later.txt"), "x");
+
+        awaitTrue(() -> scans.containsKey(later));
+        assertTrue(engine.isRunning());
+        // Its directory was rescanned, so the failed event is not lost.
+        awaitTrue(() -> scans.containsKey(poison));
+    }
+
+    @Test
+    void watcherExit_ShouldReportStoppedAndAllowARestart() throws IOException {
+        configure("", 100, 1, this::record);
+        ReflectionTestUtils.setField(engine, "exclusionPolicy", new ScanExclusionPolicy("") {
+            @Override
+            public boolean excludes(Path path) {
+                throw new IllegalStateException("bad rule");
+            }
+        });
+        assertTrue(engine.start());
+        awaitTrue(() -> !engine.isRunning());
+        assertEquals(false, engine.status().get("running"));
+
+        configure("", 100, 1, this::record);
+        startAndAwaitWatches(1);
+        Path file = Files.writeString(root.resolve("after-restart.txt"), "x");
+
+        awaitTrue(() -> scans.containsKey(file));
+    }
+}
@@ -0,0 +1,121 @@
+package com.antivirus.service.impl;
+
+import com.antivirus.repository.ScanResultRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for RetroHuntService's batching against a mocked
+ * ScanResultRepository; the queries themselves are covered by
+ * ScanResultRepositoryTest.
+ */
+@ExtendWith(MockitoExtension.class)
+class RetroHuntServiceTest {
+
+    @Mock
+    private ScanResultRepository scanResultRepository;
+
+    @Mock
+    private ThreatIntelSignatureService threatIntelSignatureService;
+
+    @InjectMocks
+    private RetroHuntService retroHuntService;
+
+    @BeforeEach
+    void setUp() {
+        // No background hunts: each test calls hunt() itself.
+        retroHuntService.shutdown();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void init_ShouldListenForNewSignatures() {
+        retroHuntService.init();
+
+        verify(threatIntelSignatureService).addSignatureListener(any(Consumer.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void hunt_ShouldQueryInHashBatchesAndFlagMatches() {
+        ReflectionTestUtils.setField(retroHuntService, "hashBatchSize", 2);
+        String matched = HexFormat.of().formatHex(digest(1));
+        when(scanResultRepository.findRetroHuntMatches(anyCollection(), eq(0L), any(Pageable.class)))
+                .thenAnswer(invocation -> ((Collection<String>) invocation.getArgument(0)).contains(matched)
+                        ? List.of(7L)
+                        : List.of());
+        when(scanResultRepository.flagKnownMalicious(eq(List.of(7L)), anyString())).thenReturn(1);
+
+        retroHuntService.enqueue(List.of(digest(1), digest(2), digest(3)));
+        int flagged = retroHuntService.hunt();
+
+        assertEquals(1, flagged);
+        // Three hashes at two per query.
+        verify(scanResultRepository, times(2)).findRetroHuntMatches(anyCollection(), eq(0L), any(Pageable.class));
+        assertEquals(3L, retroHuntService.status().get("huntedHashes"));
+        assertEquals(0, retroHuntService.status().get("pendingHashes"));
+    }
+
+    @Test
+    void hunt_ShouldPageThroughMatchingRowsByLastId() {
+        ReflectionTestUtils.setField(retroHuntService, "rowBatchSize", 2);
+        when(scanResultRepository.findRetroHuntMatches(anyCollection(), eq(0L), any(Pageable.class)))
+                .thenReturn(List.of(1L, 2L));
+        when(scanResultRepository.findRetroHuntMatches(anyCollection(), eq(2L), any(Pageable.class)))
+                .thenReturn(List.of(5L));
+        when(scanResultRepository.flagKnownMalicious(anyCollection(), anyString()))
+                .thenAnswer(invocation -> ((Collection<?>) invocation.getArgument(0)).size());
+
+        retroHuntService.enqueue(List.of(digest(1)));
+
+        assertEquals(3, retroHuntService.hunt());
+        verify(scanResultRepository).flagKnownMalicious(eq(List.of(1L, 2L)), anyString());
+        verify(scanResultRepository).flagKnownMalicious(eq(List.of(5L)), anyString());
+    }
+
+    @Test
+    void enqueue_ShouldFallBackToSweepWhenQueueOverflows() {
+        ReflectionTestUtils.setField(retroHuntService, "maxPendingHashes", 2);
+        String listed = HexFormat.of().formatHex(digest(9));
+        ScanResultRepository.HashedResult hit = hashedResult(3L, listed);
+        ScanResultRepository.HashedResult miss = hashedResult(4L, HexFormat.of().formatHex(digest(8)));
+        when(scanResultRepository.findHashedResultsAfter(eq(0L), any(Pageable.class))).thenReturn(List.of(hit, miss));
+        when(threatIntelSignatureService.isKnownMalicious(listed)).thenReturn(true);
+        when(scanResultRepository.flagKnownMalicious(eq(List.of(3L)), anyString())).thenReturn(1);
+
+        retroHuntService.enqueue(List.of(digest(1), digest(2), digest(9)));
+
+        assertEquals(1, retroHuntService.hunt());
+        verify(scanResultRepository, never()).findRetroHuntMatches(anyCollection(), anyLong(), any(Pageable.class));
+        assertEquals(2L, retroHuntService.status().get("sweptResults"));
+    }
+
+    private static ScanResultRepository.HashedResult hashedResult(long id, String contentSha256) {
+        ScanResultRepository.HashedResult result = mock(ScanResultRepository.HashedResult.class);
+        lenient().when(result.getId()).thenReturn(id);
+        lenient().when(result.getContentSha256()).thenReturn(contentSha256);
+        return result;
+    }
+
+    private static byte[] digest(int fill) {
+        byte[] digest = new byte[SignatureStore.DIGEST_BYTES];
+        Arrays.fill(digest, (byte) fill);
+        return digest;
+    }
+}
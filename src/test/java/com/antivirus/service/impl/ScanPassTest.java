@@ -0,0 +1,179 @@
+package com.antivirus.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ScanPass, the single-read fan-out behind
+ * SecurityServiceImpl.scanFile(). The end-to-end verdicts are covered by
+ * SecurityServiceImplTest; these pin down the stream-level edge cases
+ * (tiny reads, split UTF-8 sequences, limits) that a file-based test
+ * can't easily force.
+ */
+class ScanPassTest {
+
+    private static final long MAX_CHARS = 10L * 1024 * 1024;
+    private static final int WINDOW = 16 * 1024;
+
+    @Test
+    void update_ShouldMatchPatternSplitAcrossSingleByteUpdates() {
+        ScanPass pass = new ScanPass(MAX_CHARS, WINDOW, 2);
+        byte[] text = "Your files have been encrypted".getBytes(StandardCharsets.UTF_8);
+
+        for (int i = 0; i < text.length; i++) {
+            pass.update(text, i, 1);
+        }
+        pass.finish();
+
+        assertTrue(pass.ransomwareTextMatched());
+    }
+
+    @Test
+    void update_ShouldDecodeMultiByteCharactersSplitAcrossUpdates() {
+        ScanPass pass = new ScanPass(MAX_CHARS, WINDOW, 2);
+        // "é" is two bytes in UTF-8; splitting it must not corrupt the
+        // following text into replacement characters.
+        byte[] text = "café kernel hook".getBytes(StandardCharsets.UTF_8);
+
+        pass.update(text, 0, 4);
+        pass.update(text, 4, text.length - 4);
+        pass.finish();
+
+        assertTrue(pass.kernelTextMatched());
+    }
+
+    @Test
+    void inspect_ShouldHashEveryByteReadThroughTheWrappedStream() throws Exception {
+        byte[] content = new byte[100_000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i * 31);
+        }
+        ScanPass pass = new ScanPass(MAX_CHARS, WINDOW, 2);
+
+        try (InputStream in = pass.inspect(new ByteArrayInputStream(content))) {
+            assertEquals(content[0] & 0xFF, in.read());
+            assertEquals(10, in.skip(10));
+            in.readAllBytes();
+        }
+        pass.finish();
+
+        assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(content), pass.sha256Digest());
+        assertEquals(content.length, pass.totalBytes());
+        assertEquals(ScanPass.HEADER_BYTES, pass.header(Integer.MAX_VALUE).length);
+        assertEquals(content[7], pass.header(8)[7]);
+    }
+
+    @Test
+    void update_ShouldStopTextDetectorsAtConfiguredCharLimit() {
+        ScanPass pass = new ScanPass(8192, WINDOW, 2);
+        byte[] padding = "a".repeat(8192).getBytes(StandardCharsets.UTF_8);
+        byte[] note = " btc wallet ".getBytes(StandardCharsets.UTF_8);
+
+        pass.update(padding, 0, padding.length);
+        pass.update(note, 0, note.length);
+        pass.finish();
+
+        assertFalse(pass.ransomwareTextMatched());
+        assertEquals(padding.length + note.length, pass.totalBytes());
+    }
+
+    @Test
+    void update_ShouldCollectStrongAndWeakMatchesUntilStopCount() {
+        ScanPass pass = new ScanPass(MAX_CHARS, WINDOW, 2);
+        byte[] text = ("eval(x); powershell -enc AAA; powershell bypass")
+                .getBytes(StandardCharsets.UTF_8);
+
+        pass.update(text, 0, text.length);
+        pass.finish();
+
+        assertEquals(2, pass.strongMatches().size());
+        assertEquals(1, pass.weakMatches().size());
+    }
+
+    @Test
+    void update_ShouldMatchBoundedPatternSpanningManyChunksAfterWindowIsTrimmed() {
+        ScanPass pass = new ScanPass(MAX_CHARS, WINDOW, 2);
+        // The 8 KB of filler forces several match/trim rounds between the
+        // two halves of "powershell ... bypass"; the bounded overlap kept
+        // after each trim has to carry "powershell" forward, while the
+        // filler itself has long since been dropped.
+        byte[] filler = "x ".repeat(4096).getBytes(StandardCharsets.UTF_8);
+        byte[] head = "powershell ".getBytes(StandardCharsets.UTF_8);
+        byte[] tail = "-w hidden bypass".getBytes(StandardCharsets.UTF_8);
+
+        pass.update(filler, 0, filler.length);
+        pass.update(head, 0, head.length);
+        for (int i = 0; i < 100; i++) {
+            pass.update(new byte[] { ' ' }, 0, 1);
+        }
+        pass.update(tail, 0, tail.length);
+        pass.finish();
+
+        assertEquals(2, pass.strongMatches().size());
+    }
+
+    @Test
+    void update_ShouldCompleteUnboundedPatternWhoseAnchorWasSeenChunksEarlier() {
+        ScanPass pass = new ScanPass(MAX_CHARS, WINDOW, 2);
+        // "eval\s*\(" has no width bound; the pending "eval" occurrence has
+        // to survive several chunks of whitespace until the "(" arrives.
+        byte[] head = "x = eval".getBytes(StandardCharsets.UTF_8);
+        byte[] spaces = " ".repeat(4000).getBytes(StandardCharsets.UTF_8);
+        byte[] tail = "(payload)".getBytes(StandardCharsets.UTF_8);
+
+        pass.update(head, 0, head.length);
+        for (int i = 0; i < 3; i++) {
+            pass.update(spaces, 0, spaces.length);
+        }
+        pass.update(tail, 0, tail.length);
+        pass.finish();
+
+        assertEquals(1, pass.weakMatches().size());
+    }
+
+    @Test
+    void update_ShouldFindSameMatchesWithPrefilterAsWithoutIt() {
+        // Random text seeded with fragments of every pattern group, fed in
+        // odd-sized pieces through a small window so anchors regularly sit
+        // across chunk boundaries and get trimmed away.
+        String[] fragments = { "powershell", " -enc ", "bypass", "btc wallet", "ransom", "decrypt",
+                "kernel", "hook", "eval(", "<script", "reg ", " add", "chmod", "777", ".onion",
+                "connect(", "10.0.0.1", "syscall", "table", "\\startup\\", "é", "\n" };
+        Random random = new Random(42);
+        for (int round = 0; round < 50; round++) {
+            StringBuilder text = new StringBuilder();
+            while (text.length() < 40_000) {
+                if (random.nextInt(4) == 0) {
+                    text.append(fragments[random.nextInt(fragments.length)]);
+                } else {
+                    text.append((char) ('a' + random.nextInt(26))).append(random.nextInt(6) == 0 ? " " : "");
+                }
+            }
+            byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+            ScanPass filtered = new ScanPass(MAX_CHARS, 1024, Integer.MAX_VALUE);
+            ScanPass baseline = new ScanPass(MAX_CHARS, 1024, Integer.MAX_VALUE,
+                    LiteralPrefilter.passThrough(DetectionPatterns.TEXT_PATTERNS));
+
+            for (int offset = 0; offset < bytes.length;) {
+                int length = Math.min(1 + random.nextInt(3000), bytes.length - offset);
+                filtered.update(bytes, offset, length);
+                baseline.update(bytes, offset, length);
+                offset += length;
+            }
+            filtered.finish();
+            baseline.finish();
+
+            assertEquals(baseline.ransomwareTextMatched(), filtered.ransomwareTextMatched());
+            assertEquals(baseline.kernelTextMatched(), filtered.kernelTextMatched());
+            assertEquals(baseline.strongMatches(), filtered.strongMatches());
+            assertEquals(baseline.weakMatches(), filtered.weakMatches());
+        }
+    }
+}
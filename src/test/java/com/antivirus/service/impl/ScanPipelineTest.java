@@ -0,0 +1,225 @@
+package com.antivirus.service.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the read → analyze → persist pipeline behind system,
+ * directory-job and server-path scans. Each test runs the real stage
+ * threads over files in a temp directory.
+ */
+class ScanPipelineTest {
+
+    @TempDir
+    Path root;
+
+    @Test
+    void finish_ShouldAnalyzeAndPersistEveryFileInBoundedBatches() throws Exception {
+        List<Path> files = createFiles(50, 10);
+        List<List<Path>> batches = Collections.synchronizedList(new ArrayList<>());
+        ScanPipeline<Path> pipeline = pipeline(settings(2, 3, 8, 7, 1024, 4096),
+                (path, bytes) -> path, batches::add);
+
+        for (Path file : files) {
+            pipeline.submit(file);
+        }
+        pipeline.finish();
+
+        Set<Path> persisted = ConcurrentHashMap.newKeySet();
+        batches.forEach(persisted::addAll);
+        assertEquals(Set.copyOf(files), persisted);
+        assertTrue(batches.stream().allMatch(batch -> batch.size() <= 7));
+        assertEquals(50L, stage(pipeline, "read").get("processed"));
+        assertEquals(50L, stage(pipeline, "analyze").get("processed"));
+        assertEquals(50L, stage(pipeline, "persist").get("processed"));
+    }
+
+    @Test
+    void analyzer_ShouldReceivePrefetchedBytesOnlyForFilesWithinTheLimit() throws Exception {
+        Path small = Files.write(root.resolve("small.txt"), new byte[100]);
+        Path large = Files.write(root.resolve("large.txt"), new byte[5000]);
+        Map<Path, Integer> seen = new ConcurrentHashMap<>();
+        ScanPipeline<Path> pipeline = pipeline(settings(1, 1, 4, 10, 1024, 4096),
+                (path, bytes) -> {
+                    seen.put(path, bytes == null ? -1 : bytes.length);
+                    return path;
+                }, batch -> {
+                });
+
+        pipeline.submit(small);
+        pipeline.submit(large);
+        pipeline.finish();
+
+        assertEquals(100, seen.get(small));
+        assertEquals(-1, seen.get(large));
+    }
+
+    @Test
+    void submit_ShouldBlockWhileTheDatabaseStageIsStalled() throws Exception {
+        List<Path> files = createFiles(40, 1);
+        CountDownLatch database = new CountDownLatch(1);
+        AtomicInteger analyzed = new AtomicInteger();
+        ScanPipeline<Path> pipeline = pipeline(settings(1, 1, 2, 1, 1024, 4096),
+                (path, bytes) -> {
+                    analyzed.incrementAndGet();
+                    return path;
+                }, batch -> awaitQuietly(database));
+
+        AtomicInteger submitted = new AtomicInteger();
+        Thread producer = new Thread(() -> {
+            try {
+                for (Path file : files) {
+                    pipeline.submit(file);
+                    submitted.incrementAndGet();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+        producer.join(500);
+
+        // Three queues of two, plus one item held by each stage thread.
+        assertTrue(producer.isAlive(), "submit() should be blocked");
+        assertTrue(submitted.get() <= 3 * 2 + 3, "submitted " + submitted.get());
+        assertTrue(analyzed.get() <= 2 * 2 + 2, "analyzed " + analyzed.get());
+
+        database.countDown();
+        producer.join(5000);
+        pipeline.finish();
+        assertEquals(40, analyzed.get());
+    }
+
+    @Test
+    void cancel_ShouldDropQueuedFilesAndLetFinishReturn() throws Exception {
+        List<Path> files = createFiles(20, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger analyzed = new AtomicInteger();
+        ScanPipeline<Path> pipeline = pipeline(settings(1, 1, 32, 10, 1024, 4096),
+                (path, bytes) -> {
+                    awaitQuietly(release);
+                    analyzed.incrementAndGet();
+                    return path;
+                }, batch -> {
+                });
+
+        for (Path file : files) {
+            pipeline.submit(file);
+        }
+        pipeline.cancel();
+        release.countDown();
+        pipeline.finish();
+
+        assertTrue(analyzed.get() <= 1, "analyzed " + analyzed.get());
+    }
+
+    @Test
+    void finish_ShouldReturnAndRecordTheFailureWhenAnAnalyzerThrowsAnError() throws Exception {
+        List<Path> files = createFiles(10, 10);
+        Path poisoned = files.get(3);
+        Set<Path> persisted = ConcurrentHashMap.newKeySet();
+        Set<Path> failures = ConcurrentHashMap.newKeySet();
+        ScanPipeline<Path> pipeline = new ScanPipeline<>("test", settings(1, 2, 4, 3, 1024, 4096),
+                runnable -> runnable,
+                (path, bytes) -> {
+                    if (path.equals(poisoned)) {
+                        throw new StackOverflowError();
+                    }
+                    return path;
+                },
+                (path, error) -> {
+                    failures.add(path);
+                    return path;
+                },
+                persisted::addAll);
+
+        for (Path file : files) {
+            pipeline.submit(file);
+        }
+        assertTimeoutPreemptively(Duration.ofSeconds(10), pipeline::finish);
+
+        assertEquals(Set.of(poisoned), failures);
+        assertEquals(Set.copyOf(files), persisted);
+        assertEquals(1L, stage(pipeline, "analyze").get("failed"));
+    }
+
+    @Test
+    void finish_ShouldAnalyzeUnreadAndFreeTheBudgetWhenAReadThrowsAnError() throws Exception {
+        List<Path> files = createFiles(6, 10);
+        Path poisoned = files.get(2);
+        Map<Path, Boolean> prefetched = new ConcurrentHashMap<>();
+        ScanPipeline<Path> pipeline = pipeline(settings(2, 1, 4, 3, 1024, 4096),
+                (path, bytes) -> {
+                    prefetched.put(path, bytes != null);
+                    return path;
+                }, batch -> { });
+        ReflectionTestUtils.setField(pipeline, "fileReader", (ScanPipeline.FileReader) path -> {
+            if (path.equals(poisoned)) {
+                throw new OutOfMemoryError("Java heap space");
+            }
+            return Files.readAllBytes(path);
+        });
+
+        for (Path file : files) {
+            pipeline.submit(file);
+        }
+        assertTimeoutPreemptively(Duration.ofSeconds(10), pipeline::finish);
+
+        assertEquals(files.size(), prefetched.size());
+        assertFalse(prefetched.get(poisoned));
+        assertTrue(prefetched.get(files.get(0)));
+        assertEquals(4096, ((Semaphore) ReflectionTestUtils.getField(pipeline,
+                "prefetchBudget")).availablePermits());
+    }
+
+    private List<Path> createFiles(int count, int size) throws Exception {
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            files.add(Files.write(root.resolve("f" + i + ".bin"), new byte[size]));
+        }
+        return files;
+    }
+
+    private static ScanPipeline.Settings settings(int readers, int analyzers, int queueCapacity, int batchSize,
+            int maxPrefetchBytes, int prefetchBudgetBytes) {
+        return new ScanPipeline.Settings(readers, analyzers, queueCapacity, batchSize, maxPrefetchBytes,
+                prefetchBudgetBytes);
+    }
+
+    private static ScanPipeline<Path> pipeline(ScanPipeline.Settings settings,
+            BiFunction<Path, byte[], Path> analyzer, Consumer<List<Path>> persister) {
+        return new ScanPipeline<>("test", settings, runnable -> runnable, analyzer, (path, error) -> null, persister);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> stage(ScanPipeline<?> pipeline, String name) {
+        return (Map<String, Object>) pipeline.metrics().get(name);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
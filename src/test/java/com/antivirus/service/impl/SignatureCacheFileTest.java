@@ -0,0 +1,142 @@
+package com.antivirus.service.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the mapped threat-intel cache image and its journal.
+ * Each test works on real files in a temp directory.
+ */
+class SignatureCacheFileTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void append_ShouldReplayJournalAfterReopen() throws Exception {
+        Path file = dir.resolve("sigs.bin");
+        List<byte[]> digests = randomDigests(new Random(1), 10);
+        try (SignatureCacheFile cache = SignatureCacheFile.open(file)) {
+            cache.append(digests.subList(0, 4));
+            cache.append(digests.subList(4, 10));
+        }
+
+        try (SignatureCacheFile cache = SignatureCacheFile.open(file)) {
+            assertEquals(0, cache.base().size());
+            assertEquals(10, cache.journalEntries());
+            List<byte[]> replayed = cache.readJournal();
+            for (int i = 0; i < digests.size(); i++) {
+                assertArrayEquals(digests.get(i), replayed.get(i));
+            }
+        }
+    }
+
+    @Test
+    void compact_ShouldWriteMappedImageAndEmptyJournal() throws Exception {
+        Path file = dir.resolve("sigs.bin");
+        List<byte[]> first = randomDigests(new Random(1), 500);
+        List<byte[]> second = randomDigests(new Random(2), 500);
+        try (SignatureCacheFile cache = SignatureCacheFile.open(file)) {
+            cache.append(first);
+            assertEquals(500, cache.compact(first).size());
+            cache.append(second);
+            assertEquals(1_000, cache.compact(second).size());
+            assertEquals(0, cache.journalEntries());
+        }
+
+        try (SignatureCacheFile cache = SignatureCacheFile.open(file)) {
+            assertEquals(1_000, cache.base().size());
+            assertEquals(0, cache.journalEntries());
+            assertTrue(cache.base().contains(first.get(0)));
+            assertTrue(cache.base().contains(second.get(499)));
+        }
+    }
+
+    @Test
+    void append_ShouldKeepTheSetVersionAcrossReopenAndCompaction() throws Exception {
+        Path file = dir.resolve("sigs.bin");
+        List<byte[]> digests = randomDigests(new Random(1), 10);
+        try (SignatureCacheFile cache = SignatureCacheFile.open(file)) {
+            assertEquals(0, cache.setVersion());
+            cache.append(digests.subList(0, 5), 41);
+            cache.append(digests.subList(5, 10), 42);
+        }
+
+        try (SignatureCacheFile cache = SignatureCacheFile.open(file)) {
+            assertEquals(42, cache.setVersion());
+            cache.compact(cache.readJournal());
+        }
+
+        try (SignatureCacheFile cache = SignatureCacheFile.open(file)) {
+            assertEquals(0, cache.journalEntries());
+            assertEquals(42, cache.setVersion());
+        }
+    }
+
+    @Test
+    void open_ShouldDropTornJournalRecord() throws Exception {
+        Path file = dir.resolve("sigs.bin");
+        try (SignatureCacheFile cache = SignatureCacheFile.open(file)) {
+            cache.append(randomDigests(new Random(1), 3));
+        }
+        Files.write(SignatureCacheFile.journalPath(file), new byte[7], StandardOpenOption.APPEND);
+
+        try (SignatureCacheFile cache = SignatureCacheFile.open(file)) {
+            assertEquals(3, cache.journalEntries());
+            cache.append(randomDigests(new Random(2), 1));
+        }
+
+        try (SignatureCacheFile cache = SignatureCacheFile.open(file)) {
+            assertEquals(4, cache.readJournal().size());
+        }
+    }
+
+    @Test
+    void open_ShouldTreatCorruptImageAsEmpty() throws Exception {
+        Path file = dir.resolve("sigs.bin");
+        Files.write(file, new byte[] { 1, 2, 3 });
+
+        try (SignatureCacheFile cache = SignatureCacheFile.open(file)) {
+            assertEquals(0, cache.base().size());
+            List<byte[]> digests = randomDigests(new Random(1), 5);
+            cache.compact(digests);
+            assertTrue(cache.base().contains(digests.get(0)));
+        }
+    }
+
+    @Test
+    void write_ShouldReplaceImageWithoutJournal() throws Exception {
+        Path file = dir.resolve("allow.bin");
+        List<byte[]> first = randomDigests(new Random(1), 50);
+        List<byte[]> second = randomDigests(new Random(2), 20);
+        SignatureCacheFile.write(file, SignatureStore.empty().merge(first));
+
+        SignatureStore written = SignatureCacheFile.write(file, SignatureStore.empty().merge(second));
+
+        assertEquals(20, written.size());
+        SignatureStore mapped = SignatureCacheFile.map(file);
+        assertEquals(20, mapped.size());
+        assertTrue(mapped.contains(second.get(19)));
+        assertFalse(mapped.contains(first.get(0)));
+        assertFalse(Files.exists(SignatureCacheFile.journalPath(file)));
+    }
+
+    private static List<byte[]> randomDigests(Random random, int count) {
+        List<byte[]> digests = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] digest = new byte[SignatureStore.DIGEST_BYTES];
+            random.nextBytes(digest);
+            digests.add(digest);
+        }
+        return digests;
+    }
+}
@@ -0,0 +1,142 @@
+package com.antivirus.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the sorted binary digest set behind
+ * ThreatIntelSignatureService.
+ */
+class SignatureStoreTest {
+
+    @Test
+    void contains_ShouldFindEveryMergedDigestAndRejectOthers() {
+        List<byte[]> digests = randomDigests(new Random(1), 20_000);
+        SignatureStore store = SignatureStore.empty().merge(digests);
+
+        assertEquals(20_000, store.size());
+        for (byte[] digest : digests) {
+            assertTrue(store.contains(digest));
+        }
+        for (byte[] digest : randomDigests(new Random(2), 20_000)) {
+            assertFalse(store.contains(digest));
+        }
+    }
+
+    @Test
+    void contains_ShouldRejectNullAndWrongLengthInput() {
+        SignatureStore store = SignatureStore.empty().merge(randomDigests(new Random(1), 10));
+
+        assertFalse(store.contains(null));
+        assertFalse(store.contains(new byte[16]));
+        assertFalse(SignatureStore.empty().contains(new byte[32]));
+    }
+
+    @Test
+    void merge_ShouldIgnoreDuplicatesAndReturnSameStoreWhenNothingIsNew() {
+        List<byte[]> digests = randomDigests(new Random(1), 100);
+        List<byte[]> withDuplicates = new ArrayList<>(digests);
+        withDuplicates.addAll(digests);
+
+        SignatureStore store = SignatureStore.empty().merge(withDuplicates);
+
+        assertEquals(100, store.size());
+        assertSame(store, store.merge(digests));
+    }
+
+    @Test
+    void merge_ShouldKeepDigestsSortedAcrossIncrementalMerges() {
+        Random random = new Random(3);
+        SignatureStore store = SignatureStore.empty();
+        List<byte[]> all = new ArrayList<>();
+        for (int round = 0; round < 5; round++) {
+            List<byte[]> batch = randomDigests(random, 1_000);
+            all.addAll(batch);
+            store = store.merge(batch);
+        }
+
+        assertEquals(5_000, store.size());
+        List<byte[]> visited = new ArrayList<>();
+        store.forEach(visited::add);
+        for (int i = 1; i < visited.size(); i++) {
+            assertTrue(java.util.Arrays.compareUnsigned(visited.get(i - 1), visited.get(i)) < 0);
+        }
+        for (byte[] digest : all) {
+            assertTrue(store.contains(digest));
+        }
+    }
+
+    @Test
+    void fingerprint_ShouldNotDependOnInsertionOrder() {
+        List<byte[]> digests = randomDigests(new Random(4), 500);
+        List<byte[]> reversed = new ArrayList<>(digests);
+        java.util.Collections.reverse(reversed);
+
+        SignatureStore oneShot = SignatureStore.empty().merge(digests);
+        SignatureStore inTwoParts = SignatureStore.empty()
+                .merge(reversed.subList(0, 250))
+                .merge(reversed.subList(250, 500));
+
+        assertEquals(oneShot.fingerprint(), inTwoParts.fingerprint());
+        assertNotEquals(0L, oneShot.fingerprint());
+    }
+
+    @Test
+    void open_ShouldWrapWrittenImageAndRejectCorruptedOne() throws Exception {
+        List<byte[]> digests = randomDigests(new Random(5), 1_000);
+        java.nio.ByteBuffer[] image = new java.nio.ByteBuffer[1];
+        SignatureStore written = SignatureStore.empty().merge(digests, bytes -> {
+            image[0] = java.nio.ByteBuffer.allocate(bytes);
+            return image[0];
+        });
+
+        SignatureStore reopened = SignatureStore.open(image[0].duplicate());
+        assertEquals(written.size(), reopened.size());
+        assertEquals(written.fingerprint(), reopened.fingerprint());
+        assertTrue(reopened.contains(digests.get(0)));
+
+        // Flip one byte in the last digest.
+        int last = image[0].limit() - 1;
+        image[0].put(last, (byte) (image[0].get(last) ^ 1));
+        assertThrows(java.io.IOException.class, () -> SignatureStore.open(image[0].duplicate()));
+    }
+
+    @Test
+    void merge_ShouldSupportSha1AndMd5WidthsAndReopenThem() throws Exception {
+        for (HashType type : List.of(HashType.SHA1, HashType.MD5)) {
+            List<byte[]> digests = randomDigests(new Random(5), 5_000, type.digestBytes());
+            SignatureStore store = SignatureStore.empty(type).merge(digests);
+
+            assertEquals(type.digestBytes(), store.digestBytes());
+            for (byte[] digest : digests) {
+                assertTrue(store.contains(digest));
+            }
+            assertFalse(store.contains(new byte[SignatureStore.DIGEST_BYTES]));
+
+            java.nio.ByteBuffer[] image = new java.nio.ByteBuffer[1];
+            store.copy(size -> image[0] = java.nio.ByteBuffer.allocate(size));
+            SignatureStore reopened = SignatureStore.open(image[0].duplicate());
+            assertEquals(type.digestBytes(), reopened.digestBytes());
+            assertTrue(reopened.contains(digests.get(4_999)));
+        }
+    }
+
+    private static List<byte[]> randomDigests(Random random, int count) {
+        return randomDigests(random, count, SignatureStore.DIGEST_BYTES);
+    }
+
+    private static List<byte[]> randomDigests(Random random, int count, int digestBytes) {
+        List<byte[]> digests = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] digest = new byte[digestBytes];
+            random.nextBytes(digest);
+            digests.add(digest);
+        }
+        return digests;
+    }
+}
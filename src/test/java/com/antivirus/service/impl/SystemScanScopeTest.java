@@ -0,0 +1,151 @@
+package com.antivirus.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the system scan's mount-aware scope, fed with mount
+ * tables as the kernel prints them.
+ */
+class SystemScanScopeTest {
+
+    private static final Set<String> EXCLUDED = SystemScanScope.parseTypes(SystemScanScope.DEFAULT_EXCLUDED_TYPES);
+    private static final List<Path> ROOT = List.of(Path.of("/"));
+
+    private static final List<String> MOUNT_INFO = List.of(
+            "23 28 0:22 / /proc rw,relatime - proc proc rw",
+            "24 28 0:23 / /sys rw,relatime - sysfs sysfs rw",
+            "25 28 0:6 / /dev rw,relatime - devtmpfs devtmpfs rw,size=3066620k,mode=755",
+            "26 25 0:24 / /dev/shm rw,relatime - tmpfs tmpfs rw",
+            "28 1 254:0 / / rw,relatime shared:1 - ext4 /dev/vda rw",
+            "29 28 254:16 / /home rw,relatime shared:2 - ext4 /dev/vdb rw",
+            "32 24 0:28 / /sys/fs/cgroup rw,relatime - cgroup2 cgroup2 rw",
+            "40 28 0:40 / /mnt/share rw,relatime - nfs4 server:/export rw,vers=4.2",
+            "41 28 0:41 / /mnt/remote rw,relatime - fuse.sshfs user@host:/ rw",
+            "42 28 254:0 /var/lib/data /srv/data rw,relatime - ext4 /dev/vda rw",
+            "43 28 254:16 / /mnt/home\\040copy rw,relatime - ext4 /dev/vdb rw",
+            "44 28 0:44 / /run rw,nosuid - tmpfs tmpfs rw");
+
+    @Test
+    void parseMountInfo_ShouldReadMountPointTypeDeviceAndRoot() {
+        List<SystemScanScope.Mount> mounts = SystemScanScope.parseMountInfo(MOUNT_INFO);
+
+        assertEquals(MOUNT_INFO.size(), mounts.size());
+        assertEquals(new SystemScanScope.Mount("/home", "ext4", "254:16", "/"), mounts.get(5));
+        assertEquals(new SystemScanScope.Mount("/srv/data", "ext4", "254:0", "/var/lib/data"), mounts.get(9));
+        // \040 is how the kernel escapes a space
+        assertEquals("/mnt/home copy", mounts.get(10).mountPoint());
+    }
+
+    @Test
+    void parseMounts_ShouldReadProcMountsWithoutDevices() {
+        List<SystemScanScope.Mount> mounts = SystemScanScope.parseMounts(List.of(
+                "proc /proc proc rw,relatime 0 0",
+                "/dev/vda / ext4 rw,relatime 0 0",
+                "garbage"));
+
+        assertEquals(List.of(new SystemScanScope.Mount("/proc", "proc", null, null),
+                new SystemScanScope.Mount("/", "ext4", null, null)), mounts);
+    }
+
+    @Test
+    void skipReason_ShouldStopAtPseudoFilesystemsAndOtherDevicesByDefault() {
+        SystemScanScope scope = scope(true, false);
+
+        assertEquals("proc", scope.skipReason(Path.of("/proc")));
+        assertEquals("sysfs", scope.skipReason(Path.of("/sys")));
+        assertEquals("devtmpfs", scope.skipReason(Path.of("/dev")));
+        assertEquals("tmpfs", scope.skipReason(Path.of("/run")));
+        assertEquals("network file system nfs4", scope.skipReason(Path.of("/mnt/share")));
+        assertEquals("other device (ext4)", scope.skipReason(Path.of("/home")));
+        // Directories that are not mount points are always walked.
+        assertNull(scope.skipReason(Path.of("/")));
+        assertNull(scope.skipReason(Path.of("/usr/lib")));
+        assertNull(scope.skipReason(Path.of("/proc/self")));
+    }
+
+    @Test
+    void skipReason_ShouldEnterOtherDevicesButNotBindDuplicatesWhenCrossingDevices() {
+        SystemScanScope scope = scope(true, true);
+
+        assertNull(scope.skipReason(Path.of("/home")));
+        assertEquals("proc", scope.skipReason(Path.of("/proc")));
+        assertEquals("network file system fuse.sshfs", scope.skipReason(Path.of("/mnt/remote")));
+        // /var/lib/data is already walked below /; /home is reached first
+        // through its own mount.
+        assertEquals("bind mount of /var/lib/data", scope.skipReason(Path.of("/srv/data")));
+        assertEquals("bind mount of /", scope.skipReason(Path.of("/mnt/home copy")));
+    }
+
+    @Test
+    void skipReason_ShouldEnterNetworkFilesystemsOnlyWhenAllowed() {
+        SystemScanScope scope = scope(false, true);
+
+        assertNull(scope.skipReason(Path.of("/mnt/share")));
+        assertNull(scope.skipReason(Path.of("/mnt/remote")));
+        assertEquals("cgroup2", scope.skipReason(Path.of("/sys/fs/cgroup")));
+    }
+
+    @Test
+    void skipReason_ShouldUseTheLastMountOnTheSameMountPoint() {
+        SystemScanScope scope = SystemScanScope.of(ROOT, SystemScanScope.parseMountInfo(List.of(
+                "28 1 254:0 / / rw - ext4 /dev/vda rw",
+                "50 28 254:32 / /data rw - ext4 /dev/vdc rw",
+                "51 50 0:51 / /data rw - tmpfs tmpfs rw")), EXCLUDED, true, true);
+
+        assertEquals("tmpfs", scope.skipReason(Path.of("/data")));
+    }
+
+    @Test
+    void skipReason_ShouldNeverSkipAScanRoot() {
+        // In a container / itself is an overlay mount.
+        SystemScanScope scope = SystemScanScope.of(ROOT, SystemScanScope.parseMountInfo(List.of(
+                "100 90 0:80 / / rw - overlay overlay rw,lowerdir=/l,upperdir=/u",
+                "101 100 0:81 / /proc rw - proc proc rw")), EXCLUDED, true, false);
+
+        assertEquals(ROOT, scope.roots());
+        assertNull(scope.skipReason(Path.of("/")));
+        assertEquals("proc", scope.skipReason(Path.of("/proc")));
+    }
+
+    @Test
+    void roots_ShouldKeepAnOverlayRootAndDropOnlyNetworkRoots() {
+        Map<Path, String> types = Map.of(Path.of("/"), "overlay", Path.of("/mnt/z"), "cifs");
+        List<Path> listed = List.of(Path.of("/"), Path.of("/mnt/z"), Path.of("/mnt/empty"));
+
+        assertEquals(List.of(Path.of("/"), Path.of("/mnt/empty")), SystemScanScope.roots(listed, types::get, true));
+        assertEquals(listed, SystemScanScope.roots(listed, types::get, false));
+    }
+
+    @Test
+    void resolve_ShouldAlwaysFindARootToScan() {
+        // Whatever this machine's "/" is (overlay in a container), the
+        // default exclusions must not leave the system scan without roots.
+        assertFalse(SystemScanScope.resolve(EXCLUDED, true, false).roots().isEmpty());
+    }
+
+    @Test
+    void boundarySummary_ShouldCountSkippedMountPointsPerReason() {
+        SystemScanScope scope = scope(true, false);
+
+        assertEquals(2L, scope.boundarySummary().get("tmpfs"));
+        assertEquals(3L, scope.boundarySummary().get("other device (ext4)"));
+    }
+
+    @Test
+    void parseTypes_ShouldTrimLowercaseAndDropEmptyEntries() {
+        assertEquals(Set.of("nfs", "tmpfs"), SystemScanScope.parseTypes(" NFS, ,tmpfs,"));
+        assertTrue(SystemScanScope.parseTypes(null).isEmpty());
+    }
+
+    private static SystemScanScope scope(boolean skipNetwork, boolean crossDevices) {
+        return SystemScanScope.of(ROOT, SystemScanScope.parseMountInfo(MOUNT_INFO), EXCLUDED, skipNetwork,
+                crossDevices);
+    }
+}
@@ -1,5 +1,7 @@
 package com.antivirus.service.impl;
 
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -9,14 +11,32 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -41,13 +61,17 @@ class ThreatIntelSignatureServiceTest {
 
     private Path cacheFile;
 
+    private HttpServer stubServer;
+
     @BeforeEach
     void setUp() {
         service = new ThreatIntelSignatureService();
         ReflectionTestUtils.setField(service, "threatIntelHttpClient", httpClient);
         ReflectionTestUtils.setField(service, "feedUrlsConfig", "https://example.invalid/feed.txt");
-        cacheFile = tempDir.resolve("cache.sha256");
+        cacheFile = tempDir.resolve("cache.bin");
         ReflectionTestUtils.setField(service, "cacheFileConfig", cacheFile.toString());
+        ReflectionTestUtils.setField(service, "legacyCacheFileConfig", tempDir.resolve("cache.sha256").toString());
+        ReflectionTestUtils.setField(service, "journalCompactThreshold", 100_000);
         ReflectionTestUtils.setField(service, "refreshOnStartup", false);
         ReflectionTestUtils.setField(service, "enabled", true);
     }
@@ -55,6 +79,10 @@ class ThreatIntelSignatureServiceTest {
     @AfterEach
     void tearDown() {
         service.shutdown();
+        if (stubServer != null) {
+            stubServer.stop(0);
+            ((ExecutorService) stubServer.getExecutor()).shutdownNow();
+        }
     }
 
     // ── init() ──────────────────────────────────────────────────────
@@ -124,12 +152,256 @@ class ThreatIntelSignatureServiceTest {
     @Test
     void refreshFromRemote_ShouldPersistFetchedSignaturesToCache() throws Exception {
         stubFeedResponse(200, "818ed536a50e205f6ef036a109c847869ff78100e87ceae800f5c43d62bb26bd\n");
+        service.init();
+
+        service.refreshFromRemote();
+
+        // Journaled, not yet compacted: a restart still sees it.
+        assertTrue(Files.size(SignatureCacheFile.journalPath(cacheFile)) > 0);
+        ThreatIntelSignatureService restarted = restartedService();
+        assertTrue(restarted.isKnownMalicious("818ed536a50e205f6ef036a109c847869ff78100e87ceae800f5c43d62bb26bd"));
+        restarted.shutdown();
+    }
+
+    @Test
+    void refreshFromRemote_ShouldIndexSha1AndMd5DigestsSeparately() throws Exception {
+        String sha1 = "3395856ce81f2b7382dee72602f798b642f14140";
+        String md5 = "44d88612fea8a8f36de82e1278abb02f";
+        stubFeedResponse(200, "sha1," + sha1 + "\nmd5," + md5.toUpperCase() + "\n");
+        service.init();
+
+        assertEquals(2, service.refreshFromRemote());
+
+        assertTrue(service.isKnownMalicious(sha1));
+        assertTrue(service.isKnownMalicious(md5));
+        assertEquals(Set.of(HashType.SHA256, HashType.SHA1, HashType.MD5), service.snapshot().activeTypes());
+        // Each type journals next to the SHA-256 cache, so a restart keeps them.
+        ThreatIntelSignatureService restarted = restartedService();
+        assertTrue(restarted.isKnownMalicious(md5));
+        assertTrue(restarted.isKnownMalicious(sha1));
+        restarted.shutdown();
+    }
+
+    @Test
+    void refreshFromRemote_ShouldSkipHashTypesThatAreNotConfigured() throws Exception {
+        ReflectionTestUtils.setField(service, "hashTypesConfig", "SHA-256");
+        stubFeedResponse(200, "44d88612fea8a8f36de82e1278abb02f\n");
+        service.init();
+
+        assertEquals(0, service.refreshFromRemote());
+        assertFalse(service.isKnownMalicious("44d88612fea8a8f36de82e1278abb02f"));
+    }
+
+    @Test
+    void signatureFingerprint_ShouldChangeOnlyWithTheRequestedHashTypes() throws Exception {
+        Set<HashType> notSha256 = EnumSet.of(HashType.SHA1, HashType.MD5);
+        service.init();
+        long before = service.signatureFingerprint(notSha256);
+
+        stubFeedResponse(200, "818ed536a50e205f6ef036a109c847869ff78100e87ceae800f5c43d62bb26bd\n");
+        service.refreshFromRemote();
+        assertEquals(before, service.signatureFingerprint(notSha256));
 
+        stubFeedResponse(200, "md5,44d88612fea8a8f36de82e1278abb02f\n");
         service.refreshFromRemote();
+        assertNotEquals(before, service.signatureFingerprint(notSha256));
+    }
+
+    @Test
+    void compactCache_ShouldFoldJournalIntoMappedImage() throws Exception {
+        stubFeedResponse(200, "818ed536a50e205f6ef036a109c847869ff78100e87ceae800f5c43d62bb26bd\n");
+        service.init();
+        service.refreshFromRemote();
+        long fingerprint = service.signatureFingerprint(EnumSet.allOf(HashType.class));
+
+        service.compactCache();
 
         assertTrue(Files.isRegularFile(cacheFile));
-        List<String> lines = Files.readAllLines(cacheFile);
-        assertTrue(lines.contains("818ed536a50e205f6ef036a109c847869ff78100e87ceae800f5c43d62bb26bd"));
+        assertEquals(fingerprint, service.signatureFingerprint(EnumSet.allOf(HashType.class)));
+        ThreatIntelSignatureService restarted = restartedService();
+        assertTrue(restarted.isKnownMalicious("818ed536a50e205f6ef036a109c847869ff78100e87ceae800f5c43d62bb26bd"));
+        assertEquals(2, restarted.signatureCount());
+        restarted.shutdown();
+    }
+
+    @Test
+    void init_ShouldContinueFromTheJournaledSignatureVersion() throws Exception {
+        service.init();
+        // One version per refresh, though a restart replays them all at once.
+        for (String hash : List.of("818ed536a50e205f6ef036a109c847869ff78100e87ceae800f5c43d62bb26bd",
+                "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08",
+                "2c26b46b68ffc68ff99b453c1d30413413422d706483bfa0f98a5e886266e7ae")) {
+            stubFeedResponse(200, hash + "\n");
+            service.refreshFromRemote();
+        }
+        long version = service.signatureVersion();
+
+        ThreatIntelSignatureService restarted = restartedService();
+        assertEquals(version, restarted.signatureVersion());
+        restarted.shutdown();
+
+        // Compaction empties the journal but keeps the version it recorded.
+        service.compactCache();
+        restarted = restartedService();
+        assertEquals(version, restarted.signatureVersion());
+        restarted.shutdown();
+    }
+
+    @Test
+    void refreshFromRemote_ShouldNotifyListenersOfNewSignaturesOnly() throws Exception {
+        String hash = "818ed536a50e205f6ef036a109c847869ff78100e87ceae800f5c43d62bb26bd";
+        stubFeedResponse(200, hash + "\n" + ThreatIntelSignatureService.EICAR_SHA256 + "\n");
+        List<byte[]> notified = new CopyOnWriteArrayList<>();
+        service.addSignatureListener(notified::addAll);
+        service.init();
+
+        service.refreshFromRemote();
+
+        // EICAR was already known from startup seeding.
+        assertEquals(1, notified.size());
+        assertArrayEquals(HexFormat.of().parseHex(hash), notified.get(0));
+    }
+
+    @Test
+    void refreshFromRemote_ShouldPublishNewSnapshotAndLeaveOldOneIntact() throws Exception {
+        String hash = "818ed536a50e205f6ef036a109c847869ff78100e87ceae800f5c43d62bb26bd";
+        stubFeedResponse(200, hash + "\n");
+        service.init();
+        SignatureSnapshot before = service.snapshot();
+
+        service.refreshFromRemote();
+        SignatureSnapshot after = service.snapshot();
+        service.compactCache();
+
+        // A scan holding the old snapshot keeps judging against it.
+        assertFalse(before.isKnownMalicious(HexFormat.of().parseHex(hash)));
+        assertTrue(after.isKnownMalicious(HexFormat.of().parseHex(hash)));
+        assertTrue(after.version() > before.version());
+        // Compaction republishes the same set under the same version.
+        assertEquals(after.version(), service.signatureVersion());
+        assertEquals(after.size(), service.snapshot().size());
+    }
+
+    @Test
+    void init_ShouldImportLegacyTextCacheWhenNoBinaryCacheExists() throws Exception {
+        Files.write(tempDir.resolve("cache.sha256"),
+                List.of("2f081ff5029565aef3c185f676430418a54b114bf75c640dd858e4d38f12de02"));
+
+        service.init();
+
+        assertTrue(service.isKnownMalicious("2f081ff5029565aef3c185f676430418a54b114bf75c640dd858e4d38f12de02"));
+        verifyNoInteractions(httpClient);
+    }
+
+    // ── refreshFromRemote() against a local stub server ─────────────
+
+    @Test
+    void refreshFromRemote_ShouldSendEtagBackAndSkipUnchangedFeed() throws Exception {
+        List<String> ifNoneMatch = new CopyOnWriteArrayList<>();
+        HttpServer server = startStubServer();
+        server.createContext("/feed", exchange -> {
+            String etag = exchange.getRequestHeaders().getFirst("If-None-Match");
+            ifNoneMatch.add(String.valueOf(etag));
+            exchange.getResponseHeaders().add("ETag", "\"v1\"");
+            if ("\"v1\"".equals(etag)) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            respond(exchange, "2f081ff5029565aef3c185f676430418a54b114bf75c640dd858e4d38f12de02\n");
+        });
+        useStubServer(server, "/feed");
+
+        assertEquals(1, service.refreshFromRemote());
+        assertEquals(0, service.refreshFromRemote());
+
+        assertEquals(List.of("null", "\"v1\""), ifNoneMatch);
+        Map<String, Object> feed = feedStatus(0);
+        assertEquals("NOT_MODIFIED", feed.get("lastResult"));
+        assertEquals(1L, feed.get("totalAdded"));
+        assertEquals(2L, feed.get("refreshes"));
+        assertTrue(service.isKnownMalicious("2f081ff5029565aef3c185f676430418a54b114bf75c640dd858e4d38f12de02"));
+    }
+
+    @Test
+    void refreshFromRemote_ShouldFetchFeedsInParallelAndTrackEachOne() throws Exception {
+        // Each good feed waits until the other has been requested, so
+        // this only completes if they are fetched at the same time.
+        CountDownLatch bothRequested = new CountDownLatch(2);
+        HttpServer server = startStubServer();
+        server.createContext("/a", exchange -> {
+            bothRequested.countDown();
+            awaitQuietly(bothRequested);
+            respond(exchange, "2f081ff5029565aef3c185f676430418a54b114bf75c640dd858e4d38f12de02\n");
+        });
+        server.createContext("/b", exchange -> {
+            bothRequested.countDown();
+            awaitQuietly(bothRequested);
+            respond(exchange, "4db73769880dde1f532aa8fcdc2f9790fecb914ea1b77a863fe374a3a579fd47\n");
+        });
+        server.createContext("/broken", exchange -> {
+            exchange.sendResponseHeaders(500, -1);
+            exchange.close();
+        });
+        useStubServer(server, "/a", "/b", "/broken");
+
+        assertEquals(2, service.refreshFromRemote());
+
+        assertEquals(0, bothRequested.getCount());
+        assertEquals("UPDATED", feedStatus(0).get("lastResult"));
+        assertEquals("UPDATED", feedStatus(1).get("lastResult"));
+        assertEquals("HTTP_500", feedStatus(2).get("lastResult"));
+        assertEquals(2, service.signatureCount());
+    }
+
+    @Test
+    void refreshFromRemote_ShouldPublishLargeFeedAsOneVersionAndCompactInline() throws Exception {
+        int hashes = 50_000;
+        // A cache to load keeps init() from starting a refresh of its own.
+        Files.writeString(tempDir.resolve("cache.sha256"), ThreatIntelSignatureService.EICAR_SHA256 + "\n");
+        service.init();
+        long version = service.signatureVersion();
+        ReflectionTestUtils.setField(service, "journalCompactThreshold", 10_000);
+        HttpServer server = startStubServer();
+        server.createContext("/big", exchange -> {
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write("# sha256_hash\n".getBytes(StandardCharsets.US_ASCII));
+                for (int i = 0; i < hashes; i++) {
+                    body.write((String.format("%064x", i + 1L) + "\n").getBytes(StandardCharsets.US_ASCII));
+                }
+            }
+        });
+        useStubServer(server, "/big");
+
+        assertEquals(hashes, service.refreshFromRemote());
+
+        // Plus EICAR, from the cache.
+        assertEquals(hashes + 1, service.signatureCount());
+        assertTrue(service.isKnownMalicious(String.format("%064x", (long) hashes)));
+        assertEquals((long) hashes, feedStatus(0).get("lastAdded"));
+        assertEquals(version + 1, service.signatureVersion());
+        // Past the threshold, so already folded into the image.
+        assertEquals(0, service.snapshot().index(HashType.SHA256).delta().size());
+    }
+
+    // ── parseDigests() ──────────────────────────────────────────────
+
+    @Test
+    void parseDigests_ShouldFindSameTokensAsRegexExtraction() throws Exception {
+        String content = "sha256_hash\n"
+                + "2F081FF5029565AEF3C185F676430418A54B114BF75C640DD858E4D38F12DE02,other\r\n"
+                + "x4db73769880dde1f532aa8fcdc2f9790fecb914ea1b77a863fe374a3a579fd47\n"
+                + "818ed536a50e205f6ef036a109c847869ff78100e87ceae800f5c43d62bb26bd0\n"
+                + "\"818ed536a50e205f6ef036a109c847869ff78100e87ceae800f5c43d62bb26bd\"";
+        List<String> parsed = new ArrayList<>();
+
+        long found = ThreatIntelSignatureService.parseDigests(
+                new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)),
+                digest -> parsed.add(HexFormat.of().formatHex(digest)));
+
+        assertEquals(2, found);
+        assertEquals(List.copyOf(ThreatIntelSignatureService.extractSha256Signatures(content)), parsed);
     }
 
     // ── extractSha256Signatures() ───────────────────────────────────
@@ -157,17 +429,85 @@ class ThreatIntelSignatureServiceTest {
 
     @Test
     void isKnownMalicious_ShouldReturnFalseForNullOrUnknownHash() {
-        assertFalse(service.isKnownMalicious(null));
+        assertFalse(service.isKnownMalicious((String) null));
+        assertFalse(service.isKnownMalicious((byte[]) null));
         assertFalse(service.isKnownMalicious("deadbeef"));
     }
 
+    @Test
+    void isKnownMalicious_ShouldMatchRawDigestOfEicarTestString() throws Exception {
+        service.init();
+
+        // The scan path passes the digest straight from MessageDigest.
+        byte[] digest = java.security.MessageDigest.getInstance("SHA-256").digest(
+                "X5O!P%@AP[4\\PZX54(P^)7CC)7}$EICAR-STANDARD-ANTIVIRUS-TEST-FILE!$H+H*"
+                        .getBytes(java.nio.charset.StandardCharsets.US_ASCII));
+
+        assertTrue(service.isKnownMalicious(digest));
+        assertFalse(service.isKnownMalicious(new byte[32]));
+    }
+
     // ── helpers ──────────────────────────────────────────────────────
 
+    private HttpServer startStubServer() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(Executors.newFixedThreadPool(4));
+        stubServer = server;
+        return server;
+    }
+
+    private void useStubServer(HttpServer server, String... paths) {
+        server.start();
+        String base = "http://127.0.0.1:" + server.getAddress().getPort();
+        ReflectionTestUtils.setField(service, "threatIntelHttpClient", HttpClient.newHttpClient());
+        ReflectionTestUtils.setField(service, "feedUrlsConfig",
+                String.join(",", Arrays.stream(paths).map(path -> base + path).toList()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> feedStatus(int index) {
+        return ((List<Map<String, Object>>) service.refreshStatus().get("feeds")).stream()
+                .sorted(Comparator.comparing(feed -> (String) feed.get("url")))
+                .toList()
+                .get(index);
+    }
+
+    private static void respond(HttpExchange exchange, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private ThreatIntelSignatureService restartedService() {
+        ThreatIntelSignatureService restarted = new ThreatIntelSignatureService();
+        ReflectionTestUtils.setField(restarted, "threatIntelHttpClient", httpClient);
+        ReflectionTestUtils.setField(restarted, "feedUrlsConfig", "https://example.invalid/feed.txt");
+        ReflectionTestUtils.setField(restarted, "cacheFileConfig", cacheFile.toString());
+        ReflectionTestUtils.setField(restarted, "legacyCacheFileConfig", tempDir.resolve("none.sha256").toString());
+        ReflectionTestUtils.setField(restarted, "journalCompactThreshold", 100_000);
+        ReflectionTestUtils.setField(restarted, "refreshOnStartup", false);
+        ReflectionTestUtils.setField(restarted, "enabled", true);
+        restarted.init();
+        return restarted;
+    }
+
     @SuppressWarnings("unchecked")
     private void stubFeedResponse(int statusCode, String body) throws Exception {
-        HttpResponse<String> response = mock(HttpResponse.class);
+        HttpResponse<InputStream> response = mock(HttpResponse.class);
         when(response.statusCode()).thenReturn(statusCode);
-        lenient().when(response.body()).thenReturn(body);
+        lenient().when(response.body())
+                .thenAnswer(invocation -> new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+        lenient().when(response.headers()).thenReturn(HttpHeaders.of(Map.of(), (name, value) -> true));
         when(httpClient.send(any(HttpRequest.class), any(HttpResponse.BodyHandler.class)))
                 .thenReturn(response);
     }
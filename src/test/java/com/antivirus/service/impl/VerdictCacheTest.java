@@ -0,0 +1,111 @@
+package com.antivirus.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VerdictCacheTest {
+
+    private static final byte[] HASH = digest(0xAA);
+    private static final byte[] OTHER_HASH = digest(0xBB);
+    private static final ContentVerdict CLEAN = new ContentVerdict(null, false, false, null, false, 0, false, false, false, false, 0, 0, 0);
+
+    private final VerdictCache cache = new VerdictCache(100);
+
+    @Test
+    void get_ShouldServeRepeatedLookupsFromCache() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get(HASH, false, 1, () -> load(loads));
+        ContentVerdict second = cache.get(HASH, false, 1, () -> load(loads));
+
+        assertSame(CLEAN, second);
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void get_ShouldShareOneInFlightComputationBetweenConcurrentCallers() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<ContentVerdict>> futures = new ArrayList<>();
+            futures.add(executor.submit(() -> cache.get(HASH, false, 1, () -> {
+                loading.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return load(loads);
+            })));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+            for (int i = 0; i < 3; i++) {
+                futures.add(executor.submit(() -> cache.get(HASH, false, 1, () -> load(loads))));
+            }
+            release.countDown();
+
+            for (Future<ContentVerdict> future : futures) {
+                assertSame(CLEAN, future.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, loads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void get_ShouldDropEntriesWhenSignatureVersionAdvances() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        cache.get(HASH, false, 1, () -> load(loads));
+        cache.get(OTHER_HASH, false, 1, () -> load(loads));
+
+        cache.get(HASH, false, 2, () -> load(loads));
+
+        assertEquals(3, loads.get());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void get_ShouldKeepArchiveAndPlainVerdictsApart() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get(HASH, false, 1, () -> load(loads));
+        cache.get(HASH, true, 1, () -> load(loads));
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void get_ShouldNotCacheFailures() throws Exception {
+        assertThrows(IOException.class, () -> cache.get(HASH, false, 1, () -> {
+            throw new IOException("disk gone");
+        }));
+
+        AtomicInteger loads = new AtomicInteger();
+        assertSame(CLEAN, cache.get(HASH, false, 1, () -> load(loads)));
+        assertEquals(1, loads.get());
+    }
+
+    private static byte[] digest(int fill) {
+        byte[] digest = new byte[32];
+        java.util.Arrays.fill(digest, (byte) fill);
+        return digest;
+    }
+
+    private static ContentVerdict load(AtomicInteger loads) {
+        loads.incrementAndGet();
+        return CLEAN;
+    }
+}